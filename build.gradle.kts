@@ -135,6 +135,29 @@ tasks.register<Test>("benchmark") {
     }
 }
 
+// Headless batch rendering of maps, for example on a server.
+// Usage: ./gradlew renderBatch --args="--output out --format png 'my map.nort' 'other map.nort'"
+// Run with no arguments to see all options.
+tasks.register<JavaExec>("renderBatch") {
+    description = "Render .nort files to images without opening the editor"
+    group = "application"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("nortantis.BatchRenderer")
+    workingDir = projectDir
+    jvmArgs = listOf("--enable-native-access=ALL-UNNAMED", "-Djava.awt.headless=true")
+}
+
+// Usage: ./gradlew renderService --args="--port 8080 --parallel 2"
+// Then POST a .nort file to http://localhost:8080/render. See RenderService for the other endpoints.
+tasks.register<JavaExec>("renderService") {
+    description = "Run a local HTTP service that renders .nort files to images"
+    group = "application"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("nortantis.RenderService")
+    workingDir = projectDir
+    jvmArgs = listOf("--enable-native-access=ALL-UNNAMED", "-Djava.awt.headless=true")
+}
+
 sourceSets {
     main {
         java {
@@ -0,0 +1,244 @@
+package nortantis;
+
+import nortantis.editor.FreeIcon;
+import nortantis.util.Assets;
+import nortantis.util.Logger;
+import nortantis.util.Tuple2;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads art pack assets into {@link ImageCache} on background threads before a map needs them, so that the first draw of a map doesn't
+ * have to list, decode, and create masks for every icon group one at a time on the drawing thread. Assets are loaded through the same
+ * caches the map drawing code uses, so if a draw asks for an icon group that is still being loaded, it waits for that load instead of
+ * repeating it.
+ *
+ * Work is done in priority order: first the icon groups and background texture used by the open map, then the rest of the icon groups in
+ * the map's art pack, then listings of background textures and borders in all art packs.
+ *
+ * Starting a new warm-up cancels the previous one. Jobs that have already started finish the icon they are on.
+ */
+public class ArtPackWarmup
+{
+	private static final int priorityForOpenMap = 0;
+	private static final int priorityForArtPack = 1;
+	private static final int priorityForListings = 2;
+
+	/**
+	 * Icon groups that the open map doesn't use are only preloaded while the icon group cache is less than this full, so that preloading
+	 * doesn't evict the groups the map does use.
+	 */
+	private static final double maxIconGroupCacheFractionForOtherGroups = 0.75;
+
+	private static ArtPackWarmup instance;
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicLong jobOrder = new AtomicLong();
+	/**
+	 * Incremented to cancel every job submitted before it.
+	 */
+	private volatile long generation;
+
+	private class WarmupJob implements Runnable, Comparable<WarmupJob>
+	{
+		final int priority;
+		final long order;
+		final long jobGeneration;
+		final String description;
+		final Runnable work;
+
+		WarmupJob(int priority, long jobGeneration, String description, Runnable work)
+		{
+			this.priority = priority;
+			this.order = jobOrder.getAndIncrement();
+			this.jobGeneration = jobGeneration;
+			this.description = description;
+			this.work = work;
+		}
+
+		@Override
+		public void run()
+		{
+			if (isCanceled(jobGeneration))
+			{
+				return;
+			}
+
+			try
+			{
+				work.run();
+			}
+			catch (Exception e)
+			{
+				// The draw that needs this asset will report the error, so don't show it twice.
+				Logger.println("Skipped warming up " + description + " because of an error: " + e.getMessage());
+			}
+		}
+
+		@Override
+		public int compareTo(WarmupJob other)
+		{
+			if (priority != other.priority)
+			{
+				return Integer.compare(priority, other.priority);
+			}
+			return Long.compare(order, other.order);
+		}
+	}
+
+	private ArtPackWarmup()
+	{
+		// Leave some cores free for drawing the map, which runs at the same time.
+		int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		executor = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), runnable ->
+		{
+			Thread thread = new Thread(runnable, "Art pack warm-up");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static synchronized ArtPackWarmup getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new ArtPackWarmup();
+		}
+		return instance;
+	}
+
+	/**
+	 * Cancels any warm-up in progress and starts warming up the assets for the given map. Doesn't block.
+	 *
+	 * @param settings
+	 *            The open map's settings, or null to warm up the installed art pack when no map is open. Read on the calling thread, so the
+	 *            caller must not be changing them at the same time.
+	 */
+	public void warmUp(MapSettings settings)
+	{
+		long jobGeneration = cancel();
+
+		String artPack = settings == null || StringUtils.isEmpty(settings.artPack) ? Assets.installedArtPack : settings.artPack;
+		String customImagesPath = settings == null ? null : settings.customImagesPath;
+
+		if (settings != null)
+		{
+			if (settings.generateBackgroundFromTexture && settings.backgroundTextureResource != null)
+			{
+				String textureArtPack = settings.backgroundTextureResource.artPack;
+				Tuple2<Path, String> texturePath = settings.getBackgroundImagePath();
+				if (texturePath != null && texturePath.getFirst() != null)
+				{
+					submit(priorityForOpenMap, jobGeneration, "background texture " + texturePath.getFirst(),
+							() -> ImageCache.getInstance(textureArtPack, customImagesPath).getImageFromFile(texturePath.getFirst()));
+				}
+			}
+
+			for (IconGroupId group : findIconGroupsUsedByMap(settings))
+			{
+				submitIconGroup(priorityForOpenMap, jobGeneration, group.artPack, customImagesPath, group.type, group.groupId, false);
+			}
+		}
+
+		submit(priorityForArtPack, jobGeneration, "icon groups in art pack " + artPack, () ->
+		{
+			ImageCache cache = ImageCache.getInstance(artPack, customImagesPath);
+			for (IconType type : IconType.values())
+			{
+				for (String groupId : cache.getIconGroupNames(type))
+				{
+					submitIconGroup(priorityForArtPack, jobGeneration, artPack, customImagesPath, type, groupId, true);
+				}
+			}
+		});
+
+		submit(priorityForListings, jobGeneration, "background texture and border listings", () ->
+		{
+			Assets.listBackgroundTexturesForAllArtPacks(customImagesPath);
+			Assets.listAllBorderTypes(customImagesPath);
+		});
+	}
+
+	/**
+	 * Cancels the current warm-up, if any. Jobs that haven't started yet are skipped, and jobs in progress stop after the icon they are
+	 * working on.
+	 *
+	 * @return The generation that jobs submitted after this call should use.
+	 */
+	public synchronized long cancel()
+	{
+		generation++;
+		executor.getQueue().clear();
+		return generation;
+	}
+
+	private boolean isCanceled(long jobGeneration)
+	{
+		return jobGeneration != generation;
+	}
+
+	private void submit(int priority, long jobGeneration, String description, Runnable work)
+	{
+		if (isCanceled(jobGeneration))
+		{
+			return;
+		}
+		executor.execute(new WarmupJob(priority, jobGeneration, description, work));
+	}
+
+	private void submitIconGroup(int priority, long jobGeneration, String artPack, String customImagesPath, IconType type, String groupId, boolean onlyIfCacheHasRoom)
+	{
+		submit(priority, jobGeneration, type + " group '" + groupId + "' in art pack " + artPack, () ->
+		{
+			ImageCache cache = ImageCache.getInstance(artPack, customImagesPath);
+			if (onlyIfCacheHasRoom && cache.getIconGroupCacheFractionUsed() >= maxIconGroupCacheFractionForOtherGroups)
+			{
+				return;
+			}
+
+			Map<String, ImageAndMasks> icons = cache.getIconsByNameForGroup(type, groupId);
+			for (ImageAndMasks imageAndMasks : icons.values())
+			{
+				if (isCanceled(jobGeneration))
+				{
+					return;
+				}
+				imageAndMasks.getOrCreateContentMask();
+				imageAndMasks.getOrCreateShadingMask();
+				imageAndMasks.getOrCreateColorMask();
+			}
+		});
+	}
+
+	private record IconGroupId(String artPack, IconType type, String groupId)
+	{
+	}
+
+	private static Set<IconGroupId> findIconGroupsUsedByMap(MapSettings settings)
+	{
+		Set<IconGroupId> result = new LinkedHashSet<>();
+		if (settings.edits == null || settings.edits.freeIcons == null)
+		{
+			return result;
+		}
+
+		for (FreeIcon icon : settings.edits.freeIcons)
+		{
+			if (icon != null && !StringUtils.isEmpty(icon.artPack) && !StringUtils.isEmpty(icon.groupId))
+			{
+				result.add(new IconGroupId(icon.artPack, icon.type, icon.groupId));
+			}
+		}
+		return result;
+	}
+}
@@ -47,6 +47,15 @@ public class Background
 	public Image landColoredBeforeAddingIconColors;
 
 	public Background(MapSettings settings, Dimension mapBounds, WarningLogger warningLogger)
+	{
+		this(settings, mapBounds, warningLogger, null);
+	}
+
+	/**
+	 * @param diskCache
+	 *            If not null, generated background textures are loaded from and stored in this cache.
+	 */
+	public Background(MapSettings settings, Dimension mapBounds, WarningLogger warningLogger, MapPartsDiskCache diskCache)
 	{
 		customImagesPath = settings.customImagesPath;
 		shouldDrawRegionColors = settings.drawRegionColors && (!settings.generateBackgroundFromTexture || settings.colorizeLand);
@@ -72,8 +81,11 @@ public class Background
 			// Fractal generated background images
 
 			final float fractalPower = 1.3f;
-			Image oceanGeneratedBackground = FractalBGGenerator.generate(new Random(settings.backgroundRandomSeed), fractalPower,
-					((int) mapBounds.width) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0), ((int) mapBounds.height) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0), 0.75f);
+			final int width = ((int) mapBounds.width) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0);
+			final int height = ((int) mapBounds.height) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0);
+			Image oceanGeneratedBackground = MapPartsDiskCache.getOrCreate(diskCache,
+					MapPartsDiskCache.createKey("fractalBackground", settings.backgroundRandomSeed, fractalPower, width, height, 0.75f),
+					() -> FractalBGGenerator.generate(new Random(settings.backgroundRandomSeed), fractalPower, width, height, 0.75f));
 			landGeneratedBackground = oceanGeneratedBackground;
 			landColorizeAlgorithm = ColorizeAlgorithm.algorithm2;
 			oceanColorizeAlgorithm = ColorizeAlgorithm.algorithm2;
@@ -135,11 +147,12 @@ public class Background
 			}
 
 			oceanColorizeAlgorithm = ColorizeAlgorithm.algorithm3;
+			final String textureDescription = MapPartsDiskCache.describeFile(texturePath);
 
 			Image oceanGeneratedBackground;
 			if (settings.colorizeOcean)
 			{
-				oceanGeneratedBackground = BackgroundGenerator.generateUsingWhiteNoiseConvolution(new Random(settings.backgroundRandomSeed), ImageHelper.getInstance().convertToGrayscale(texture),
+				oceanGeneratedBackground = generateFromTexture(diskCache, settings.backgroundRandomSeed, texture, textureDescription, true,
 						((int) mapBounds.height) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0), ((int) mapBounds.width) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0));
 
 				if (settings.borderColorOption == BorderColorOption.Ocean_color)
@@ -167,7 +180,7 @@ public class Background
 			}
 			else
 			{
-				oceanGeneratedBackground = BackgroundGenerator.generateUsingWhiteNoiseConvolution(new Random(settings.backgroundRandomSeed), texture,
+				oceanGeneratedBackground = generateFromTexture(diskCache, settings.backgroundRandomSeed, texture, textureDescription, false,
 						((int) mapBounds.height) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0), ((int) mapBounds.width) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0));
 				if (settings.drawBorder)
 				{
@@ -223,7 +236,7 @@ public class Background
 					// otherwise the random texture of the land won't match the
 					// texture of the ocean.
 
-					landGeneratedBackground = BackgroundGenerator.generateUsingWhiteNoiseConvolution(new Random(settings.backgroundRandomSeed), ImageHelper.getInstance().convertToGrayscale(texture),
+					landGeneratedBackground = generateFromTexture(diskCache, settings.backgroundRandomSeed, texture, textureDescription, true,
 							((int) mapBounds.height) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0), ((int) mapBounds.width) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0));
 					if (shouldDrawRegionColors)
 					{
@@ -239,7 +252,7 @@ public class Background
 				}
 				else
 				{
-					landGeneratedBackground = BackgroundGenerator.generateUsingWhiteNoiseConvolution(new Random(settings.backgroundRandomSeed), texture,
+					landGeneratedBackground = generateFromTexture(diskCache, settings.backgroundRandomSeed, texture, textureDescription, false,
 							((int) mapBounds.height) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0), ((int) mapBounds.width) + (isBorderOutsideMap ? borderWidthScaled * 2 : 0));
 					land = removeBorderPadding(landGeneratedBackground);
 					landColorizeAlgorithm = ColorizeAlgorithm.none;
@@ -307,6 +320,21 @@ public class Background
 		}
 	}
 
+	/**
+	 * Generates a background from a texture, or loads it from the disk cache if it was generated before with the same inputs.
+	 *
+	 * @param textureDescription
+	 *            Identifies the texture in the disk cache. See {@link MapPartsDiskCache#describeFile}.
+	 */
+	private static Image generateFromTexture(MapPartsDiskCache diskCache, long seed, Image texture, String textureDescription, boolean convertToGrayscale, int rows, int cols)
+	{
+		return MapPartsDiskCache.getOrCreate(diskCache, MapPartsDiskCache.createKey("textureBackground", seed, textureDescription, convertToGrayscale, rows, cols), () ->
+		{
+			Image source = convertToGrayscale ? ImageHelper.getInstance().convertToGrayscale(texture) : texture;
+			return BackgroundGenerator.generateUsingWhiteNoiseConvolution(new Random(seed), source, rows, cols);
+		});
+	}
+
 	public static Dimension calcMapBoundsAndAdjustResolutionIfNeeded(MapSettings settings, Dimension maxDimensions)
 	{
 		Dimension mapBounds;
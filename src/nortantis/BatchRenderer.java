@@ -0,0 +1,362 @@
+package nortantis;
+
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.swing.MapEdits;
+import nortantis.swing.translation.Translation;
+import nortantis.util.JsonStreamWriter;
+import nortantis.util.Logger;
+import org.apache.commons.io.FilenameUtils;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders maps from the command line without opening the editor, for example on a server. It takes either any number of .nort files, or
+ * one .nort file and a range of random seeds to generate a map from each seed with that file's theme.
+ *
+ * Maps are drawn in one process, so they share the same image caches, kernel caches, and thread pool, which makes rendering many maps in
+ * one run much faster than rendering each in its own process. Each map is drawn with its own {@link MapCreator}. At most a fixed number of
+ * maps are drawn at once, since each map can use a large amount of memory and already draws its parts in parallel.
+ *
+ * A JSON report with the timing and result of each map is written once all maps are done.
+ */
+public class BatchRenderer
+{
+	/**
+	 * Each map's drawing is already parallel, so drawing more than one at once mostly adds memory pressure. Drawing several at once is opt in
+	 * with --parallel.
+	 */
+	static final int defaultMaxMapsInFlight = 1;
+
+	private static final String usage = String.join(System.lineSeparator(), "Usage: BatchRenderer [options] <map.nort>...",
+			"Options:", "  --seeds <first>-<last>   Render the one given map once for each seed, generating a new map from each seed with the",
+			"                           map's theme. The map's edits are ignored.",
+			"  --output <folder>        The folder to write maps and the report into. Defaults to the current folder.",
+			"  --format <png|jpg>       The image format to write. Defaults to png.",
+			"  --resolution <scale>     The resolution to draw at, where 1.0 is the editor's 100%. Defaults to each map's export resolution.",
+			"  --parallel <count>       The most maps to draw at once. Defaults to " + defaultMaxMapsInFlight + ".",
+			"  --report <file>          Where to write the JSON report. Defaults to 'render report.json' in the output folder.");
+
+	private static final Set<String> supportedFormats = new HashSet<>(Arrays.asList("png", "jpg", "jpeg"));
+
+	final List<String> settingsPaths = new ArrayList<>();
+	Long firstSeed;
+	Long lastSeed;
+	Path outputFolder = Paths.get("");
+	String format = "png";
+	Double resolution;
+	int maxMapsInFlight = defaultMaxMapsInFlight;
+	Path reportPath;
+
+	/**
+	 * One map to render.
+	 */
+	static class Job
+	{
+		final String settingsPath;
+		/**
+		 * If not null, the map is generated from this seed rather than drawn from the edits in the settings file.
+		 */
+		final Long seed;
+		final Path outputPath;
+
+		Job(String settingsPath, Long seed, Path outputPath)
+		{
+			this.settingsPath = settingsPath;
+			this.seed = seed;
+			this.outputPath = outputPath;
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             If the arguments aren't valid. The message says why.
+	 */
+	static BatchRenderer parseArgs(String[] args)
+	{
+		BatchRenderer renderer = new BatchRenderer();
+		for (int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+			if (!arg.startsWith("--"))
+			{
+				renderer.settingsPaths.add(arg);
+				continue;
+			}
+
+			if (i + 1 >= args.length)
+			{
+				throw new IllegalArgumentException("Missing value for " + arg + ".");
+			}
+			String value = args[++i];
+			try
+			{
+				if (arg.equals("--seeds"))
+				{
+					int dash = value.indexOf('-', 1);
+					renderer.firstSeed = Long.parseLong(dash < 0 ? value : value.substring(0, dash));
+					renderer.lastSeed = dash < 0 ? renderer.firstSeed : Long.parseLong(value.substring(dash + 1));
+					if (renderer.lastSeed < renderer.firstSeed)
+					{
+						throw new IllegalArgumentException("The last seed must not be less than the first seed.");
+					}
+				}
+				else if (arg.equals("--output"))
+				{
+					renderer.outputFolder = Paths.get(value);
+				}
+				else if (arg.equals("--format"))
+				{
+					renderer.format = value.toLowerCase();
+					if (!supportedFormats.contains(renderer.format))
+					{
+						throw new IllegalArgumentException("Unsupported format '" + value + "'. The supported formats are png and jpg.");
+					}
+				}
+				else if (arg.equals("--resolution"))
+				{
+					renderer.resolution = Double.parseDouble(value);
+					if (!(renderer.resolution > 0))
+					{
+						throw new IllegalArgumentException("The resolution must be greater than 0.");
+					}
+				}
+				else if (arg.equals("--parallel"))
+				{
+					renderer.maxMapsInFlight = Integer.parseInt(value);
+					if (renderer.maxMapsInFlight < 1)
+					{
+						throw new IllegalArgumentException("The number of maps to draw at once must be at least 1.");
+					}
+				}
+				else if (arg.equals("--report"))
+				{
+					renderer.reportPath = Paths.get(value);
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unrecognized option " + arg + ".");
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Invalid value '" + value + "' for " + arg + ".");
+			}
+		}
+
+		if (renderer.settingsPaths.isEmpty())
+		{
+			throw new IllegalArgumentException("No maps to render.");
+		}
+		if (renderer.firstSeed != null && renderer.settingsPaths.size() != 1)
+		{
+			throw new IllegalArgumentException("--seeds takes exactly one map to use the theme of.");
+		}
+		if (renderer.reportPath == null)
+		{
+			renderer.reportPath = renderer.outputFolder.resolve("render report.json");
+		}
+		return renderer;
+	}
+
+	List<Job> createJobs()
+	{
+		List<Job> jobs = new ArrayList<>();
+		Set<String> usedNames = new HashSet<>();
+		if (firstSeed != null)
+		{
+			String settingsPath = settingsPaths.get(0);
+			for (long seed = firstSeed; seed <= lastSeed; seed++)
+			{
+				jobs.add(new Job(settingsPath, seed, createOutputPath(FilenameUtils.getBaseName(settingsPath) + " seed " + seed, usedNames)));
+			}
+		}
+		else
+		{
+			for (String settingsPath : settingsPaths)
+			{
+				jobs.add(new Job(settingsPath, null, createOutputPath(FilenameUtils.getBaseName(settingsPath), usedNames)));
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * Maps from different folders can have the same name, so later ones get a number added rather than overwriting earlier ones.
+	 */
+	private Path createOutputPath(String name, Set<String> usedNames)
+	{
+		String uniqueName = name;
+		for (int i = 2; !usedNames.add(uniqueName.toLowerCase()); i++)
+		{
+			uniqueName = name + " (" + i + ")";
+		}
+		return outputFolder.resolve(uniqueName + "." + format);
+	}
+
+	/**
+	 * Renders every map, then writes the report.
+	 *
+	 * @return The report, with one entry per map in the order the maps were given.
+	 */
+	@SuppressWarnings("unchecked")
+	JSONArray run() throws IOException
+	{
+		Files.createDirectories(outputFolder);
+		List<Job> jobs = createJobs();
+		Logger.println("Rendering " + jobs.size() + " map" + (jobs.size() == 1 ? "" : "s") + ", at most " + maxMapsInFlight + " at a time.");
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(maxMapsInFlight, runnable ->
+		{
+			Thread thread = new Thread(runnable, "batch-render-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		JSONArray report = new JSONArray();
+		try
+		{
+			final long queuedTime = System.nanoTime();
+			List<Future<JSONObject>> results = new ArrayList<>();
+			for (Job job : jobs)
+			{
+				results.add(executor.submit(() -> render(job, queuedTime)));
+			}
+			for (Future<JSONObject> result : results)
+			{
+				try
+				{
+					report.add(result.get());
+				}
+				catch (Exception e)
+				{
+					// render catches everything a map can throw, so this is only reached if the thread itself was interrupted.
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		Files.createDirectories(reportPath.toAbsolutePath().getParent());
+		Files.writeString(reportPath, JsonStreamWriter.toJsonString(report), StandardCharsets.UTF_8);
+		Logger.println("Report written to " + reportPath);
+		return report;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject render(Job job, long queuedTime)
+	{
+		JSONObject entry = new JSONObject();
+		entry.put("settingsPath", job.settingsPath);
+		if (job.seed != null)
+		{
+			entry.put("seed", job.seed);
+		}
+		entry.put("outputPath", job.outputPath.toString());
+		long startTime = System.nanoTime();
+		entry.put("waitMillis", toMillis(startTime - queuedTime));
+
+		MapCreator mapCreator = new MapCreator();
+		// Each map normally decides how much memory it can use assuming it has the whole heap, which isn't true when more than one map is
+		// drawn at once.
+		mapCreator.overrideMemoryMode(maxMapsInFlight > 1 ? true : null);
+		try
+		{
+			MapSettings settings = new MapSettings(job.settingsPath);
+			if (job.seed != null)
+			{
+				settings.randomSeed = job.seed;
+				settings.regionsRandomSeed = job.seed;
+				settings.backgroundRandomSeed = job.seed;
+				settings.frayedBorderSeed = job.seed;
+				settings.textRandomSeed = job.seed;
+				settings.edits = new MapEdits();
+			}
+			if (resolution != null)
+			{
+				settings.resolution = resolution;
+			}
+			long loadedTime = System.nanoTime();
+			entry.put("loadMillis", toMillis(loadedTime - startTime));
+
+			Logger.println("Rendering " + job.outputPath.getFileName());
+			mapCreator.createMapAndWrite(settings, job.outputPath.toString());
+			long renderedTime = System.nanoTime();
+			// Large maps are written in strips as they're drawn, so drawing and writing are timed together.
+			entry.put("renderAndWriteMillis", toMillis(renderedTime - loadedTime));
+			entry.put("totalMillis", toMillis(renderedTime - startTime));
+			entry.put("succeeded", true);
+			Logger.println("Rendered " + job.outputPath.getFileName() + " in " + toMillis(renderedTime - startTime) + " ms");
+		}
+		catch (Throwable e)
+		{
+			entry.put("totalMillis", toMillis(System.nanoTime() - startTime));
+			entry.put("succeeded", false);
+			entry.put("error", e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+			Logger.printError("Unable to render '" + job.settingsPath + "'" + (job.seed != null ? " with seed " + job.seed : "") + ":", e);
+		}
+
+		JSONArray warnings = new JSONArray();
+		warnings.addAll(mapCreator.getWarningMessages());
+		entry.put("warnings", warnings);
+		return entry;
+	}
+
+	private static long toMillis(long nanos)
+	{
+		return nanos / 1_000_000;
+	}
+
+	public static void main(String[] args)
+	{
+		System.setProperty("java.awt.headless", "true");
+		PlatformFactory.setInstance(new AwtFactory());
+		Translation.initialize();
+
+		BatchRenderer renderer;
+		try
+		{
+			renderer = parseArgs(args);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println(usage);
+			System.exit(2);
+			return;
+		}
+
+		try
+		{
+			boolean allSucceeded = true;
+			for (Object entry : renderer.run())
+			{
+				allSucceeded &= Boolean.TRUE.equals(((JSONObject) entry).get("succeeded"));
+			}
+			System.exit(allSucceeded ? 0 : 1);
+		}
+		catch (Exception e)
+		{
+			Logger.printError("Batch render failed:", e);
+			System.exit(1);
+		}
+	}
+}
@@ -17,6 +17,11 @@ public class DebugFlags
 	 */
 	private static boolean printIncrementalUpdateTimes = false;
 
+	/**
+	 * Prints hit, miss, eviction, and memory counts for the image caches after each full map draw.
+	 */
+	private static boolean printImageCacheStats = false;
+
 	/**
 	 * Causes the indexes of edges to be printed to standard out when adding rivers in the Land and Water tool. This is useful when you're
 	 * debugging a need to find the index of an edge for setting a conditional breakpoint.
@@ -71,6 +76,11 @@ public class DebugFlags
 		return !Assets.isRunningFromJar() && printIncrementalUpdateTimes;
 	}
 
+	public static boolean printImageCacheStats()
+	{
+		return !Assets.isRunningFromJar() && printImageCacheStats;
+	}
+
 	public static boolean printRiverEdgeIndexes()
 	{
 		return !Assets.isRunningFromJar() && printRiverEdgeIndexes;
@@ -0,0 +1,80 @@
+package nortantis;
+
+import nortantis.SettingsFingerprint.Section;
+
+import java.util.Collection;
+import java.util.EnumMap;
+
+/**
+ * The JSON of each large section of a map's edits from the last time they were written with this cache, so that writing the same map again
+ * only serializes the sections that changed. A section's JSON is reused when its {@link SettingsFingerprint#hashSection} hash is the same as
+ * when it was written and it hasn't been invalidated since.
+ *
+ * Hashes can collide, so callers that know which sections they changed, such as from an EditsDelta, should invalidate those sections rather
+ * than relying on the hashes alone. Use one cache per file being written.
+ */
+public class EditsJsonCache
+{
+	private final EnumMap<Section, CachedSection> sections = new EnumMap<>(Section.class);
+	private boolean packEdits;
+
+	private static class CachedSection
+	{
+		final int hash;
+		final String json;
+
+		CachedSection(int hash, String json)
+		{
+			this.hash = hash;
+			this.json = json;
+		}
+	}
+
+	public synchronized void invalidate(Collection<Section> changedSections)
+	{
+		for (Section section : changedSections)
+		{
+			sections.remove(section);
+		}
+	}
+
+	public synchronized void clear()
+	{
+		sections.clear();
+	}
+
+	/**
+	 * Packed and unpacked sections are written differently, so changing whether edits are packed invalidates everything.
+	 */
+	synchronized void setPackEdits(boolean packEdits)
+	{
+		if (this.packEdits != packEdits)
+		{
+			sections.clear();
+			this.packEdits = packEdits;
+		}
+	}
+
+	/**
+	 * @return The JSON written for the section when its hash was the given one, or null if it has changed or hasn't been written.
+	 */
+	synchronized String get(Section section, int hash)
+	{
+		CachedSection cached = sections.get(section);
+		if (cached == null || cached.hash != hash)
+		{
+			return null;
+		}
+		return cached.json;
+	}
+
+	synchronized void put(Section section, int hash, String json)
+	{
+		sections.put(section, new CachedSection(hash, json));
+	}
+
+	synchronized int size()
+	{
+		return sections.size();
+	}
+}
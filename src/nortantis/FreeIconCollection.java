@@ -3,6 +3,7 @@ package nortantis;
 import nortantis.editor.FreeIcon;
 import nortantis.util.ConcurrentHashMapF;
 import nortantis.util.Helper;
+import nortantis.util.KeyedDelta;
 
 import java.util.*;
 import java.util.Map.Entry;
@@ -314,6 +315,65 @@ public class FreeIconCollection implements Iterable<FreeIcon>
 		return thisSet;
 	}
 
+	/**
+	 * The icons that differ between two versions of a collection, for storing undo history without a full copy of every icon.
+	 */
+	public static class Delta
+	{
+		private final KeyedDelta<Integer, FreeIcon> anchoredNonTreeIcons;
+		private final KeyedDelta<Integer, CopyOnWriteArrayList<FreeIcon>> anchoredTreeIcons;
+		/**
+		 * Null if the non-anchored icons didn't change.
+		 */
+		private final CopyOnWriteArrayList<FreeIcon> nonAnchoredIconsBefore;
+		private final CopyOnWriteArrayList<FreeIcon> nonAnchoredIconsAfter;
+
+		private Delta(KeyedDelta<Integer, FreeIcon> anchoredNonTreeIcons, KeyedDelta<Integer, CopyOnWriteArrayList<FreeIcon>> anchoredTreeIcons,
+				CopyOnWriteArrayList<FreeIcon> nonAnchoredIconsBefore, CopyOnWriteArrayList<FreeIcon> nonAnchoredIconsAfter)
+		{
+			this.anchoredNonTreeIcons = anchoredNonTreeIcons;
+			this.anchoredTreeIcons = anchoredTreeIcons;
+			this.nonAnchoredIconsBefore = nonAnchoredIconsBefore;
+			this.nonAnchoredIconsAfter = nonAnchoredIconsAfter;
+		}
+
+		public boolean isEmpty()
+		{
+			return anchoredNonTreeIcons.isEmpty() && anchoredTreeIcons.isEmpty() && nonAnchoredIconsAfter == null;
+		}
+	}
+
+	/**
+	 * Creates a delta that turns this collection into the other one when applied forward.
+	 *
+	 * This collection must not be modified afterwards except by applying deltas to it, because the delta keeps references to its lists.
+	 */
+	public Delta createDeltaTo(FreeIconCollection after)
+	{
+		return after.doWithLockAndReturnResult(() ->
+		{
+			// FreeIcons are immutable, so only the lists that hold them need copying.
+			KeyedDelta<Integer, FreeIcon> nonTreeDelta = KeyedDelta.create(anchoredNonTreeIcons, after.anchoredNonTreeIcons, icon -> icon);
+			KeyedDelta<Integer, CopyOnWriteArrayList<FreeIcon>> treeDelta = KeyedDelta.create(anchoredTreeIcons, after.anchoredTreeIcons,
+					trees -> new CopyOnWriteArrayList<>(trees));
+			if (areListsEqualOrderInvariant(nonAnchoredIcons, after.nonAnchoredIcons))
+			{
+				return new Delta(nonTreeDelta, treeDelta, null, null);
+			}
+			return new Delta(nonTreeDelta, treeDelta, nonAnchoredIcons, new CopyOnWriteArrayList<>(after.nonAnchoredIcons));
+		});
+	}
+
+	public synchronized void apply(Delta delta, boolean forward)
+	{
+		delta.anchoredNonTreeIcons.applyTo(anchoredNonTreeIcons, forward);
+		delta.anchoredTreeIcons.applyTo(anchoredTreeIcons, forward);
+		if (delta.nonAnchoredIconsAfter != null)
+		{
+			nonAnchoredIcons = forward ? delta.nonAnchoredIconsAfter : delta.nonAnchoredIconsBefore;
+		}
+	}
+
 	public synchronized void clear()
 	{
 		anchoredNonTreeIcons.clear();
@@ -342,6 +402,26 @@ public class FreeIconCollection implements Iterable<FreeIcon>
 		return areEqual;
 	}
 
+	/**
+	 * Consistent with equals, so it ignores the order of trees and non-anchored icons.
+	 */
+	@Override
+	public synchronized int hashCode()
+	{
+		int result = anchoredNonTreeIcons.hashCode();
+		for (Map.Entry<Integer, CopyOnWriteArrayList<FreeIcon>> entry : anchoredTreeIcons.entrySet())
+		{
+			result += entry.getKey() ^ hashCodeOrderInvariant(entry.getValue());
+		}
+		return 31 * result + hashCodeOrderInvariant(nonAnchoredIcons);
+	}
+
+	private static int hashCodeOrderInvariant(List<FreeIcon> list)
+	{
+		// Matches areListsEqualOrderInvariant, which compares sizes and then sets, so duplicates must only be counted once.
+		return 31 * list.size() + new HashSet<>(list).hashCode();
+	}
+
 	private boolean innerEquals(FreeIconCollection other)
 	{
 		if (!Objects.equals(anchoredNonTreeIcons, other.anchoredNonTreeIcons))
@@ -0,0 +1,215 @@
+package nortantis;
+
+import nortantis.geom.IntRectangle;
+import nortantis.platform.Image;
+import nortantis.util.OSHelper;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Stores icons from art packs on disk after they have been decoded and had their alpha applied, along with their content, shading, and
+ * color masks and content bounds, so that the next time the program starts it doesn't have to decode the images and recompute the masks,
+ * which is slow for art packs with many large icons.
+ *
+ * Each entry is keyed by the icon file's path, last modified time, and size, plus the icon type and alpha, since those change the image and
+ * masks. An entry whose source file has changed is ignored and overwritten. The files are kept in an {@link ImageDiskCache}, which bounds
+ * their total size.
+ *
+ * Icons that are packaged inside the jar have no file to check for changes, so they aren't cached.
+ */
+public class IconDiskCache
+{
+	/**
+	 * Increment this whenever the file format or the way masks are created changes, so that old entries are ignored.
+	 */
+	private static final int formatVersion = 2;
+	private static final int magicNumber = 0x4E49434E; // "NICN"
+	private static final String cacheFileExtension = ".icon";
+	private static final long defaultMaxBytes = 1024L * 1024 * 1024;
+
+	private static IconDiskCache instance;
+	private static boolean disabledForUnitTests;
+
+	private final ImageDiskCache files;
+
+	/**
+	 * The file attributes an entry was created from. Read before decoding the icon so that if the file changes while it's being decoded,
+	 * the entry is stored under the old attributes and so is ignored next time.
+	 */
+	public record SourceFileKey(Path path, long lastModifiedMillis, long size, IconType iconType, int alpha)
+	{
+	}
+
+	public record CachedIcon(Image image, Image contentMask, IntRectangle contentBounds, Image shadingMask, Image colorMask)
+	{
+	}
+
+	public IconDiskCache(Path cacheFolder)
+	{
+		this(cacheFolder, defaultMaxBytes);
+	}
+
+	/**
+	 * @param maxBytes
+	 *            The most disk space the cache may use. When it uses more, the icons used least recently are deleted.
+	 */
+	public IconDiskCache(Path cacheFolder, long maxBytes)
+	{
+		files = new ImageDiskCache(cacheFolder, cacheFileExtension, maxBytes, "Icon disk cache writer");
+	}
+
+	/**
+	 * @return The cache in the app data folder, or null if the disk cache is disabled.
+	 */
+	public static synchronized IconDiskCache getInstance()
+	{
+		if (disabledForUnitTests)
+		{
+			return null;
+		}
+		if (instance == null)
+		{
+			instance = new IconDiskCache(OSHelper.getAppDataPath().resolve("cache").resolve("icons"));
+		}
+		return instance;
+	}
+
+	/**
+	 * Keeps unit tests from reading or writing to the user's app data folder.
+	 */
+	public static synchronized void disableForUnitTests()
+	{
+		disabledForUnitTests = true;
+	}
+
+	/**
+	 * Creates the key for an icon file.
+	 *
+	 * @return The key, or null if the icon isn't a regular file on disk, such as when it's packaged in the jar.
+	 */
+	public static SourceFileKey createKey(Path iconPath, IconType iconType, int alpha)
+	{
+		try
+		{
+			if (!Files.isRegularFile(iconPath))
+			{
+				return null;
+			}
+			Path absolute = iconPath.toAbsolutePath().normalize();
+			BasicFileAttributes attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+			return new SourceFileKey(absolute, attributes.lastModifiedTime().toMillis(), attributes.size(), iconType, alpha);
+		}
+		catch (IOException | SecurityException | UnsupportedOperationException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return The cached icon and masks, or null if there isn't a valid entry for the key.
+	 */
+	public CachedIcon load(SourceFileKey key)
+	{
+		return files.read(getCacheFilePath(key), buffer -> read(buffer, key));
+	}
+
+	private static CachedIcon read(ByteBuffer buffer, SourceFileKey key)
+	{
+		if (buffer.getInt() != magicNumber || buffer.getInt() != formatVersion)
+		{
+			return null;
+		}
+
+		byte[] pathBytes = new byte[buffer.getInt()];
+		buffer.get(pathBytes);
+		String path = new String(pathBytes, StandardCharsets.UTF_8);
+		long lastModified = buffer.getLong();
+		long size = buffer.getLong();
+		int iconTypeOrdinal = buffer.getInt();
+		int alpha = buffer.getInt();
+		if (!path.equals(key.path.toString()) || lastModified != key.lastModifiedMillis || size != key.size || iconTypeOrdinal != key.iconType.ordinal()
+				|| alpha != key.alpha)
+		{
+			return null;
+		}
+
+		IntRectangle contentBounds = new IntRectangle(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+		Image image = ImageDiskCache.readImage(buffer);
+		Image contentMask = ImageDiskCache.readImage(buffer);
+		Image shadingMask = ImageDiskCache.readImage(buffer);
+		Image colorMask = ImageDiskCache.readImage(buffer);
+		return new CachedIcon(image, contentMask, contentBounds, shadingMask, colorMask);
+	}
+
+	/**
+	 * Queues {@link #store} on a background thread. The masks it creates are the same ones that would be created when the icon is first
+	 * drawn, so creating them early doesn't change how the map looks. Skipped if too many icons are already waiting to be written, in which
+	 * case the icon is stored the next time it's loaded.
+	 */
+	public void storeInBackground(SourceFileKey key, ImageAndMasks imageAndMasks)
+	{
+		Image image = imageAndMasks.image;
+		// The image, plus the three one byte per pixel masks that writing it creates.
+		long estimatedBytes = image.getEstimatedByteSize() + 3L * image.getPixelCount();
+		files.writeInBackground(getCacheFilePath(key), estimatedBytes, () -> out -> write(out, key, imageAndMasks));
+	}
+
+	/**
+	 * Creates any masks the icon doesn't have yet and writes the icon and its masks to the cache. Slow, so call it from a background
+	 * thread. Errors are logged rather than thrown since the cache is only an optimization.
+	 */
+	public void store(SourceFileKey key, ImageAndMasks imageAndMasks)
+	{
+		files.write(getCacheFilePath(key), out -> write(out, key, imageAndMasks));
+	}
+
+	private static void write(DataOutputStream out, SourceFileKey key, ImageAndMasks imageAndMasks) throws IOException
+	{
+		Image contentMask = imageAndMasks.getOrCreateContentMask();
+		IntRectangle contentBounds = imageAndMasks.getOrCreateContentBounds();
+		Image shadingMask = imageAndMasks.getOrCreateShadingMask();
+		Image colorMask = imageAndMasks.getOrCreateColorMask();
+
+		out.writeInt(magicNumber);
+		out.writeInt(formatVersion);
+		byte[] pathBytes = key.path.toString().getBytes(StandardCharsets.UTF_8);
+		out.writeInt(pathBytes.length);
+		out.write(pathBytes);
+		out.writeLong(key.lastModifiedMillis);
+		out.writeLong(key.size);
+		out.writeInt(key.iconType.ordinal());
+		out.writeInt(key.alpha);
+
+		out.writeInt(contentBounds.x);
+		out.writeInt(contentBounds.y);
+		out.writeInt(contentBounds.width);
+		out.writeInt(contentBounds.height);
+		ImageDiskCache.writeImage(out, imageAndMasks.image);
+		ImageDiskCache.writeImage(out, contentMask);
+		ImageDiskCache.writeImage(out, shadingMask);
+		ImageDiskCache.writeImage(out, colorMask);
+	}
+
+	/**
+	 * Waits for icons already queued to be written. Used by tests.
+	 */
+	void waitForWrites()
+	{
+		files.waitForWrites();
+	}
+
+	/**
+	 * The file name is a hash of the parts of the key that identify an icon, so an icon's entry is replaced rather than duplicated when
+	 * its file changes. The full key is stored in the file to detect stale entries and hash collisions.
+	 */
+	private Path getCacheFilePath(SourceFileKey key)
+	{
+		return files.getFilePath(key.path.toString(), key.iconType.name(), Integer.toString(key.alpha));
+	}
+}
@@ -67,34 +67,56 @@ public class IconDrawTask implements Comparable<IconDrawTask>
 	{
 		if (scaledImageAndMasks == null)
 		{
-			Image coloredIcon;
-			if ((!fillWithColor || Color.transparentBlack.equals(fillColor)) && filterColor.equals(MapSettings.defaultIconFilterColor) && !maximizeOpacity)
-			{
-				// Do nothing since the color is transparent.
-				coloredIcon = unScaledImageAndMasks.image;
-			}
-			else
-			{
-				coloredIcon = ImageCache.getInstance(Assets.installedArtPack, null).getColoredIcon(unScaledImageAndMasks, fillColor, filterColor, maximizeOpacity, fillWithColor);
-			}
-
-			// The path passed to ImageCache.getInstance isn't important so long as other calls to getScaledImageByWidth
-			// use the same path, since getScaledImage doesn't load images from disk.
-			Image scaledImage = ImageCache.getInstance(Assets.installedArtPack, null).getScaledImage(coloredIcon, scaledSize);
-
-			Image scaledContentMask = ImageCache.getInstance(Assets.installedArtPack, null).getScaledImage(unScaledImageAndMasks.getOrCreateContentMask(), scaledSize);
-
-			Image scaledShadingMask = null;
-			scaledShadingMask = ImageCache.getInstance(Assets.installedArtPack, null).getScaledImage(unScaledImageAndMasks.getOrCreateShadingMask(), scaledSize);
-
-			IntRectangle scaledContentBounds = ImageAndMasks.calcScaledContentBounds(unScaledImageAndMasks.getOrCreateContentMask(), unScaledImageAndMasks.getOrCreateContentBounds(), scaledSize.width,
-					scaledSize.height);
-
-			scaledImageAndMasks = new ImageAndMasks(scaledImage, scaledContentMask, scaledContentBounds, scaledShadingMask, type, unScaledImageAndMasks.widthFromFileName,
-					unScaledImageAndMasks.artPack, unScaledImageAndMasks.groupId, unScaledImageAndMasks.fileNameWithoutParametersOrExtension);
+			// The path passed to ImageCache.getInstance isn't important so long as other calls use the same path, since the colored and
+			// scaled variants don't load images from disk.
+			scaledImageAndMasks = ImageCache.getInstance(Assets.installedArtPack, null).getColoredAndScaledIcon(createVariantKey(), this::createColoredAndScaledIcon);
 		}
 	}
 
+	/**
+	 * Tasks whose keys are equal draw identical pixels, so they can share one colored and scaled image.
+	 */
+	IconVariantKey createVariantKey()
+	{
+		if (!needsColoring())
+		{
+			// Normalize the colors so that icons which differ only in colors that have no effect share a variant.
+			return new IconVariantKey(unScaledImageAndMasks, type, scaledSize, Color.transparentBlack, MapSettings.defaultIconFilterColor, false, false);
+		}
+		return new IconVariantKey(unScaledImageAndMasks, type, scaledSize, fillColor, filterColor, maximizeOpacity, fillWithColor);
+	}
+
+	private boolean needsColoring()
+	{
+		return !((!fillWithColor || Color.transparentBlack.equals(fillColor)) && filterColor.equals(MapSettings.defaultIconFilterColor) && !maximizeOpacity);
+	}
+
+	private ImageAndMasks createColoredAndScaledIcon()
+	{
+		Image coloredIcon;
+		if (!needsColoring())
+		{
+			// Do nothing since the color is transparent.
+			coloredIcon = unScaledImageAndMasks.image;
+		}
+		else
+		{
+			coloredIcon = ImageCache.getInstance(Assets.installedArtPack, null).getColoredIcon(unScaledImageAndMasks, fillColor, filterColor, maximizeOpacity, fillWithColor);
+		}
+
+		Image scaledImage = ImageCache.getInstance(Assets.installedArtPack, null).getScaledImage(coloredIcon, scaledSize);
+
+		Image scaledContentMask = ImageCache.getInstance(Assets.installedArtPack, null).getScaledImage(unScaledImageAndMasks.getOrCreateContentMask(), scaledSize);
+
+		Image scaledShadingMask = ImageCache.getInstance(Assets.installedArtPack, null).getScaledImage(unScaledImageAndMasks.getOrCreateShadingMask(), scaledSize);
+
+		IntRectangle scaledContentBounds = ImageAndMasks.calcScaledContentBounds(unScaledImageAndMasks.getOrCreateContentMask(), unScaledImageAndMasks.getOrCreateContentBounds(), scaledSize.width,
+				scaledSize.height);
+
+		return new ImageAndMasks(scaledImage, scaledContentMask, scaledContentBounds, scaledShadingMask, type, unScaledImageAndMasks.widthFromFileName, unScaledImageAndMasks.artPack,
+				unScaledImageAndMasks.groupId, unScaledImageAndMasks.fileNameWithoutParametersOrExtension);
+	}
+
 	public IconType getType()
 	{
 		return type;
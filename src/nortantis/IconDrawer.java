@@ -320,6 +320,27 @@ public class IconDrawer
 		return new Dimension(scaledWidth, ySize);
 	}
 
+	private static final int iconSizeQuantizationDivisor = 64;
+
+	/**
+	 * Snaps an icon's draw size to a coarser grid as the icon gets larger, so that icons whose sizes differ by a pixel or two (e.g. from the
+	 * per-icon scale and rounding) share one colored and scaled variant in the image cache. The grid step is 1/64 of the width, so the
+	 * change is below one percent and icons narrower than 128 pixels are never changed. The height is scaled by the same factor to keep the
+	 * aspect ratio.
+	 */
+	public static IntDimension quantizeDrawSize(IntDimension size)
+	{
+		int step = size.width / iconSizeQuantizationDivisor;
+		if (step <= 1)
+		{
+			return size;
+		}
+
+		int width = Math.max(step, (int) Math.round(size.width / (double) step) * step);
+		int height = Math.max(1, (int) Math.round(size.height * (width / (double) size.width)));
+		return new IntDimension(width, height);
+	}
+
 	public static Dimension getDimensionsWhenScaledByHeight(IntDimension originalDimensions, double scaledHeight)
 	{
 		double aspectRatioInverse = ((double) originalDimensions.width) / originalDimensions.height;
@@ -1640,17 +1661,32 @@ public class IconDrawer
 			}
 		}
 
-		// Scale the icons in parallel.
+		// Scale the icons in parallel, one job per distinct colored and scaled variant. Many tasks share a variant (e.g. thousands of trees
+		// drawn from a handful of images at the same size), so this avoids scheduling jobs that would only wait on each other's results.
 		{
-			List<Runnable> jobs = new ArrayList<>();
-			for (final IconDrawTask task : tasks)
+			Map<IconVariantKey, List<IconDrawTask>> tasksByVariant = new LinkedHashMap<>();
+			for (IconDrawTask task : tasks)
+			{
+				if (task.scaledImageAndMasks == null)
+				{
+					tasksByVariant.computeIfAbsent(task.createVariantKey(), unused -> new ArrayList<>()).add(task);
+				}
+			}
+
+			List<Runnable> jobs = new ArrayList<>(tasksByVariant.size());
+			for (final List<IconDrawTask> tasksForVariant : tasksByVariant.values())
 			{
 				jobs.add(new Runnable()
 				{
 					@Override
 					public void run()
 					{
-						task.colorAndScaleIcon();
+						IconDrawTask first = tasksForVariant.get(0);
+						first.colorAndScaleIcon();
+						for (IconDrawTask task : tasksForVariant)
+						{
+							task.scaledImageAndMasks = first.scaledImageAndMasks;
+						}
 					}
 				});
 			}
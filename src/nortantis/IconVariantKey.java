@@ -0,0 +1,15 @@
+package nortantis;
+
+import nortantis.geom.IntDimension;
+import nortantis.platform.Color;
+
+/**
+ * Identifies one colored and scaled version of an icon image. Many icon draw tasks (e.g. thousands of trees of the same image and size)
+ * map to the same key, so the colored and scaled image and masks only need to be created once per key.
+ *
+ * The unscaled icon is compared by identity, since {@link ImageAndMasks} does not override equals.
+ */
+public record IconVariantKey(ImageAndMasks unScaledImageAndMasks, IconType type, IntDimension scaledSize, Color fillColor, HSBColor filterColor, boolean maximizeOpacity,
+		boolean fillWithColor)
+{
+}
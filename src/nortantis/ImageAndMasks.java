@@ -63,6 +63,16 @@ public class ImageAndMasks implements AutoCloseable
 		this.contentBounds = contentBounds;
 	}
 
+	/**
+	 * Creates an instance whose masks have already been created, such as when loading from {@link IconDiskCache}.
+	 */
+	public ImageAndMasks(Image image, Image contentMask, IntRectangle contentBounds, Image shadingMask, Image colorMask, IconType iconType, double widthFromFileName,
+			String artPack, String groupId, String fileNameWithoutParametersOrExtension)
+	{
+		this(image, contentMask, contentBounds, shadingMask, iconType, widthFromFileName, artPack, groupId, fileNameWithoutParametersOrExtension);
+		this.colorMask = colorMask;
+	}
+
 	/**
 	 * Releases all image resources held by this object.
 	 */
@@ -90,6 +100,18 @@ public class ImageAndMasks implements AutoCloseable
 		}
 	}
 
+	/**
+	 * Approximately how many bytes the image and whichever masks have been created so far take up in memory.
+	 */
+	public synchronized long getEstimatedByteSize()
+	{
+		long size = image == null ? 0 : image.getEstimatedByteSize();
+		size += contentMask == null ? 0 : contentMask.getEstimatedByteSize();
+		size += shadingMask == null ? 0 : shadingMask.getEstimatedByteSize();
+		size += colorMask == null ? 0 : colorMask.getEstimatedByteSize();
+		return size;
+	}
+
 	public synchronized Image getOrCreateContentMask()
 	{
 		if (image == null)
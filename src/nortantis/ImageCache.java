@@ -8,9 +8,15 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.imgscalr.Scalr.Method;
 
+import javax.management.NotificationEmitter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,26 +28,70 @@ public class ImageCache
 	private static ConcurrentHashMapF<String, ImageCache> instances = new ConcurrentHashMapF<>();
 
 	/**
-	 * Maps original images, to scaled width, to scaled images.
+	 * Fraction of the maximum heap size each cache may use. The caches of images derived from others (scaled, colored, and so on) are
+	 * smaller than the caches of images loaded from disk because they are cheaper to recreate and more numerous, since each resolution and
+	 * color setting creates new ones.
 	 */
-	private ConcurrentHashMapF<Image, ConcurrentHashMapF<IntDimension, Image>> scaledCache;
+	private static final double fileCacheHeapFraction = 0.06;
+	private static final double iconsCacheHeapFraction = 0.06;
+	private static final double scaledCacheHeapFraction = 0.06;
+	private static final double coloredCacheHeapFraction = 0.03;
+	private static final double alphaCacheHeapFraction = 0.02;
+	private static final double iconVariantCacheHeapFraction = 0.02;
 
 	/**
-	 * Maps original images, to maps from (color, filterColor, maximizeOpacity, fillWithColor) to colored images.
+	 * When the heap is low on memory, caches are trimmed to this fraction of their maximum size.
 	 */
-	private ConcurrentHashMapF<String, ConcurrentHashMapF<Tuple4<Color, HSBColor, Boolean, Boolean>, Image>> coloredCache;
+	private static final double fractionToKeepWhenLowOnMemory = 0.5;
+	/**
+	 * Fraction of a heap memory pool's maximum size that counts as low on memory. Checked after garbage collections, so it only triggers
+	 * when that much memory is still in use after collecting.
+	 */
+	private static final double lowMemoryThreshold = 0.85;
+	private static boolean isLowMemoryListenerRegistered;
+
+	private record ScaledKey(Image image, IntDimension size)
+	{
+	}
+
+	private record ColoredKey(String fileIdentifier, Color fillColor, HSBColor filterColor, boolean maximizeOpacity, boolean fillWithColor)
+	{
+	}
+
+	private record AlphaKey(Image image, int alpha)
+	{
+	}
+
+	private record IconGroupKey(IconType iconType, String groupName)
+	{
+	}
 
-	private ConcurrentHashMapF<Image, ConcurrentHashMapF<Integer, Image>> alphaCache;
+	/**
+	 * Maps (original image, scaled size) to scaled images.
+	 */
+	private WeightedLruCache<ScaledKey, Image> scaledCache;
+
+	/**
+	 * Maps (original image file, color, filterColor, maximizeOpacity, fillWithColor) to colored images.
+	 */
+	private WeightedLruCache<ColoredKey, Image> coloredCache;
+
+	private WeightedLruCache<AlphaKey, Image> alphaCache;
+
+	/**
+	 * Maps (unscaled icon, scaled size, colors, and opacity flags) to the colored and scaled icon with its scaled masks.
+	 */
+	private WeightedLruCache<IconVariantKey, ImageAndMasks> iconVariantCache;
 
 	/**
 	 * Maps file path (or any string key) to images.
 	 */
-	private ConcurrentHashMapF<String, Image> fileCache;
+	private WeightedLruCache<String, Image> fileCache;
 
 	/**
-	 * Maps icon type > icon group name > lists of icons and masks.
+	 * Maps (icon type, icon group name) to the icons and masks in that group, by icon name.
 	 */
-	private ConcurrentHashMapF<IconType, ConcurrentHashMapF<String, Map<String, ImageAndMasks>>> iconsWithSizesCache;
+	private WeightedLruCache<IconGroupKey, Map<String, ImageAndMasks>> iconsWithSizesCache;
 
 	private ConcurrentHashMapF<IconType, ConcurrentHashMapF<String, List<String>>> iconGroupFilesNamesCache;
 
@@ -57,13 +107,15 @@ public class ImageCache
 	private ImageCache(String imagesPath, String artPack)
 	{
 		this.imagesPath = imagesPath;
-		scaledCache = new ConcurrentHashMapF<>();
-		coloredCache = new ConcurrentHashMapF<>();
-		fileCache = new ConcurrentHashMapF<>();
-		iconsWithSizesCache = new ConcurrentHashMapF<>();
+		String cacheNameSuffix = " (" + (StringUtils.isEmpty(artPack) ? Assets.installedArtPack : artPack) + ")";
+		scaledCache = new WeightedLruCache<>("scaled images" + cacheNameSuffix, calcMaxBytes(scaledCacheHeapFraction), Image::getEstimatedByteSize);
+		coloredCache = new WeightedLruCache<>("colored icons" + cacheNameSuffix, calcMaxBytes(coloredCacheHeapFraction), Image::getEstimatedByteSize);
+		fileCache = new WeightedLruCache<>("image files" + cacheNameSuffix, calcMaxBytes(fileCacheHeapFraction), Image::getEstimatedByteSize);
+		iconsWithSizesCache = new WeightedLruCache<>("icon groups" + cacheNameSuffix, calcMaxBytes(iconsCacheHeapFraction), ImageCache::estimateIconGroupByteSize);
 		iconGroupFilesNamesCache = new ConcurrentHashMapF<>();
 		iconGroupNames = new ConcurrentHashMapF<>();
-		alphaCache = new ConcurrentHashMapF<>();
+		alphaCache = new WeightedLruCache<>("images with alpha" + cacheNameSuffix, calcMaxBytes(alphaCacheHeapFraction), Image::getEstimatedByteSize);
+		iconVariantCache = new WeightedLruCache<>("icon variants" + cacheNameSuffix, calcMaxBytes(iconVariantCacheHeapFraction), ImageAndMasks::getEstimatedByteSize);
 		this.artPack = artPack;
 	}
 
@@ -89,9 +141,108 @@ public class ImageCache
 		// Probably not necessary, but I don't want to take a chance of accidentally creating multiple ImageCache instances.
 		String normalizedPath = FilenameUtils.normalize(pathWithHomeReplaced);
 
+		registerLowMemoryListenerIfNeeded();
+
 		return instances.getOrCreate(normalizedPath, () -> new ImageCache(normalizedPath, artPack));
 	}
 
+	private static long calcMaxBytes(double fractionOfHeap)
+	{
+		return (long) (Runtime.getRuntime().maxMemory() * fractionOfHeap);
+	}
+
+	/**
+	 * Estimates the memory used by a group of icons once their masks have been created. Masks are created lazily, after the group is
+	 * cached, so they are estimated up front as one byte per pixel each for the content, shading, and color masks.
+	 */
+	private static long estimateIconGroupByteSize(Map<String, ImageAndMasks> iconsByName)
+	{
+		long size = 0;
+		for (ImageAndMasks imageAndMasks : iconsByName.values())
+		{
+			size += imageAndMasks.image.getEstimatedByteSize() + 3L * imageAndMasks.image.getPixelCount();
+		}
+		return size;
+	}
+
+	/**
+	 * Registers a listener that trims all image caches when the heap is still mostly full after a garbage collection, so long editing
+	 * sessions don't run out of memory because of cached images.
+	 */
+	private static synchronized void registerLowMemoryListenerIfNeeded()
+	{
+		if (isLowMemoryListenerRegistered)
+		{
+			return;
+		}
+		isLowMemoryListenerRegistered = true;
+
+		try
+		{
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			{
+				if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported())
+				{
+					long max = pool.getUsage().getMax();
+					if (max > 0)
+					{
+						pool.setCollectionUsageThreshold((long) (max * lowMemoryThreshold));
+					}
+				}
+			}
+
+			NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+			emitter.addNotificationListener((notification, handback) ->
+			{
+				if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+				{
+					Logger.println("Memory is low. Trimming image caches.");
+					trimAllCaches(fractionToKeepWhenLowOnMemory);
+				}
+			}, null, null);
+		}
+		catch (Exception e)
+		{
+			// Memory management beans are optional on some platforms. The caches are still bounded without the listener.
+			Logger.printError("Unable to register low memory listener for image caches.", e);
+		}
+	}
+
+	/**
+	 * Evicts least recently used images from every image cache until each is at most the given fraction of its maximum size.
+	 */
+	public static void trimAllCaches(double fractionToKeep)
+	{
+		for (ImageCache cache : instances.values())
+		{
+			for (WeightedLruCache<?, ?> imageCache : cache.getBoundedCaches())
+			{
+				imageCache.trimToFraction(fractionToKeep);
+			}
+		}
+	}
+
+	/**
+	 * Returns hit, miss, eviction, and resident memory counts for each image cache.
+	 */
+	public static List<WeightedLruCache.Stats> getCacheStats()
+	{
+		List<WeightedLruCache.Stats> result = new ArrayList<>();
+		for (ImageCache cache : instances.values())
+		{
+			for (WeightedLruCache<?, ?> imageCache : cache.getBoundedCaches())
+			{
+				result.add(imageCache.getStats());
+			}
+		}
+		return result;
+	}
+
+	private List<WeightedLruCache<?, ?>> getBoundedCaches()
+	{
+		return Arrays.asList(fileCache, iconsWithSizesCache, scaledCache, coloredCache, alphaCache, iconVariantCache);
+	}
+
 	/**
 	 * Either looks up in the cache, or creates, a version of the given icon with the given size.
 	 * 
@@ -103,12 +254,18 @@ public class ImageCache
 	 */
 	public Image getScaledImage(Image icon, IntDimension size)
 	{
-		// There is a small chance the 2 different threads might both add the
-		// same image at the same time,
-		// but if that did happen it would only result in a little bit of
-		// duplicated work, not a functional
-		// problem.
-		return scaledCache.getOrCreate(icon, () -> new ConcurrentHashMapF<>()).getOrCreate(size, () -> ImageHelper.getInstance().scale(icon, size.width, size.height, Method.QUALITY));
+		// The cache scales each image at most once per size, so icon variants that share a mask and size (e.g. the same tree in two colors)
+		// don't scale that mask twice.
+		return scaledCache.get(new ScaledKey(icon, size), () -> ImageHelper.getInstance().scale(icon, size.width, size.height, Method.QUALITY));
+	}
+
+	/**
+	 * Either looks up in the cache, or creates, the colored and scaled version of an icon identified by the given key. The creation
+	 * function runs at most once per key, even when called from many threads at once.
+	 */
+	public ImageAndMasks getColoredAndScaledIcon(IconVariantKey key, Supplier<ImageAndMasks> createFun)
+	{
+		return iconVariantCache.get(key, createFun);
 	}
 
 	/**
@@ -120,11 +277,10 @@ public class ImageCache
 		assert fillColor != null;
 		assert filterColor != null;
 
-		// computeIfAbsent runs the coloring at most once per image and color combination, so threads coloring icons in parallel don't
-		// repeat each other's work. Icons from different image files use separate inner maps, so they never wait on each other.
-		return coloredCache.computeIfAbsent(imageAndMasks.createFileIdentifier(), unused -> new ConcurrentHashMapF<>())
-				.computeIfAbsent(new Tuple4<>(fillColor, filterColor, maximizeOpacity, fillWithColor),
-						unused -> ImageHelper.getInstance().coloredIcon(imageAndMasks, fillColor, filterColor, maximizeOpacity, fillWithColor));
+		// The cache runs the coloring at most once per image and color combination, so threads coloring icons in parallel don't repeat each
+		// other's work.
+		return coloredCache.get(new ColoredKey(imageAndMasks.createFileIdentifier(), fillColor, filterColor, maximizeOpacity, fillWithColor),
+				() -> ImageHelper.getInstance().coloredIcon(imageAndMasks, fillColor, filterColor, maximizeOpacity, fillWithColor));
 	}
 
 	/**
@@ -146,19 +302,13 @@ public class ImageCache
 			return image;
 		}
 
-		return alphaCache.getOrCreate(image, () -> new ConcurrentHashMapF<>()).getOrCreate(alpha, () ->
-		{
-			return ImageHelper.getInstance().applyAlpha(image, alpha);
-		});
+		return alphaCache.get(new AlphaKey(image, alpha), () -> ImageHelper.getInstance().applyAlpha(image, alpha));
 	}
 
 	public Image getImageFromFile(Path path)
 	{
-		// computeIfAbsent reads each file at most once even when several threads ask for it at the same time.
-		return fileCache.computeIfAbsent(path.toString(), unused ->
-		{
-			return Assets.readImage(path.toString());
-		});
+		// The cache reads each file at most once even when several threads ask for it at the same time.
+		return fileCache.get(path.toString(), () -> Assets.readImage(path.toString()));
 	}
 
 	public ImageAndMasks getImageAndMasks(FreeIcon icon)
@@ -221,8 +371,16 @@ public class ImageCache
 	 */
 	public Map<String, ImageAndMasks> getIconsByNameForGroup(IconType iconType, String groupName)
 	{
-		return iconsWithSizesCache.getOrCreate(iconType, () -> new ConcurrentHashMapF<>()).getOrCreate((groupName == null ? "" : groupName).intern(),
-				() -> loadIconsWithSizesAndAlphas(iconType, groupName));
+		return iconsWithSizesCache.get(new IconGroupKey(iconType, groupName == null ? "" : groupName), () -> loadIconsWithSizesAndAlphas(iconType, groupName));
+	}
+
+	/**
+	 * How full the cache of loaded icon groups is, from 0 to 1. Used to avoid preloading so many icon groups that groups in use get evicted.
+	 */
+	public double getIconGroupCacheFractionUsed()
+	{
+		WeightedLruCache.Stats stats = iconsWithSizesCache.getStats();
+		return stats.maxWeight() <= 0 ? 1.0 : (double) stats.residentWeight() / stats.maxWeight();
 	}
 
 	private record FilenameParams(String originalFileName, String fileNameBase, Double width, Integer alpha)
@@ -271,17 +429,9 @@ public class ImageCache
 		Image widest = tuple.getFirst();
 		double widthOfWidest = tuple.getSecond();
 
+		IconDiskCache diskCache = IconDiskCache.getInstance();
 		for (FilenameParams filenameParams : baseNamesToParams.values())
 		{
-			Image icon = loadIconFromDiskOrCache(iconType, groupName, filenameParams.originalFileName);
-
-			if (icon == null)
-			{
-				// I think this happened once, but I haven't figured out how.
-				assert false;
-				continue;
-			}
-
 			int alpha;
 			if (filenameParams.alpha != null)
 			{
@@ -291,7 +441,29 @@ public class ImageCache
 			{
 				alpha = defaultAlpha;
 			}
-			icon = getImageWithAppliedAlpha(icon, alpha);
+
+			IconDiskCache.SourceFileKey diskCacheKey = diskCache == null ? null
+					: IconDiskCache.createKey(getIconPath(iconType, groupName, filenameParams.originalFileName), iconType, alpha);
+			IconDiskCache.CachedIcon cached = diskCacheKey == null ? null : diskCache.load(diskCacheKey);
+
+			Image icon;
+			if (cached != null)
+			{
+				icon = cached.image();
+			}
+			else
+			{
+				icon = loadIconFromDiskOrCache(iconType, groupName, filenameParams.originalFileName);
+
+				if (icon == null)
+				{
+					// I think this happened once, but I haven't figured out how.
+					assert false;
+					continue;
+				}
+
+				icon = getImageWithAppliedAlpha(icon, alpha);
+			}
 
 			double width;
 			// If any don't have an encoded width, then calculate the width relative to the largest image that does have an encoded width.
@@ -304,7 +476,20 @@ public class ImageCache
 				width = filenameParams.width;
 			}
 
-			imagesAndMasks.put(filenameParams.fileNameBase, new ImageAndMasks(icon, iconType, width, artPack, groupName, filenameParams.fileNameBase));
+			if (cached != null)
+			{
+				imagesAndMasks.put(filenameParams.fileNameBase, new ImageAndMasks(icon, cached.contentMask(), cached.contentBounds(), cached.shadingMask(), cached.colorMask(),
+						iconType, width, artPack, groupName, filenameParams.fileNameBase));
+			}
+			else
+			{
+				ImageAndMasks imageAndMasks = new ImageAndMasks(icon, iconType, width, artPack, groupName, filenameParams.fileNameBase);
+				imagesAndMasks.put(filenameParams.fileNameBase, imageAndMasks);
+				if (diskCacheKey != null)
+				{
+					diskCache.storeInBackground(diskCacheKey, imageAndMasks);
+				}
+			}
 		}
 
 		return imagesAndMasks;
@@ -432,11 +617,15 @@ public class ImageCache
 
 	private Image loadIconFromDiskOrCache(IconType iconType, String groupName, String fileName)
 	{
-		Path path = Paths.get(getIconGroupPath(iconType, groupName), fileName);
-		Image icon = getImageFromFile(path);
+		Image icon = getImageFromFile(getIconPath(iconType, groupName, fileName));
 		return icon;
 	}
 
+	private Path getIconPath(IconType iconType, String groupName, String fileName)
+	{
+		return Paths.get(getIconGroupPath(iconType, groupName), fileName);
+	}
+
 	public record ParsedFilename(String baseName, Double width, Double height, Integer alpha)
 	{
 	}
@@ -623,6 +812,7 @@ public class ImageCache
 		{
 			cache.coloredCache.clear();
 			cache.scaledCache.clear();
+			cache.iconVariantCache.clear();
 		}
 	}
 }
@@ -0,0 +1,467 @@
+package nortantis;
+
+import nortantis.platform.Image;
+import nortantis.platform.ImageType;
+import nortantis.platform.PixelReader;
+import nortantis.platform.PixelWriter;
+import nortantis.util.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A folder of binary files holding decoded images, shared by {@link IconDiskCache} and {@link MapPartsDiskCache}. What each file contains
+ * is up to the cache using it. This class names the files, reads them through memory-mapped buffers, writes them on a low priority
+ * background thread, and keeps the folder under a size limit by deleting the files used least recently.
+ *
+ * Images are stored uncompressed, a row at a time, so that loading one is little more than a memory copy.
+ */
+public class ImageDiskCache
+{
+	/**
+	 * Written in place of an image's type for images that are sometimes null.
+	 */
+	private static final int nullImageType = -1;
+	/**
+	 * Entries waiting to be written are held in memory outside of any cache's accounting, so this limits how much can wait.
+	 */
+	private static final long maxQueuedBytes = 256L * 1024 * 1024;
+	/**
+	 * When the folder goes over its size limit, files are deleted until it's this fraction of the limit, so that it isn't scanned again
+	 * after every write once it's full.
+	 */
+	private static final double fractionToKeepWhenOverLimit = 0.9;
+
+	private final Path folder;
+	private final String fileExtension;
+	private final long maxBytes;
+	private final AtomicLong queuedBytes = new AtomicLong();
+	/**
+	 * The total size of the files in the folder, or -1 if the folder hasn't been scanned yet. Only accessed while synchronized.
+	 */
+	private long folderBytes = -1;
+	private final ExecutorService writer;
+
+	/**
+	 * An entry to write. Closed after it's written, or if it fails to be.
+	 */
+	public interface Entry extends AutoCloseable
+	{
+		void write(DataOutputStream out) throws IOException;
+
+		@Override
+		default void close()
+		{
+		}
+	}
+
+	public interface EntryReader<T>
+	{
+		/**
+		 * @return The entry, or null if the file doesn't hold the entry being loaded, such as after a hash collision.
+		 */
+		T read(ByteBuffer buffer);
+	}
+
+	/**
+	 * @param maxBytes
+	 *            The size limit of the folder. Entries larger than this are not stored.
+	 * @param writerThreadName
+	 *            The name of the background thread that writes entries.
+	 */
+	public ImageDiskCache(Path folder, String fileExtension, long maxBytes, String writerThreadName)
+	{
+		this.folder = folder;
+		this.fileExtension = fileExtension;
+		this.maxBytes = maxBytes;
+		writer = Executors.newSingleThreadExecutor(runnable ->
+		{
+			// Low priority, so that writing entries doesn't compete much with drawing the map.
+			Thread thread = new Thread(runnable, writerThreadName);
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return The file for a key, named by a hash of the key's parts. Caches should store the full key in the file to detect collisions.
+	 */
+	public Path getFilePath(String... keyParts)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for (int i = 0; i < keyParts.length; i++)
+			{
+				if (i > 0)
+				{
+					digest.update((byte) 0);
+				}
+				digest.update(keyParts[i].getBytes(StandardCharsets.UTF_8));
+			}
+			StringBuilder name = new StringBuilder();
+			for (byte b : digest.digest())
+			{
+				name.append(String.format("%02x", b));
+			}
+			return folder.resolve(name + fileExtension);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reads a file through a memory-mapped buffer, and marks it as recently used if the reader returns an entry. Corrupt files are ignored,
+	 * and are replaced the next time their entry is stored.
+	 *
+	 * @return The entry, or null if there isn't one.
+	 */
+	public <T> T read(Path file, EntryReader<T> reader)
+	{
+		if (!Files.isRegularFile(file))
+		{
+			return null;
+		}
+
+		T result;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			result = reader.read(buffer);
+		}
+		catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e)
+		{
+			Logger.println("Ignoring unreadable cache file '" + file + "': " + e.getMessage());
+			return null;
+		}
+
+		if (result != null)
+		{
+			try
+			{
+				// Marks the file as recently used, so it's the last to be deleted when the folder is full.
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			}
+			catch (IOException e)
+			{
+				// Only affects which files are deleted first.
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Queues an entry to be written on the background thread. The entry is skipped if it's larger than the folder's size limit, or if too
+	 * much is already waiting to be written, except that one entry may always wait so that large entries can still be stored.
+	 *
+	 * @param estimatedBytes
+	 *            About how much memory the entry holds while it waits, and how large its file will be.
+	 * @param createEntry
+	 *            Called on the calling thread only if the entry is accepted, so that anything expensive it does to create the entry, such as
+	 *            copying images the caller will go on to change, is only done for entries that will be written.
+	 * @return Whether the entry was queued.
+	 */
+	public boolean writeInBackground(Path file, long estimatedBytes, Supplier<Entry> createEntry)
+	{
+		if (estimatedBytes > maxBytes)
+		{
+			return false;
+		}
+		long queuedBefore = queuedBytes.getAndAdd(estimatedBytes);
+		if (queuedBefore > 0 && queuedBefore + estimatedBytes > maxQueuedBytes)
+		{
+			queuedBytes.addAndGet(-estimatedBytes);
+			return false;
+		}
+
+		Entry entry;
+		try
+		{
+			entry = createEntry.get();
+		}
+		catch (RuntimeException e)
+		{
+			queuedBytes.addAndGet(-estimatedBytes);
+			throw e;
+		}
+		writer.submit(() ->
+		{
+			try
+			{
+				write(file, entry);
+			}
+			finally
+			{
+				queuedBytes.addAndGet(-estimatedBytes);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Writes an entry, then deletes the least recently used files if the folder is over its size limit. Errors are logged rather than
+	 * thrown since the cache is only an optimization.
+	 *
+	 * @return Whether the entry was written.
+	 */
+	public synchronized boolean write(Path file, Entry entry)
+	{
+		Path tempFile = null;
+		try (entry)
+		{
+			Files.createDirectories(folder);
+			if (folderBytes < 0)
+			{
+				folderBytes = listFiles().stream().mapToLong(ImageDiskCache::sizeOrZero).sum();
+			}
+
+			tempFile = Files.createTempFile(folder, "entry", ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16)))
+			{
+				entry.write(out);
+			}
+			long replacedBytes = sizeOrZero(file);
+			long writtenBytes = Files.size(tempFile);
+			// Readers never see a partially written file, because it's only moved into place once complete. On Windows, the move fails
+			// while the file being replaced is still memory-mapped by a recent read, in which case the old entry is kept.
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			tempFile = null;
+			folderBytes += writtenBytes - replacedBytes;
+
+			if (folderBytes > maxBytes)
+			{
+				deleteLeastRecentlyUsed();
+			}
+			return true;
+		}
+		catch (Exception e)
+		{
+			Logger.printError("Unable to write cache file '" + file + "'.", e);
+			if (tempFile != null)
+			{
+				try
+				{
+					Files.deleteIfExists(tempFile);
+				}
+				catch (IOException ignored)
+				{
+				}
+			}
+			return false;
+		}
+	}
+
+	private void deleteLeastRecentlyUsed() throws IOException
+	{
+		List<Path> files = listFiles();
+		List<BasicFileAttributes> attributes = new ArrayList<>(files.size());
+		List<Integer> oldestFirst = new ArrayList<>(files.size());
+		folderBytes = 0;
+		for (int i = 0; i < files.size(); i++)
+		{
+			BasicFileAttributes fileAttributes;
+			try
+			{
+				fileAttributes = Files.readAttributes(files.get(i), BasicFileAttributes.class);
+			}
+			catch (IOException e)
+			{
+				// Deleted since the folder was listed.
+				fileAttributes = null;
+			}
+			attributes.add(fileAttributes);
+			if (fileAttributes != null)
+			{
+				oldestFirst.add(i);
+				folderBytes += fileAttributes.size();
+			}
+		}
+		oldestFirst.sort(Comparator.comparing(i -> attributes.get(i).lastModifiedTime()));
+
+		long targetBytes = (long) (maxBytes * fractionToKeepWhenOverLimit);
+		for (int i : oldestFirst)
+		{
+			if (folderBytes <= targetBytes)
+			{
+				break;
+			}
+			try
+			{
+				Files.deleteIfExists(files.get(i));
+				folderBytes -= attributes.get(i).size();
+			}
+			catch (IOException e)
+			{
+				// On Windows, a file that is still memory-mapped by a recent read can't be deleted. Skip it, and delete others instead.
+			}
+		}
+	}
+
+	private List<Path> listFiles() throws IOException
+	{
+		try (Stream<Path> files = Files.list(folder))
+		{
+			return files.filter(path -> path.toString().endsWith(fileExtension)).collect(Collectors.toList());
+		}
+	}
+
+	private static long sizeOrZero(Path file)
+	{
+		try
+		{
+			return Files.isRegularFile(file) ? Files.size(file) : 0;
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Waits for entries already queued to be written. Used by tests.
+	 */
+	void waitForWrites()
+	{
+		try
+		{
+			writer.submit(() -> null).get();
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes an image in the format read by {@link #readImage}. The image may be null.
+	 */
+	public static void writeImage(DataOutputStream out, Image image) throws IOException
+	{
+		if (image == null)
+		{
+			out.writeInt(nullImageType);
+			return;
+		}
+
+		ImageType type = image.getType();
+		int width = image.getWidth();
+		int height = image.getHeight();
+		out.writeInt(type.ordinal());
+		out.writeInt(width);
+		out.writeInt(height);
+
+		try (PixelReader pixels = image.createPixelReader())
+		{
+			if (type == ImageType.Grayscale8Bit || type == ImageType.Binary)
+			{
+				byte[] row = new byte[width];
+				for (int y = 0; y < height; y++)
+				{
+					pixels.getGrayLevelRow(y, row);
+					out.write(row);
+				}
+			}
+			else if (type == ImageType.Grayscale16Bit)
+			{
+				// Rare, so not worth a bulk row method of its own.
+				for (int y = 0; y < height; y++)
+				{
+					for (int x = 0; x < width; x++)
+					{
+						out.writeShort(pixels.getBandLevel(x, y, 0));
+					}
+				}
+			}
+			else
+			{
+				int[] row = new int[width];
+				ByteBuffer rowBytes = ByteBuffer.allocate(width * 4);
+				for (int y = 0; y < height; y++)
+				{
+					pixels.getRGBRow(y, row);
+					rowBytes.clear();
+					rowBytes.asIntBuffer().put(row);
+					out.write(rowBytes.array());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads an image written by {@link #writeImage}.
+	 */
+	public static Image readImage(ByteBuffer buffer)
+	{
+		int typeOrdinal = buffer.getInt();
+		if (typeOrdinal == nullImageType)
+		{
+			return null;
+		}
+		ImageType type = ImageType.values()[typeOrdinal];
+		int width = buffer.getInt();
+		int height = buffer.getInt();
+
+		Image image = Image.create(width, height, type);
+		try (PixelWriter pixels = image.createPixelWriter())
+		{
+			if (type == ImageType.Grayscale8Bit || type == ImageType.Binary)
+			{
+				byte[] row = new byte[width];
+				for (int y = 0; y < height; y++)
+				{
+					buffer.get(row);
+					pixels.setGrayLevelRow(y, row);
+				}
+			}
+			else if (type == ImageType.Grayscale16Bit)
+			{
+				for (int y = 0; y < height; y++)
+				{
+					for (int x = 0; x < width; x++)
+					{
+						pixels.setBandLevel(x, y, 0, buffer.getShort() & 0xffff);
+					}
+				}
+			}
+			else
+			{
+				int[] row = new int[width];
+				IntBuffer ints = buffer.asIntBuffer();
+				for (int y = 0; y < height; y++)
+				{
+					ints.get(row);
+					pixels.setRGBRow(y, row);
+				}
+				buffer.position(buffer.position() + width * height * 4);
+			}
+		}
+		return image;
+	}
+}
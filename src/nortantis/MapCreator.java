@@ -34,7 +34,7 @@ public class MapCreator implements WarningLogger
 
 	private static final double concentricWaveWidthBetweenWaves = 11;
 	private static final double concentricWaveLineWidth = 1.8;
-	private boolean isCanceled;
+	private volatile boolean isCanceled;
 
 	/**
 	 * Optional callback invoked during a full draw ({@link #createMap}) to report progress as a fraction from 0 to 1. Set via
@@ -44,6 +44,12 @@ public class MapCreator implements WarningLogger
 	 */
 	private DoubleConsumer progressListener;
 
+	/**
+	 * If not null, the parts of a full draw that are fully determined by the settings are loaded from and stored in this cache. See
+	 * {@link MapPartsDiskCache}.
+	 */
+	private MapPartsDiskCache partsDiskCache;
+
 	/**
 	 * The number of progress-reporting points reached so far during the current full draw. Reset at the start of {@link #createMap}.
 	 */
@@ -56,6 +62,11 @@ public class MapCreator implements WarningLogger
 	private static final int fullDrawProgressStepCount = 21;
 
 	private final List<String> warningMessages;
+	/**
+	 * The platform set when this was created. Any number of maps can be drawn at once, each with its own MapCreator, MapSettings, and
+	 * MapParts, but the platform must be set once before any of them are drawn, or images from two platforms would be mixed in one map.
+	 */
+	private final PlatformFactory platform;
 	/**
 	 * City icons dropped from this draw because they landed on water (see {@link IconDrawer#getCitiesRemovedForTouchingWater()}). Captured
 	 * from the icon drawer during the draw so callers (the sub-map preview) can report which shore-side cities disappeared without reaching
@@ -73,6 +84,31 @@ public class MapCreator implements WarningLogger
 	 */
 	private Lock incrementalMapWriteLock;
 
+	/**
+	 * Guards writes from incremental updates into images shared across the whole map (the full-sized map, mapParts.textBackground, and
+	 * mapParts.mapBeforeAddingText), since tiles drawn in parallel write into them at the same time. See
+	 * {@link #setUseTiledIncrementalUpdates}.
+	 */
+	private final Object sharedImageWriteLock = new Object();
+
+	/**
+	 * When true, incremental updates that cover a large area are split into tiles which are drawn in parallel.
+	 */
+	private boolean useTiledIncrementalUpdates;
+	/**
+	 * The smallest width and height of a tile, in pixels, when drawing incremental updates in tiles.
+	 */
+	private static final int minIncrementalUpdateTileSize = 512;
+	/**
+	 * Tiles are at least this many times the effects padding wide, so that the padding each tile draws around itself is a small part of
+	 * its work.
+	 */
+	private static final double incrementalUpdateTileSizeInEffectsPaddings = 4.0;
+	/**
+	 * About how many pixels each strip has when writing a map in strips.
+	 */
+	private static final int pixelsPerExportStrip = 1 << 22;
+
 	/**
 	 * See {@link #incrementalMapWriteLock}. Set before an incremental update when another thread may read the full-sized map buffer
 	 * concurrently; leave unset (null) otherwise.
@@ -82,6 +118,16 @@ public class MapCreator implements WarningLogger
 		this.incrementalMapWriteLock = lock;
 	}
 
+	/**
+	 * Sets whether incremental updates that cover a large area are split into tiles which are drawn in parallel. Each tile runs the same
+	 * drawing steps as an untiled update, so the result is the same except for effects that can't be drawn in pieces without seams, which
+	 * are always drawn untiled. Off by default.
+	 */
+	public void setUseTiledIncrementalUpdates(boolean useTiledIncrementalUpdates)
+	{
+		this.useTiledIncrementalUpdates = useTiledIncrementalUpdates;
+	}
+
 	/**
 	 * Override the memory mode for testing. Pass null to clear the override and resume normal behavior.
 	 */
@@ -90,12 +136,38 @@ public class MapCreator implements WarningLogger
 		memoryModeOverride = isLowMemory;
 	}
 
+	/**
+	 * Sets the cache to load and store the background textures, grunge, and frayed border in during full draws, or null to always create
+	 * them.
+	 */
+	public void setPartsDiskCache(MapPartsDiskCache partsDiskCache)
+	{
+		this.partsDiskCache = partsDiskCache;
+	}
+
 	public MapCreator()
 	{
+		platform = PlatformFactory.getInstance();
 		warningMessages = new ArrayList<>();
 		centersToRedrawLowPriority = new ConcurrentHashMap<>();
 	}
 
+	/**
+	 * @throws IllegalStateException
+	 *             If the platform wasn't set when this was created, or has been changed since.
+	 */
+	private void checkPlatformIsUnchanged()
+	{
+		if (platform == null)
+		{
+			throw new IllegalStateException("No platform had been set when this MapCreator was created. Call PlatformFactory.setInstance before drawing maps.");
+		}
+		if (PlatformFactory.getInstance() != platform)
+		{
+			throw new IllegalStateException("The platform was changed after this MapCreator was created. Set the platform once, before drawing maps.");
+		}
+	}
+
 	public IntRectangle incrementalUpdateText(final MapSettings settings, MapParts mapParts, Image fullSizeMap, List<MapText> textChanged)
 	{
 		migrateLegacyRiversIfNeeded(settings, mapParts.graph);
@@ -349,31 +421,206 @@ public class MapCreator implements WarningLogger
 	private IntRectangle incrementalUpdateBounds(final MapSettings settings, MapParts mapParts, Image fullSizedMap, Rectangle replaceBounds, double effectsPadding, TextDrawer textDrawer,
 			boolean onlyTextChanged)
 	{
+		boolean drawAllLayers = !onlyTextChanged || mapParts.mapBeforeAddingText == null;
+		if (useTiledIncrementalUpdates && drawAllLayers && canDrawInTiles(settings))
+		{
+			// Use whole pixels so that every tile's draw bounds lines up exactly with the draw bounds of the whole change.
+			Rectangle wholePixelReplaceBounds = replaceBounds.floor();
+			double wholePixelEffectsPadding = Math.ceil(effectsPadding);
+			List<Rectangle> tiles = splitIntoTiles(wholePixelReplaceBounds, wholePixelEffectsPadding);
+			if (tiles.size() > 1)
+			{
+				return incrementalUpdateBoundsInTiles(settings, mapParts, fullSizedMap, wholePixelReplaceBounds, tiles, wholePixelEffectsPadding, textDrawer);
+			}
+		}
+
 		// The bounds of the snippet to draw. This is larger than the snippet to
 		// replace because ocean/land effects expand beyond the edges
 		// that draw them, and we need those to be included in the snippet to
 		// replace.
 		Rectangle drawBounds = replaceBounds.pad(effectsPadding, effectsPadding).floor();
 
-		IntRectangle boundsInSourceToCopyFrom = new IntRectangle((int) replaceBounds.x - (int) drawBounds.x, (int) replaceBounds.y - (int) drawBounds.y, (int) replaceBounds.width,
-				(int) replaceBounds.height);
-		Image mapSnippet;
-		Image textBackground;
-		double sizeMultiplierRounded = calcSizeMultiplierFromResolutionScaleRounded(settings.resolution);
-
 		Set<Center> centersToDraw = null;
-		if (!onlyTextChanged || mapParts.mapBeforeAddingText == null)
+		List<IconDrawTask> iconsToDraw = null;
+		if (drawAllLayers)
 		{
 			Center searchStart = mapParts.graph.findClosestCenter(drawBounds.getCenter());
 			centersToDraw = mapParts.graph.breadthFirstSearch(c -> c.isInBoundsIncludingNoisyEdges(drawBounds), searchStart);
 
 			checkForCancel();
 
-			List<IconDrawTask> iconsToDraw = mapParts.iconDrawer.getTasksInDrawBoundsSortedAndScaled(drawBounds);
+			iconsToDraw = mapParts.iconDrawer.getTasksInDrawBoundsSortedAndScaled(drawBounds);
 			mapParts.background.doSetupThatNeedsGraphAndIcons(mapParts.graph, iconsToDraw, centersToDraw, drawBounds, replaceBounds);
 
 			checkForCancel();
+		}
+
+		Image mapSnippet = drawSnippet(settings, mapParts, fullSizedMap.size(), replaceBounds, drawBounds, centersToDraw, iconsToDraw, mapParts.background.regionIndexes, textDrawer);
+		textDrawer.updateTextBoundsIfNeeded(mapParts.graph);
+		pasteSnippetIntoMap(settings, mapParts, fullSizedMap, mapSnippet, replaceBounds, drawBounds);
 
+		return toBoundsInMapWithBorder(settings, replaceBounds);
+	}
+
+	/**
+	 * Draws the same thing as {@link #incrementalUpdateBounds}, but splits replaceBounds into tiles and draws them in parallel. This is
+	 * faster for large changes, such as a long brush stroke across the map, because most of the drawing steps run on a single thread.
+	 *
+	 * Updating the land background's region colors writes into shared images, so it's done once for the whole change before the tiles are
+	 * drawn. Each tile then draws the rest of the snippet pipeline with its own effects padding. The tiles are pasted into the map only
+	 * once all of them are drawn, so that canceling the update never leaves part of the change in the map.
+	 */
+	private IntRectangle incrementalUpdateBoundsInTiles(final MapSettings settings, MapParts mapParts, Image fullSizedMap, Rectangle replaceBounds, List<Rectangle> tiles,
+			double effectsPadding, TextDrawer textDrawer)
+	{
+		Rectangle drawBounds = replaceBounds.pad(effectsPadding, effectsPadding).floor();
+		Center searchStart = mapParts.graph.findClosestCenter(drawBounds.getCenter());
+		Set<Center> centersToDraw = mapParts.graph.breadthFirstSearch(c -> c.isInBoundsIncludingNoisyEdges(drawBounds), searchStart);
+
+		checkForCancel();
+
+		List<IconDrawTask> iconsToDraw = mapParts.iconDrawer.getTasksInDrawBoundsSortedAndScaled(drawBounds);
+		mapParts.background.doSetupThatNeedsGraphAndIcons(mapParts.graph, iconsToDraw, centersToDraw, drawBounds, replaceBounds);
+		Image regionIndexes = mapParts.background.regionIndexes;
+
+		checkForCancel();
+
+		IntDimension mapSize = fullSizedMap.size();
+		Image[] tileSnippets = new Image[tiles.size()];
+		Rectangle[] tileDrawBoundsList = new Rectangle[tiles.size()];
+		List<Runnable> jobs = new ArrayList<>(tiles.size());
+		for (int i = 0; i < tiles.size(); i++)
+		{
+			final int tileIndex = i;
+			final Rectangle tileReplaceBounds = tiles.get(i);
+			jobs.add(() ->
+			{
+				checkForCancel();
+
+				Rectangle tileDrawBounds = tileReplaceBounds.pad(effectsPadding, effectsPadding).floor();
+				Center tileSearchStart = mapParts.graph.findClosestCenter(tileDrawBounds.getCenter());
+				Set<Center> tileCentersToDraw = mapParts.graph.breadthFirstSearch(c -> c.isInBoundsIncludingNoisyEdges(tileDrawBounds), tileSearchStart);
+
+				// Keeps the sorted order, so icons still draw front to back the same as when drawing the whole change at once.
+				List<IconDrawTask> tileIconsToDraw = new ArrayList<>();
+				for (IconDrawTask task : iconsToDraw)
+				{
+					if (task.overlaps(tileDrawBounds))
+					{
+						tileIconsToDraw.add(task);
+					}
+				}
+
+				Image tileRegionIndexes = null;
+				if (regionIndexes != null && settings.drawRegionColors)
+				{
+					tileRegionIndexes = regionIndexes.getSubImage(new IntRectangle((int) (tileDrawBounds.x - drawBounds.x), (int) (tileDrawBounds.y - drawBounds.y), (int) tileDrawBounds.width,
+							(int) tileDrawBounds.height));
+				}
+
+				tileSnippets[tileIndex] = drawSnippet(settings, mapParts, mapSize, tileReplaceBounds, tileDrawBounds, tileCentersToDraw, tileIconsToDraw, tileRegionIndexes,
+						textDrawer);
+				tileDrawBoundsList[tileIndex] = tileDrawBounds;
+			});
+		}
+		try
+		{
+			// Use the cached thread pool because the drawing steps submit their own jobs to the fixed thread pool.
+			ThreadHelper.getInstance().processInParallel(jobs, false);
+		}
+		catch (RuntimeException e)
+		{
+			// A tile that was canceled throws a CancelledException, which the thread pool wraps in another exception.
+			checkForCancel();
+			throw e;
+		}
+		// The last chance to cancel. From here on, the whole change is pasted.
+		checkForCancel();
+
+		// The tiles' replace bounds don't overlap, so they can be pasted in parallel.
+		List<Runnable> pasteJobs = new ArrayList<>(tiles.size());
+		for (int i = 0; i < tiles.size(); i++)
+		{
+			final int tileIndex = i;
+			pasteJobs.add(() -> pasteSnippetIntoMap(settings, mapParts, fullSizedMap, tileSnippets[tileIndex], tiles.get(tileIndex), tileDrawBoundsList[tileIndex]));
+		}
+		ThreadHelper.getInstance().processInParallel(pasteJobs, false);
+
+		// This temporarily changes settings.drawText, so it must run after all the tiles are done.
+		textDrawer.updateTextBoundsIfNeeded(mapParts.graph);
+
+		return toBoundsInMapWithBorder(settings, replaceBounds);
+	}
+
+	/**
+	 * Whether drawing a change in tiles looks the same as drawing it all at once. Some effects depend on everything being drawn in one
+	 * piece, so drawing them in tiles would leave seams.
+	 */
+	private static boolean canDrawInTiles(MapSettings settings)
+	{
+		// Broken concentric waves pick where to break using random numbers that depend on the whole coastline in the draw bounds.
+		if (settings.hasConcentricWaves() && settings.brokenLinesForConcentricWaves)
+		{
+			return false;
+		}
+		// The dash pattern of region boundaries depends on where the boundary starts in the draw bounds.
+		if (settings.drawRegionBoundaries && settings.regionBoundaryStyle.type != StrokeType.Solid)
+		{
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Splits replaceBounds into a grid of tiles. Tiles are at least a few times wider than effectsPadding so that the extra area each tile
+	 * draws for effects doesn't outweigh the gain from drawing in parallel.
+	 *
+	 * @return The tiles, or a list with only replaceBounds if it's too small to be worth splitting.
+	 */
+	static List<Rectangle> splitIntoTiles(Rectangle replaceBounds, double effectsPadding)
+	{
+		int tileSize = (int) Math.max(minIncrementalUpdateTileSize, Math.ceil(effectsPadding * incrementalUpdateTileSizeInEffectsPaddings));
+		int x = (int) replaceBounds.x;
+		int y = (int) replaceBounds.y;
+		int width = (int) replaceBounds.width;
+		int height = (int) replaceBounds.height;
+		if (width * (long) height < 2L * tileSize * tileSize)
+		{
+			return Collections.singletonList(replaceBounds);
+		}
+
+		List<Rectangle> tiles = new ArrayList<>();
+		for (int tileY = y; tileY < y + height; tileY += tileSize)
+		{
+			for (int tileX = x; tileX < x + width; tileX += tileSize)
+			{
+				tiles.add(new Rectangle(tileX, tileY, Math.min(tileSize, x + width - tileX), Math.min(tileSize, y + height - tileY)));
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * Draws a snippet of the map covering drawBounds, of which only replaceBounds will be pasted into the map.
+	 *
+	 * @param centersToDraw
+	 *            Null if only text changed and the map before adding text can be reused.
+	 * @param iconsToDraw
+	 *            Icons overlapping drawBounds, sorted and scaled. Null when centersToDraw is.
+	 * @param regionIndexes
+	 *            Region indexes covering drawBounds, used to color coastline shading by region.
+	 */
+	private Image drawSnippet(final MapSettings settings, MapParts mapParts, IntDimension mapSize, Rectangle replaceBounds, Rectangle drawBounds, Set<Center> centersToDraw,
+			List<IconDrawTask> iconsToDraw, Image regionIndexes, TextDrawer textDrawer)
+	{
+		IntRectangle boundsInSourceToCopyFrom = new IntRectangle((int) replaceBounds.x - (int) drawBounds.x, (int) replaceBounds.y - (int) drawBounds.y, (int) replaceBounds.width,
+				(int) replaceBounds.height);
+		Image mapSnippet;
+		Image textBackground;
+		double sizeMultiplierRounded = calcSizeMultiplierFromResolutionScaleRounded(settings.resolution);
+
+		if (centersToDraw != null)
+		{
 			// Draw mask for land vs ocean.
 			Image landMask = Image.create((int) drawBounds.width, (int) drawBounds.height, ImageType.Binary);
 			try (Painter p = landMask.createPainter())
@@ -399,7 +646,7 @@ public class MapCreator implements WarningLogger
 			Image landColoredBeforeAddingIconColors = null;
 			Image landBackground = null;
 			{
-				Tuple2<Image, Image> tuple = darkenLandNearCoastlinesAndRegionBorders(settings, mapParts.graph, settings.resolution, landTextureSnippet, mapParts.background, null, centersToDraw,
+				Tuple2<Image, Image> tuple = darkenLandNearCoastlinesAndRegionBorders(settings, mapParts.graph, settings.resolution, landTextureSnippet, regionIndexes, null, centersToDraw,
 						drawBounds, false);
 				Image landBackgroundWithLandInOcean = tuple.getFirst();
 				coastShading = tuple.getSecond();
@@ -408,7 +655,7 @@ public class MapCreator implements WarningLogger
 				if (settings.drawRegionColors)
 				{
 					landColoredBeforeAddingIconColors = mapParts.background.landColoredBeforeAddingIconColors.copySubImage(drawBounds.toIntRectangle());
-					landBackground = darkenLandNearCoastlinesAndRegionBorders(settings, mapParts.graph, settings.resolution, landColoredBeforeAddingIconColors, mapParts.background, coastShading,
+					landBackground = darkenLandNearCoastlinesAndRegionBorders(settings, mapParts.graph, settings.resolution, landColoredBeforeAddingIconColors, regionIndexes, coastShading,
 							centersToDraw, drawBounds, false).getFirst();
 				}
 				else
@@ -505,17 +752,22 @@ public class MapCreator implements WarningLogger
 			checkForCancel();
 
 			textBackground = updateLandMaskAndCreateTextBackground(settings, mapParts.graph, landMask, iconsToDraw, settings.drawRegionColors ? landColoredBeforeAddingIconColors : landTextureSnippet,
-					oceanTextureSnippet, mapParts.background, oceanWaves, oceanShading, coastShading, mapParts.iconDrawer, centersToDraw, drawBounds);
+					oceanTextureSnippet, mapParts.background, regionIndexes, oceanWaves, oceanShading, coastShading, mapParts.iconDrawer, centersToDraw, drawBounds);
 
 			checkForCancel();
 
-			// Update the snippet in mapParts.textBackground because the Fonts tab uses that as part of speeding up text re-drawing.
-			ImageHelper.getInstance().copySnippetFromSourceAndPasteIntoTarget(mapParts.textBackground, textBackground, replaceBounds.upperLeftCorner().toIntPoint(), boundsInSourceToCopyFrom, 0);
-
-			// If present, also update the cached version of the map before adding text so that the Fonts tab can draw the map faster.
-			if (mapParts.mapBeforeAddingText != null)
+			synchronized (sharedImageWriteLock)
 			{
-				ImageHelper.getInstance().copySnippetFromSourceAndPasteIntoTarget(mapParts.mapBeforeAddingText, mapSnippet, replaceBounds.upperLeftCorner().toIntPoint(), boundsInSourceToCopyFrom, 0);
+				// Update the snippet in mapParts.textBackground because the Fonts tab uses that as part of speeding up text re-drawing.
+				ImageHelper.getInstance().copySnippetFromSourceAndPasteIntoTarget(mapParts.textBackground, textBackground, replaceBounds.upperLeftCorner().toIntPoint(), boundsInSourceToCopyFrom,
+						0);
+
+				// If present, also update the cached version of the map before adding text so that the Fonts tab can draw the map faster.
+				if (mapParts.mapBeforeAddingText != null)
+				{
+					ImageHelper.getInstance().copySnippetFromSourceAndPasteIntoTarget(mapParts.mapBeforeAddingText, mapSnippet, replaceBounds.upperLeftCorner().toIntPoint(),
+							boundsInSourceToCopyFrom, 0);
+				}
 			}
 		}
 		else
@@ -528,7 +780,6 @@ public class MapCreator implements WarningLogger
 		{
 			textDrawer.drawTextFromEdits(mapSnippet, textBackground, mapParts.graph, drawBounds);
 		}
-		textDrawer.updateTextBoundsIfNeeded(mapParts.graph);
 
 		IntPoint drawBoundsUpperLeftCornerAdjustedForBorder = new IntPoint(drawBounds.upperLeftCorner().toIntPoint().x + mapParts.background.getBorderPaddingScaledByResolution(),
 				drawBounds.upperLeftCorner().toIntPoint().y + mapParts.background.getBorderPaddingScaledByResolution());
@@ -558,12 +809,9 @@ public class MapCreator implements WarningLogger
 			}
 		}
 
-		IntPoint replaceBoundsUpperLeftCornerAdjustedForBorder = new IntPoint(replaceBounds.upperLeftCorner().toIntPoint().x + mapParts.background.getBorderPaddingScaledByResolution(),
-				replaceBounds.upperLeftCorner().toIntPoint().y + mapParts.background.getBorderPaddingScaledByResolution());
-
 		if (settings.drawOverlayImage)
 		{
-			drawOverlayImage(mapSnippet, settings, drawBounds, fullSizedMap.size());
+			drawOverlayImage(mapSnippet, settings, drawBounds, mapSize);
 		}
 
 		// Add frayed border
@@ -577,53 +825,70 @@ public class MapCreator implements WarningLogger
 			mapSnippet = ImageHelper.getInstance().setAlphaFromMaskInRegion(mapSnippet, mapParts.frayedBorderMask, true, drawBoundsUpperLeftCornerAdjustedForBorder);
 		}
 
+		return mapSnippet;
+	}
+
+	private void pasteSnippetIntoMap(final MapSettings settings, MapParts mapParts, Image fullSizedMap, Image mapSnippet, Rectangle replaceBounds, Rectangle drawBounds)
+	{
+		IntRectangle boundsInSourceToCopyFrom = new IntRectangle((int) replaceBounds.x - (int) drawBounds.x, (int) replaceBounds.y - (int) drawBounds.y, (int) replaceBounds.width,
+				(int) replaceBounds.height);
+		IntPoint replaceBoundsUpperLeftCornerAdjustedForBorder = new IntPoint(replaceBounds.upperLeftCorner().toIntPoint().x + mapParts.background.getBorderPaddingScaledByResolution(),
+				replaceBounds.upperLeftCorner().toIntPoint().y + mapParts.background.getBorderPaddingScaledByResolution());
+
 		// Write the finished snippet into the shared full-sized map. This is the only place this method touches fullSizedMap's pixels,
 		// so it's the only part that must be guarded against a concurrent reader (e.g. a background display rescale). Everything above
 		// built a self-contained snippet and can run in parallel with such a reader; only this brief blit needs the lock.
-		if (incrementalMapWriteLock != null)
+		synchronized (sharedImageWriteLock)
 		{
-			incrementalMapWriteLock.lock();
-		}
-		try
-		{
-			// Update the snippet in the main map.
-			ImageHelper.getInstance().copySnippetFromSourceAndPasteIntoTarget(fullSizedMap, mapSnippet, replaceBoundsUpperLeftCornerAdjustedForBorder, boundsInSourceToCopyFrom,
-					mapParts.background.getBorderPaddingScaledByResolution());
-
-			if (DebugFlags.showIncrementalUpdateBounds())
+			if (incrementalMapWriteLock != null)
+			{
+				incrementalMapWriteLock.lock();
+			}
+			try
 			{
-				try (Painter p = fullSizedMap.createPainter())
+				// Update the snippet in the main map.
+				ImageHelper.getInstance().copySnippetFromSourceAndPasteIntoTarget(fullSizedMap, mapSnippet, replaceBoundsUpperLeftCornerAdjustedForBorder, boundsInSourceToCopyFrom,
+						mapParts.background.getBorderPaddingScaledByResolution());
+
+				if (DebugFlags.showIncrementalUpdateBounds())
 				{
-					int scaledBorderWidth = settings.drawBorder && settings.borderPosition == BorderPosition.Outside_map ? (int) (settings.borderWidth * settings.resolution) : 0;
-					p.setBasicStroke(4f);
-					p.setColor(Color.red);
-					{
-						IntRectangle rect = new Rectangle(replaceBounds.x + scaledBorderWidth, replaceBounds.y + scaledBorderWidth, replaceBounds.width, replaceBounds.height).toIntRectangle();
-						p.drawRect(rect.x, rect.y, rect.width, rect.height);
-					}
-					p.setBasicStroke(4f);
-					p.setColor(Color.white);
+					try (Painter p = fullSizedMap.createPainter())
 					{
-						IntRectangle rect = new Rectangle(drawBounds.x + scaledBorderWidth, drawBounds.y + scaledBorderWidth, drawBounds.width, drawBounds.height).toIntRectangle();
-						p.drawRect(rect.x, rect.y, rect.width, rect.height);
+						int scaledBorderWidth = settings.drawBorder && settings.borderPosition == BorderPosition.Outside_map ? (int) (settings.borderWidth * settings.resolution) : 0;
+						p.setBasicStroke(4f);
+						p.setColor(Color.red);
+						{
+							IntRectangle rect = new Rectangle(replaceBounds.x + scaledBorderWidth, replaceBounds.y + scaledBorderWidth, replaceBounds.width, replaceBounds.height)
+									.toIntRectangle();
+							p.drawRect(rect.x, rect.y, rect.width, rect.height);
+						}
+						p.setBasicStroke(4f);
+						p.setColor(Color.white);
+						{
+							IntRectangle rect = new Rectangle(drawBounds.x + scaledBorderWidth, drawBounds.y + scaledBorderWidth, drawBounds.width, drawBounds.height).toIntRectangle();
+							p.drawRect(rect.x, rect.y, rect.width, rect.height);
+						}
 					}
 				}
 			}
-		}
-		finally
-		{
-			if (incrementalMapWriteLock != null)
+			finally
 			{
-				incrementalMapWriteLock.unlock();
+				if (incrementalMapWriteLock != null)
+				{
+					incrementalMapWriteLock.unlock();
+				}
 			}
 		}
+	}
 
+	private static IntRectangle toBoundsInMapWithBorder(final MapSettings settings, Rectangle replaceBounds)
+	{
 		int scaledBorderWidth = settings.drawBorder && settings.borderPosition == BorderPosition.Outside_map ? (int) (settings.borderWidth * settings.resolution) : 0;
 		IntRectangle bounds = replaceBounds.toIntRectangle();
 		return new IntRectangle(bounds.x + scaledBorderWidth, bounds.y + scaledBorderWidth, bounds.width, bounds.height);
 	}
 
-	private double calcEffectsPadding(final MapSettings settings)
+	double calcEffectsPadding(final MapSettings settings)
 	{
 		double sizeMultiplier = calcSizeMultiplierFromResolutionScaleRounded(settings.resolution);
 
@@ -669,8 +934,38 @@ public class MapCreator implements WarningLogger
 	 * @return The map
 	 */
 	public Image createMap(final MapSettings settings, Dimension maxDimensions, MapParts mapParts) throws CancelledException
+	{
+		return createMap(settings, maxDimensions, mapParts, null);
+	}
+
+	/**
+	 * Draws a map at full resolution and writes it to filePath. When the file's format can be written in strips, the overlay image and
+	 * frayed border are applied to one horizontal strip at a time as each strip is written, rather than to the whole map, so neither they
+	 * nor the encoder make full-size copies of the map. Those copies would otherwise be the peak of memory use for large exports.
+	 *
+	 * The layers below the overlay image are still drawn to one full-size image first, because the background, grunge, and frayed border
+	 * masks they're drawn from are generated at full size. So writing in strips lowers peak memory use, but the largest resolution that can
+	 * be exported is still limited by memory, as estimated by {@link #calcMaximumResolution()}.
+	 */
+	public void createMapAndWrite(final MapSettings settings, String filePath) throws CancelledException
+	{
+		Image map = createMap(settings, null, null, filePath);
+		if (map != null)
+		{
+			// The format can't be written in strips.
+			map.write(filePath);
+		}
+	}
+
+	/**
+	 * @param stripOutputPath
+	 *            If not null, the top layers of the map are applied in strips and written to this file if its format allows, in which case
+	 *            null is returned.
+	 */
+	private Image createMap(final MapSettings settings, Dimension maxDimensions, MapParts mapParts, String stripOutputPath) throws CancelledException
 	{
 		Logger.println("Creating the map");
+		checkPlatformIsUnchanged();
 
 		double startTime = System.currentTimeMillis();
 
@@ -729,7 +1024,7 @@ public class MapCreator implements WarningLogger
 		else
 		{
 			Logger.println("Generating the background image.");
-			background = new Background(settings, mapBounds, this);
+			background = new Background(settings, mapBounds, this, partsDiskCache);
 		}
 
 		if (mapParts != null)
@@ -762,6 +1057,199 @@ public class MapCreator implements WarningLogger
 			nameCreatorTask = startNameCreatorCreation(settings);
 		}
 
+		// The overlay image and frayed edges are drawn last. If the map below them was drawn with the same settings recently, blend them over
+		// a cached copy of it instead of redrawing text, the border, and grunge.
+		String mapBelowOverlayImageKey = null;
+		Image cachedMapBelowOverlayImage = null;
+		if (mapParts != null && !isLowMemoryMode && settings.edits.isInitialized() && mapParts.mapBeforeAddingText != null)
+		{
+			if (canCacheMapsBelowOverlayImage(settings, mapDimensions, mapParts.mapsBelowOverlayImage.getMaxEntries()))
+			{
+				mapBelowOverlayImageKey = settings.createKeyForMapBelowOverlayImage();
+				cachedMapBelowOverlayImage = mapParts.mapsBelowOverlayImage.get(mapBelowOverlayImageKey);
+			}
+			else
+			{
+				// Free copies cached at a smaller size.
+				mapParts.mapsBelowOverlayImage.clear();
+			}
+		}
+
+		if (cachedMapBelowOverlayImage != null)
+		{
+			Logger.println("Reusing the cached map below the overlay image.");
+			map = cachedMapBelowOverlayImage.deepCopy();
+
+			// Text wasn't drawn, so make sure the editor still has its bounds.
+			TextDrawer textDrawer = new TextDrawer(settings);
+			textDrawer.setMapTexts(settings.edits.text);
+			textDrawer.updateTextBoundsIfNeeded(graph);
+		}
+		else
+		{
+			map = drawMapBelowOverlayImage(settings, mapParts, graph, background, isLowMemoryMode, mapDimensions, nameCreatorTask);
+			if (mapBelowOverlayImageKey != null)
+			{
+				mapParts.mapsBelowOverlayImage.put(mapBelowOverlayImageKey, map.deepCopy());
+			}
+		}
+		background = null;
+
+		ImageType finishedMapType = settings.frayedBorder ? ImageType.ARGB : map.getType();
+		boolean writeInStrips = stripOutputPath != null && PlatformFactory.getInstance().canWriteImageInStrips(stripOutputPath, finishedMapType);
+		if (!writeInStrips)
+		{
+			drawOverlayImageIfNeededAndUpdateMapParts(map, settings);
+		}
+
+		reportProgressAndCheckForCancel();
+
+		Image frayedBorderMask = null;
+		Image frayedBorderBlur = null;
+		if (settings.frayedBorder)
+		{
+			if (isLowMemoryMode && frayedBorderTask == null)
+			{
+				frayedBorderTask = startFrayedBorderCreation(settings, mapDimensions, sizeMultiplier, mapParts);
+			}
+
+			if (frayedBorderTask != null)
+			{
+				Tuple2<Image, Image> tuple;
+				tuple = ThreadHelper.getInstance().getResult(frayedBorderTask);
+
+				Logger.println("Adding frayed edges.");
+				frayedBorderMask = tuple.getFirst();
+				frayedBorderBlur = tuple.getSecond();
+			}
+			else if (mapParts != null)
+			{
+				frayedBorderMask = mapParts.frayedBorderMask;
+				frayedBorderBlur = mapParts.frayedBorderBlur;
+			}
+			else
+			{
+				throw new IllegalStateException("Frayed border should have been created.");
+			}
+
+			if (mapParts != null)
+			{
+				mapParts.frayedBorderMask = frayedBorderMask;
+				mapParts.frayedBorderBlur = frayedBorderBlur;
+			}
+
+			if (!writeInStrips)
+			{
+				if (frayedBorderBlur != null)
+				{
+					map = ImageHelper.getInstance().maskWithColor(map, settings.frayedBorderColor, frayedBorderBlur, true);
+				}
+				map = ImageHelper.getInstance().setAlphaFromMask(map, frayedBorderMask, true);
+			}
+		}
+
+		if (writeInStrips)
+		{
+			Logger.println("Writing the map in strips.");
+			writeTopLayersInStrips(map, settings, frayedBorderMask, frayedBorderBlur, finishedMapType, stripOutputPath);
+			map.close();
+			map = null;
+		}
+
+		if (nameCreatorTask != null)
+		{
+			NameCreator nameCreator = ThreadHelper.getInstance().getResult(nameCreatorTask);
+			if (mapParts != null)
+			{
+				mapParts.nameCreator = nameCreator;
+			}
+		}
+
+		reportProgressAndCheckForCancel();
+
+		double elapsedTime = System.currentTimeMillis() - startTime;
+		Logger.println("Total time to generate map (in seconds): " + elapsedTime / 1000.0);
+
+		if (DebugFlags.printImageCacheStats())
+		{
+			for (WeightedLruCache.Stats stats : ImageCache.getCacheStats())
+			{
+				Logger.println("Image cache " + stats);
+			}
+		}
+		Logger.println("Done creating map.");
+
+		System.gc();
+		return map;
+	}
+
+	/**
+	 * Applies the overlay image and frayed border to one horizontal strip of the map at a time, writing each strip to filePath as soon as
+	 * it's done. Both are drawn pixel by pixel from images that cover the whole map, so unlike the snippets drawn for incremental updates,
+	 * strips need no effects padding, and come out the same as applying them to the whole map.
+	 *
+	 * @param map
+	 *            The layers below the overlay image, including the border.
+	 */
+	private void writeTopLayersInStrips(Image map, MapSettings settings, Image frayedBorderMask, Image frayedBorderBlur, ImageType finishedMapType, String filePath)
+	{
+		int borderWidthScaledByResolution = Background.calcBorderWidthScaledByResolution(settings);
+		int stripHeight = Math.max(1, pixelsPerExportStrip / map.getWidth());
+		boolean isComplete = false;
+		try
+		{
+			try (StripImageWriter writer = PlatformFactory.getInstance().createStripImageWriter(filePath, map.getWidth(), map.getHeight(), finishedMapType))
+			{
+				for (int y = 0; y < map.getHeight(); y += stripHeight)
+				{
+					checkForCancel();
+
+					IntRectangle stripBounds = new IntRectangle(0, y, map.getWidth(), Math.min(stripHeight, map.getHeight() - y));
+					Image strip = map.copySubImage(stripBounds);
+					if (settings.drawOverlayImage)
+					{
+						// drawOverlayImage takes bounds that don't include the border.
+						Rectangle drawBounds = new Rectangle(-borderWidthScaledByResolution, y - borderWidthScaledByResolution, stripBounds.width, stripBounds.height);
+						drawOverlayImage(strip, settings, drawBounds, map.size());
+					}
+
+					if (settings.frayedBorder)
+					{
+						IntPoint stripOffsetInMap = new IntPoint(0, y);
+						if (frayedBorderBlur != null)
+						{
+							Image blurred = ImageHelper.getInstance().maskWithColorInRegion(strip, settings.frayedBorderColor, frayedBorderBlur, true, stripOffsetInMap);
+							strip.close();
+							strip = blurred;
+						}
+						Image withAlpha = ImageHelper.getInstance().setAlphaFromMaskInRegion(strip, frayedBorderMask, true, stripOffsetInMap);
+						strip.close();
+						strip = withAlpha;
+					}
+
+					writer.writeStrip(strip);
+					strip.close();
+				}
+			}
+			isComplete = true;
+		}
+		finally
+		{
+			if (!isComplete)
+			{
+				new File(filePath).delete();
+			}
+		}
+	}
+
+	/**
+	 * Draws everything below the overlay image onto the terrain and icons, which are drawn first if they aren't cached in mapParts: text,
+	 * the border, and grunge.
+	 */
+	private Image drawMapBelowOverlayImage(final MapSettings settings, MapParts mapParts, WorldGraph graph, Background background, boolean isLowMemoryMode, Dimension mapDimensions,
+			Future<NameCreator> nameCreatorTask)
+	{
+		Image map;
 		Image textBackground;
 		List<Set<Center>> mountainGroups;
 		List<IconDrawTask> cities;
@@ -977,7 +1465,6 @@ public class MapCreator implements WarningLogger
 		{
 			background.closeImages();
 		}
-		background = null;
 
 		Logger.println("Map dimensions: " + map.getWidth() + "x" + map.getHeight() + ", resolution scale: " + settings.resolution);
 
@@ -1016,68 +1503,6 @@ public class MapCreator implements WarningLogger
 			map = ImageHelper.getInstance().maskWithColor(map, settings.frayedBorderColor, grunge, true);
 		}
 
-		drawOverlayImageIfNeededAndUpdateMapParts(map, settings);
-
-		reportProgressAndCheckForCancel();
-
-		if (settings.frayedBorder)
-		{
-			Image frayedBorderMask;
-			Image frayedBorderBlur;
-			if (isLowMemoryMode && frayedBorderTask == null)
-			{
-				frayedBorderTask = startFrayedBorderCreation(settings, mapDimensions, sizeMultiplier, mapParts);
-			}
-
-			if (frayedBorderTask != null)
-			{
-				Tuple2<Image, Image> tuple;
-				tuple = ThreadHelper.getInstance().getResult(frayedBorderTask);
-
-				Logger.println("Adding frayed edges.");
-				frayedBorderMask = tuple.getFirst();
-				frayedBorderBlur = tuple.getSecond();
-			}
-			else if (mapParts != null)
-			{
-				frayedBorderMask = mapParts.frayedBorderMask;
-				frayedBorderBlur = mapParts.frayedBorderBlur;
-			}
-			else
-			{
-				throw new IllegalStateException("Frayed border should have been created.");
-			}
-
-			if (mapParts != null)
-			{
-				mapParts.frayedBorderMask = frayedBorderMask;
-				mapParts.frayedBorderBlur = frayedBorderBlur;
-			}
-
-			if (frayedBorderBlur != null)
-			{
-				map = ImageHelper.getInstance().maskWithColor(map, settings.frayedBorderColor, frayedBorderBlur, true);
-			}
-			map = ImageHelper.getInstance().setAlphaFromMask(map, frayedBorderMask, true);
-		}
-
-		if (nameCreatorTask != null)
-		{
-			NameCreator nameCreator = ThreadHelper.getInstance().getResult(nameCreatorTask);
-			if (mapParts != null)
-			{
-				mapParts.nameCreator = nameCreator;
-			}
-		}
-
-		reportProgressAndCheckForCancel();
-
-		double elapsedTime = System.currentTimeMillis() - startTime;
-		Logger.println("Total time to generate map (in seconds): " + elapsedTime / 1000.0);
-
-		Logger.println("Done creating map.");
-
-		System.gc();
 		return map;
 	}
 
@@ -1095,8 +1520,6 @@ public class MapCreator implements WarningLogger
 			return ThreadHelper.getInstance().submit(() ->
 			{
 				int blurLevel = (int) (settings.frayedBorderBlurLevel * sizeMultiplier);
-				Image frayedBorderBlur;
-				Image frayedBorderMask;
 				// The frayedBorderSize is on a logarithmic scale. 0 should be the minimum value, which will give 100 polygons.
 				int polygonCount = (int) (Math.pow(2, settings.frayedBorderSize) * 2 + 100);
 				double widthToUse, heightToUse;
@@ -1110,34 +1533,44 @@ public class MapCreator implements WarningLogger
 					widthToUse = mapDimensions.width;
 					heightToUse = mapDimensions.height;
 				}
-				WorldGraph frayGraph = GraphCreator.createSimpleGraph(widthToUse, heightToUse, polygonCount, new Random(settings.frayedBorderSeed), settings.resolution, true,
-						settings.rightRotationCount, settings.flipHorizontally, settings.flipVertically);
-				frayedBorderMask = Image.create(frayGraph.getWidth(), frayGraph.getHeight(), ImageType.Grayscale8Bit);
-				try (Painter p = frayedBorderMask.createPainter())
-				{
-					// Default every pixel to the border color (white, which becomes transparent after the mask is inverted) before drawing
-					// the polygons. Otherwise any pixel along the outer edge that the border polygons don't quite cover - which happens when
-					// the mask dimensions land on exact integers - would keep the image's default black and show as an opaque line of the map
-					// beneath the frayed edge.
-					p.setColor(Color.white);
-					p.fillRect(0, 0, frayedBorderMask.getWidth(), frayedBorderMask.getHeight());
-					frayGraph.drawBorderWhite(p);
-				}
-				if (blurLevel > 0)
-				{
-					frayedBorderBlur = ImageHelper.getInstance().blur(frayedBorderMask, blurLevel, true, true);
-				}
-				else
-				{
-					frayedBorderBlur = null;
-				}
-
-				return new Tuple2<Image, Image>(frayedBorderMask, frayedBorderBlur);
+				String key = MapPartsDiskCache.createKey("frayedBorder", settings.frayedBorderSeed, polygonCount, widthToUse, heightToUse, settings.resolution,
+						settings.rightRotationCount, settings.flipHorizontally, settings.flipVertically, blurLevel);
+				List<Image> maskAndBlur = MapPartsDiskCache.getOrCreateAll(partsDiskCache, key,
+						() -> createFrayedBorderMaskAndBlur(settings, widthToUse, heightToUse, polygonCount, blurLevel));
+				return new Tuple2<Image, Image>(maskAndBlur.get(0), maskAndBlur.get(1));
 			});
 		}
 		return null;
 	}
 
+	private static List<Image> createFrayedBorderMaskAndBlur(MapSettings settings, double widthToUse, double heightToUse, int polygonCount, int blurLevel)
+	{
+		WorldGraph frayGraph = GraphCreator.createSimpleGraph(widthToUse, heightToUse, polygonCount, new Random(settings.frayedBorderSeed), settings.resolution, true,
+				settings.rightRotationCount, settings.flipHorizontally, settings.flipVertically);
+		Image frayedBorderMask = Image.create(frayGraph.getWidth(), frayGraph.getHeight(), ImageType.Grayscale8Bit);
+		try (Painter p = frayedBorderMask.createPainter())
+		{
+			// Default every pixel to the border color (white, which becomes transparent after the mask is inverted) before drawing
+			// the polygons. Otherwise any pixel along the outer edge that the border polygons don't quite cover - which happens when
+			// the mask dimensions land on exact integers - would keep the image's default black and show as an opaque line of the map
+			// beneath the frayed edge.
+			p.setColor(Color.white);
+			p.fillRect(0, 0, frayedBorderMask.getWidth(), frayedBorderMask.getHeight());
+			frayGraph.drawBorderWhite(p);
+		}
+		Image frayedBorderBlur;
+		if (blurLevel > 0)
+		{
+			frayedBorderBlur = ImageHelper.getInstance().blur(frayedBorderMask, blurLevel, true, true);
+		}
+		else
+		{
+			frayedBorderBlur = null;
+		}
+
+		return Arrays.asList(frayedBorderMask, frayedBorderBlur);
+	}
+
 	private Future<NameCreator> startNameCreatorCreation(MapSettings settings)
 	{
 		return ThreadHelper.getInstance().submit(() ->
@@ -1158,21 +1591,26 @@ public class MapCreator implements WarningLogger
 			Logger.println("Starting job to create grunge.");
 			return ThreadHelper.getInstance().submit(() ->
 			{
-				Image grunge;
-
 				// 104567 is an arbitrary number added so that the grunge is not
 				// the
 				// same pattern as
 				// the background.
+				final long seed = settings.backgroundRandomSeed + 104567;
 				final float fractalPower = 1.3f;
-				grunge = FractalBGGenerator.generate(new Random(settings.backgroundRandomSeed + 104567), fractalPower, ((int) mapDimensions.width), ((int) mapDimensions.height), 0.75f);
+				final int width = (int) mapDimensions.width;
+				final int height = (int) mapDimensions.height;
+				String key = MapPartsDiskCache.createKey("grunge", seed, fractalPower, width, height, 0.75f, settings.grungeWidth, settings.resolution);
+				return MapPartsDiskCache.getOrCreate(partsDiskCache, key, () ->
+				{
+					Image grunge = FractalBGGenerator.generate(new Random(seed), fractalPower, width, height, 0.75f);
 
-				checkForCancel();
+					checkForCancel();
 
-				// Whiten the middle of clouds.
-				ImageHelper.getInstance().darkenMiddleOfImage(grunge, settings.grungeWidth, settings.resolution, false);
+					// Whiten the middle of clouds.
+					ImageHelper.getInstance().darkenMiddleOfImage(grunge, settings.grungeWidth, settings.resolution, false);
 
-				return grunge;
+					return grunge;
+				});
 			});
 		}
 		else
@@ -1256,14 +1694,14 @@ public class MapCreator implements WarningLogger
 		Image landBackground = null;
 		Image map;
 		{
-			Tuple2<Image, Image> tuple = darkenLandNearCoastlinesAndRegionBorders(settings, graph, settings.resolution, background.land, background, null, null, null, true);
+			Tuple2<Image, Image> tuple = darkenLandNearCoastlinesAndRegionBorders(settings, graph, settings.resolution, background.land, background.regionIndexes, null, null, null, true);
 			Image landBackgroundWithLandAndOcean = tuple.getFirst();
 			coastShading = tuple.getSecond();
 			map = ImageHelper.getInstance().maskWithColor(landBackgroundWithLandAndOcean, Color.black, landMask, false);
 
 			if (settings.drawRegionColors)
 			{
-				landBackground = darkenLandNearCoastlinesAndRegionBorders(settings, graph, settings.resolution, background.landColoredBeforeAddingIconColors, background, coastShading, null, null,
+				landBackground = darkenLandNearCoastlinesAndRegionBorders(settings, graph, settings.resolution, background.landColoredBeforeAddingIconColors, background.regionIndexes, coastShading, null, null,
 						true).getFirst();
 			}
 			else
@@ -1379,7 +1817,7 @@ public class MapCreator implements WarningLogger
 
 		// Needed for drawing text
 		Image textBackground = updateLandMaskAndCreateTextBackground(settings, graph, landMask, iconsToDraw, settings.drawRegionColors ? background.landColoredBeforeAddingIconColors : background.land,
-				background.ocean, background, oceanWaves, oceanShading, coastShading, iconDrawer, null, null);
+				background.ocean, background, background.regionIndexes, oceanWaves, oceanShading, coastShading, iconDrawer, null, null);
 
 		if (mapParts != null)
 		{
@@ -1405,12 +1843,13 @@ public class MapCreator implements WarningLogger
 	}
 
 	private Image updateLandMaskAndCreateTextBackground(MapSettings settings, WorldGraph graph, Image landMask, List<IconDrawTask> iconsThatDrew, Image landTexture, Image oceanTexture,
-			Background background, Image oceanWaves, Image oceanShading, Image coastShading, IconDrawer iconDrawer, Collection<Center> centersToDraw, Rectangle drawBounds)
+			Background background, Image regionIndexes, Image oceanWaves, Image oceanShading, Image coastShading, IconDrawer iconDrawer, Collection<Center> centersToDraw, Rectangle drawBounds)
 	{
 		iconDrawer.drawNondecorationContentMasksOntoLandMask(landMask, iconsThatDrew, drawBounds);
 
 		Image textBackground = ImageHelper.getInstance().maskWithColor(landTexture, Color.black, landMask, false);
-		textBackground = darkenLandNearCoastlinesAndRegionBorders(settings, graph, settings.resolution, textBackground, background, coastShading, centersToDraw, drawBounds, false).getFirst();
+		textBackground = darkenLandNearCoastlinesAndRegionBorders(settings, graph, settings.resolution, textBackground, regionIndexes, coastShading, centersToDraw, drawBounds, false)
+				.getFirst();
 		textBackground = ImageHelper.getInstance().maskWithImage(textBackground, oceanTexture, landMask);
 		if (oceanShading != null)
 		{
@@ -1464,7 +1903,7 @@ public class MapCreator implements WarningLogger
 	 * Otherwise, it returns mapOrSnippet in the first piece of the tuple unchanged. The second piece is the coast shading mask, which can
 	 * be re-used for performance.
 	 */
-	private Tuple2<Image, Image> darkenLandNearCoastlinesAndRegionBorders(MapSettings settings, WorldGraph graph, double resolutionScaled, Image mapOrSnippet, Background background,
+	private Tuple2<Image, Image> darkenLandNearCoastlinesAndRegionBorders(MapSettings settings, WorldGraph graph, double resolutionScaled, Image mapOrSnippet, Image regionIndexes,
 			Image coastShading, Collection<Center> centersToDraw, Rectangle drawBounds, boolean addLoggingEntry)
 	{
 		double sizeMultiplier = calcSizeMultiplierFromResolutionScale(resolutionScaled);
@@ -1542,7 +1981,7 @@ public class MapCreator implements WarningLogger
 				{
 					colors.put(0, settings.landColor);
 				}
-				return new Tuple2<>(ImageHelper.getInstance().maskWithMultipleColors(mapOrSnippet, colors, background.regionIndexes, coastShading, true), coastShading);
+				return new Tuple2<>(ImageHelper.getInstance().maskWithMultipleColors(mapOrSnippet, colors, regionIndexes, coastShading, true), coastShading);
 			}
 			else
 			{
@@ -2198,16 +2637,21 @@ public class MapCreator implements WarningLogger
 		return isCanceled;
 	}
 
+	/**
+	 * The required memory is quadratic in the resolution used. To generate a map at resolution 225 takes 7GB, so 7×1024^3÷(225^2) = 148468.
+	 * That was measured with the largest preset size, 4096 × 4096 at 100%.
+	 */
+	private static final long bytesPerResolutionSquared = 148468L;
+
+	/**
+	 * Memory to leave for the editor when estimating how large a map can be drawn.
+	 */
+	private static final long bytesReservedForEditor = 900L * 1024 * 1024;
+
 	public static int calcMaximumResolution()
 	{
-		// Reserve some space for the editor.
-		int bytesReservedForEditor = 900 * 1024 * 1024;
-
 		long maxBytes = Runtime.getRuntime().maxMemory() - bytesReservedForEditor;
-		// The required memory is quadratic in the resolution used.
-		// To generate a map at resolution 225 takes 7GB, so 7×1024^3÷(225^2)
-		// = 148468.
-		int maxResolution = (int) Math.sqrt(maxBytes / 148468L);
+		int maxResolution = (int) Math.sqrt(maxBytes / bytesPerResolutionSquared);
 
 		// The FFT-based code will create arrays in powers of 2.
 		int nextPowerOf2 = ImageHelper.getInstance().getJTransformsMixedRadixSizeEqualOrLargerThan((int) (maxResolution / 100.0));
@@ -2231,6 +2675,29 @@ public class MapCreator implements WarningLogger
 		return maxResolution;
 	}
 
+	/**
+	 * Estimates how much memory drawing a map with the given settings at full size takes, using the same measurement as
+	 * {@link #calcMaximumResolution()}, but scaled by the map's size in pixels so that smaller maps are estimated to take less.
+	 */
+	public static long estimateBytesToDraw(MapSettings settings)
+	{
+		Dimension mapBounds = Background.calcMapBoundsAndAdjustResolutionIfNeeded(settings, null);
+		double pixelsAt100Percent = (double) GeneratedDimension.PRESET_LONG_SIDE * GeneratedDimension.PRESET_LONG_SIDE;
+		double bytesPerPixel = bytesPerResolutionSquared * 100.0 * 100.0 / pixelsAt100Percent;
+		return (long) (mapBounds.width * mapBounds.height * bytesPerPixel);
+	}
+
+	/**
+	 * Whether the copies of the map that {@link MapParts#mapsBelowOverlayImage} holds fit in memory on top of what drawing the map takes.
+	 * High memory mode only checks the resolution, which leaves out the cache, so a map just under the low memory threshold could otherwise
+	 * run out of memory on the next redraw.
+	 */
+	private static boolean canCacheMapsBelowOverlayImage(MapSettings settings, Dimension mapDimensions, int cachedCopies)
+	{
+		long bytesPerCopy = (long) Math.ceil(mapDimensions.width) * (long) Math.ceil(mapDimensions.height) * 4L;
+		return estimateBytesToDraw(settings) + bytesPerCopy * cachedCopies <= Runtime.getRuntime().maxMemory() - bytesReservedForEditor;
+	}
+
 	private static double calcMaxResolutionScale()
 	{
 		return calcMaximumResolution() / 100.0;
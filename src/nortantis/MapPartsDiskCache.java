@@ -0,0 +1,256 @@
+package nortantis;
+
+import nortantis.platform.Image;
+import nortantis.util.OSHelper;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Stores the expensive parts of a map that are fully determined by its settings on disk, so that reopening a map doesn't have to create them
+ * again. These are the generated background textures, the grunge, and the frayed border masks, each of which takes an FFT or a graph to
+ * create but only a file read to load.
+ *
+ * Each entry is keyed by a description of everything the part is created from (see {@link #createKey}), which the code that creates the
+ * part builds from the settings that affect it, so changing a setting that doesn't affect a part still reuses it. The key is stored in the
+ * file to detect hash collisions in file names. The files are kept in an {@link ImageDiskCache}, which bounds their total size.
+ */
+public class MapPartsDiskCache
+{
+	/**
+	 * Increment this whenever the file format changes, so that old entries are ignored.
+	 */
+	private static final int formatVersion = 1;
+	private static final int magicNumber = 0x4E505254; // "NPRT"
+	private static final String cacheFileExtension = ".part";
+	private static final long defaultMaxBytes = 1024L * 1024 * 1024;
+
+	private static MapPartsDiskCache instance;
+	private static boolean disabledForUnitTests;
+
+	private final ImageDiskCache files;
+
+	/**
+	 * @param maxBytes
+	 *            The most disk space the cache may use. When it uses more, the parts used least recently are deleted.
+	 */
+	public MapPartsDiskCache(Path cacheFolder, long maxBytes)
+	{
+		files = new ImageDiskCache(cacheFolder, cacheFileExtension, maxBytes, "Map parts disk cache writer");
+	}
+
+	/**
+	 * @return The cache in the app data folder, or null if the disk cache is disabled.
+	 */
+	public static synchronized MapPartsDiskCache getInstance()
+	{
+		if (disabledForUnitTests)
+		{
+			return null;
+		}
+		if (instance == null)
+		{
+			instance = new MapPartsDiskCache(OSHelper.getAppDataPath().resolve("cache").resolve("map parts"), defaultMaxBytes);
+		}
+		return instance;
+	}
+
+	/**
+	 * Keeps unit tests from reading or writing to the user's app data folder.
+	 */
+	public static synchronized void disableForUnitTests()
+	{
+		disabledForUnitTests = true;
+	}
+
+	/**
+	 * Creates a key from the name of a part and everything it's created from. Values are written with String.valueOf, so they should be
+	 * primitives, strings, or enums.
+	 */
+	public static String createKey(String partName, Object... inputs)
+	{
+		StringBuilder key = new StringBuilder(partName);
+		// Parts can be created differently by different versions even when their inputs are the same.
+		key.append('|').append(MapSettings.currentVersion);
+		for (Object input : inputs)
+		{
+			key.append('|').append(input);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Describes a file that a part is created from, such as a background texture, so that the part's key changes when the file does.
+	 */
+	public static String describeFile(Path path)
+	{
+		try
+		{
+			if (Files.isRegularFile(path))
+			{
+				Path absolute = path.toAbsolutePath().normalize();
+				BasicFileAttributes attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+				return absolute + "@" + attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+			}
+		}
+		catch (IOException | SecurityException | UnsupportedOperationException e)
+		{
+			// Fall through and describe it by its path alone.
+		}
+		// Files packaged in the jar only change with the version, which is already part of every key.
+		return path.toString();
+	}
+
+	/**
+	 * Loads the part with the given key if there is one, or else creates it and stores it in the background.
+	 *
+	 * @param cache
+	 *            The cache to use, or null to always create the part.
+	 */
+	public static Image getOrCreate(MapPartsDiskCache cache, String key, Supplier<Image> create)
+	{
+		return getOrCreateAll(cache, key, () -> Arrays.asList(create.get())).get(0);
+	}
+
+	/**
+	 * Like {@link #getOrCreate}, but for parts made of more than one image, such as the frayed border's mask and blur. Images may be null.
+	 */
+	public static List<Image> getOrCreateAll(MapPartsDiskCache cache, String key, Supplier<List<Image>> create)
+	{
+		if (cache == null)
+		{
+			return create.get();
+		}
+
+		List<Image> loaded = cache.load(key);
+		if (loaded != null)
+		{
+			return loaded;
+		}
+		List<Image> created = create.get();
+		cache.storeInBackground(key, created);
+		return created;
+	}
+
+	/**
+	 * @return The images stored under the key, or null if there isn't a valid entry for it.
+	 */
+	public List<Image> load(String key)
+	{
+		return files.read(getCacheFilePath(key), buffer -> read(buffer, key));
+	}
+
+	private static List<Image> read(ByteBuffer buffer, String key)
+	{
+		if (buffer.getInt() != magicNumber || buffer.getInt() != formatVersion)
+		{
+			return null;
+		}
+
+		byte[] keyBytes = new byte[buffer.getInt()];
+		buffer.get(keyBytes);
+		if (!new String(keyBytes, StandardCharsets.UTF_8).equals(key))
+		{
+			return null;
+		}
+
+		int imageCount = buffer.getInt();
+		List<Image> images = new ArrayList<>(imageCount);
+		for (int i = 0; i < imageCount; i++)
+		{
+			images.add(ImageDiskCache.readImage(buffer));
+		}
+		return images;
+	}
+
+	/**
+	 * Queues the images to be written to the cache. They are copied first, so the caller may modify them afterwards. Skipped if too many
+	 * parts are already waiting to be written, in which case the part is stored the next time it's created.
+	 */
+	public void storeInBackground(String key, List<Image> images)
+	{
+		long estimatedBytes = 0;
+		for (Image image : images)
+		{
+			if (image != null)
+			{
+				estimatedBytes += image.getEstimatedByteSize();
+			}
+		}
+		files.writeInBackground(getCacheFilePath(key), estimatedBytes, () ->
+		{
+			List<Image> copies = new ArrayList<>(images.size());
+			for (Image image : images)
+			{
+				copies.add(image == null ? null : image.deepCopy());
+			}
+			return new ImageDiskCache.Entry()
+			{
+				@Override
+				public void write(DataOutputStream out) throws IOException
+				{
+					MapPartsDiskCache.write(out, key, copies);
+				}
+
+				@Override
+				public void close()
+				{
+					for (Image copy : copies)
+					{
+						if (copy != null)
+						{
+							copy.close();
+						}
+					}
+				}
+			};
+		});
+	}
+
+	/**
+	 * Writes the images to the cache. Errors are logged rather than thrown since the cache is only an optimization.
+	 */
+	public void store(String key, List<Image> images)
+	{
+		files.write(getCacheFilePath(key), out -> write(out, key, images));
+	}
+
+	private static void write(DataOutputStream out, String key, List<Image> images) throws IOException
+	{
+		out.writeInt(magicNumber);
+		out.writeInt(formatVersion);
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(keyBytes.length);
+		out.write(keyBytes);
+		out.writeInt(images.size());
+		for (Image image : images)
+		{
+			ImageDiskCache.writeImage(out, image);
+		}
+	}
+
+	/**
+	 * Waits for parts already queued to be written. Used by tests.
+	 */
+	void waitForWrites()
+	{
+		files.waitForWrites();
+	}
+
+	/**
+	 * The file name is a hash of the key. The full key is stored in the file to detect hash collisions.
+	 */
+	private Path getCacheFilePath(String key)
+	{
+		return files.getFilePath(key);
+	}
+}
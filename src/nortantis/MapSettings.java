@@ -1,6 +1,7 @@
 package nortantis;
 
 import nortantis.editor.*;
+import nortantis.SettingsFingerprint.Section;
 import nortantis.geom.Point;
 import nortantis.platform.Color;
 import nortantis.platform.Font;
@@ -13,18 +14,27 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
-import org.json.simple.parser.ParseException;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 
 /**
  * For parsing and storing map settings.
@@ -43,7 +53,12 @@ public class MapSettings implements Serializable
 	 * as "3.2", and is greater than "3.18"). Each new value here must have a numerically greater segment than every version that came
 	 * before it at the same position.
 	 */
-	public static final String currentVersion = "3.21";
+	public static final String currentVersion = "3.22";
+	/**
+	 * The first version that can read edits written in packed form. Older versions read a packed map as having no edits, and would erase them
+	 * if the map were saved, so maps are always written with a version at least this new, which older versions refuse to open.
+	 */
+	public static final String packedEditsVersion = "3.22";
 	public static final String fileExtension = "nort";
 	public static final String fileExtensionWithDot = "." + fileExtension;
 	public static final double defaultPointPrecision = 2.0;
@@ -254,8 +269,7 @@ public class MapSettings implements Serializable
 		this();
 		if (FilenameUtils.getExtension(filePath).toLowerCase().equals("nort"))
 		{
-			String fileContents = Assets.readFileAsString(filePath);
-			parseFromJson(fileContents);
+			parseFromJson(() -> Assets.createUtf8Reader(filePath));
 		}
 		else if (FilenameUtils.getExtension(filePath).toLowerCase().equals("properties"))
 		{
@@ -267,6 +281,16 @@ public class MapSettings implements Serializable
 		}
 	}
 
+	/**
+	 * Loads settings from the contents of a .nort file, such as one received over a network rather than read from disk.
+	 */
+	public static MapSettings fromJson(String json)
+	{
+		MapSettings settings = new MapSettings();
+		settings.parseFromJson(json);
+		return settings;
+	}
+
 	public static boolean isOldPropertiesFile(String filePath)
 	{
 		return FilenameUtils.getExtension(filePath).toLowerCase().equals("properties");
@@ -352,10 +376,75 @@ public class MapSettings implements Serializable
 	}
 
 	public void writeToFile(String filePath) throws IOException
+	{
+		writeToFile(filePath, false);
+	}
+
+	/**
+	 * Writes the settings to filePath atomically. See {@link #writeToFileAtomically(String, boolean, EditsJsonCache)}.
+	 *
+	 * @param packEdits
+	 *            Whether to store the large sections of the edits in a compact binary form rather than as JSON. See {@link PackedEdits}.
+	 *            Versions of Nortantis from before the packed form was added can't read those sections.
+	 */
+	public void writeToFile(String filePath, boolean packEdits) throws IOException
+	{
+		writeToFileAtomically(filePath, packEdits, null);
+	}
+
+	/**
+	 * Writes the settings to a temporary file in the same folder as filePath, then moves it over filePath, so that a crash or error while
+	 * writing never leaves filePath partly written. If filePath is a symbolic link, the file it links to is replaced instead, so the link is
+	 * kept. The new file keeps the permissions of the file it replaces.
+	 *
+	 * @param cache
+	 *            If not null, sections of the edits that haven't changed since they were last written with this cache are copied from it rather
+	 *            than serialized again, and changed sections are stored in it.
+	 */
+	public void writeToFileAtomically(String filePath, boolean packEdits, EditsJsonCache cache) throws IOException
 	{
 		version = currentVersion;
-		String json = toJson();
-		FileHelper.writeToFile(filePath, json);
+		Path target = Paths.get(filePath).toAbsolutePath();
+		boolean targetExists = Files.exists(target);
+		if (targetExists)
+		{
+			target = target.toRealPath();
+		}
+		// Created with the default permissions for new files, rather than the owner-only permissions Files.createTempFile uses.
+		Path tempFile = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+		try
+		{
+			try (JsonStreamWriter writer = new JsonStreamWriter(new BufferedWriter(
+					new OutputStreamWriter(Files.newOutputStream(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), StandardCharsets.UTF_8))))
+			{
+				writeJson(writer, false, packEdits, cache);
+			}
+
+			if (targetExists)
+			{
+				try
+				{
+					Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(target));
+				}
+				catch (UnsupportedOperationException e)
+				{
+					// Not a POSIX file system, such as on Windows.
+				}
+			}
+
+			try
+			{
+				Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(tempFile);
+		}
 	}
 
 	private String toJson()
@@ -363,8 +452,60 @@ public class MapSettings implements Serializable
 		return toJson(false);
 	}
 
-	@SuppressWarnings("unchecked")
 	private String toJson(boolean skipEdits)
+	{
+		StringWriter result = new StringWriter();
+		try
+		{
+			writeJson(new JsonStreamWriter(result), skipEdits, false, null);
+		}
+		catch (IOException e)
+		{
+			// StringWriter doesn't throw.
+			throw new RuntimeException(e);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Writes the settings as JSON. The edits, which are most of a large map's file, are written last and straight from MapEdits, so that
+	 * reading the file back can stream them knowing the version and custom images path they depend on.
+	 */
+	private void writeJson(JsonStreamWriter writer, boolean skipEdits, boolean packEdits, EditsJsonCache cache) throws IOException
+	{
+		writer.beginObject();
+		for (Entry<?, ?> entry : ((Map<?, ?>) toJsonObject()).entrySet())
+		{
+			writer.name((String) entry.getKey()).value(entry.getValue());
+		}
+		if (edits != null && !skipEdits)
+		{
+			writer.name("edits");
+			writeEdits(writer, packEdits, cache);
+		}
+		writer.endObject();
+	}
+
+	/**
+	 * Creates a key that is the same for two settings that draw the same map below the overlay image, assuming their edits are the same.
+	 * It's used to cache that map, so that changing only the overlay image doesn't redraw it.
+	 */
+	public String createKeyForMapBelowOverlayImage()
+	{
+		JSONObject root = toJsonObject();
+		root.remove("drawOverlayImage");
+		root.remove("overlayImagePath");
+		root.remove("overlayImageTransparency");
+		root.remove("overlayScale");
+		root.remove("overlayOffsetResolutionInvariant");
+		return root.toJSONString();
+	}
+
+	/**
+	 * @return Every setting but the edits.
+	 */
+	@SuppressWarnings("unchecked")
+	private JSONObject toJsonObject()
 	{
 		JSONObject root = new JSONObject();
 
@@ -571,96 +712,160 @@ public class MapSettings implements Serializable
 			root.put("subMapInfo", subMapInfo.toJson());
 		}
 
-		// User edits.
-		if (edits != null && !skipEdits)
+		return root;
+	}
+
+	private void writeEdits(JsonStreamWriter writer, boolean packEdits, EditsJsonCache cache) throws IOException
+	{
+		if (cache != null)
+		{
+			cache.setPackEdits(packEdits);
+		}
+
+		writer.beginObject();
+		writer.name("textEdits");
+		writeSection(writer, cache, Section.Text, this::writeTextEdits);
+		if (packEdits)
+		{
+			writer.name("packedCenterEdits");
+			writeSection(writer, cache, Section.CenterEdits, w -> w.value(PackedEdits.packCenterEdits(edits.centerEdits.values())));
+			writer.name("packedIconEdits");
+			writeSection(writer, cache, Section.Icons, w -> w.value(PackedEdits.packIcons(edits.freeIcons)));
+		}
+		else
+		{
+			writer.name("centerEdits");
+			writeSection(writer, cache, Section.CenterEdits, this::writeCenterEdits);
+			writer.name("iconEdits");
+			writeSection(writer, cache, Section.Icons, this::writeIconEdits);
+		}
+		writer.name("regionEdits");
+		writeSection(writer, cache, Section.RegionEdits, this::writeRegionEdits);
+		writer.name("hasIconEdits").value(edits.hasIconEdits);
+		if (packEdits)
+		{
+			writer.name("packedRoads");
+			writeSection(writer, cache, Section.Roads, w -> w.value(PackedEdits.packRoads(edits.roads)));
+			writer.name("packedRivers");
+			writeSection(writer, cache, Section.Rivers, w -> w.value(PackedEdits.packRivers(edits.rivers)));
+		}
+		else
 		{
-			JSONObject editsJson = new JSONObject();
-			root.put("edits", editsJson);
-			editsJson.put("textEdits", textEditsToJson());
-			editsJson.put("centerEdits", centerEditsToJson());
-			editsJson.put("iconEdits", iconsToJson());
-			editsJson.put("regionEdits", regionEditsToJson());
-			editsJson.put("hasIconEdits", edits.hasIconEdits);
-			editsJson.put("roads", roadsToJson());
-			editsJson.put("rivers", riversToJson());
-			editsJson.put("hasInitializedRivers", edits.hasInitializedRivers);
-			// Only write edgeEdits when migration hasn't happened yet (old file being converted). New files have hasInitializedRivers=true
-			// and empty edgeEdits, so this key is omitted to keep file size small.
-			if (!edits.hasInitializedRivers && !edits.edgeEdits.isEmpty())
+			writer.name("roads");
+			writeSection(writer, cache, Section.Roads, this::writeRoads);
+			writer.name("rivers");
+			writeSection(writer, cache, Section.Rivers, this::writeRivers);
+		}
+		writer.name("hasInitializedRivers").value(edits.hasInitializedRivers);
+		// Only write edgeEdits when migration hasn't happened yet (old file being converted). New files have hasInitializedRivers=true
+		// and empty edgeEdits, so this key is omitted to keep file size small.
+		if (!edits.hasInitializedRivers && !edits.edgeEdits.isEmpty())
+		{
+			if (packEdits)
+			{
+				writer.name("packedEdgeEdits").value(PackedEdits.packEdgeEdits(edits.edgeEdits.values()));
+			}
+			else
 			{
-				editsJson.put("edgeEdits", edgeEditsToJson());
+				writer.name("edgeEdits");
+				writeEdgeEdits(writer);
 			}
 		}
+		writer.endObject();
+	}
 
-		return root.toJSONString();
+	private interface SectionWriter
+	{
+		void write(JsonStreamWriter writer) throws IOException;
 	}
 
-	@SuppressWarnings("unchecked")
-	private JSONArray textEditsToJson()
+	/**
+	 * Writes one section of the edits, copying its JSON from the cache if it hasn't changed since the cache last saw it.
+	 */
+	private void writeSection(JsonStreamWriter writer, EditsJsonCache cache, Section section, SectionWriter sectionWriter) throws IOException
+	{
+		if (cache == null)
+		{
+			sectionWriter.write(writer);
+			return;
+		}
+
+		int hash = SettingsFingerprint.hashSection(this, section);
+		String json = cache.get(section, hash);
+		if (json == null)
+		{
+			StringWriter sectionJson = new StringWriter();
+			sectionWriter.write(new JsonStreamWriter(sectionJson));
+			json = sectionJson.toString();
+			cache.put(section, hash, json);
+		}
+		writer.rawValue(json);
+	}
+
+	private void writeTextEdits(JsonStreamWriter writer) throws IOException
 	{
-		JSONArray list = new JSONArray();
+		writer.beginArray();
 		for (MapText text : edits.text)
 		{
-			JSONObject mpObj = new JSONObject();
-			mpObj.put("text", text.value);
-			mpObj.put("locationX", text.location.x);
-			mpObj.put("locationY", text.location.y);
+			writer.beginObject();
+			writer.name("text").value(text.value);
+			writer.name("locationX").value(text.location.x);
+			writer.name("locationY").value(text.location.y);
 			if (text.angle != 0.0)
 			{
-				mpObj.put("angle", text.angle);
+				writer.name("angle").value(text.angle);
 			}
-			mpObj.put("type", enumToJson(text.type));
+			writer.name("type").value(enumToJson(text.type));
 			if (text.lineBreak != LineBreak.Auto)
 			{
-				mpObj.put("lineBreak", enumToJson(text.lineBreak));
+				writer.name("lineBreak").value(enumToJson(text.lineBreak));
 			}
 			if (text.colorOverride != null)
 			{
-				mpObj.put("colorOverride", colorToString(text.colorOverride));
+				writer.name("colorOverride").value(colorToString(text.colorOverride));
 			}
 			if (text.boldBackgroundColorOverride != null)
 			{
-				mpObj.put("boldBackgroundColorOverride", colorToString(text.boldBackgroundColorOverride));
+				writer.name("boldBackgroundColorOverride").value(colorToString(text.boldBackgroundColorOverride));
 			}
 			if (text.curvature != 0.0)
 			{
-				mpObj.put("curvature", text.curvature);
+				writer.name("curvature").value(text.curvature);
 			}
 			if (text.spacing != 0)
 			{
-				mpObj.put("spacing", text.spacing);
+				writer.name("spacing").value(text.spacing);
 			}
 			if (text.backgroundFade != MapText.defaultBackgroundFade)
 			{
-				mpObj.put("backgroundFade", text.backgroundFade);
+				writer.name("backgroundFade").value(text.backgroundFade);
 			}
 			if (text.fontOverride != null)
 			{
-				mpObj.put("fontOverride", fontToString(text.fontOverride));
+				writer.name("fontOverride").value(fontToString(text.fontOverride));
 			}
-			list.add(mpObj);
+			writer.endObject();
 		}
-		return list;
+		writer.endArray();
 	}
 
-	@SuppressWarnings("unchecked")
-	private JSONArray centerEditsToJson()
+	private void writeCenterEdits(JsonStreamWriter writer) throws IOException
 	{
-		JSONArray list = new JSONArray();
+		writer.beginArray();
 		for (CenterEdit centerEdit : edits.centerEdits.values())
 		{
-			JSONObject mpObj = new JSONObject();
+			writer.beginObject();
 			if (centerEdit.isWater)
 			{
-				mpObj.put("isWater", centerEdit.isWater);
+				writer.name("isWater").value(centerEdit.isWater);
 			}
 			if (centerEdit.isLake)
 			{
-				mpObj.put("isLake", centerEdit.isLake);
+				writer.name("isLake").value(centerEdit.isLake);
 			}
 			if (centerEdit.regionId != null)
 			{
-				mpObj.put("regionId", centerEdit.regionId);
+				writer.name("regionId").value((long) centerEdit.regionId);
 			}
 			// I'm storing center trees, even though they're mostly only used for adding new trees using editing brushes, because
 			// CenterTrees that failed to draw any trees due to their density being too low should be retried when the tree height slider
@@ -668,243 +873,202 @@ public class MapSettings implements Serializable
 			// changed the tree height slighter.
 			if (centerEdit.trees != null)
 			{
-				JSONObject treesObj = new JSONObject();
-				treesObj.put("artPack", centerEdit.trees.artPack);
-				treesObj.put("treeType", centerEdit.trees.treeType);
-				treesObj.put("density", centerEdit.trees.density);
-				treesObj.put("randomSeed", centerEdit.trees.randomSeed);
-				treesObj.put("isDormant", centerEdit.trees.isDormant);
+				writer.name("trees").beginObject();
+				writer.name("artPack").value(centerEdit.trees.artPack);
+				writer.name("treeType").value(centerEdit.trees.treeType);
+				writer.name("density").value(centerEdit.trees.density);
+				writer.name("randomSeed").value(centerEdit.trees.randomSeed);
+				writer.name("isDormant").value(centerEdit.trees.isDormant);
 				// Persist the colors these trees were drawn with so dormant trees reappear with their original color rather than the
 				// current per-type tree color. Absent for trees that use the per-type colors (the normal case). The presence of the
 				// "colors" object is what marks the trees as having their own colors, so it is written even when it ends up empty because
 				// every value in it equaled its default.
 				if (centerEdit.trees.colors != null)
 				{
-					JSONObject colorsObj = new JSONObject();
-					putIconColors(colorsObj, "fillColor", centerEdit.trees.colors);
-					treesObj.put("colors", colorsObj);
+					writer.name("colors").beginObject();
+					writeIconColors(writer, "fillColor", centerEdit.trees.colors);
+					writer.endObject();
 				}
-				mpObj.put("trees", treesObj);
+				writer.endObject();
 			}
-			list.add(mpObj);
+			writer.endObject();
 		}
-		return list;
+		writer.endArray();
 	}
 
 	/**
-	 * Writes the four icon color properties of {@code colors} into {@code obj}, leaving out the ones that equal their default so that files
-	 * stay small. Mirrors {@link #parseIconColors}.
+	 * Writes the four icon color properties of {@code colors} into the current object, leaving out the ones that equal their default so
+	 * that files stay small. Mirrors {@link #parseIconColors}.
 	 *
 	 * @param fillColorKey The key to store the fill color under, since icons and trees use different names for it.
 	 */
-	@SuppressWarnings("unchecked")
-	private void putIconColors(JSONObject obj, String fillColorKey, IconColors colors)
+	private void writeIconColors(JsonStreamWriter writer, String fillColorKey, IconColors colors) throws IOException
 	{
 		// Only persist the fill color when it is actually shown (fillWithColor) or it differs from the default. A hidden default color is
 		// left out so it tracks defaultIconFillColor, which keeps files small and lets a later change to the default take effect for icons
 		// that aren't displaying a color. A shown default color is written explicitly so changing the default won't alter existing maps.
 		if (colors.fillColor != null && (colors.fillWithColor || !colors.fillColor.equals(defaultIconFillColor)))
 		{
-			obj.put(fillColorKey, colorToString(colors.fillColor));
+			writer.name(fillColorKey).value(colorToString(colors.fillColor));
 		}
 		if (colors.filterColor != null && !colors.filterColor.equals(defaultIconFilterColor))
 		{
-			obj.put("filterColor", colors.filterColor.toJson());
+			writer.name("filterColor").value(colors.filterColor.toJson());
 		}
 		if (colors.maximizeOpacity)
 		{
-			obj.put("maximizeOpacity", colors.maximizeOpacity);
+			writer.name("maximizeOpacity").value(colors.maximizeOpacity);
 		}
 		if (colors.fillWithColor)
 		{
-			obj.put("fillWithColor", colors.fillWithColor);
-		}
-	}
-
-	/**
-	 * Reads the icon color properties written by {@link #putIconColors} from {@code obj}, filling in the defaults for the ones left out.
-	 * Returns null if {@code obj} is null, meaning the per-type colors should be used.
-	 */
-	private IconColors parseIconColors(JSONObject obj)
-	{
-		if (obj == null)
-		{
-			return null;
-		}
-		Color fillColor = obj.containsKey("fillColor") ? parseColor((String) obj.get("fillColor")) : defaultIconFillColor;
-		HSBColor filterColor = obj.containsKey("filterColor") ? HSBColor.fromJson((JSONObject) obj.get("filterColor")) : defaultIconFilterColor;
-		boolean maximizeOpacity = obj.containsKey("maximizeOpacity") ? (Boolean) obj.get("maximizeOpacity") : false;
-		boolean fillWithColor = obj.containsKey("fillWithColor") ? (Boolean) obj.get("fillWithColor") : false;
-		return new IconColors(fillColor, filterColor, maximizeOpacity, fillWithColor);
-	}
-
-	/**
-	 * Reads the icon color properties of a CenterTrees saved in the older format, where they were stored directly on the trees object
-	 * rather than in a "colors" object, and every value was written whether or not it equaled its default. Returns null if none are
-	 * present, meaning the per-type colors should be used.
-	 */
-	private IconColors parseIconColorsStoredOnTreesObject(JSONObject treesObj)
-	{
-		if (!(treesObj.containsKey("fillColor") || treesObj.containsKey("filterColor") || treesObj.containsKey("maximizeOpacity") || treesObj.containsKey("fillWithColor")))
-		{
-			return null;
+			writer.name("fillWithColor").value(colors.fillWithColor);
 		}
-		Color fillColor = treesObj.containsKey("fillColor") ? parseColor((String) treesObj.get("fillColor")) : null;
-		HSBColor filterColor = treesObj.containsKey("filterColor") ? HSBColor.fromJson((JSONObject) treesObj.get("filterColor")) : null;
-		boolean maximizeOpacity = treesObj.containsKey("maximizeOpacity") ? (Boolean) treesObj.get("maximizeOpacity") : false;
-		boolean fillWithColor = treesObj.containsKey("fillWithColor") ? (Boolean) treesObj.get("fillWithColor") : false;
-		return new IconColors(fillColor, filterColor, maximizeOpacity, fillWithColor);
 	}
 
-	@SuppressWarnings("unchecked")
-	private JSONArray iconsToJson()
+	private void writeIconEdits(JsonStreamWriter writer) throws IOException
 	{
-		JSONArray list = new JSONArray();
+		writer.beginArray();
 		for (FreeIcon icon : edits.freeIcons)
 		{
-			JSONObject iconObj = new JSONObject();
-			iconObj.put("artPack", icon.artPack);
-			iconObj.put("groupId", icon.groupId);
-			iconObj.put("iconIndex", icon.iconIndex);
+			writer.beginObject();
+			writer.name("artPack").value(icon.artPack);
+			writer.name("groupId").value(icon.groupId);
+			writer.name("iconIndex").value(icon.iconIndex);
 			if (icon.iconName != null)
 			{
-				iconObj.put("iconName", icon.iconName);
+				writer.name("iconName").value(icon.iconName);
 			}
-			iconObj.put("type", icon.type.toString());
-			iconObj.put("locationResolutionInvariant", icon.locationResolutionInvariant.toJson());
+			writer.name("type").value(icon.type.toString());
+			writer.name("locationResolutionInvariant").value(icon.locationResolutionInvariant.toJson());
 			if (icon.scale != 1.0)
 			{
-				iconObj.put("scale", icon.scale);
+				writer.name("scale").value(icon.scale);
+			}
+			writer.name("centerIndex");
+			if (icon.centerIndex == null)
+			{
+				writer.nullValue();
+			}
+			else
+			{
+				writer.value((long) icon.centerIndex);
 			}
-			iconObj.put("centerIndex", icon.centerIndex);
 			if (icon.density != 0.0)
 			{
-				iconObj.put("density", icon.density);
+				writer.name("density").value(icon.density);
 			}
-			putIconColors(iconObj, "color", new IconColors(icon.fillColor, icon.filterColor, icon.maximizeOpacity, icon.fillWithColor));
+			writeIconColors(writer, "color", new IconColors(icon.fillColor, icon.filterColor, icon.maximizeOpacity, icon.fillWithColor));
 			if (icon.originalScale != 1.0)
 			{
-				iconObj.put("originalScale", icon.originalScale);
+				writer.name("originalScale").value(icon.originalScale);
 			}
-			list.add(iconObj);
+			writer.endObject();
 		}
-		return list;
+		writer.endArray();
 	}
 
-	@SuppressWarnings("unchecked")
-	private JSONArray roadsToJson()
+	private void writeRoads(JsonStreamWriter writer) throws IOException
 	{
-		JSONArray roadsJson = new JSONArray();
-		if (edits.roads == null || edits.roads.isEmpty())
+		writer.beginArray();
+		if (edits.roads != null)
 		{
-			return roadsJson;
-		}
-
-		for (Road road : edits.roads)
-		{
-			// A road needs at least 2 nodes to be a drawable path. Skip degenerate entries so a road that was fully erased
-			// can't be written out and reloaded as permanent garbage.
-			if (road.nodes == null || road.nodes.size() < 2)
+			for (Road road : edits.roads)
 			{
-				continue;
-			}
-
-			JSONObject roadObj = new JSONObject();
+				// A road needs at least 2 nodes to be a drawable path. Skip degenerate entries so a road that was fully erased
+				// can't be written out and reloaded as permanent garbage.
+				if (road.nodes == null || road.nodes.size() < 2)
+				{
+					continue;
+				}
 
-			JSONArray pathJson = new JSONArray();
-			for (RoadPathNode node : road.nodes)
-			{
-				pathJson.add(node.getLoc().toJson());
+				writer.beginObject();
+				writer.name("path").beginArray();
+				for (RoadPathNode node : road.nodes)
+				{
+					writer.value(node.getLoc().toJson());
+				}
+				writer.endArray();
+				writer.endObject();
 			}
-			roadObj.put("path", pathJson);
-			roadsJson.add(roadObj);
 		}
-
-		return roadsJson;
+		writer.endArray();
 	}
 
-	@SuppressWarnings("unchecked")
-	private JSONArray riversToJson()
+	private void writeRivers(JsonStreamWriter writer) throws IOException
 	{
-		JSONArray riversJson = new JSONArray();
-		if (edits.rivers == null || edits.rivers.isEmpty())
-		{
-			return riversJson;
-		}
-
-		for (River river : edits.rivers)
+		writer.beginArray();
+		if (edits.rivers != null)
 		{
-			// A river needs at least 2 nodes to be a drawable path. Skip degenerate entries so a river that was fully
-			// erased can't be written out and reloaded as permanent garbage.
-			if (river.nodes == null || river.nodes.size() < 2)
+			for (River river : edits.rivers)
 			{
-				continue;
-			}
+				// A river needs at least 2 nodes to be a drawable path. Skip degenerate entries so a river that was fully
+				// erased can't be written out and reloaded as permanent garbage.
+				if (river.nodes == null || river.nodes.size() < 2)
+				{
+					continue;
+				}
 
-			JSONObject riverObj = new JSONObject();
-			JSONArray nodesJson = new JSONArray();
-			{
+				writer.beginObject();
+				writer.name("nodes").beginArray();
 				for (RiverPathNode node : river.nodes)
 				{
-					JSONObject nodeJson = new JSONObject();
-					nodeJson.put("loc", node.getLoc().toJson());
-					nodeJson.put("widthToNext", (long) node.getWidthLevelToNext());
-					nodeJson.put("seedToNext", node.getSeedToNext());
+					writer.beginObject();
+					writer.name("loc").value(node.getLoc().toJson());
+					writer.name("widthToNext").value(node.getWidthLevelToNext());
+					writer.name("seedToNext").value(node.getSeedToNext());
 					// Persist the Voronoi edge index of the segment leaving this node so polygon-mode
 					// rivers stay linked to their region-boundary edge after a save/reload. Omitted when
 					// EDGE_INDEX_NONE to keep freehand rivers' JSON unchanged from the prior format.
 					if (node.getEdgeIndexToNext() != RiverPathNode.EDGE_INDEX_NONE)
 					{
-						nodeJson.put("edgeIndexToNext", (long) node.getEdgeIndexToNext());
+						writer.name("edgeIndexToNext").value(node.getEdgeIndexToNext());
 					}
 					// Persist the Voronoi corner a mouth node is anchored to so it still tracks the coast after a
 					// save/reload. Omitted when CORNER_INDEX_NONE to keep non-mouth nodes' JSON unchanged.
 					if (node.getCornerIndexAnchor() != RiverPathNode.CORNER_INDEX_NONE)
 					{
-						nodeJson.put("cornerIndexAnchor", (long) node.getCornerIndexAnchor());
+						writer.name("cornerIndexAnchor").value(node.getCornerIndexAnchor());
 					}
-					nodesJson.add(nodeJson);
+					writer.endObject();
 				}
+				writer.endArray();
+				writer.endObject();
 			}
-			riverObj.put("nodes", nodesJson);
-			riversJson.add(riverObj);
 		}
-
-		return riversJson;
+		writer.endArray();
 	}
 
 	// Reads EdgeEdit.riverLevel, which is the deprecated legacy river storage. This method only runs
 	// during legacy-file migration writes (see edits.hasInitializedRivers guard at the call site), so
 	// the deprecation warnings here are expected.
-	@SuppressWarnings({ "unchecked", "deprecation" })
-	private JSONArray edgeEditsToJson()
+	@SuppressWarnings("deprecation")
+	private void writeEdgeEdits(JsonStreamWriter writer) throws IOException
 	{
-		JSONArray list = new JSONArray();
+		writer.beginArray();
 		for (EdgeEdit eEdit : edits.edgeEdits.values())
 		{
 			if (eEdit.riverLevel > GraphRiver.RIVERS_THIS_SIZE_OR_SMALLER_WILL_NOT_BE_DRAWN)
 			{
-				JSONObject mpObj = new JSONObject();
-				mpObj.put("riverLevel", (long) eEdit.riverLevel);
-				mpObj.put("index", (long) eEdit.index);
-				list.add(mpObj);
+				writer.beginObject();
+				writer.name("riverLevel").value(eEdit.riverLevel);
+				writer.name("index").value(eEdit.index);
+				writer.endObject();
 			}
 		}
-		return list;
+		writer.endArray();
 	}
 
-	@SuppressWarnings("unchecked")
-	private JSONArray regionEditsToJson()
+	private void writeRegionEdits(JsonStreamWriter writer) throws IOException
 	{
-		JSONArray list = new JSONArray();
+		writer.beginArray();
 		for (RegionEdit regionEdit : edits.regionEdits.values())
 		{
-			JSONObject mpObj = new JSONObject();
-			mpObj.put("color", colorToString(regionEdit.color));
-			mpObj.put("regionId", regionEdit.regionId);
-			list.add(mpObj);
+			writer.beginObject();
+			writer.name("color").value(colorToString(regionEdit.color));
+			writer.name("regionId").value(regionEdit.regionId);
+			writer.endObject();
 		}
-		return list;
+		writer.endArray();
 	}
 
 	private JSONObject regionBoundaryStyleToJson()
@@ -943,24 +1107,118 @@ public class MapSettings implements Serializable
 		return font.getName() + "\t" + font.getStyle().value + "\t" + (int) font.getSize();
 	}
 
+	/**
+	 * Opens the JSON of a settings file. Some files are read twice, so this can be called more than once.
+	 */
+	private interface JsonSource
+	{
+		Reader open() throws IOException;
+	}
+
 	private void parseFromJson(String fileContents)
 	{
-		JSONObject root = null;
+		parseFromJson(() -> new StringReader(fileContents));
+	}
+
+	/**
+	 * Reads settings from JSON one token at a time. Everything but the edits is small, so it's collected into a json-simple object and read
+	 * by parseSettingsFromJson, while the edits are read straight into MapEdits.
+	 *
+	 * Reading the edits depends on the version and custom images path. Files are now written with the edits last, but older ones have the
+	 * edits first, so for those the edits are skipped and then read in a second pass.
+	 */
+	@SuppressWarnings("unchecked")
+	private void parseFromJson(JsonSource source)
+	{
+		MapEdits parsedEdits = null;
 		try
 		{
-			root = (JSONObject) JSONValue.parseWithException(fileContents);
+			JSONObject root = new JSONObject();
+			boolean hasEdits = false;
+			try (JsonStreamReader reader = new JsonStreamReader(source.open()))
+			{
+				reader.beginObject();
+				while (reader.hasNext())
+				{
+					String name = reader.nextName();
+					if (name.equals("edits"))
+					{
+						hasEdits = true;
+						if (root.containsKey("version") && root.containsKey("customImagesPath"))
+						{
+							parseVersion(root);
+							parsedEdits = parseEdits(reader, !StringUtils.isEmpty((String) root.get("customImagesPath")));
+						}
+						else
+						{
+							reader.skipValue();
+						}
+					}
+					else
+					{
+						root.put(name, reader.readValue());
+					}
+				}
+				reader.endObject();
+			}
+
+			parseSettingsFromJson(root);
+
+			if (parsedEdits == null && hasEdits)
+			{
+				try (JsonStreamReader reader = new JsonStreamReader(source.open()))
+				{
+					reader.beginObject();
+					while (reader.hasNext())
+					{
+						if (reader.nextName().equals("edits"))
+						{
+							parsedEdits = parseEdits(reader, !StringUtils.isEmpty(customImagesPath));
+						}
+						else
+						{
+							reader.skipValue();
+						}
+					}
+					reader.endObject();
+				}
+			}
 		}
-		catch (ParseException e)
+		catch (IOException e)
 		{
 			throw new RuntimeException(e);
 		}
+		edits = parsedEdits != null ? parsedEdits : new MapEdits();
 
+		runConversionForShadingAlphaChange();
+		runConversionForAllowingMultipleCityTypesInOneMap();
+		runConversionToFixDunesGroupId();
+		runConversionOnBackgroundTextureImagePaths();
+		runConversionOnBorderType();
+		runConversionToRemoveTrailingSpacesInImageNamesWithWidth();
+		runConversionOnFadingConcentricWaves();
+		runConversionToRemoveRegionIdsOfEditsThatAreWater();
+		runConversionForNewRangesForRandomRegionColorGeneratorSettings();
+		runConversionToFixCompassRosesGroupId();
+		runConversionToFillInLandShape();
+		runConversionForRegionCount();
+		runConversionForIconFillColorDefaultChange();
+		runConversionOnFillWithColorByType();
+	}
+
+	private void parseVersion(JSONObject root)
+	{
 		version = (String) root.get("version");
 		if (isVersionGreaterThanCurrent(version))
 		{
 			throw new RuntimeException("The map cannot be loaded because it was made in a new version of Nortantis. That map's version is " + version + ", but you're Nortantis version is "
 					+ currentVersion + ". Try again with a newer version of Nortantis.");
 		}
+	}
+
+	private void parseSettingsFromJson(JSONObject root)
+	{
+		parseVersion(root);
 		randomSeed = (long) root.get("randomSeed");
 		resolution = (double) root.get("resolution");
 		coastShadingLevel = (int) (long) root.get("coastShadingLevel");
@@ -1473,36 +1731,6 @@ public class MapSettings implements Serializable
 		{
 			subMapInfo = SubMapInfo.fromJson((JSONObject) root.get("subMapInfo"));
 		}
-
-		edits = new MapEdits();
-		// hiddenTextIds is a comma-delimited list.
-
-		boolean hasCustomImagesPath = !StringUtils.isEmpty(customImagesPath);
-		JSONObject editsJson = (JSONObject) root.get("edits");
-		edits.text = parseMapTexts(editsJson);
-		edits.freeIcons = parseIconEdits(editsJson, hasCustomImagesPath);
-		edits.centerEdits = parseCenterEdits(editsJson, hasCustomImagesPath);
-		edits.regionEdits = parseRegionEdits(editsJson);
-		edits.edgeEdits = parseEdgeEdits(editsJson);
-		edits.hasIconEdits = (boolean) editsJson.get("hasIconEdits");
-		edits.roads = parseRoads(editsJson);
-		edits.rivers = parseRivers(editsJson);
-		edits.hasInitializedRivers = editsJson.containsKey("hasInitializedRivers") && (boolean) editsJson.get("hasInitializedRivers");
-
-		runConversionForShadingAlphaChange();
-		runConversionForAllowingMultipleCityTypesInOneMap();
-		runConversionToFixDunesGroupId();
-		runConversionOnBackgroundTextureImagePaths();
-		runConversionOnBorderType();
-		runConversionToRemoveTrailingSpacesInImageNamesWithWidth();
-		runConversionOnFadingConcentricWaves();
-		runConversionToRemoveRegionIdsOfEditsThatAreWater();
-		runConversionForNewRangesForRandomRegionColorGeneratorSettings();
-		runConversionToFixCompassRosesGroupId();
-		runConversionToFillInLandShape();
-		runConversionForRegionCount();
-		runConversionForIconFillColorDefaultChange();
-		runConversionOnFillWithColorByType();
 	}
 
 	/**
@@ -1875,161 +2103,550 @@ public class MapSettings implements Serializable
 		}
 	}
 
-	private CopyOnWriteArrayList<MapText> parseMapTexts(JSONObject editsJson)
-	{
-		if (editsJson == null)
-		{
-			return new CopyOnWriteArrayList<>();
-		}
-
-		JSONArray array = (JSONArray) editsJson.get("textEdits");
-		CopyOnWriteArrayList<MapText> result = new CopyOnWriteArrayList<>();
-		for (Object obj : array)
-		{
-			JSONObject jsonObj = (JSONObject) obj;
-			String text = (String) jsonObj.get("text");
-			Point location = new Point((Double) jsonObj.get("locationX"), (Double) jsonObj.get("locationY"));
-			double angle = jsonObj.containsKey("angle") ? (Double) jsonObj.get("angle") : 0.0;
-			TextType type = Enum.valueOf(TextType.class, ((String) jsonObj.get("type")).replace(" ", "_"));
-			LineBreak lineBreak = jsonObj.containsKey("lineBreak") ? Enum.valueOf(LineBreak.class, ((String) jsonObj.get("lineBreak")).replace(" ", "_")) : LineBreak.Auto;
-			Color colorOverride = jsonObj.containsKey("colorOverride") ? parseColor((String) jsonObj.get("colorOverride")) : null;
-			Color boldBackgroundColorOverride = jsonObj.containsKey("boldBackgroundColorOverride") ? parseColor((String) jsonObj.get("boldBackgroundColorOverride")) : null;
-			double curvature = jsonObj.containsKey("curvature") ? (Double) jsonObj.get("curvature") : 0.0;
-			int spacing = jsonObj.containsKey("spacing") ? (int) (long) jsonObj.get("spacing") : 0;
-			Font fontOverride = jsonObj.containsKey("fontOverride") ? parseFont((String) jsonObj.get("fontOverride")) : null;
-			double backgroundFade = jsonObj.containsKey("backgroundFade") ? (Double) jsonObj.get("backgroundFade") : MapText.defaultBackgroundFade;
-			MapText mp = new MapText(text, location, angle, type, lineBreak, colorOverride, boldBackgroundColorOverride, curvature, spacing, fontOverride, backgroundFade);
-			result.add(mp);
-		}
-
-		return result;
-	}
-
-	private ConcurrentHashMap<Integer, CenterEdit> parseCenterEdits(JSONObject editsJson, boolean hasCustomImagesPath)
+	/**
+	 * Reads the edits object, which is most of a large map's file, straight into MapEdits. Keys that aren't recognized are skipped, and
+	 * missing keys keep the defaults from a new MapEdits.
+	 *
+	 * Packed sections are unpacked on the thread pool, in parallel with each other and with reading the rest of the edits.
+	 */
+	private MapEdits parseEdits(JsonStreamReader reader, boolean hasCustomImagesPath) throws IOException
 	{
-		if (editsJson == null)
-		{
-			return new ConcurrentHashMap<>();
-		}
-
-		JSONArray array = (JSONArray) editsJson.get("centerEdits");
-		ConcurrentHashMap<Integer, CenterEdit> result = new ConcurrentHashMap<>();
-		if (array == null)
-		{
-			return result;
-		}
-		int index = 0;
-		for (Object obj : array)
+		MapEdits result = new MapEdits();
+		Future<ConcurrentHashMap<Integer, CenterEdit>> packedCenterEdits = null;
+		Future<FreeIconCollection> packedIcons = null;
+		Future<CopyOnWriteArrayList<River>> packedRivers = null;
+		Future<CopyOnWriteArrayList<Road>> packedRoads = null;
+		Future<Map<Integer, EdgeEdit>> packedEdgeEdits = null;
+		reader.beginObject();
+		while (reader.hasNext())
 		{
-			JSONObject jsonObj = (JSONObject) obj;
-			boolean isWater = jsonObj.containsKey("isWater") ? (boolean) jsonObj.get("isWater") : false;
-			boolean isLake = jsonObj.containsKey("isLake") ? (boolean) jsonObj.get("isLake") : false;
-			Integer regionId = jsonObj.get("regionId") == null ? null : ((Long) jsonObj.get("regionId")).intValue();
-
-			CenterIcon icon = null;
+			String name = reader.nextName();
+			if (name.equals("packedCenterEdits"))
 			{
-				JSONObject iconObj = (JSONObject) jsonObj.get("icon");
-				if (iconObj != null)
-				{
-					String artPack;
-					if (iconObj.containsKey("artPack"))
-					{
-						artPack = (String) iconObj.get("artPack");
-					}
-					else
-					{
-						// Map versions before art packs either use the installed images or accustom images folder.
-						artPack = hasCustomImagesPath ? Assets.customArtPack : Assets.installedArtPack;
-					}
-					String iconGroupId = (String) iconObj.get("iconGroupId");
-					int iconIndex = (int) (long) iconObj.get("iconIndex");
-					CenterIconType iconType = CenterIconType.valueOf((String) iconObj.get("iconType"));
-					String iconName = (String) iconObj.get("iconName");
-					if (iconName != null && !iconName.isEmpty())
-					{
-						icon = new CenterIcon(iconType, artPack, iconGroupId, iconName);
-					}
-					else
-					{
-						icon = new CenterIcon(iconType, artPack, iconGroupId, iconIndex);
-					}
+				String packed = reader.nextString();
+				packedCenterEdits = ThreadHelper.getInstance().submit(() -> PackedEdits.unpackCenterEdits(packed));
+			}
+			else if (name.equals("packedIconEdits"))
+			{
+				String packed = reader.nextString();
+				packedIcons = ThreadHelper.getInstance().submit(() -> PackedEdits.unpackIcons(packed));
+			}
+			else if (name.equals("packedRivers"))
+			{
+				String packed = reader.nextString();
+				packedRivers = ThreadHelper.getInstance().submit(() -> PackedEdits.unpackRivers(packed));
+			}
+			else if (name.equals("packedRoads"))
+			{
+				String packed = reader.nextString();
+				packedRoads = ThreadHelper.getInstance().submit(() -> PackedEdits.unpackRoads(packed));
+			}
+			else if (name.equals("packedEdgeEdits"))
+			{
+				String packed = reader.nextString();
+				packedEdgeEdits = ThreadHelper.getInstance().submit(() -> PackedEdits.unpackEdgeEdits(packed));
+			}
+			else if (name.equals("textEdits"))
+			{
+				result.text = parseMapTexts(reader);
+			}
+			else if (name.equals("centerEdits"))
+			{
+				result.centerEdits = parseCenterEdits(reader, hasCustomImagesPath);
+			}
+			else if (name.equals("iconEdits"))
+			{
+				result.freeIcons = parseIconEdits(reader, hasCustomImagesPath);
+			}
+			else if (name.equals("regionEdits"))
+			{
+				result.regionEdits = parseRegionEdits(reader);
+			}
+			else if (name.equals("edgeEdits"))
+			{
+				result.edgeEdits = parseEdgeEdits(reader);
+			}
+			else if (name.equals("hasIconEdits"))
+			{
+				result.hasIconEdits = reader.nextBoolean();
+			}
+			else if (name.equals("roads"))
+			{
+				result.roads = parseRoads(reader);
+			}
+			else if (name.equals("rivers"))
+			{
+				result.rivers = parseRivers(reader);
+			}
+			else if (name.equals("hasInitializedRivers"))
+			{
+				result.hasInitializedRivers = reader.nextBoolean();
+			}
+			else
+			{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (packedCenterEdits != null)
+		{
+			result.centerEdits = ThreadHelper.getInstance().getResult(packedCenterEdits);
+		}
+		if (packedIcons != null)
+		{
+			result.freeIcons = ThreadHelper.getInstance().getResult(packedIcons);
+		}
+		if (packedRivers != null)
+		{
+			result.rivers = ThreadHelper.getInstance().getResult(packedRivers);
+		}
+		if (packedRoads != null)
+		{
+			result.roads = ThreadHelper.getInstance().getResult(packedRoads);
+		}
+		if (packedEdgeEdits != null)
+		{
+			result.edgeEdits = ThreadHelper.getInstance().getResult(packedEdgeEdits);
+		}
+		return result;
+	}
+
+	private CopyOnWriteArrayList<MapText> parseMapTexts(JsonStreamReader reader) throws IOException
+	{
+		// Collected in an ArrayList first, since CopyOnWriteArrayList copies its array on every add.
+		List<MapText> result = new ArrayList<>();
+		reader.beginArray();
+		while (reader.hasNext())
+		{
+			String text = null;
+			double locationX = 0.0;
+			double locationY = 0.0;
+			double angle = 0.0;
+			TextType type = null;
+			LineBreak lineBreak = LineBreak.Auto;
+			Color colorOverride = null;
+			Color boldBackgroundColorOverride = null;
+			double curvature = 0.0;
+			int spacing = 0;
+			Font fontOverride = null;
+			double backgroundFade = MapText.defaultBackgroundFade;
+
+			reader.beginObject();
+			while (reader.hasNext())
+			{
+				String name = reader.nextName();
+				if (name.equals("text"))
+				{
+					text = reader.nextStringOrNull();
+				}
+				else if (name.equals("locationX"))
+				{
+					locationX = reader.nextDouble();
+				}
+				else if (name.equals("locationY"))
+				{
+					locationY = reader.nextDouble();
+				}
+				else if (name.equals("angle"))
+				{
+					angle = reader.nextDouble();
+				}
+				else if (name.equals("type"))
+				{
+					type = Enum.valueOf(TextType.class, reader.nextString().replace(" ", "_"));
+				}
+				else if (name.equals("lineBreak"))
+				{
+					lineBreak = Enum.valueOf(LineBreak.class, reader.nextString().replace(" ", "_"));
+				}
+				else if (name.equals("colorOverride"))
+				{
+					colorOverride = parseColor(reader.nextString());
+				}
+				else if (name.equals("boldBackgroundColorOverride"))
+				{
+					boldBackgroundColorOverride = parseColor(reader.nextString());
+				}
+				else if (name.equals("curvature"))
+				{
+					curvature = reader.nextDouble();
+				}
+				else if (name.equals("spacing"))
+				{
+					spacing = reader.nextInt();
+				}
+				else if (name.equals("fontOverride"))
+				{
+					fontOverride = parseFont(reader.nextString());
+				}
+				else if (name.equals("backgroundFade"))
+				{
+					backgroundFade = reader.nextDouble();
+				}
+				else
+				{
+					reader.skipValue();
 				}
 			}
+			reader.endObject();
+
+			result.add(new MapText(text, new Point(locationX, locationY), angle, type, lineBreak, colorOverride, boldBackgroundColorOverride, curvature, spacing, fontOverride,
+					backgroundFade));
+		}
+		reader.endArray();
+
+		return new CopyOnWriteArrayList<>(result);
+	}
+
+	private ConcurrentHashMap<Integer, CenterEdit> parseCenterEdits(JsonStreamReader reader, boolean hasCustomImagesPath) throws IOException
+	{
+		ConcurrentHashMap<Integer, CenterEdit> result = new ConcurrentHashMap<>();
+		if (reader.peek() == JsonStreamReader.Token.Null)
+		{
+			reader.nextNull();
+			return result;
+		}
 
+		int index = 0;
+		reader.beginArray();
+		while (reader.hasNext())
+		{
+			boolean isWater = false;
+			boolean isLake = false;
+			Integer regionId = null;
+			CenterIcon icon = null;
 			CenterTrees trees = null;
+
+			reader.beginObject();
+			while (reader.hasNext())
 			{
-				JSONObject treesObj = (JSONObject) jsonObj.get("trees");
-				if (treesObj != null)
+				String name = reader.nextName();
+				if (name.equals("isWater"))
+				{
+					isWater = reader.nextBoolean();
+				}
+				else if (name.equals("isLake"))
 				{
-					String artPack;
-					if (treesObj.containsKey("artPack"))
+					isLake = reader.nextBoolean();
+				}
+				else if (name.equals("regionId"))
+				{
+					if (reader.peek() == JsonStreamReader.Token.Null)
 					{
-						artPack = (String) treesObj.get("artPack");
+						reader.nextNull();
 					}
 					else
 					{
-						// Map versions before art packs either use the installed images or accustom images folder.
-						artPack = hasCustomImagesPath ? Assets.customArtPack : Assets.installedArtPack;
+						regionId = reader.nextInt();
 					}
-					String treeType = (String) treesObj.get("treeType");
-					double density = (Double) treesObj.get("density");
-					long randomSeed = (Long) treesObj.get("randomSeed");
-					boolean isDormant = treesObj.containsKey("isDormant") ? (Boolean) treesObj.get("isDormant") : false;
-					IconColors colors = treesObj.containsKey("colors") ? parseIconColors((JSONObject) treesObj.get("colors")) : parseIconColorsStoredOnTreesObject(treesObj);
-					trees = new CenterTrees(artPack, treeType, density, randomSeed, isDormant, colors);
+				}
+				else if (name.equals("icon"))
+				{
+					// Center icons were replaced by free icons long ago, so they're rare enough to read as a tree.
+					icon = parseCenterIcon((JSONObject) reader.readValue(), hasCustomImagesPath);
+				}
+				else if (name.equals("trees"))
+				{
+					trees = parseCenterTrees(reader, hasCustomImagesPath);
+				}
+				else
+				{
+					reader.skipValue();
 				}
 			}
+			reader.endObject();
 
 			result.put(index, new CenterEdit(index, isWater, isLake, regionId, icon, trees));
 			index++;
 		}
+		reader.endArray();
 
 		return result;
 	}
 
-	private FreeIconCollection parseIconEdits(JSONObject editsJson, boolean hasCustomImagesPath)
+	private CenterIcon parseCenterIcon(JSONObject iconObj, boolean hasCustomImagesPath)
 	{
-		if (editsJson == null)
+		if (iconObj == null)
 		{
-			return new FreeIconCollection();
+			return null;
 		}
 
-		JSONArray array = (JSONArray) editsJson.get("iconEdits");
-		FreeIconCollection result = new FreeIconCollection();
-		if (array == null)
+		String artPack;
+		if (iconObj.containsKey("artPack"))
 		{
-			return result;
+			artPack = (String) iconObj.get("artPack");
+		}
+		else
+		{
+			// Map versions before art packs either use the installed images or accustom images folder.
+			artPack = hasCustomImagesPath ? Assets.customArtPack : Assets.installedArtPack;
 		}
+		String iconGroupId = (String) iconObj.get("iconGroupId");
+		int iconIndex = (int) (long) iconObj.get("iconIndex");
+		CenterIconType iconType = CenterIconType.valueOf((String) iconObj.get("iconType"));
+		String iconName = (String) iconObj.get("iconName");
+		if (iconName != null && !iconName.isEmpty())
+		{
+			return new CenterIcon(iconType, artPack, iconGroupId, iconName);
+		}
+		return new CenterIcon(iconType, artPack, iconGroupId, iconIndex);
+	}
 
-		boolean convertFillColor = shouldConvertFillColor();
+	private CenterTrees parseCenterTrees(JsonStreamReader reader, boolean hasCustomImagesPath) throws IOException
+	{
+		if (reader.peek() == JsonStreamReader.Token.Null)
+		{
+			reader.nextNull();
+			return null;
+		}
+
+		String artPack = null;
+		String treeType = null;
+		double density = 0.0;
+		long randomSeed = 0L;
+		boolean isDormant = false;
+		IconColors colors = null;
+		boolean hasColorsObject = false;
+		// The older format stored colors directly on the trees object.
+		Color oldFillColor = null;
+		HSBColor oldFilterColor = null;
+		boolean oldMaximizeOpacity = false;
+		boolean oldFillWithColor = false;
+		boolean hasOldColors = false;
 
-		for (Object obj : array)
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+			if (name.equals("artPack"))
+			{
+				artPack = reader.nextStringOrNull();
+			}
+			else if (name.equals("treeType"))
+			{
+				treeType = reader.nextStringOrNull();
+			}
+			else if (name.equals("density"))
+			{
+				density = reader.nextDouble();
+			}
+			else if (name.equals("randomSeed"))
+			{
+				randomSeed = reader.nextLong();
+			}
+			else if (name.equals("isDormant"))
+			{
+				isDormant = reader.nextBoolean();
+			}
+			else if (name.equals("colors"))
+			{
+				hasColorsObject = true;
+				colors = parseIconColors(reader);
+			}
+			else if (name.equals("fillColor"))
+			{
+				hasOldColors = true;
+				oldFillColor = parseColor(reader.nextString());
+			}
+			else if (name.equals("filterColor"))
+			{
+				hasOldColors = true;
+				oldFilterColor = HSBColor.fromJson((JSONObject) reader.readValue());
+			}
+			else if (name.equals("maximizeOpacity"))
+			{
+				hasOldColors = true;
+				oldMaximizeOpacity = reader.nextBoolean();
+			}
+			else if (name.equals("fillWithColor"))
+			{
+				hasOldColors = true;
+				oldFillWithColor = reader.nextBoolean();
+			}
+			else
+			{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (artPack == null)
+		{
+			// Map versions before art packs either use the installed images or accustom images folder.
+			artPack = hasCustomImagesPath ? Assets.customArtPack : Assets.installedArtPack;
+		}
+		if (!hasColorsObject && hasOldColors)
+		{
+			// Trees saved in the older format, where every color value was written whether or not it equaled its default. Null means the
+			// per-type colors should be used.
+			colors = new IconColors(oldFillColor, oldFilterColor, oldMaximizeOpacity, oldFillWithColor);
+		}
+		return new CenterTrees(artPack, treeType, density, randomSeed, isDormant, colors);
+	}
+
+	/**
+	 * Reads the icon color properties written by {@link #writeIconColors} for trees, filling in the defaults for the ones left out. Returns
+	 * null if the value is null, meaning the per-type colors should be used.
+	 */
+	private IconColors parseIconColors(JsonStreamReader reader) throws IOException
+	{
+		if (reader.peek() == JsonStreamReader.Token.Null)
 		{
-			JSONObject iconObj = (JSONObject) obj;
-			IconType type = IconType.valueOf((String) iconObj.get("type"));
+			reader.nextNull();
+			return null;
+		}
 
-			String artPack;
-			if (iconObj.containsKey("artPack"))
+		Color fillColor = defaultIconFillColor;
+		HSBColor filterColor = defaultIconFilterColor;
+		boolean maximizeOpacity = false;
+		boolean fillWithColor = false;
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+			if (name.equals("fillColor"))
+			{
+				fillColor = parseColor(reader.nextString());
+			}
+			else if (name.equals("filterColor"))
+			{
+				filterColor = HSBColor.fromJson((JSONObject) reader.readValue());
+			}
+			else if (name.equals("maximizeOpacity"))
+			{
+				maximizeOpacity = reader.nextBoolean();
+			}
+			else if (name.equals("fillWithColor"))
 			{
-				artPack = (String) iconObj.get("artPack");
+				fillWithColor = reader.nextBoolean();
 			}
 			else
 			{
-				// Map versions before art packs either use the installed images or accustom images folder.
-				artPack = hasCustomImagesPath ? Assets.customArtPack : Assets.installedArtPack;
+				reader.skipValue();
 			}
-			String groupId = (String) iconObj.get("groupId");
-			int iconIndex = (int) (long) iconObj.get("iconIndex");
-			String iconName = iconObj.containsKey("iconName") ? (String) iconObj.get("iconName") : null;
-			Point locationResolutionInvariant = Point.fromJSonValue((String) iconObj.get("locationResolutionInvariant"));
-			double scale = iconObj.containsKey("scale") ? (double) iconObj.get("scale") : 1.0;
+		}
+		reader.endObject();
+		return new IconColors(fillColor, filterColor, maximizeOpacity, fillWithColor);
+	}
+
+	private FreeIconCollection parseIconEdits(JsonStreamReader reader, boolean hasCustomImagesPath) throws IOException
+	{
+		FreeIconCollection result = new FreeIconCollection();
+		if (reader.peek() == JsonStreamReader.Token.Null)
+		{
+			reader.nextNull();
+			return result;
+		}
+
+		boolean convertFillColor = shouldConvertFillColor();
+
+		reader.beginArray();
+		while (reader.hasNext())
+		{
+			IconType type = null;
+			String artPack = null;
+			String groupId = null;
+			int iconIndex = 0;
+			String iconName = null;
+			Point locationResolutionInvariant = null;
+			double scale = 1.0;
 			Integer centerIndex = null;
-			if (iconObj.containsKey("centerIndex") && iconObj.get("centerIndex") != null)
+			double density = 0.0;
+			Color fillColorFromJSon = null;
+			boolean fillWithColorFromJson = false;
+			HSBColor filterColor = defaultIconFilterColor;
+			boolean maximizeOpacity = false;
+			boolean hasOriginalScale = false;
+			double originalScale = 1.0;
+
+			reader.beginObject();
+			while (reader.hasNext())
+			{
+				String name = reader.nextName();
+				if (name.equals("type"))
+				{
+					type = IconType.valueOf(reader.nextString());
+				}
+				else if (name.equals("artPack"))
+				{
+					artPack = reader.nextStringOrNull();
+				}
+				else if (name.equals("groupId"))
+				{
+					groupId = reader.nextStringOrNull();
+				}
+				else if (name.equals("iconIndex"))
+				{
+					iconIndex = reader.nextInt();
+				}
+				else if (name.equals("iconName"))
+				{
+					iconName = reader.nextStringOrNull();
+				}
+				else if (name.equals("locationResolutionInvariant"))
+				{
+					locationResolutionInvariant = Point.fromJSonValue(reader.nextString());
+				}
+				else if (name.equals("scale"))
+				{
+					scale = reader.nextDouble();
+				}
+				else if (name.equals("centerIndex"))
+				{
+					if (reader.peek() == JsonStreamReader.Token.Null)
+					{
+						reader.nextNull();
+					}
+					else
+					{
+						centerIndex = reader.nextInt();
+					}
+				}
+				else if (name.equals("density"))
+				{
+					density = reader.nextDouble();
+				}
+				else if (name.equals("color"))
+				{
+					fillColorFromJSon = parseColor(reader.nextString());
+				}
+				else if (name.equals("fillWithColor"))
+				{
+					fillWithColorFromJson = reader.nextBoolean();
+				}
+				else if (name.equals("filterColor"))
+				{
+					filterColor = HSBColor.fromJson((JSONObject) reader.readValue());
+				}
+				else if (name.equals("maximizeOpacity"))
+				{
+					maximizeOpacity = reader.nextBoolean();
+				}
+				else if (name.equals("originalScale"))
+				{
+					if (reader.peek() == JsonStreamReader.Token.Null)
+					{
+						reader.nextNull();
+					}
+					else
+					{
+						hasOriginalScale = true;
+						originalScale = reader.nextDouble();
+					}
+				}
+				else
+				{
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			if (artPack == null)
 			{
-				centerIndex = (int) (long) iconObj.get("centerIndex");
+				// Map versions before art packs either use the installed images or accustom images folder.
+				artPack = hasCustomImagesPath ? Assets.customArtPack : Assets.installedArtPack;
 			}
-			double density = iconObj.containsKey("density") ? (double) iconObj.get("density") : 0.0;
-			Color fillColorFromJSon = iconObj.containsKey("color") ? parseColor((String) iconObj.get("color")) : null;
 
 			boolean fillWithColor;
 			if (convertFillColor)
@@ -2038,7 +2655,7 @@ public class MapSettings implements Serializable
 			}
 			else
 			{
-				fillWithColor = iconObj.containsKey("fillWithColor") ? (Boolean) iconObj.get("fillWithColor") : false;
+				fillWithColor = fillWithColorFromJson;
 			}
 
 			Color fillColor;
@@ -2058,37 +2675,19 @@ public class MapSettings implements Serializable
 				fillColor = defaultIconFillColor;
 			}
 
-			HSBColor filterColor = iconObj.containsKey("filterColor") ? HSBColor.fromJson((JSONObject) iconObj.get("filterColor")) : defaultIconFilterColor;
-			boolean maximizeOpacity = iconObj.containsKey("maximizeOpacity") ? (Boolean) iconObj.get("maximizeOpacity") : false;
-
-			double originalScale;
-			if (iconObj.containsKey("originalScale") && iconObj.get("originalScale") != null)
-			{
-				originalScale = (double) iconObj.get("originalScale");
-			}
-			else
+			if (!hasOriginalScale && !isVersionGreaterThan(version, "3.14"))
 			{
-				if (isVersionGreaterThan(version, "3.14"))
+				// Older maps don't have this setting, so guess at what it should be.
+				if (type == IconType.mountains || type == IconType.hills)
 				{
-					originalScale = 1.0;
-				}
-				else
-				{
-					// Older maps don't have this setting, so guess at what it should be.
-					if (type == IconType.mountains || type == IconType.hills)
-					{
-						originalScale = scale;
-					}
-					else
-					{
-						originalScale = 1.0;
-					}
+					originalScale = scale;
 				}
 			}
 
 			result.addOrReplace(new FreeIcon(locationResolutionInvariant, scale, type, artPack, groupId, iconIndex, iconName, centerIndex, density, fillColor, filterColor, maximizeOpacity,
 					fillWithColor, originalScale));
 		}
+		reader.endArray();
 
 		return result;
 	}
@@ -2098,28 +2697,32 @@ public class MapSettings implements Serializable
 		return !isVersionGreaterThan(version, "3.14");
 	}
 
-	private CopyOnWriteArrayList<Road> parseRoads(JSONObject editsJson)
+	private CopyOnWriteArrayList<Road> parseRoads(JsonStreamReader reader) throws IOException
 	{
-		CopyOnWriteArrayList<Road> roads = new CopyOnWriteArrayList<>();
-
-		if (!editsJson.containsKey("roads"))
+		List<Road> roads = new ArrayList<>();
+		reader.beginArray();
+		while (reader.hasNext())
 		{
-			return roads;
-		}
-
-		JSONArray list = (JSONArray) editsJson.get("roads");
-		for (Object obj : list)
-		{
-			JSONObject roadJson = (JSONObject) obj;
 			List<Point> path = new ArrayList<Point>();
-			if (roadJson.containsKey("path"))
+			reader.beginObject();
+			while (reader.hasNext())
 			{
-				for (Object obj2 : (JSONArray) roadJson.get("path"))
+				if (reader.nextName().equals("path"))
+				{
+					reader.beginArray();
+					while (reader.hasNext())
+					{
+						path.add(Point.fromJSonValue(reader.nextString()));
+					}
+					reader.endArray();
+				}
+				else
 				{
-					String pointString = (String) obj2;
-					path.add(Point.fromJSonValue(pointString));
+					reader.skipValue();
 				}
 			}
+			reader.endObject();
+
 			// Drop degenerate roads (fewer than 2 nodes after deduplication) so a stale entry from an older file can't
 			// linger. A road needs at least 2 nodes to be a drawable path.
 			Road road = Road.fromLocations(path);
@@ -2128,36 +2731,36 @@ public class MapSettings implements Serializable
 				roads.add(road);
 			}
 		}
-		return roads;
+		reader.endArray();
+		return new CopyOnWriteArrayList<>(roads);
 	}
 
-	private CopyOnWriteArrayList<River> parseRivers(JSONObject editsJson)
+	private CopyOnWriteArrayList<River> parseRivers(JsonStreamReader reader) throws IOException
 	{
-		CopyOnWriteArrayList<River> rivers = new CopyOnWriteArrayList<>();
-
-		if (!editsJson.containsKey("rivers"))
+		List<River> rivers = new ArrayList<>();
+		reader.beginArray();
+		while (reader.hasNext())
 		{
-			return rivers;
-		}
-
-		JSONArray list = (JSONArray) editsJson.get("rivers");
-		for (Object obj : list)
-		{
-			JSONObject riverJson = (JSONObject) obj;
 			List<RiverPathNode> nodes = new ArrayList<>();
-			if (riverJson.containsKey("nodes"))
+			reader.beginObject();
+			while (reader.hasNext())
 			{
-				for (Object obj2 : (JSONArray) riverJson.get("nodes"))
+				if (reader.nextName().equals("nodes"))
 				{
-					JSONObject nodeJson = (JSONObject) obj2;
-					Point loc = Point.fromJSonValue((String) nodeJson.get("loc"));
-					int widthToNext = nodeJson.containsKey("widthToNext") ? (int) (long) nodeJson.get("widthToNext") : 0;
-					long seedToNext = nodeJson.containsKey("seedToNext") ? (long) nodeJson.get("seedToNext") : 0L;
-					int edgeIndexToNext = nodeJson.containsKey("edgeIndexToNext") ? (int) (long) nodeJson.get("edgeIndexToNext") : RiverPathNode.EDGE_INDEX_NONE;
-					int cornerIndexAnchor = nodeJson.containsKey("cornerIndexAnchor") ? (int) (long) nodeJson.get("cornerIndexAnchor") : RiverPathNode.CORNER_INDEX_NONE;
-					nodes.add(new RiverPathNode(loc, widthToNext, seedToNext, edgeIndexToNext, cornerIndexAnchor));
+					reader.beginArray();
+					while (reader.hasNext())
+					{
+						nodes.add(parseRiverPathNode(reader));
+					}
+					reader.endArray();
+				}
+				else
+				{
+					reader.skipValue();
 				}
 			}
+			reader.endObject();
+
 			// Drop degenerate rivers (fewer than 2 nodes after deduplication) so a stale entry from an older file can't
 			// linger. A river needs at least 2 nodes to be a drawable path.
 			River river = new River(nodes);
@@ -2166,24 +2769,79 @@ public class MapSettings implements Serializable
 				rivers.add(river);
 			}
 		}
-		return rivers;
+		reader.endArray();
+		return new CopyOnWriteArrayList<>(rivers);
 	}
 
-	private ConcurrentHashMap<Integer, RegionEdit> parseRegionEdits(JSONObject editsJson)
+	private RiverPathNode parseRiverPathNode(JsonStreamReader reader) throws IOException
 	{
-		if (editsJson == null)
+		Point loc = null;
+		int widthToNext = 0;
+		long seedToNext = 0L;
+		int edgeIndexToNext = RiverPathNode.EDGE_INDEX_NONE;
+		int cornerIndexAnchor = RiverPathNode.CORNER_INDEX_NONE;
+		reader.beginObject();
+		while (reader.hasNext())
 		{
-			return new ConcurrentHashMap<>();
+			String name = reader.nextName();
+			if (name.equals("loc"))
+			{
+				loc = Point.fromJSonValue(reader.nextString());
+			}
+			else if (name.equals("widthToNext"))
+			{
+				widthToNext = reader.nextInt();
+			}
+			else if (name.equals("seedToNext"))
+			{
+				seedToNext = reader.nextLong();
+			}
+			else if (name.equals("edgeIndexToNext"))
+			{
+				edgeIndexToNext = reader.nextInt();
+			}
+			else if (name.equals("cornerIndexAnchor"))
+			{
+				cornerIndexAnchor = reader.nextInt();
+			}
+			else
+			{
+				reader.skipValue();
+			}
 		}
-		JSONArray array = (JSONArray) editsJson.get("regionEdits");
+		reader.endObject();
+		return new RiverPathNode(loc, widthToNext, seedToNext, edgeIndexToNext, cornerIndexAnchor);
+	}
+
+	private ConcurrentHashMap<Integer, RegionEdit> parseRegionEdits(JsonStreamReader reader) throws IOException
+	{
 		ConcurrentHashMap<Integer, RegionEdit> result = new ConcurrentHashMap<>();
-		for (Object obj : array)
+		reader.beginArray();
+		while (reader.hasNext())
 		{
-			JSONObject jsonObj = (JSONObject) obj;
-			Color color = parseColor((String) jsonObj.get("color"));
-			int regionId = (int) (long) jsonObj.get("regionId");
+			Color color = null;
+			int regionId = 0;
+			reader.beginObject();
+			while (reader.hasNext())
+			{
+				String name = reader.nextName();
+				if (name.equals("color"))
+				{
+					color = parseColor(reader.nextString());
+				}
+				else if (name.equals("regionId"))
+				{
+					regionId = reader.nextInt();
+				}
+				else
+				{
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
 			result.put(regionId, new RegionEdit(regionId, color));
 		}
+		reader.endArray();
 
 		return result;
 	}
@@ -2211,33 +2869,43 @@ public class MapSettings implements Serializable
 		return new Stroke(type, width);
 	}
 
-	private Map<Integer, EdgeEdit> parseEdgeEdits(JSONObject editsJson)
+	private Map<Integer, EdgeEdit> parseEdgeEdits(JsonStreamReader reader) throws IOException
 	{
-		if (editsJson == null)
-		{
-			return new TreeMap<>();
-		}
-		JSONArray array = (JSONArray) editsJson.get("edgeEdits");
 		Map<Integer, EdgeEdit> result = new TreeMap<>();
-		if (array == null)
+		if (reader.peek() == JsonStreamReader.Token.Null)
 		{
+			reader.nextNull();
 			return result;
 		}
-		for (Object obj : array)
+		reader.beginArray();
+		while (reader.hasNext())
 		{
-			JSONObject jsonObj = (JSONObject) obj;
 			int riverLevel = 0;
-			if (jsonObj.containsKey("riverLevel"))
+			int index = 0;
+			reader.beginObject();
+			while (reader.hasNext())
 			{
-				riverLevel = (int) (long) jsonObj.get("riverLevel");
+				String name = reader.nextName();
+				if (name.equals("riverLevel"))
+				{
+					riverLevel = reader.nextInt();
+				}
+				else if (name.equals("index"))
+				{
+					index = reader.nextInt();
+				}
+				else
+				{
+					reader.skipValue();
+				}
 			}
-			if (riverLevel <= GraphRiver.RIVERS_THIS_SIZE_OR_SMALLER_WILL_NOT_BE_DRAWN)
+			reader.endObject();
+			if (riverLevel > GraphRiver.RIVERS_THIS_SIZE_OR_SMALLER_WILL_NOT_BE_DRAWN)
 			{
-				continue;
+				result.put(index, new EdgeEdit(index, riverLevel));
 			}
-			int index = (int) (long) jsonObj.get("index");
-			result.put(index, new EdgeEdit(index, riverLevel));
 		}
+		reader.endArray();
 
 		return result;
 	}
@@ -2829,16 +3497,137 @@ public class MapSettings implements Serializable
 	}
 
 	/**
-	 * Creates a deep copy of this, except for the edits object, which will be the same pointer in the copy. Note - This is not thread safe
-	 * because it temporarily changes the edits pointer in this.
+	 * Creates a deep copy of this, except for the edits object, which will be null in the copy.
 	 */
 	public MapSettings deepCopyExceptEdits()
 	{
-		MapEdits editsTemp = edits;
-		edits = null;
-		MapSettings copy = Helper.deepCopy(this);
-		edits = editsTemp;
-		return copy;
+		return new MapSettings(this);
+	}
+
+	/**
+	 * Copies every field except edits, which is left null. This replaced a round trip through Java serialization, which was several
+	 * times slower and ran on every undo point and every read of the settings from the GUI.
+	 *
+	 * Warning when adding fields: Add them here too. MapSettingsCopyTest checks this. Colors, fonts, strokes, and NamedResources are
+	 * immutable, so they are shared rather than copied.
+	 */
+	private MapSettings(MapSettings other)
+	{
+		version = other.version;
+		randomSeed = other.randomSeed;
+		resolution = other.resolution;
+		coastShadingLevel = other.coastShadingLevel;
+		oceanEffectsLevel = other.oceanEffectsLevel;
+		oceanWavesLevel = other.oceanWavesLevel;
+		oceanShadingLevel = other.oceanShadingLevel;
+		concentricWaveCount = other.concentricWaveCount;
+		jitterToConcentricWaves = other.jitterToConcentricWaves;
+		brokenLinesForConcentricWaves = other.brokenLinesForConcentricWaves;
+		fadeConcentricWaves = other.fadeConcentricWaves;
+		oceanWavesType = other.oceanWavesType;
+		drawOceanEffectsInLakes = other.drawOceanEffectsInLakes;
+		worldSize = other.worldSize;
+		riverColor = other.riverColor;
+		roadColor = other.roadColor;
+		coastShadingColor = other.coastShadingColor;
+		oceanEffectsColor = other.oceanEffectsColor;
+		oceanWavesColor = other.oceanWavesColor;
+		oceanShadingColor = other.oceanShadingColor;
+		coastlineColor = other.coastlineColor;
+		coastlineWidth = other.coastlineWidth;
+		centerLandToWaterProbability = other.centerLandToWaterProbability;
+		edgeLandToWaterProbability = other.edgeLandToWaterProbability;
+		landShape = other.landShape;
+		regionCount = other.regionCount;
+		frayedBorder = other.frayedBorder;
+		frayedBorderSize = other.frayedBorderSize;
+		frayedBorderColor = other.frayedBorderColor;
+		frayedBorderBlurLevel = other.frayedBorderBlurLevel;
+		frayedBorderSeed = other.frayedBorderSeed;
+		grungeWidth = other.grungeWidth;
+		drawGrunge = other.drawGrunge;
+		generateBackground = other.generateBackground;
+		generateBackgroundFromTexture = other.generateBackgroundFromTexture;
+		solidColorBackground = other.solidColorBackground;
+		colorizeOcean = other.colorizeOcean;
+		colorizeLand = other.colorizeLand;
+		backgroundTextureSource = other.backgroundTextureSource;
+		backgroundTextureImage = other.backgroundTextureImage;
+		backgroundTextureResource = other.backgroundTextureResource;
+		backgroundRandomSeed = other.backgroundRandomSeed;
+		oceanColor = other.oceanColor;
+		landColor = other.landColor;
+		regionBaseColor = other.regionBaseColor;
+		generatedWidth = other.generatedWidth;
+		generatedHeight = other.generatedHeight;
+		hueRange = other.hueRange;
+		saturationRange = other.saturationRange;
+		brightnessRange = other.brightnessRange;
+		drawText = other.drawText;
+		textRandomSeed = other.textRandomSeed;
+		books = other.books == null ? null : new TreeSet<>(other.books);
+		titleFont = other.titleFont;
+		regionFont = other.regionFont;
+		mountainRangeFont = other.mountainRangeFont;
+		otherMountainsFont = other.otherMountainsFont;
+		citiesFont = other.citiesFont;
+		riverFont = other.riverFont;
+		boldBackgroundColor = other.boldBackgroundColor;
+		textColor = other.textColor;
+		drawBoldBackground = other.drawBoldBackground;
+		drawRegionBoundaries = other.drawRegionBoundaries;
+		regionBoundaryStyle = other.regionBoundaryStyle;
+		regionBoundaryColor = other.regionBoundaryColor;
+		drawRegionColors = other.drawRegionColors;
+		regionsRandomSeed = other.regionsRandomSeed;
+		drawBorder = other.drawBorder;
+		borderType = other.borderType;
+		borderResource = other.borderResource;
+		borderWidth = other.borderWidth;
+		borderPosition = other.borderPosition;
+		borderColorOption = other.borderColorOption;
+		borderColor = other.borderColor;
+		drawRoads = other.drawRoads;
+		cityProbability = other.cityProbability;
+		lineStyle = other.lineStyle;
+		cityIconTypeName = other.cityIconTypeName;
+		pointPrecision = other.pointPrecision;
+		lloydRelaxationsScale = other.lloydRelaxationsScale;
+		imageExportPath = other.imageExportPath;
+		heightmapExportPath = other.heightmapExportPath;
+		heightmapResolution = other.heightmapResolution;
+		customImagesPath = other.customImagesPath;
+		artPack = other.artPack;
+		treeHeightScale = other.treeHeightScale;
+		mountainScale = other.mountainScale;
+		hillScale = other.hillScale;
+		duneScale = other.duneScale;
+		cityScale = other.cityScale;
+		defaultMapExportAction = other.defaultMapExportAction;
+		defaultHeightmapExportAction = other.defaultHeightmapExportAction;
+		roadStyle = other.roadStyle;
+		drawOverlayImage = other.drawOverlayImage;
+		overlayImagePath = other.overlayImagePath;
+		overlayImageTransparency = other.overlayImageTransparency;
+		overlayOffsetResolutionInvariant = other.overlayOffsetResolutionInvariant == null ? null : new Point(other.overlayOffsetResolutionInvariant);
+		overlayScale = other.overlayScale;
+		rightRotationCount = other.rightRotationCount;
+		flipHorizontally = other.flipHorizontally;
+		flipVertically = other.flipVertically;
+		iconFillColorsByType = new ConcurrentHashMap<>(other.iconFillColorsByType);
+		iconFilterColorsByType = new ConcurrentHashMap<>(other.iconFilterColorsByType);
+		maximizeOpacityByType = new ConcurrentHashMap<>(other.maximizeOpacityByType);
+		fillWithColorByType = new ConcurrentHashMap<>(other.fillWithColorByType);
+		drawGridOverlay = other.drawGridOverlay;
+		gridOverlayShape = other.gridOverlayShape;
+		gridOverlayRowOrColCount = other.gridOverlayRowOrColCount;
+		gridOverlayColor = other.gridOverlayColor;
+		gridOverlayXOffset = other.gridOverlayXOffset;
+		gridOverlayYOffset = other.gridOverlayYOffset;
+		gridOverlayLineWidth = other.gridOverlayLineWidth;
+		gridOverlayLayer = other.gridOverlayLayer;
+		drawVoronoiGridOverlayOnlyOnLand = other.drawVoronoiGridOverlayOnlyOnLand;
+		subMapInfo = other.subMapInfo == null ? null : other.subMapInfo.deepCopy();
 	}
 
 	/**
@@ -2861,6 +3650,20 @@ public class MapSettings implements Serializable
 		/** True if icons and rivers were redistributed for the sub-map's detail; false if they were matched to the source detail. */
 		public boolean redistributeIconsAndRivers;
 
+		public SubMapInfo deepCopy()
+		{
+			SubMapInfo copy = new SubMapInfo();
+			copy.originalFileName = originalFileName;
+			copy.selectionX = selectionX;
+			copy.selectionY = selectionY;
+			copy.selectionWidth = selectionWidth;
+			copy.selectionHeight = selectionHeight;
+			copy.worldSize = worldSize;
+			copy.randomSeed = randomSeed;
+			copy.redistributeIconsAndRivers = redistributeIconsAndRivers;
+			return copy;
+		}
+
 		@SuppressWarnings("unchecked")
 		public JSONObject toJson()
 		{
@@ -3189,13 +3992,21 @@ public class MapSettings implements Serializable
 
 	@Override
 	public int hashCode()
+	{
+		return 31 * hashCodeIgnoringEdits() + Objects.hashCode(edits);
+	}
+
+	/**
+	 * Consistent with {@link #fieldsOtherThanEditsEqual(MapSettings)}.
+	 */
+	public int hashCodeIgnoringEdits()
 	{
 		return Objects.hash(artPack, backgroundRandomSeed, backgroundTextureImage, backgroundTextureResource, backgroundTextureSource, boldBackgroundColor, books, borderColor, borderColorOption,
 				borderPosition, borderResource, borderType, borderWidth, brightnessRange, brokenLinesForConcentricWaves, centerLandToWaterProbability, citiesFont, cityIconTypeName, cityProbability,
 				cityScale, coastShadingColor, coastShadingLevel, coastlineColor, coastlineWidth, colorizeLand, colorizeOcean, concentricWaveCount, customImagesPath, defaultDefaultExportAction,
 				defaultHeightmapExportAction, defaultMapExportAction, defaultRoadColor, defaultRoadStyle, defaultRoadWidth, defaultTreeHeightScaleForOldMaps, drawBoldBackground, drawBorder,
 				drawGridOverlay, drawGrunge, drawOceanEffectsInLakes, drawOverlayImage, drawRegionBoundaries, drawRegionColors, drawRoads, drawText, drawVoronoiGridOverlayOnlyOnLand, duneScale,
-				edgeLandToWaterProbability, edits, fadeConcentricWaves, fillWithColorByType, flipHorizontally, flipVertically, frayedBorder, frayedBorderBlurLevel, frayedBorderColor, frayedBorderSeed,
+				edgeLandToWaterProbability, fadeConcentricWaves, fillWithColorByType, flipHorizontally, flipVertically, frayedBorder, frayedBorderBlurLevel, frayedBorderColor, frayedBorderSeed,
 				frayedBorderSize, generateBackground, generateBackgroundFromTexture, generatedHeight, generatedWidth, gridOverlayColor, gridOverlayLayer, gridOverlayLineWidth,
 				gridOverlayRowOrColCount, gridOverlayShape, gridOverlayXOffset, gridOverlayYOffset, grungeWidth, heightmapExportPath, heightmapResolution, hillScale, hueRange, iconFillColorsByType,
 				iconFilterColorsByType, imageExportPath, jitterToConcentricWaves, landColor, landShape, lineStyle, lloydRelaxationsScale, maximizeOpacityByType, mountainRangeFont, mountainScale,
@@ -3221,6 +4032,15 @@ public class MapSettings implements Serializable
 			return false;
 		}
 		MapSettings other = (MapSettings) obj;
+		return fieldsOtherThanEditsEqual(other) && Objects.equals(edits, other.edits);
+	}
+
+	/**
+	 * Like {@link #equals(Object)}, but without comparing edits. Unlike {@link #equalsIgnoringEdits(MapSettings)}, this compares fields
+	 * directly rather than comparing the JSON they would be saved as.
+	 */
+	public boolean fieldsOtherThanEditsEqual(MapSettings other)
+	{
 		return Objects.equals(artPack, other.artPack) && backgroundRandomSeed == other.backgroundRandomSeed && Objects.equals(backgroundTextureImage, other.backgroundTextureImage)
 				&& Objects.equals(backgroundTextureResource, other.backgroundTextureResource) && backgroundTextureSource == other.backgroundTextureSource
 				&& Objects.equals(boldBackgroundColor, other.boldBackgroundColor) && Objects.equals(books, other.books) && Objects.equals(borderColor, other.borderColor)
@@ -3241,7 +4061,7 @@ public class MapSettings implements Serializable
 				&& drawOverlayImage == other.drawOverlayImage && drawRegionBoundaries == other.drawRegionBoundaries && drawRegionColors == other.drawRegionColors && drawRoads == other.drawRoads
 				&& drawText == other.drawText && drawVoronoiGridOverlayOnlyOnLand == other.drawVoronoiGridOverlayOnlyOnLand
 				&& Double.doubleToLongBits(duneScale) == Double.doubleToLongBits(other.duneScale)
-				&& Double.doubleToLongBits(edgeLandToWaterProbability) == Double.doubleToLongBits(other.edgeLandToWaterProbability) && Objects.equals(edits, other.edits)
+				&& Double.doubleToLongBits(edgeLandToWaterProbability) == Double.doubleToLongBits(other.edgeLandToWaterProbability)
 				&& fadeConcentricWaves == other.fadeConcentricWaves && Objects.equals(fillWithColorByType, other.fillWithColorByType) && flipHorizontally == other.flipHorizontally
 				&& flipVertically == other.flipVertically && frayedBorder == other.frayedBorder && frayedBorderBlurLevel == other.frayedBorderBlurLevel
 				&& Objects.equals(frayedBorderColor, other.frayedBorderColor) && frayedBorderSeed == other.frayedBorderSeed && frayedBorderSize == other.frayedBorderSize
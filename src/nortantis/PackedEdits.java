@@ -0,0 +1,634 @@
+package nortantis;
+
+import nortantis.editor.CenterEdit;
+import nortantis.editor.CenterTrees;
+import nortantis.editor.EdgeEdit;
+import nortantis.editor.FreeIcon;
+import nortantis.editor.IconColors;
+import nortantis.editor.River;
+import nortantis.editor.RiverPathNode;
+import nortantis.editor.Road;
+import nortantis.editor.RoadPathNode;
+import nortantis.geom.Point;
+import nortantis.platform.Color;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Packs the large sections of a map's edits (center edits, icons, rivers, roads, and legacy edge edits) into compact strings for .nort
+ * files, as an alternative to writing every record as a JSON object with its keys spelled out.
+ *
+ * Each section is stored by column rather than by record: all the values of one field, then all the values of the next. Numbers are binary,
+ * strings are stored once in a table per column and referred to by index, and the result is deflated and base64 encoded. Columns of similar
+ * values next to each other compress much better than interleaved records.
+ *
+ * Values are written with the same rules as the JSON format, such as colors that equal their default being left out, so that a map reads
+ * back the same whichever way it was saved.
+ */
+class PackedEdits
+{
+	private static final int formatVersion = 1;
+
+	private static final int hasRegionIdFlag = 1;
+	private static final int isWaterFlag = 2;
+	private static final int isLakeFlag = 4;
+	private static final int hasTreesFlag = 8;
+
+	private static final int hasFillColorFlag = 1;
+	private static final int hasFilterColorFlag = 2;
+	private static final int maximizeOpacityFlag = 4;
+	private static final int fillWithColorFlag = 8;
+	private static final int hasColorsFlag = 16;
+
+	private PackedEdits()
+	{
+	}
+
+	static String packCenterEdits(Collection<CenterEdit> centerEdits) throws IOException
+	{
+		List<CenterEdit> edits = new ArrayList<>(centerEdits);
+		List<CenterTrees> trees = new ArrayList<>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = createOutput(bytes))
+		{
+			out.writeInt(edits.size());
+			int previousIndex = 0;
+			for (CenterEdit edit : edits)
+			{
+				// Center edits are usually numbered consecutively, so the deltas are almost all 1.
+				out.writeInt(edit.index - previousIndex);
+				previousIndex = edit.index;
+			}
+			for (CenterEdit edit : edits)
+			{
+				int flags = (edit.regionId != null ? hasRegionIdFlag : 0) | (edit.isWater ? isWaterFlag : 0) | (edit.isLake ? isLakeFlag : 0)
+						| (edit.trees != null ? hasTreesFlag : 0);
+				out.writeByte(flags);
+				if (edit.trees != null)
+				{
+					trees.add(edit.trees);
+				}
+			}
+			for (CenterEdit edit : edits)
+			{
+				if (edit.regionId != null)
+				{
+					out.writeInt(edit.regionId);
+				}
+			}
+
+			writeStrings(out, trees.stream().map(t -> t.artPack).toList());
+			writeStrings(out, trees.stream().map(t -> t.treeType).toList());
+			for (CenterTrees t : trees)
+			{
+				out.writeDouble(t.density);
+			}
+			for (CenterTrees t : trees)
+			{
+				out.writeLong(t.randomSeed);
+			}
+			for (CenterTrees t : trees)
+			{
+				out.writeBoolean(t.isDormant);
+			}
+			writeColors(out, trees.stream().map(t -> t.colors).toList());
+		}
+		return encode(bytes);
+	}
+
+	static ConcurrentHashMap<Integer, CenterEdit> unpackCenterEdits(String packed) throws IOException
+	{
+		try (DataInputStream in = createInput(packed))
+		{
+			int count = in.readInt();
+			int[] indexes = new int[count];
+			int index = 0;
+			for (int i = 0; i < count; i++)
+			{
+				index += in.readInt();
+				indexes[i] = index;
+			}
+			int[] flags = new int[count];
+			int treeCount = 0;
+			for (int i = 0; i < count; i++)
+			{
+				flags[i] = in.readUnsignedByte();
+				if ((flags[i] & hasTreesFlag) != 0)
+				{
+					treeCount++;
+				}
+			}
+			Integer[] regionIds = new Integer[count];
+			for (int i = 0; i < count; i++)
+			{
+				if ((flags[i] & hasRegionIdFlag) != 0)
+				{
+					regionIds[i] = in.readInt();
+				}
+			}
+
+			String[] artPacks = readStrings(in, treeCount);
+			String[] treeTypes = readStrings(in, treeCount);
+			double[] densities = new double[treeCount];
+			for (int i = 0; i < treeCount; i++)
+			{
+				densities[i] = in.readDouble();
+			}
+			long[] randomSeeds = new long[treeCount];
+			for (int i = 0; i < treeCount; i++)
+			{
+				randomSeeds[i] = in.readLong();
+			}
+			boolean[] isDormant = new boolean[treeCount];
+			for (int i = 0; i < treeCount; i++)
+			{
+				isDormant[i] = in.readBoolean();
+			}
+			IconColors[] colors = readColors(in, treeCount);
+
+			ConcurrentHashMap<Integer, CenterEdit> result = new ConcurrentHashMap<>(Math.max(16, count * 2));
+			int treeIndex = 0;
+			for (int i = 0; i < count; i++)
+			{
+				CenterTrees trees = null;
+				if ((flags[i] & hasTreesFlag) != 0)
+				{
+					trees = new CenterTrees(artPacks[treeIndex], treeTypes[treeIndex], densities[treeIndex], randomSeeds[treeIndex], isDormant[treeIndex], colors[treeIndex]);
+					treeIndex++;
+				}
+				result.put(indexes[i], new CenterEdit(indexes[i], (flags[i] & isWaterFlag) != 0, (flags[i] & isLakeFlag) != 0, regionIds[i], null, trees));
+			}
+			return result;
+		}
+	}
+
+	static String packIcons(FreeIconCollection freeIcons) throws IOException
+	{
+		List<FreeIcon> icons = new ArrayList<>();
+		for (FreeIcon icon : freeIcons)
+		{
+			icons.add(icon);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = createOutput(bytes))
+		{
+			out.writeInt(icons.size());
+			writeStrings(out, icons.stream().map(icon -> icon.type.name()).toList());
+			writeStrings(out, icons.stream().map(icon -> icon.artPack).toList());
+			writeStrings(out, icons.stream().map(icon -> icon.groupId).toList());
+			for (FreeIcon icon : icons)
+			{
+				out.writeInt(icon.iconIndex);
+			}
+			writeStrings(out, icons.stream().map(icon -> icon.iconName).toList());
+			for (FreeIcon icon : icons)
+			{
+				out.writeDouble(icon.locationResolutionInvariant.x);
+			}
+			for (FreeIcon icon : icons)
+			{
+				out.writeDouble(icon.locationResolutionInvariant.y);
+			}
+			for (FreeIcon icon : icons)
+			{
+				out.writeDouble(icon.scale);
+			}
+			for (FreeIcon icon : icons)
+			{
+				// -1 for icons not anchored to a center, since center indexes are never negative.
+				out.writeInt(icon.centerIndex == null ? -1 : icon.centerIndex);
+			}
+			for (FreeIcon icon : icons)
+			{
+				out.writeDouble(icon.density);
+			}
+			writeColors(out, icons.stream().map(IconColors::fromIcon).toList());
+			for (FreeIcon icon : icons)
+			{
+				out.writeDouble(icon.originalScale);
+			}
+		}
+		return encode(bytes);
+	}
+
+	static FreeIconCollection unpackIcons(String packed) throws IOException
+	{
+		try (DataInputStream in = createInput(packed))
+		{
+			int count = in.readInt();
+			String[] types = readStrings(in, count);
+			String[] artPacks = readStrings(in, count);
+			String[] groupIds = readStrings(in, count);
+			int[] iconIndexes = new int[count];
+			for (int i = 0; i < count; i++)
+			{
+				iconIndexes[i] = in.readInt();
+			}
+			String[] iconNames = readStrings(in, count);
+			double[] xs = readDoubles(in, count);
+			double[] ys = readDoubles(in, count);
+			double[] scales = readDoubles(in, count);
+			int[] centerIndexes = new int[count];
+			for (int i = 0; i < count; i++)
+			{
+				centerIndexes[i] = in.readInt();
+			}
+			double[] densities = readDoubles(in, count);
+			IconColors[] colors = readColors(in, count);
+			double[] originalScales = readDoubles(in, count);
+
+			FreeIconCollection result = new FreeIconCollection();
+			for (int i = 0; i < count; i++)
+			{
+				result.addOrReplace(new FreeIcon(new Point(xs[i], ys[i]), scales[i], IconType.valueOf(types[i]), artPacks[i], groupIds[i], iconIndexes[i], iconNames[i],
+						centerIndexes[i] < 0 ? null : centerIndexes[i], densities[i], colors[i].fillColor, colors[i].filterColor, colors[i].maximizeOpacity,
+						colors[i].fillWithColor, originalScales[i]));
+			}
+			return result;
+		}
+	}
+
+	static String packRivers(List<River> rivers) throws IOException
+	{
+		// A river needs at least 2 nodes to be a drawable path, so degenerate ones are left out as they are in JSON.
+		List<River> toWrite = rivers == null ? List.of() : rivers.stream().filter(river -> river.nodes != null && river.nodes.size() >= 2).toList();
+		List<RiverPathNode> nodes = new ArrayList<>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = createOutput(bytes))
+		{
+			out.writeInt(toWrite.size());
+			for (River river : toWrite)
+			{
+				List<RiverPathNode> riverNodes = new ArrayList<>(river.nodes);
+				out.writeInt(riverNodes.size());
+				nodes.addAll(riverNodes);
+			}
+			writePoints(out, nodes.stream().map(RiverPathNode::getLoc).toList());
+			for (RiverPathNode node : nodes)
+			{
+				out.writeInt(node.getWidthLevelToNext());
+			}
+			for (RiverPathNode node : nodes)
+			{
+				out.writeLong(node.getSeedToNext());
+			}
+			for (RiverPathNode node : nodes)
+			{
+				out.writeInt(node.getEdgeIndexToNext());
+			}
+			for (RiverPathNode node : nodes)
+			{
+				out.writeInt(node.getCornerIndexAnchor());
+			}
+		}
+		return encode(bytes);
+	}
+
+	static CopyOnWriteArrayList<River> unpackRivers(String packed) throws IOException
+	{
+		try (DataInputStream in = createInput(packed))
+		{
+			int[] nodeCounts = readCounts(in);
+			int nodeCount = sum(nodeCounts);
+			Point[] locations = readPoints(in, nodeCount);
+			int[] widths = new int[nodeCount];
+			for (int i = 0; i < nodeCount; i++)
+			{
+				widths[i] = in.readInt();
+			}
+			long[] seeds = new long[nodeCount];
+			for (int i = 0; i < nodeCount; i++)
+			{
+				seeds[i] = in.readLong();
+			}
+			int[] edgeIndexes = new int[nodeCount];
+			for (int i = 0; i < nodeCount; i++)
+			{
+				edgeIndexes[i] = in.readInt();
+			}
+			int[] cornerIndexes = new int[nodeCount];
+			for (int i = 0; i < nodeCount; i++)
+			{
+				cornerIndexes[i] = in.readInt();
+			}
+
+			List<River> result = new ArrayList<>(nodeCounts.length);
+			int nodeIndex = 0;
+			for (int riverNodeCount : nodeCounts)
+			{
+				List<RiverPathNode> riverNodes = new ArrayList<>(riverNodeCount);
+				for (int i = 0; i < riverNodeCount; i++, nodeIndex++)
+				{
+					riverNodes.add(new RiverPathNode(locations[nodeIndex], widths[nodeIndex], seeds[nodeIndex], edgeIndexes[nodeIndex], cornerIndexes[nodeIndex]));
+				}
+				River river = new River(riverNodes);
+				if (river.nodes.size() >= 2)
+				{
+					result.add(river);
+				}
+			}
+			return new CopyOnWriteArrayList<>(result);
+		}
+	}
+
+	static String packRoads(List<Road> roads) throws IOException
+	{
+		// A road needs at least 2 nodes to be a drawable path, so degenerate ones are left out as they are in JSON.
+		List<Road> toWrite = roads == null ? List.of() : roads.stream().filter(road -> road.nodes != null && road.nodes.size() >= 2).toList();
+		List<Point> locations = new ArrayList<>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = createOutput(bytes))
+		{
+			out.writeInt(toWrite.size());
+			for (Road road : toWrite)
+			{
+				List<RoadPathNode> roadNodes = new ArrayList<>(road.nodes);
+				out.writeInt(roadNodes.size());
+				for (RoadPathNode node : roadNodes)
+				{
+					locations.add(node.getLoc());
+				}
+			}
+			writePoints(out, locations);
+		}
+		return encode(bytes);
+	}
+
+	static CopyOnWriteArrayList<Road> unpackRoads(String packed) throws IOException
+	{
+		try (DataInputStream in = createInput(packed))
+		{
+			int[] nodeCounts = readCounts(in);
+			Point[] locations = readPoints(in, sum(nodeCounts));
+
+			List<Road> result = new ArrayList<>(nodeCounts.length);
+			int nodeIndex = 0;
+			for (int roadNodeCount : nodeCounts)
+			{
+				List<Point> path = new ArrayList<>(roadNodeCount);
+				for (int i = 0; i < roadNodeCount; i++, nodeIndex++)
+				{
+					path.add(locations[nodeIndex]);
+				}
+				Road road = Road.fromLocations(path);
+				if (road.nodes.size() >= 2)
+				{
+					result.add(road);
+				}
+			}
+			return new CopyOnWriteArrayList<>(result);
+		}
+	}
+
+	// EdgeEdit.riverLevel is the deprecated legacy river storage, which is only written until a map's rivers have been converted.
+	@SuppressWarnings("deprecation")
+	static String packEdgeEdits(Collection<EdgeEdit> edgeEdits) throws IOException
+	{
+		List<EdgeEdit> toWrite = edgeEdits.stream().filter(e -> e.riverLevel > GraphRiver.RIVERS_THIS_SIZE_OR_SMALLER_WILL_NOT_BE_DRAWN).toList();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = createOutput(bytes))
+		{
+			out.writeInt(toWrite.size());
+			for (EdgeEdit edit : toWrite)
+			{
+				out.writeInt(edit.index);
+			}
+			for (EdgeEdit edit : toWrite)
+			{
+				out.writeInt(edit.riverLevel);
+			}
+		}
+		return encode(bytes);
+	}
+
+	static Map<Integer, EdgeEdit> unpackEdgeEdits(String packed) throws IOException
+	{
+		try (DataInputStream in = createInput(packed))
+		{
+			int count = in.readInt();
+			int[] indexes = new int[count];
+			for (int i = 0; i < count; i++)
+			{
+				indexes[i] = in.readInt();
+			}
+			Map<Integer, EdgeEdit> result = new TreeMap<>();
+			for (int i = 0; i < count; i++)
+			{
+				result.put(indexes[i], new EdgeEdit(indexes[i], in.readInt()));
+			}
+			return result;
+		}
+	}
+
+	private static DataOutputStream createOutput(ByteArrayOutputStream bytes) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+		out.writeByte(formatVersion);
+		return out;
+	}
+
+	private static String encode(ByteArrayOutputStream bytes)
+	{
+		return Base64.getEncoder().encodeToString(bytes.toByteArray());
+	}
+
+	private static DataInputStream createInput(String packed) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(packed))));
+		int version = in.readUnsignedByte();
+		if (version > formatVersion)
+		{
+			throw new IOException("The map's edits were packed by a newer version of Nortantis, with format version " + version + ".");
+		}
+		return in;
+	}
+
+	/**
+	 * Writes a column of strings, which can contain null, as a table of the distinct values followed by an index into it for each value.
+	 */
+	private static void writeStrings(DataOutputStream out, List<String> values) throws IOException
+	{
+		Map<String, Integer> table = new HashMap<>();
+		List<String> distinct = new ArrayList<>();
+		for (String value : values)
+		{
+			if (value != null && !table.containsKey(value))
+			{
+				table.put(value, distinct.size());
+				distinct.add(value);
+			}
+		}
+
+		out.writeInt(distinct.size());
+		for (String value : distinct)
+		{
+			out.writeUTF(value);
+		}
+		for (String value : values)
+		{
+			// 0 is null.
+			out.writeInt(value == null ? 0 : table.get(value) + 1);
+		}
+	}
+
+	private static String[] readStrings(DataInputStream in, int count) throws IOException
+	{
+		String[] table = new String[in.readInt() + 1];
+		for (int i = 1; i < table.length; i++)
+		{
+			table[i] = in.readUTF();
+		}
+		String[] result = new String[count];
+		for (int i = 0; i < count; i++)
+		{
+			result[i] = table[in.readInt()];
+		}
+		return result;
+	}
+
+	/**
+	 * Writes icon colors, which can be null, leaving out the fill and filter colors when they equal their defaults, as the JSON format does.
+	 */
+	private static void writeColors(DataOutputStream out, List<IconColors> values) throws IOException
+	{
+		List<IconColors> present = new ArrayList<>();
+		for (IconColors colors : values)
+		{
+			int flags = 0;
+			if (colors != null)
+			{
+				present.add(colors);
+				flags |= hasColorsFlag;
+				// A hidden default fill color is left out so that it tracks the default, as in MapSettings.writeIconColors.
+				if (colors.fillColor != null && (colors.fillWithColor || !colors.fillColor.equals(MapSettings.defaultIconFillColor)))
+				{
+					flags |= hasFillColorFlag;
+				}
+				if (colors.filterColor != null && !colors.filterColor.equals(MapSettings.defaultIconFilterColor))
+				{
+					flags |= hasFilterColorFlag;
+				}
+				flags |= (colors.maximizeOpacity ? maximizeOpacityFlag : 0) | (colors.fillWithColor ? fillWithColorFlag : 0);
+			}
+			out.writeByte(flags);
+		}
+		for (IconColors colors : present)
+		{
+			if (colors.fillColor != null && (colors.fillWithColor || !colors.fillColor.equals(MapSettings.defaultIconFillColor)))
+			{
+				out.writeInt(colors.fillColor.getRGB());
+			}
+		}
+		for (IconColors colors : present)
+		{
+			if (colors.filterColor != null && !colors.filterColor.equals(MapSettings.defaultIconFilterColor))
+			{
+				out.writeInt(colors.filterColor.hue);
+				out.writeInt(colors.filterColor.saturation);
+				out.writeInt(colors.filterColor.brightness);
+				out.writeInt(colors.filterColor.transparency);
+			}
+		}
+	}
+
+	private static IconColors[] readColors(DataInputStream in, int count) throws IOException
+	{
+		int[] flags = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			flags[i] = in.readUnsignedByte();
+		}
+		Color[] fillColors = new Color[count];
+		for (int i = 0; i < count; i++)
+		{
+			fillColors[i] = (flags[i] & hasFillColorFlag) != 0 ? Color.create(in.readInt(), true) : MapSettings.defaultIconFillColor;
+		}
+		HSBColor[] filterColors = new HSBColor[count];
+		for (int i = 0; i < count; i++)
+		{
+			filterColors[i] = (flags[i] & hasFilterColorFlag) != 0 ? new HSBColor(in.readInt(), in.readInt(), in.readInt(), in.readInt()) : MapSettings.defaultIconFilterColor;
+		}
+
+		IconColors[] result = new IconColors[count];
+		for (int i = 0; i < count; i++)
+		{
+			if ((flags[i] & hasColorsFlag) != 0)
+			{
+				result[i] = new IconColors(fillColors[i], filterColors[i], (flags[i] & maximizeOpacityFlag) != 0, (flags[i] & fillWithColorFlag) != 0);
+			}
+		}
+		return result;
+	}
+
+	private static void writePoints(DataOutputStream out, List<Point> points) throws IOException
+	{
+		for (Point point : points)
+		{
+			out.writeDouble(point.x);
+		}
+		for (Point point : points)
+		{
+			out.writeDouble(point.y);
+		}
+	}
+
+	private static Point[] readPoints(DataInputStream in, int count) throws IOException
+	{
+		double[] xs = readDoubles(in, count);
+		Point[] result = new Point[count];
+		for (int i = 0; i < count; i++)
+		{
+			result[i] = new Point(xs[i], in.readDouble());
+		}
+		return result;
+	}
+
+	private static double[] readDoubles(DataInputStream in, int count) throws IOException
+	{
+		double[] result = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			result[i] = in.readDouble();
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the number of paths and then the number of nodes in each.
+	 */
+	private static int[] readCounts(DataInputStream in) throws IOException
+	{
+		int[] counts = new int[in.readInt()];
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] = in.readInt();
+		}
+		return counts;
+	}
+
+	private static int sum(int[] values)
+	{
+		int result = 0;
+		for (int value : values)
+		{
+			result += value;
+		}
+		return result;
+	}
+}
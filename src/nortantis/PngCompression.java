@@ -0,0 +1,31 @@
+package nortantis;
+
+import nortantis.swing.translation.Translation;
+
+/**
+ * How hard to compress images written as PNG files. Each setting is faster than the one after it, and writes bigger files.
+ */
+public enum PngCompression
+{
+	/**
+	 * Writes rows uncompressed, without filtering them. Files are about as big as the image is in memory.
+	 */
+	Store_only,
+	/**
+	 * Filters rows, then only Huffman codes them, skipping the search for repeated strings.
+	 */
+	Filter_only,
+	/**
+	 * Filters rows and deflates them at a level that gives most of the size reduction of the highest one in less than half the time.
+	 */
+	Normal,
+	/**
+	 * Filters rows and deflates them at the highest level.
+	 */
+	Smallest;
+
+	public String toString()
+	{
+		return Translation.get("PngCompression." + name());
+	}
+}
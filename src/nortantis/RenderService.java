@@ -0,0 +1,737 @@
+package nortantis;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.swing.translation.Translation;
+import nortantis.util.JsonStreamWriter;
+import nortantis.util.Logger;
+import org.apache.commons.io.FileUtils;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small HTTP service that draws maps, meant to be run on localhost so that other programs can render maps without the editor. It only
+ * listens on the loopback address.
+ *
+ * <ul>
+ * <li>POST /render?resolution=&lt;scale&gt;&amp;format=&lt;png|jpg&gt;&amp;wait=&lt;true|false&gt; with the contents of a .nort file as
+ * the body queues a map to draw. With wait=true, the response is the image once it's drawn. Otherwise it's the job's status, including
+ * its id. A request that waits longer than the wait timeout cancels its job. The server isn't told when a client disconnects, so the
+ * timeout is also what stops maps nobody is waiting for anymore.</li>
+ * <li>GET /jobs/&lt;id&gt; returns a job's status and progress.</li>
+ * <li>GET /jobs/&lt;id&gt;/image returns a finished job's image.</li>
+ * <li>DELETE /jobs/&lt;id&gt; cancels a job, whether it's queued or being drawn.</li>
+ * <li>GET /metrics returns counts of jobs and memory use.</li>
+ * </ul>
+ *
+ * Jobs are drawn in the order they were submitted. A job only starts when fewer than the maximum number of jobs are being drawn and its
+ * estimated memory use (see {@link MapCreator#estimateBytesToDraw}) fits in what the running jobs have left of the memory budget. Jobs that
+ * wouldn't fit in the budget even alone, or that arrive when the queue is full, are rejected rather than queued, as are requests bigger than
+ * the request size limit.
+ */
+public class RenderService
+{
+	public enum JobState
+	{
+		Queued, Running, Succeeded, Failed, Cancelled
+	}
+
+	/**
+	 * Finished jobs are kept so their images can be fetched, up to this many, after which the oldest are deleted.
+	 */
+	private static final int maxFinishedJobsKept = 100;
+	/**
+	 * A single map's drawing already uses every core, so by default maps are drawn one after another.
+	 */
+	static final int defaultMaxConcurrentRenders = 1;
+	static final int defaultMaxRequestBytes = 64 * 1024 * 1024;
+	static final long defaultWaitTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+
+	private static final String usage = String.join(System.lineSeparator(), "Usage: RenderService [options]", "Options:",
+			"  --port <port>            The port to listen on, on localhost. Defaults to 8080.",
+			"  --memory <megabytes>     How much memory maps being drawn at once may be estimated to use. Defaults to 3/4 of the heap.",
+			"  --parallel <count>       The most maps to draw at once. Defaults to " + defaultMaxConcurrentRenders + ".",
+			"  --queue <count>          The most maps to wait in the queue before more are rejected. Defaults to 100.",
+			"  --max-body <megabytes>   The largest map settings a request may send. Defaults to " + toMegabytes(defaultMaxRequestBytes) + ".",
+			"  --wait-timeout <seconds> How long a request with wait=true waits before its map is cancelled. Defaults to "
+					+ TimeUnit.MILLISECONDS.toSeconds(defaultWaitTimeoutMillis) + ".");
+
+	class Job
+	{
+		final long id;
+		final MapSettings settings;
+		final String format;
+		final long estimatedBytes;
+		final long submittedTime = System.nanoTime();
+		final MapCreator mapCreator = new MapCreator();
+		final CountDownLatch finished = new CountDownLatch(1);
+		final Path outputPath;
+		volatile JobState state = JobState.Queued;
+		volatile double progress;
+		volatile String error;
+		volatile long startedTime;
+		volatile long finishedTime;
+
+		Job(long id, MapSettings settings, String format)
+		{
+			this.id = id;
+			this.settings = settings;
+			this.format = format;
+			this.estimatedBytes = MapCreator.estimateBytesToDraw(settings);
+			this.outputPath = outputFolder.resolve(id + "." + format);
+		}
+
+		@SuppressWarnings("unchecked")
+		JSONObject toJson()
+		{
+			JSONObject result = new JSONObject();
+			result.put("id", id);
+			result.put("state", state.toString());
+			result.put("progress", state == JobState.Succeeded ? 1.0 : progress);
+			result.put("estimatedBytes", estimatedBytes);
+			long now = System.nanoTime();
+			result.put("waitMillis", toMillis((startedTime != 0 ? startedTime : (finishedTime != 0 ? finishedTime : now)) - submittedTime));
+			if (startedTime != 0)
+			{
+				result.put("renderMillis", toMillis((finishedTime != 0 ? finishedTime : now) - startedTime));
+			}
+			if (error != null)
+			{
+				result.put("error", error);
+			}
+			if (state == JobState.Succeeded)
+			{
+				result.put("imageUrl", "/jobs/" + id + "/image");
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Thrown when a job can't be accepted. The message says why.
+	 */
+	static class RejectedException extends Exception
+	{
+		private static final long serialVersionUID = 1L;
+		final int httpStatus;
+
+		RejectedException(int httpStatus, String message)
+		{
+			super(message);
+			this.httpStatus = httpStatus;
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService renderThreads;
+	private final ExecutorService requestThreads;
+	private final Path outputFolder;
+	private final long memoryBudgetBytes;
+	private final int maxConcurrentRenders;
+	private final int maxQueuedJobs;
+	/**
+	 * Requests with bodies bigger than this are rejected without being read.
+	 */
+	volatile int maxRequestBytes = defaultMaxRequestBytes;
+	/**
+	 * How long a request with wait=true waits for its map before cancelling it.
+	 */
+	volatile long waitTimeoutMillis = defaultWaitTimeoutMillis;
+
+	// Everything below is guarded by this.
+	private final ArrayDeque<Job> queue = new ArrayDeque<>();
+	private final LinkedHashMap<Long, Job> jobs = new LinkedHashMap<>();
+	private long nextJobId = 1;
+	private int runningCount;
+	private long reservedBytes;
+	private long succeededCount;
+	private long failedCount;
+	private long cancelledCount;
+	private long rejectedCount;
+	private long totalRenderMillis;
+
+	/**
+	 * Creates the service. Call {@link #start()} to start listening.
+	 *
+	 * @param port
+	 *            The port to listen on, or 0 to pick a free one. See {@link #getPort()}.
+	 */
+	public RenderService(int port, long memoryBudgetBytes, int maxConcurrentRenders, int maxQueuedJobs) throws IOException
+	{
+		this.memoryBudgetBytes = memoryBudgetBytes;
+		this.maxConcurrentRenders = maxConcurrentRenders;
+		this.maxQueuedJobs = maxQueuedJobs;
+		outputFolder = Files.createTempDirectory("nortantis render service");
+		renderThreads = Executors.newFixedThreadPool(maxConcurrentRenders, createDaemonThreadFactory("render-service-draw-"));
+		// Requests that wait for their map to be drawn hold their thread for that long, so the request threads aren't bounded.
+		requestThreads = Executors.newCachedThreadPool(createDaemonThreadFactory("render-service-request-"));
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(requestThreads);
+		server.createContext("/", this::handle);
+	}
+
+	private static ThreadFactory createDaemonThreadFactory(String namePrefix)
+	{
+		AtomicInteger threadNumber = new AtomicInteger();
+		return runnable ->
+		{
+			Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	public void start()
+	{
+		server.start();
+		Logger.println("Render service listening on http://localhost:" + getPort());
+	}
+
+	/**
+	 * Stops listening, cancels all jobs, and deletes their images.
+	 */
+	public void stop()
+	{
+		server.stop(0);
+		synchronized (this)
+		{
+			for (Job job : new ArrayList<>(jobs.values()))
+			{
+				cancel(job.id);
+			}
+		}
+		renderThreads.shutdown();
+		requestThreads.shutdown();
+		try
+		{
+			// Let cancelled maps stop before deleting the folder they're being written into.
+			renderThreads.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		try
+		{
+			FileUtils.deleteDirectory(outputFolder.toFile());
+		}
+		catch (IOException e)
+		{
+			Logger.printError("Unable to delete the render service's images in '" + outputFolder + "':", e);
+		}
+	}
+
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Queues a map to be drawn.
+	 *
+	 * @throws RejectedException
+	 *             If the map can't be drawn within the memory budget or the queue is full.
+	 */
+	synchronized Job submit(MapSettings settings, String format) throws RejectedException
+	{
+		Job job = new Job(nextJobId, settings, format);
+		if (job.estimatedBytes > memoryBudgetBytes)
+		{
+			rejectedCount++;
+			throw new RejectedException(413, "The map is estimated to need " + toMegabytes(job.estimatedBytes) + " MB to draw, which is more than the "
+					+ toMegabytes(memoryBudgetBytes) + " MB the service may use. Try a lower resolution.");
+		}
+		if (queue.size() >= maxQueuedJobs)
+		{
+			rejectedCount++;
+			throw new RejectedException(503, "The queue is full. Try again once some of the " + queue.size() + " queued maps have been drawn.");
+		}
+
+		nextJobId++;
+		jobs.put(job.id, job);
+		queue.add(job);
+		job.mapCreator.setProgressListener(progress -> job.progress = progress);
+		// Each map would otherwise decide how much memory it can use assuming it has the whole heap.
+		job.mapCreator.overrideMemoryMode(maxConcurrentRenders > 1 ? true : null);
+		startJobsThatFit();
+		return job;
+	}
+
+	synchronized Job getJob(long id)
+	{
+		return jobs.get(id);
+	}
+
+	/**
+	 * Cancels a job. A queued job is removed from the queue. A job being drawn stops at the next point where its drawing checks for
+	 * cancellation.
+	 *
+	 * @return False if there's no such job.
+	 */
+	synchronized boolean cancel(long id)
+	{
+		Job job = jobs.get(id);
+		if (job == null)
+		{
+			return false;
+		}
+		if (job.state == JobState.Queued)
+		{
+			queue.remove(job);
+			finish(job, JobState.Cancelled, null);
+		}
+		else if (job.state == JobState.Running)
+		{
+			job.mapCreator.cancel();
+		}
+		return true;
+	}
+
+	/**
+	 * Starts queued jobs, in order, for as long as the next one fits. Jobs that would fit aren't started ahead of one that doesn't, so that
+	 * large maps aren't starved by a stream of small ones.
+	 */
+	private synchronized void startJobsThatFit()
+	{
+		while (!queue.isEmpty() && runningCount < maxConcurrentRenders && queue.peek().estimatedBytes <= memoryBudgetBytes - reservedBytes)
+		{
+			Job job = queue.poll();
+			runningCount++;
+			reservedBytes += job.estimatedBytes;
+			job.state = JobState.Running;
+			job.startedTime = System.nanoTime();
+			renderThreads.submit(() -> render(job));
+		}
+	}
+
+	private void render(Job job)
+	{
+		JobState result;
+		String error = null;
+		try
+		{
+			job.mapCreator.createMapAndWrite(job.settings, job.outputPath.toString());
+			result = JobState.Succeeded;
+		}
+		catch (CancelledException e)
+		{
+			result = JobState.Cancelled;
+		}
+		catch (Throwable e)
+		{
+			result = JobState.Failed;
+			error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+			Logger.printError("Error while drawing map for job " + job.id + ":", e);
+		}
+
+		if (result != JobState.Succeeded)
+		{
+			deleteImage(job);
+		}
+		synchronized (this)
+		{
+			runningCount--;
+			reservedBytes -= job.estimatedBytes;
+			finish(job, result, error);
+			startJobsThatFit();
+		}
+	}
+
+	private synchronized void finish(Job job, JobState state, String error)
+	{
+		job.error = error;
+		job.finishedTime = System.nanoTime();
+		job.state = state;
+		if (state == JobState.Succeeded)
+		{
+			succeededCount++;
+			totalRenderMillis += toMillis(job.finishedTime - job.startedTime);
+		}
+		else if (state == JobState.Failed)
+		{
+			failedCount++;
+		}
+		else
+		{
+			cancelledCount++;
+		}
+		job.finished.countDown();
+		forgetOldFinishedJobs();
+	}
+
+	private synchronized void forgetOldFinishedJobs()
+	{
+		int finishedCount = jobs.size() - queue.size() - runningCount;
+		Iterator<Job> iterator = jobs.values().iterator();
+		while (finishedCount > maxFinishedJobsKept && iterator.hasNext())
+		{
+			Job job = iterator.next();
+			if (job.finished.getCount() == 0)
+			{
+				iterator.remove();
+				deleteImage(job);
+				finishedCount--;
+			}
+		}
+	}
+
+	private void deleteImage(Job job)
+	{
+		try
+		{
+			Files.deleteIfExists(job.outputPath);
+		}
+		catch (IOException e)
+		{
+			Logger.printError("Unable to delete '" + job.outputPath + "':", e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	synchronized JSONObject getMetrics()
+	{
+		JSONObject metrics = new JSONObject();
+		metrics.put("queued", queue.size());
+		metrics.put("running", runningCount);
+		metrics.put("succeeded", succeededCount);
+		metrics.put("failed", failedCount);
+		metrics.put("cancelled", cancelledCount);
+		metrics.put("rejected", rejectedCount);
+		metrics.put("averageRenderMillis", succeededCount == 0 ? 0 : totalRenderMillis / succeededCount);
+		metrics.put("maxConcurrentRenders", maxConcurrentRenders);
+		metrics.put("maxQueuedJobs", maxQueuedJobs);
+		metrics.put("memoryBudgetBytes", memoryBudgetBytes);
+		metrics.put("reservedBytes", reservedBytes);
+		Runtime runtime = Runtime.getRuntime();
+		metrics.put("heapUsedBytes", runtime.totalMemory() - runtime.freeMemory());
+		metrics.put("heapMaxBytes", runtime.maxMemory());
+		return metrics;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			String method = exchange.getRequestMethod();
+			String[] pathParts = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+			if (method.equals("POST") && pathParts.length == 1 && pathParts[0].equals("render"))
+			{
+				handleRender(exchange);
+			}
+			else if (method.equals("GET") && pathParts.length == 1 && pathParts[0].equals("metrics"))
+			{
+				sendJson(exchange, 200, getMetrics());
+			}
+			else if (pathParts.length >= 2 && pathParts.length <= 3 && pathParts[0].equals("jobs"))
+			{
+				handleJob(exchange, method, pathParts);
+			}
+			else
+			{
+				sendError(exchange, 404, "Unrecognized request: " + method + " " + exchange.getRequestURI().getPath());
+			}
+		}
+		catch (Exception e)
+		{
+			Logger.printError("Error while handling render service request:", e);
+			sendError(exchange, 500, e.getMessage());
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void handleRender(HttpExchange exchange) throws IOException, InterruptedException
+	{
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		String format = query.getOrDefault("format", "png").toLowerCase();
+		if (!format.equals("png") && !format.equals("jpg"))
+		{
+			sendError(exchange, 400, "Unsupported format '" + format + "'. The supported formats are png and jpg.");
+			return;
+		}
+
+		byte[] body = readRequestBody(exchange);
+		if (body == null)
+		{
+			sendError(exchange, 413, "The map settings are bigger than the " + toMegabytes(maxRequestBytes) + " MB the service accepts.");
+			return;
+		}
+
+		MapSettings settings;
+		try
+		{
+			settings = MapSettings.fromJson(new String(body, StandardCharsets.UTF_8));
+			if (query.containsKey("resolution"))
+			{
+				settings.resolution = Double.parseDouble(query.get("resolution"));
+				if (!(settings.resolution > 0))
+				{
+					sendError(exchange, 400, "The resolution must be greater than 0.");
+					return;
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			sendError(exchange, 400, "Unable to read the map settings: " + e.getMessage());
+			return;
+		}
+
+		Job job;
+		try
+		{
+			job = submit(settings, format);
+		}
+		catch (RejectedException e)
+		{
+			sendError(exchange, e.httpStatus, e.getMessage());
+			return;
+		}
+
+		if (Boolean.parseBoolean(query.get("wait")))
+		{
+			boolean isFinished;
+			try
+			{
+				isFinished = job.finished.await(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				cancel(job.id);
+				throw e;
+			}
+
+			if (!isFinished)
+			{
+				cancel(job.id);
+				JSONObject status = job.toJson();
+				status.put("error", "The map wasn't drawn within " + TimeUnit.MILLISECONDS.toSeconds(waitTimeoutMillis) + " seconds, so it was cancelled.");
+				sendJson(exchange, 504, status);
+				return;
+			}
+			sendImageOrStatus(exchange, job);
+		}
+		else
+		{
+			sendJson(exchange, 202, job.toJson());
+		}
+	}
+
+	/**
+	 * @return The request's body, or null if it's bigger than maxRequestBytes.
+	 */
+	private byte[] readRequestBody(HttpExchange exchange) throws IOException
+	{
+		int limit = maxRequestBytes;
+		String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (contentLength != null)
+		{
+			try
+			{
+				if (Long.parseLong(contentLength.trim()) > limit)
+				{
+					return null;
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				// Chunked or malformed. Count the bytes as they're read instead.
+			}
+		}
+
+		byte[] body = exchange.getRequestBody().readNBytes(limit + 1);
+		return body.length > limit ? null : body;
+	}
+
+	private void handleJob(HttpExchange exchange, String method, String[] pathParts) throws IOException
+	{
+		Job job;
+		try
+		{
+			job = getJob(Long.parseLong(pathParts[1]));
+		}
+		catch (NumberFormatException e)
+		{
+			job = null;
+		}
+		if (job == null)
+		{
+			sendError(exchange, 404, "No job with id " + pathParts[1] + ".");
+			return;
+		}
+
+		if (pathParts.length == 3 && pathParts[2].equals("image") && method.equals("GET"))
+		{
+			sendImageOrStatus(exchange, job);
+		}
+		else if (pathParts.length == 2 && method.equals("GET"))
+		{
+			sendJson(exchange, 200, job.toJson());
+		}
+		else if (pathParts.length == 2 && method.equals("DELETE"))
+		{
+			cancel(job.id);
+			sendJson(exchange, 200, job.toJson());
+		}
+		else
+		{
+			sendError(exchange, 404, "Unrecognized request: " + method + " " + exchange.getRequestURI().getPath());
+		}
+	}
+
+	private void sendImageOrStatus(HttpExchange exchange, Job job) throws IOException
+	{
+		if (job.state != JobState.Succeeded)
+		{
+			// Conflict, since the job isn't in a state that has an image.
+			sendJson(exchange, job.state == JobState.Failed ? 500 : 409, job.toJson());
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", job.format.equals("png") ? "image/png" : "image/jpeg");
+		exchange.sendResponseHeaders(200, Files.size(job.outputPath));
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			Files.copy(job.outputPath, out);
+		}
+	}
+
+	private static void sendJson(HttpExchange exchange, int status, JSONObject json) throws IOException
+	{
+		byte[] body = JsonStreamWriter.toJsonString(json).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(body);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException
+	{
+		JSONObject json = new JSONObject();
+		json.put("error", message);
+		sendJson(exchange, status, json);
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery)
+	{
+		Map<String, String> result = new HashMap<>();
+		if (rawQuery == null)
+		{
+			return result;
+		}
+		for (String pair : rawQuery.split("&"))
+		{
+			int equals = pair.indexOf('=');
+			String key = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			result.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return result;
+	}
+
+	private static long toMillis(long nanos)
+	{
+		return nanos / 1_000_000;
+	}
+
+	private static long toMegabytes(long bytes)
+	{
+		return bytes / (1024 * 1024);
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		System.setProperty("java.awt.headless", "true");
+		PlatformFactory.setInstance(new AwtFactory());
+		Translation.initialize();
+
+		int port = 8080;
+		long memoryBudgetBytes = Runtime.getRuntime().maxMemory() / 4 * 3;
+		int maxConcurrentRenders = defaultMaxConcurrentRenders;
+		int maxQueuedJobs = 100;
+		int maxRequestBytes = defaultMaxRequestBytes;
+		long waitTimeoutMillis = defaultWaitTimeoutMillis;
+		try
+		{
+			for (int i = 0; i < args.length; i += 2)
+			{
+				if (i + 1 >= args.length)
+				{
+					throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+				}
+				String value = args[i + 1];
+				if (args[i].equals("--port"))
+				{
+					port = Integer.parseInt(value);
+				}
+				else if (args[i].equals("--memory"))
+				{
+					memoryBudgetBytes = Long.parseLong(value) * 1024 * 1024;
+				}
+				else if (args[i].equals("--parallel"))
+				{
+					maxConcurrentRenders = Integer.parseInt(value);
+				}
+				else if (args[i].equals("--queue"))
+				{
+					maxQueuedJobs = Integer.parseInt(value);
+				}
+				else if (args[i].equals("--max-body"))
+				{
+					maxRequestBytes = Math.toIntExact(Long.parseLong(value) * 1024 * 1024);
+				}
+				else if (args[i].equals("--wait-timeout"))
+				{
+					waitTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unrecognized option " + args[i] + ".");
+				}
+			}
+			if (maxConcurrentRenders < 1 || maxQueuedJobs < 0 || memoryBudgetBytes <= 0 || maxRequestBytes <= 0 || waitTimeoutMillis <= 0)
+			{
+				throw new IllegalArgumentException("--memory, --parallel, --max-body, and --wait-timeout must be positive, and --queue must not be negative.");
+			}
+		}
+		catch (IllegalArgumentException | ArithmeticException e)
+		{
+			// NumberFormatException is an IllegalArgumentException. ArithmeticException is from a --max-body too big for an int.
+			System.err.println(e.getMessage());
+			System.err.println(usage);
+			System.exit(2);
+		}
+
+		RenderService service = new RenderService(port, memoryBudgetBytes, maxConcurrentRenders, maxQueuedJobs);
+		service.maxRequestBytes = maxRequestBytes;
+		service.waitTimeoutMillis = waitTimeoutMillis;
+		service.start();
+	}
+}
@@ -1,6 +1,7 @@
 package nortantis;
 
 import nortantis.editor.Road;
+import nortantis.editor.RoadGeometry;
 import nortantis.editor.RoadPathNode;
 import nortantis.geom.IntPoint;
 import nortantis.geom.Point;
@@ -70,18 +71,13 @@ public class RoadDrawer
 	private final double existingRoadWeight = 0.3;
 
 	private final int numberOfRandomRoadsToPerCity = 3;
-	/**
-	 * Distance between sampled points when checking whether a road overlaps a draw bounds rectangle. Coarser than the drawing resolution
-	 * but fine enough to detect curves that bulge into the bounds.
-	 */
-	private static final double boundsCheckDistanceBetweenPoints = 20.0;
-
 	private WorldGraph graph;
 	private Random rand;
 	private CopyOnWriteArrayList<Road> roads;
 	private double resolutionScale;
 	private Color roadColor;
 	private Stroke roadStyle;
+	private RoadSpatialIndex roadIndex;
 
 	public RoadDrawer(Random rand, MapSettings settings, WorldGraph graph)
 	{
@@ -108,6 +104,7 @@ public class RoadDrawer
 		{
 			roads = new CopyOnWriteArrayList<>();
 		}
+		roadIndex = settings.edits != null ? settings.edits.getRoadIndex() : new RoadSpatialIndex();
 		resolutionScale = settings.resolution;
 		this.roadColor = settings.roadColor;
 		this.roadStyle = settings.roadStyle;
@@ -617,46 +614,31 @@ public class RoadDrawer
 				p.translate(-drawBounds.x, -drawBounds.y);
 			}
 
-			Rectangle drawBoundsResolutionInvariant = drawBounds == null ? null
-					: new Rectangle(drawBounds.x * (1.0 / resolutionScale), drawBounds.y * (1.0 / resolutionScale), drawBounds.width * (1.0 / resolutionScale),
-							drawBounds.height * (1.0 / resolutionScale));
-			for (Road road : roads)
+			List<Road> roadsToDraw;
+			if (drawBounds == null)
 			{
-				List<RoadPathNode> nodes = road.nodes;
-				if (nodes.size() < 2)
-				{
-					continue;
-				}
-				if (drawBoundsResolutionInvariant == null || roadOverlapsRectangle(nodes, drawBoundsResolutionInvariant))
-				{
-					p.setColor(roadColor);
-					p.setStroke(roadStyle, resolutionScale);
-					List<Point> locations = PathOperations.toLocationList(nodes);
-					List<Point> path = CurveCreator.createCurve(locations);
-					List<IntPoint> pathScaled = path.stream().map(point -> point.mult(resolutionScale).toIntPoint()).toList();
-					p.drawPolyline(pathScaled);
-				}
+				roadsToDraw = roads;
+			}
+			else
+			{
+				Rectangle drawBoundsResolutionInvariant = new Rectangle(drawBounds.x * (1.0 / resolutionScale), drawBounds.y * (1.0 / resolutionScale),
+						drawBounds.width * (1.0 / resolutionScale), drawBounds.height * (1.0 / resolutionScale));
+				roadsToDraw = roadIndex.findRoadsOverlapping(roads, drawBoundsResolutionInvariant);
 			}
-		}
-	}
 
-	private boolean roadOverlapsRectangle(List<RoadPathNode> nodes, Rectangle bounds)
-	{
-		// Sample the actual curve at a coarser resolution than drawing uses so that curves which bulge into the
-		// bounds are detected even when no control point lies inside it.
-		List<Point> locations = PathOperations.toLocationList(nodes);
-		List<Point> curve = CurveCreator.createCurve(locations, boundsCheckDistanceBetweenPoints);
-		for (int i = 0; i < curve.size() - 1; i++)
-		{
-			Point p1 = curve.get(i);
-			Point p2 = curve.get(i + 1);
-			Rectangle segmentBounds = Rectangle.fromCorners(Math.min(p1.x, p2.x), Math.min(p1.y, p2.y), Math.max(p1.x, p2.x), Math.max(p1.y, p2.y));
-			if (bounds.overlaps(segmentBounds))
+			for (Road road : roadsToDraw)
 			{
-				return true;
+				RoadGeometry geometry = road.getGeometry();
+				if (!geometry.isDrawable())
+				{
+					continue;
+				}
+				p.setColor(roadColor);
+				p.setStroke(roadStyle, resolutionScale);
+				List<IntPoint> pathScaled = geometry.curve.stream().map(point -> point.mult(resolutionScale).toIntPoint()).toList();
+				p.drawPolyline(pathScaled);
 			}
 		}
-		return false;
 	}
 
 	public void drawRoadDebugInfo(Image map)
@@ -0,0 +1,203 @@
+package nortantis;
+
+import nortantis.editor.Road;
+import nortantis.editor.RoadGeometry;
+import nortantis.geom.Point;
+import nortantis.geom.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A uniform-grid spatial index over road segments, in resolution-invariant coordinates, so incremental draws can find the roads that
+ * overlap their draw bounds without sampling the curve of every road on the map.
+ *
+ * The index does not need to be told about edits. Road edits (e.g. {@link RoadDrawer#addRoadsFromEdgesInEditor},
+ * {@link RoadDrawer#removeSegmentsAndSplitRoads}, and {@link RoadDrawer#mergeAdjacentRoads}) either add or remove roads from the list or
+ * swap a road's {@link Road#nodes}, which gives the road a new {@link RoadGeometry}. {@link #sync(List)} compares both by identity, which
+ * is cheap, and re-indexes only the roads that changed.
+ *
+ * Thread safe. The editor keeps one instance per {@link nortantis.swing.MapEdits} so it survives across draws.
+ */
+public class RoadSpatialIndex
+{
+	/**
+	 * Side length of a grid cell in resolution-invariant pixels. Large enough that a typical road touches only a few cells, small enough
+	 * that a brush stroke's draw bounds only pulls in nearby roads.
+	 */
+	private static final double cellSize = 128.0;
+
+	private final Map<Road, IndexedRoad> indexed = new IdentityHashMap<>();
+	private final Map<Long, Set<Road>> cells = new HashMap<>();
+
+	private static class IndexedRoad
+	{
+		final RoadGeometry geometry;
+		final long[] cellKeys;
+
+		IndexedRoad(RoadGeometry geometry, long[] cellKeys)
+		{
+			this.geometry = geometry;
+			this.cellKeys = cellKeys;
+		}
+	}
+
+	/**
+	 * Returns the roads in {@code roads} that overlap {@code boundsRI}, in the same order they appear in {@code roads} so that drawing order
+	 * is unchanged from drawing every road.
+	 */
+	public synchronized List<Road> findRoadsOverlapping(List<Road> roads, Rectangle boundsRI)
+	{
+		// Snapshot once so the sync and the ordering pass see the same list even if the editor changes it meanwhile.
+		List<Road> snapshot = new ArrayList<>(roads);
+		sync(snapshot);
+
+		Set<Road> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+		int minCellX = toCell(boundsRI.x);
+		int minCellY = toCell(boundsRI.y);
+		int maxCellX = toCell(boundsRI.getRight());
+		int maxCellY = toCell(boundsRI.getBottom());
+		for (int cy = minCellY; cy <= maxCellY; cy++)
+		{
+			for (int cx = minCellX; cx <= maxCellX; cx++)
+			{
+				Set<Road> inCell = cells.get(cellKey(cx, cy));
+				if (inCell != null)
+				{
+					candidates.addAll(inCell);
+				}
+			}
+		}
+
+		List<Road> result = new ArrayList<>();
+		if (candidates.isEmpty())
+		{
+			return result;
+		}
+		for (Road road : snapshot)
+		{
+			if (candidates.contains(road) && indexed.get(road).geometry.overlaps(boundsRI))
+			{
+				result.add(road);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Brings the index up to date with {@code roads}, re-indexing roads whose nodes have been reassigned, indexing new roads, and dropping
+	 * roads that are no longer in the list.
+	 */
+	public synchronized void sync(List<Road> roads)
+	{
+		Set<Road> present = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Road road : roads)
+		{
+			present.add(road);
+			RoadGeometry geometry = road.getGeometry();
+			IndexedRoad existing = indexed.get(road);
+			if (existing != null && existing.geometry == geometry)
+			{
+				continue;
+			}
+
+			if (existing != null)
+			{
+				removeFromCells(road, existing);
+			}
+			indexed.put(road, addToCells(road, geometry));
+		}
+
+		if (indexed.size() > present.size())
+		{
+			List<Road> removed = new ArrayList<>();
+			for (Road road : indexed.keySet())
+			{
+				if (!present.contains(road))
+				{
+					removed.add(road);
+				}
+			}
+			for (Road road : removed)
+			{
+				removeFromCells(road, indexed.remove(road));
+			}
+		}
+	}
+
+	/**
+	 * The number of roads currently indexed. For testing.
+	 */
+	synchronized int size()
+	{
+		return indexed.size();
+	}
+
+	private IndexedRoad addToCells(Road road, RoadGeometry geometry)
+	{
+		if (!geometry.isDrawable())
+		{
+			return new IndexedRoad(geometry, new long[0]);
+		}
+
+		Set<Long> keys = new LinkedHashSet<>();
+		List<Point> curve = geometry.coarseCurve;
+		for (int i = 0; i < curve.size() - 1; i++)
+		{
+			Point p1 = curve.get(i);
+			Point p2 = curve.get(i + 1);
+			int minCellX = toCell(Math.min(p1.x, p2.x));
+			int minCellY = toCell(Math.min(p1.y, p2.y));
+			int maxCellX = toCell(Math.max(p1.x, p2.x));
+			int maxCellY = toCell(Math.max(p1.y, p2.y));
+			for (int cy = minCellY; cy <= maxCellY; cy++)
+			{
+				for (int cx = minCellX; cx <= maxCellX; cx++)
+				{
+					keys.add(cellKey(cx, cy));
+				}
+			}
+		}
+
+		long[] cellKeys = new long[keys.size()];
+		int i = 0;
+		for (long key : keys)
+		{
+			cellKeys[i++] = key;
+			cells.computeIfAbsent(key, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(road);
+		}
+		return new IndexedRoad(geometry, cellKeys);
+	}
+
+	private void removeFromCells(Road road, IndexedRoad entry)
+	{
+		for (long key : entry.cellKeys)
+		{
+			Set<Road> inCell = cells.get(key);
+			if (inCell != null)
+			{
+				inCell.remove(road);
+				if (inCell.isEmpty())
+				{
+					cells.remove(key);
+				}
+			}
+		}
+	}
+
+	private static int toCell(double coordinate)
+	{
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static long cellKey(int cellX, int cellY)
+	{
+		return (((long) cellX) << 32) | (cellY & 0xffffffffL);
+	}
+}
@@ -0,0 +1,174 @@
+package nortantis;
+
+import nortantis.editor.CenterEdit;
+import nortantis.editor.FreeIcon;
+import nortantis.editor.RegionEdit;
+import nortantis.swing.MapEdits;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Hashes of each section of a MapSettings, so that settings that are being edited can be compared against a copy that doesn't change, such
+ * as the last saved settings, by comparing a few hashes. The fingerprint of settings that are changing is kept up to date with
+ * {@link #update} as edits happen, which rehashes only the sections that changed, so checking for changes doesn't go through every text,
+ * center edit, icon, road, and river.
+ *
+ * A section whose hash differs has certainly changed. Matching hashes mean the section almost certainly didn't, so callers that must be
+ * sure, such as the prompt to save before closing a map, should compare the settings with {@link MapSettings#equals(Object)} instead.
+ * Sections follow {@link MapSettings#equals(Object)}, so settings that are equal have matching fingerprints.
+ */
+public class SettingsFingerprint
+{
+	/**
+	 * In the order they are checked, which is roughly cheapest first.
+	 */
+	public enum Section
+	{
+		Theme, EditFlags, RegionEdits, Roads, Rivers, CenterEdits, Icons, Text
+	}
+
+	private final EnumMap<Section, Integer> hashes = new EnumMap<>(Section.class);
+
+	public SettingsFingerprint(MapSettings settings)
+	{
+		this(settings, settings.edits);
+	}
+
+	/**
+	 * @param settingsIgnoringEdits
+	 *            Settings whose edits are ignored, in favor of edits.
+	 */
+	public SettingsFingerprint(MapSettings settingsIgnoringEdits, MapEdits edits)
+	{
+		update(settingsIgnoringEdits, edits, EnumSet.allOf(Section.class));
+	}
+
+	/**
+	 * Rehashes the given sections, for keeping the fingerprint of settings up to date as they change.
+	 *
+	 * @param settingsIgnoringEdits
+	 *            Settings whose edits are ignored, in favor of edits.
+	 * @param changedSections
+	 *            The sections that may have changed since this fingerprint was created or last updated.
+	 */
+	public void update(MapSettings settingsIgnoringEdits, MapEdits edits, Collection<Section> changedSections)
+	{
+		for (Section section : changedSections)
+		{
+			hashes.put(section, hashSection(settingsIgnoringEdits, edits, section));
+		}
+	}
+
+	/**
+	 * @return Whether every section's hash matches the other fingerprint's.
+	 */
+	public boolean matches(SettingsFingerprint other)
+	{
+		return hashes.equals(other.hashes);
+	}
+
+	/**
+	 * @return The sections whose hashes differ from the other fingerprint's.
+	 */
+	public EnumSet<Section> findChangedSections(SettingsFingerprint other)
+	{
+		EnumSet<Section> changed = EnumSet.noneOf(Section.class);
+		for (Section section : Section.values())
+		{
+			if (!hashes.get(section).equals(other.hashes.get(section)))
+			{
+				changed.add(section);
+			}
+		}
+		return changed;
+	}
+
+	public static int hashSection(MapSettings settings, Section section)
+	{
+		return hashSection(settings, settings.edits, section);
+	}
+
+	private static int hashSection(MapSettings settingsIgnoringEdits, MapEdits edits, Section section)
+	{
+		if (section == Section.Theme)
+		{
+			return settingsIgnoringEdits.hashCodeIgnoringEdits();
+		}
+
+		if (edits == null)
+		{
+			return 0;
+		}
+		if (section == Section.EditFlags)
+		{
+			return Objects.hash(edits.bakeGeneratedTextAsEdits, edits.hasIconEdits, edits.hasInitializedRivers);
+		}
+		if (section == Section.RegionEdits)
+		{
+			// RegionEdit and CenterEdit hash only their ids, which cancel out with the keys they're stored under in their maps' hashes, so
+			// those hashes would always be 0.
+			int hash = 0;
+			for (RegionEdit edit : edits.regionEdits.values())
+			{
+				hash += mix(Objects.hash(edit.regionId, edit.color));
+			}
+			return hash;
+		}
+		if (section == Section.Roads)
+		{
+			return edits.roads.hashCode();
+		}
+		if (section == Section.Rivers)
+		{
+			return edits.rivers.hashCode();
+		}
+		if (section == Section.CenterEdits)
+		{
+			int hash = 0;
+			for (CenterEdit edit : edits.centerEdits.values())
+			{
+				hash += mix(Objects.hash(edit.index, edit.isWater, edit.isLake, edit.regionId, edit.icon, edit.trees));
+			}
+			return hash;
+		}
+		if (section == Section.Icons)
+		{
+			// Icon lists are compared ignoring order and duplicates, so each distinct icon is counted once.
+			Set<FreeIcon> icons = new HashSet<>();
+			int hash = 0;
+			for (FreeIcon icon : edits.freeIcons)
+			{
+				if (icons.add(icon))
+				{
+					hash += mix(icon.hashCode());
+				}
+			}
+			return hash;
+		}
+		if (section == Section.Text)
+		{
+			return edits.text.hashCode();
+		}
+		throw new IllegalArgumentException("Unrecognized section: " + section);
+	}
+
+	/**
+	 * Scrambles the hash of one entry of an unordered collection before it's summed with the others. Objects.hash is linear in each field,
+	 * so without this, swapping a field's values between two entries, such as the regions of two centers, wouldn't change the sum.
+	 */
+	private static int mix(int hash)
+	{
+		// The finalizer from MurmurHash3.
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+}
@@ -1,6 +1,7 @@
 package nortantis;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 @SuppressWarnings("serial")
 public class Stroke implements Serializable
@@ -14,6 +15,12 @@ public class Stroke implements Serializable
 		this.width = width;
 	}
 
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(type, width);
+	}
+
 	@Override
 	public boolean equals(Object obj)
 	{
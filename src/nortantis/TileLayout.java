@@ -0,0 +1,25 @@
+package nortantis;
+
+import nortantis.swing.translation.Translation;
+
+/**
+ * How {@link TilePyramidWriter} names and sizes the tiles it writes.
+ */
+public enum TileLayout
+{
+	/**
+	 * Slippy map tiles in {z}/{x}/{y}.png, as read by Leaflet and OpenLayers. Zoom 0 is one tile, and tiles at the right and bottom edges of
+	 * the map are padded with transparency to the full tile size.
+	 */
+	XYZ,
+	/**
+	 * Microsoft Deep Zoom, as read by OpenSeadragon: a .dzi descriptor next to a _files folder of {level}/{column}_{row}.png tiles, with
+	 * level 0 being a single pixel. Edge tiles are cropped to the map.
+	 */
+	Deep_zoom;
+
+	public String toString()
+	{
+		return Translation.get("TileLayout." + name());
+	}
+}
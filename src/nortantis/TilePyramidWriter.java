@@ -0,0 +1,279 @@
+package nortantis;
+
+import nortantis.editor.MipmapPyramid;
+import nortantis.geom.IntRectangle;
+import nortantis.platform.Image;
+import nortantis.platform.ImageType;
+import nortantis.platform.PixelReader;
+import nortantis.platform.PixelReaderWriter;
+import nortantis.util.Logger;
+import nortantis.util.ThreadHelper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes a map as a pyramid of tiles for web map viewers. The full map is the most zoomed in level, and each level below it is box filtered
+ * down from the one above it, one tile area at a time, with the tiles of each level downsampled, hashed, and encoded in parallel.
+ *
+ * A hash of every tile's pixels is stored in the output folder, so that writing an edited map to the same folder only encodes the tiles
+ * whose pixels changed, and deletes tiles the map no longer covers.
+ */
+public class TilePyramidWriter
+{
+	public static final int tileSize = 256;
+	static final String hashesFileName = "tile hashes.txt";
+	/**
+	 * Deep Zoom viewers find the tiles folder from the name of the descriptor, so both are given this name.
+	 */
+	static final String deepZoomName = "map";
+
+	private final TileLayout layout;
+
+	public TilePyramidWriter(TileLayout layout)
+	{
+		this.layout = layout;
+	}
+
+	/**
+	 * Writes the tiles of map into folderPath, creating it if it doesn't exist.
+	 *
+	 * @return The number of tiles encoded. Tiles that are unchanged since map was last written to the same folder are not counted.
+	 */
+	public int write(Image map, String folderPath) throws IOException
+	{
+		Path folder = Paths.get(folderPath);
+		Files.createDirectories(folder);
+		Path hashesFile = folder.resolve(hashesFileName);
+		Map<String, Long> previousHashes = readHashes(hashesFile);
+		Map<String, Long> hashes = new ConcurrentHashMap<>();
+		AtomicInteger tilesEncoded = new AtomicInteger();
+
+		int levelCount = countLevels(map.getWidth(), map.getHeight());
+		Image level = map;
+		try
+		{
+			for (int levelNumber = levelCount - 1; levelNumber >= 0; levelNumber--)
+			{
+				Image source = level;
+				try
+				{
+					if (levelNumber < levelCount - 1)
+					{
+						level = Image.create((source.getWidth() + 1) / 2, (source.getHeight() + 1) / 2, source.getType());
+					}
+					Image levelFinal = level;
+					boolean needsDownsampling = level != source;
+
+					List<IntRectangle> tileBounds = new ArrayList<>();
+					int columns = (level.getWidth() + tileSize - 1) / tileSize;
+					int rows = (level.getHeight() + tileSize - 1) / tileSize;
+					for (int column = 0; column < columns; column++)
+					{
+						Files.createDirectories(folder.resolve(getTileRelativePath(levelNumber, column, 0)).getParent());
+						for (int row = 0; row < rows; row++)
+						{
+							tileBounds.add(new IntRectangle(column * tileSize, row * tileSize, Math.min(tileSize, level.getWidth() - column * tileSize),
+									Math.min(tileSize, level.getHeight() - row * tileSize)));
+						}
+					}
+
+					int levelNumberFinal = levelNumber;
+					AtomicInteger nextTile = new AtomicInteger();
+					List<Runnable> jobs = new ArrayList<>();
+					for (int i = 0; i < Math.min(ThreadHelper.getInstance().getThreadCount(), tileBounds.size()); i++)
+					{
+						jobs.add(() ->
+						{
+							for (int tileIndex = nextTile.getAndIncrement(); tileIndex < tileBounds.size(); tileIndex = nextTile.getAndIncrement())
+							{
+								IntRectangle bounds = tileBounds.get(tileIndex);
+								if (needsDownsampling)
+								{
+									MipmapPyramid.downsample(source, levelFinal, bounds);
+								}
+
+								String relativePath = getTileRelativePath(levelNumberFinal, bounds.x / tileSize, bounds.y / tileSize);
+								long hash = hashPixels(levelFinal, bounds);
+								hashes.put(relativePath, hash);
+								Path tilePath = folder.resolve(relativePath);
+								Long previousHash = previousHashes.get(relativePath);
+								if (previousHash != null && previousHash == hash && Files.exists(tilePath))
+								{
+									continue;
+								}
+
+								Image tile = createTile(levelFinal, bounds);
+								tile.write(tilePath.toString());
+								tile.close();
+								tilesEncoded.incrementAndGet();
+							}
+						});
+					}
+					// The cached thread pool, because the PNG encoder submits jobs of its own.
+					ThreadHelper.getInstance().processInParallel(jobs, false);
+				}
+				finally
+				{
+					// If creating this level failed, level is still source, and the finally below closes it.
+					if (source != map && source != level)
+					{
+						source.close();
+					}
+				}
+			}
+		}
+		finally
+		{
+			if (level != map)
+			{
+				level.close();
+			}
+		}
+
+		for (String relativePath : previousHashes.keySet())
+		{
+			if (!hashes.containsKey(relativePath))
+			{
+				Files.deleteIfExists(folder.resolve(relativePath));
+			}
+		}
+
+		if (layout == TileLayout.Deep_zoom)
+		{
+			writeDeepZoomDescriptor(folder, map.getWidth(), map.getHeight());
+		}
+		writeHashes(hashesFile, hashes);
+
+		Logger.println("Wrote " + tilesEncoded.get() + " of " + hashes.size() + " map tiles. The rest were unchanged.");
+		return tilesEncoded.get();
+	}
+
+	/**
+	 * @return How many levels the pyramid for a map of the given size has. XYZ stops at the first level that fits in one tile, while Deep
+	 *         Zoom goes all the way down to one pixel.
+	 */
+	int countLevels(int width, int height)
+	{
+		int smallestSize = layout == TileLayout.XYZ ? tileSize : 1;
+		int size = Math.max(width, height);
+		int levelCount = 1;
+		while (size > smallestSize)
+		{
+			size = (size + 1) / 2;
+			levelCount++;
+		}
+		return levelCount;
+	}
+
+	/**
+	 * @return The path of a tile relative to the output folder, with forward slashes so that the hashes file is the same on every platform.
+	 */
+	String getTileRelativePath(int levelNumber, int column, int row)
+	{
+		if (layout == TileLayout.XYZ)
+		{
+			return levelNumber + "/" + column + "/" + row + ".png";
+		}
+		return deepZoomName + "_files/" + levelNumber + "/" + column + "_" + row + ".png";
+	}
+
+	private Image createTile(Image level, IntRectangle bounds)
+	{
+		if (layout == TileLayout.Deep_zoom || (bounds.width == tileSize && bounds.height == tileSize))
+		{
+			return level.copySubImage(bounds);
+		}
+
+		// XYZ viewers expect every tile to be full size, so pad edge tiles with transparency.
+		Image tile = Image.create(tileSize, tileSize, ImageType.ARGB);
+		try (PixelReader levelPixels = level.createPixelReader(bounds); PixelReaderWriter tilePixels = tile.createPixelReaderWriter())
+		{
+			for (int y = 0; y < bounds.height; y++)
+			{
+				for (int x = 0; x < bounds.width; x++)
+				{
+					tilePixels.setRGB(x, y, levelPixels.getRGB(bounds.x + x, bounds.y + y));
+				}
+			}
+		}
+		return tile;
+	}
+
+	private static long hashPixels(Image image, IntRectangle bounds)
+	{
+		// 64-bit FNV-1a over the bounds, the image type, and each pixel.
+		long hash = 0xcbf29ce484222325L;
+		hash = (hash ^ bounds.width) * 0x100000001b3L;
+		hash = (hash ^ bounds.height) * 0x100000001b3L;
+		hash = (hash ^ image.getType().ordinal()) * 0x100000001b3L;
+		try (PixelReader pixels = image.createPixelReader(bounds))
+		{
+			for (int y = bounds.y; y < bounds.y + bounds.height; y++)
+			{
+				for (int x = bounds.x; x < bounds.x + bounds.width; x++)
+				{
+					hash = (hash ^ pixels.getRGB(x, y)) * 0x100000001b3L;
+				}
+			}
+		}
+		return hash;
+	}
+
+	private static void writeDeepZoomDescriptor(Path folder, int width, int height) throws IOException
+	{
+		String descriptor = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\" TileSize=\""
+				+ tileSize + "\">\n" + "\t<Size Width=\"" + width + "\" Height=\"" + height + "\"/>\n" + "</Image>\n";
+		Files.write(folder.resolve(deepZoomName + ".dzi"), descriptor.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Map<String, Long> readHashes(Path hashesFile) throws IOException
+	{
+		Map<String, Long> hashes = new HashMap<>();
+		if (!Files.exists(hashesFile))
+		{
+			return hashes;
+		}
+
+		for (String line : Files.readAllLines(hashesFile, StandardCharsets.UTF_8))
+		{
+			int separator = line.lastIndexOf(' ');
+			if (separator <= 0)
+			{
+				continue;
+			}
+			try
+			{
+				hashes.put(line.substring(0, separator), Long.parseUnsignedLong(line.substring(separator + 1), 16));
+			}
+			catch (NumberFormatException e)
+			{
+				// A damaged line only means that tile is encoded again.
+			}
+		}
+		return hashes;
+	}
+
+	private static void writeHashes(Path hashesFile, Map<String, Long> hashes) throws IOException
+	{
+		try (BufferedWriter writer = Files.newBufferedWriter(hashesFile, StandardCharsets.UTF_8))
+		{
+			for (Map.Entry<String, Long> entry : new TreeMap<>(hashes).entrySet())
+			{
+				writer.write(entry.getKey() + " " + Long.toHexString(entry.getValue()));
+				writer.newLine();
+			}
+		}
+	}
+}
@@ -58,6 +58,7 @@ public class WorldGraph extends VoronoiGraph
 	public Map<Integer, Region> regions;
 	LandShape landShape;
 	int regionCount;
+	private int nextTectonicPlateId;
 
 	public WorldGraph(Voronoi v, double lloydRelaxationsScale, Random r, double nonBorderPlateContinentalProbability, double borderPlateContinentalProbability, double sizeMultiplier,
 			LineStyle lineStyle, double pointPrecision, boolean createElevationBiomesLakesAndRegions, boolean areRegionBoundariesVisible, LandShape landShape, int regionCount)
@@ -67,7 +68,6 @@ public class WorldGraph extends VoronoiGraph
 		this.borderPlateContinentalProbability = borderPlateContinentalProbability;
 		this.landShape = landShape;
 		this.regionCount = regionCount;
-		TectonicPlate.resetIds();
 		initVoronoiGraph(v, numLloydRelaxations, lloydRelaxationsScale, createElevationBiomesLakesAndRegions);
 		regions = new TreeMap<>();
 
@@ -2239,7 +2239,7 @@ public class WorldGraph extends VoronoiGraph
 		for (int i = 0; i < totalPlates; i++)
 		{
 			double growthWeight = 0.3 + rand.nextDouble() * 0.6;
-			TectonicPlate plate = new TectonicPlate(growthWeight);
+			TectonicPlate plate = new TectonicPlate(nextTectonicPlateId++, growthWeight);
 			plate.type = isContinental[i] ? PlateType.Continental : PlateType.Oceanic;
 			plateList.add(plate);
 		}
@@ -2379,7 +2379,7 @@ public class WorldGraph extends VoronoiGraph
 		BetaDistribution betaDist = new BetaDistribution(randomData, 1, 3, BetaDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
 		for (Center c : centers)
 		{
-			c.tectonicPlate = new TectonicPlate(betaDist.sample());
+			c.tectonicPlate = new TectonicPlate(nextTectonicPlateId++, betaDist.sample());
 			plateCounts.put(c.tectonicPlate, 1);
 		}
 
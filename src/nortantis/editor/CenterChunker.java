@@ -0,0 +1,211 @@
+package nortantis.editor;
+
+import nortantis.graph.voronoi.Center;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Splits a set of centers into spatially compact groups, so that a large batch of centers can be redrawn as a series of small incremental
+ * draws, each of which only touches a small area of the map.
+ */
+public class CenterChunker
+{
+	/**
+	 * Splits centers into chunks of at most maxCentersPerChunk centers each. Centers are bucketed into grid cells sized so that an average
+	 * cell holds about one chunk's worth, and cells are visited in Z-order so that consecutive cells, and so the centers in each chunk, are
+	 * near each other.
+	 *
+	 * @return The center indexes in each chunk, in the order they should be drawn.
+	 */
+	public static List<Set<Integer>> split(Collection<Center> centers, int maxCentersPerChunk)
+	{
+		if (maxCentersPerChunk <= 0)
+		{
+			throw new IllegalArgumentException("maxCentersPerChunk must be positive.");
+		}
+
+		List<Set<Integer>> chunks = new ArrayList<>();
+		if (centers.size() <= maxCentersPerChunk)
+		{
+			Set<Integer> chunk = new HashSet<>();
+			for (Center center : centers)
+			{
+				chunk.add(center.index);
+			}
+			if (!chunk.isEmpty())
+			{
+				chunks.add(chunk);
+			}
+			return chunks;
+		}
+
+		Grid grid = new Grid(centers, maxCentersPerChunk);
+		TreeMap<Long, List<Integer>> cells = new TreeMap<>();
+		for (Center center : centers)
+		{
+			cells.computeIfAbsent(grid.getCellCode(center), unused -> new ArrayList<>()).add(center.index);
+		}
+
+		Set<Integer> chunk = new HashSet<>();
+		for (Map.Entry<Long, List<Integer>> cell : cells.entrySet())
+		{
+			if (!chunk.isEmpty() && chunk.size() + cell.getValue().size() > maxCentersPerChunk)
+			{
+				chunks.add(chunk);
+				chunk = new HashSet<>();
+			}
+
+			for (Integer index : cell.getValue())
+			{
+				// Only happens when a single cell holds more than a chunk's worth of centers.
+				if (chunk.size() == maxCentersPerChunk)
+				{
+					chunks.add(chunk);
+					chunk = new HashSet<>();
+				}
+				chunk.add(index);
+			}
+		}
+		if (!chunk.isEmpty())
+		{
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Returns the first chunk {@link #split} would, without sorting the rest of the centers into chunks. For drawing a large backlog one
+	 * chunk at a time, where the rest is split again after each chunk anyway.
+	 *
+	 * @return The center indexes in the first chunk, or an empty set if there are no centers.
+	 */
+	public static Set<Integer> firstChunk(Collection<Center> centers, int maxCentersPerChunk)
+	{
+		if (maxCentersPerChunk <= 0)
+		{
+			throw new IllegalArgumentException("maxCentersPerChunk must be positive.");
+		}
+
+		if (centers.size() <= maxCentersPerChunk)
+		{
+			Set<Integer> chunk = new HashSet<>();
+			for (Center center : centers)
+			{
+				chunk.add(center.index);
+			}
+			return chunk;
+		}
+
+		// Keep the maxCentersPerChunk + 1 centers that come first in Z-order, breaking ties by the order split adds them to their cells. A
+		// heap ordered last first makes the one to drop on top.
+		Grid grid = new Grid(centers, maxCentersPerChunk);
+		Comparator<long[]> order = Comparator.<long[]> comparingLong(entry -> entry[0]).thenComparingLong(entry -> entry[1]);
+		PriorityQueue<long[]> first = new PriorityQueue<>(maxCentersPerChunk + 2, order.reversed());
+		long sequence = 0;
+		for (Center center : centers)
+		{
+			first.add(new long[] { grid.getCellCode(center), sequence++, center.index });
+			if (first.size() > maxCentersPerChunk + 1)
+			{
+				first.poll();
+			}
+		}
+		List<long[]> sorted = new ArrayList<>(first);
+		sorted.sort(order);
+
+		// Take whole cells while they fit, as split does. A cell cut off at the end of the list has more centers than are left, so it
+		// wouldn't fit either, unless it's the first cell, in which case split also takes its first centers.
+		Set<Integer> chunk = new HashSet<>();
+		int cellStart = 0;
+		while (cellStart < sorted.size())
+		{
+			int cellEnd = cellStart;
+			while (cellEnd < sorted.size() && sorted.get(cellEnd)[0] == sorted.get(cellStart)[0])
+			{
+				cellEnd++;
+			}
+
+			if (chunk.isEmpty())
+			{
+				for (int i = cellStart; i < cellEnd && chunk.size() < maxCentersPerChunk; i++)
+				{
+					chunk.add((int) sorted.get(i)[2]);
+				}
+			}
+			else if (chunk.size() + (cellEnd - cellStart) <= maxCentersPerChunk)
+			{
+				for (int i = cellStart; i < cellEnd; i++)
+				{
+					chunk.add((int) sorted.get(i)[2]);
+				}
+			}
+			else
+			{
+				break;
+			}
+			cellStart = cellEnd;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Grid cells sized so that an average cell holds about one chunk's worth of centers.
+	 */
+	private static class Grid
+	{
+		private final double minX;
+		private final double minY;
+		private final double cellSize;
+
+		Grid(Collection<Center> centers, int maxCentersPerChunk)
+		{
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (Center center : centers)
+			{
+				minX = Math.min(minX, center.loc.x);
+				minY = Math.min(minY, center.loc.y);
+				maxX = Math.max(maxX, center.loc.x);
+				maxY = Math.max(maxY, center.loc.y);
+			}
+			this.minX = minX;
+			this.minY = minY;
+			double area = Math.max(1.0, (maxX - minX) * (maxY - minY));
+			cellSize = Math.max(1.0, Math.sqrt(area * maxCentersPerChunk / centers.size()));
+		}
+
+		/**
+		 * @return The Z-order index of the cell the center is in.
+		 */
+		long getCellCode(Center center)
+		{
+			int cellX = (int) ((center.loc.x - minX) / cellSize);
+			int cellY = (int) ((center.loc.y - minY) / cellSize);
+			return interleaveBits(cellX, cellY);
+		}
+	}
+
+	/**
+	 * @return The Morton code (Z-order index) of a non-negative grid cell.
+	 */
+	private static long interleaveBits(int x, int y)
+	{
+		long result = 0;
+		for (int bit = 0; bit < 31; bit++)
+		{
+			result |= ((long) (x >> bit) & 1) << (2 * bit);
+			result |= ((long) (y >> bit) & 1) << (2 * bit + 1);
+		}
+		return result;
+	}
+}
@@ -4,7 +4,7 @@ import nortantis.swing.translation.Translation;
 
 public enum ExportAction
 {
-	SaveToFile, OpenInDefaultImageViewer;
+	SaveToFile, OpenInDefaultImageViewer, SaveAsTiles;
 
 	@Override
 	public String toString()
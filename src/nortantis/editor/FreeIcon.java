@@ -220,8 +220,9 @@ public class FreeIcon
 				return null;
 			}
 			ImageAndMasks imageAndMasks = iconsWithWidths.get(iconName);
-			IntDimension drawSize = IconDrawer.getDimensionsWhenScaledByWidth(imageAndMasks.image.size(), Math.round(typeLevelScale * scale * baseWidth)).roundToIntDimension();
-			// Un-rounded size for the resolution-invariant water-touch check (drawSize above stays rounded so the actual draw is unchanged).
+			IntDimension drawSize = IconDrawer.quantizeDrawSize(IconDrawer.getDimensionsWhenScaledByWidth(imageAndMasks.image.size(), Math.round(typeLevelScale * scale * baseWidth)).roundToIntDimension());
+			// Un-rounded size for the resolution-invariant water-touch check. Only that check uses it; drawSize above is quantized, so wide icons
+			// draw at a snapped size.
 			Dimension unroundedDrawSize = IconDrawer.getDimensionsWhenScaledByWidth(imageAndMasks.image.size(), typeLevelScale * scale * baseWidth);
 			return new IconDrawTask(imageAndMasks, type, getScaledLocation(resolutionScale), drawSize, unroundedDrawSize, iconName, fillColor, filterColor, maximizeOpacity, fillWithColor,
 					resolutionScale);
@@ -234,9 +235,9 @@ public class FreeIcon
 				return null;
 			}
 			ImageAndMasks imageAndMasks = groupImages.get(iconIndex % groupImages.size());
-			// Un-rounded size for the resolution-invariant water-touch check; drawSize is the rounded version actually used to draw.
+			// Un-rounded size for the resolution-invariant water-touch check; drawSize is the rounded and quantized size actually used to draw.
 			Dimension unroundedDrawSize = IconDrawer.getDimensionsWhenScaledByWidth(imageAndMasks.image.size(), typeLevelScale * scale * baseWidth);
-			IntDimension drawSize = unroundedDrawSize.roundToIntDimension();
+			IntDimension drawSize = IconDrawer.quantizeDrawSize(unroundedDrawSize.roundToIntDimension());
 			return new IconDrawTask(imageAndMasks, type, getScaledLocation(resolutionScale), drawSize, unroundedDrawSize, fillColor, filterColor, maximizeOpacity, fillWithColor, resolutionScale);
 		}
 	}
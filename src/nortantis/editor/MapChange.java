@@ -2,11 +2,19 @@ package nortantis.editor;
 
 import nortantis.MapSettings;
 import nortantis.swing.EditorTool;
+import nortantis.swing.EditsDelta;
 import nortantis.swing.UpdateType;
 
 public class MapChange
 {
+	/**
+	 * The settings after the change. In the undo history, these don't include edits, which are stored in {@link #editsDelta} instead.
+	 */
 	public MapSettings settings;
+	/**
+	 * Only used in the undo history. How the edits changed from the previous undo point to this one.
+	 */
+	public EditsDelta editsDelta;
 	public UpdateType updateType;
 	public EditorTool toolThatMadeChange;
 	public Runnable preRun;
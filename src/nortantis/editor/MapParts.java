@@ -65,8 +65,18 @@ public class MapParts
 	 */
 	public Image mapBeforeAddingText;
 
+	/**
+	 * Copies of the map with text, the border, and grunge drawn, but not the overlay image or frayed edges, keyed by
+	 * {@link nortantis.MapSettings#createKeyForMapBelowOverlayImage()}. Changing only the overlay image blends it over the cached copy.
+	 * Holds two copies, so that turning text off and back on again reuses the copy from before; the first change of whether text is shown
+	 * still draws text, the border, and grunge over {@link #mapBeforeAddingText}. Must be cleared when anything drawn into it changes. Not
+	 * used when those copies wouldn't fit in memory along with drawing the map.
+	 */
+	public final RecentMapsCache mapsBelowOverlayImage = new RecentMapsCache(2);
+
 	public void closeImages()
 	{
+		mapsBelowOverlayImage.clear();
 		if (textBackground != null)
 		{
 			textBackground.close();
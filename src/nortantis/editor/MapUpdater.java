@@ -4,6 +4,7 @@ import nortantis.*;
 import nortantis.geom.Dimension;
 import nortantis.geom.IntRectangle;
 import nortantis.geom.Point;
+import nortantis.geom.Rectangle;
 import nortantis.graph.voronoi.Center;
 import nortantis.graph.voronoi.Edge;
 import nortantis.platform.BackgroundTask;
@@ -15,11 +16,13 @@ import nortantis.swing.UpdateType;
 import nortantis.util.Helper;
 import nortantis.util.Logger;
 import nortantis.util.Stopwatch;
+import nortantis.util.ThreadHelper;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -29,6 +32,20 @@ import java.util.stream.Collectors;
 
 public abstract class MapUpdater
 {
+	/**
+	 * The resolution of the quick preview shown before a full redraw, as a fraction of the full draw's resolution.
+	 */
+	private static final double previewResolutionFraction = 0.4;
+	/**
+	 * Maps with fewer pixels than this at the display quality they're drawn at are drawn fast enough that a preview drawing alongside the
+	 * full draw would only compete with it for CPU and memory.
+	 */
+	private static final long defaultMinPixelsForPreview = 8_000_000;
+	/**
+	 * The most centers a single low priority draw redraws. Larger backlogs are drawn as a series of chunks this size so that interactive
+	 * edits don't wait on one long draw.
+	 */
+	private static final int maxCentersPerLowPriorityChunk = 300;
 	private boolean isMapBeingDrawn;
 	/**
 	 * Progress of the current full draw as a fraction from 0 to 1, or -1 when no determinate progress is available (before a draw starts, or
@@ -56,9 +73,16 @@ public abstract class MapUpdater
 	private ArrayDeque<MapUpdate> nonIncrementalUpdatesToDraw;
 	private ArrayDeque<MapUpdate> incrementalUpdatesToDraw;
 	private ArrayDeque<MapUpdate> lowPriorityUpdatesToDraw;
-	private MapCreator currentMapCreator;
+	private volatile MapCreator currentMapCreator;
+	/** The creator drawing the preview of a full draw, which runs alongside the full draw's creator. */
+	private volatile MapCreator previewMapCreator;
+	private long minPixelsForPreview = defaultMinPixelsForPreview;
 	private MapUpdate currentUpdate;
 	private ConcurrentHashMap<Integer, Center> centersToRedrawLowPriority;
+	private long supersededDrawCount;
+	private long incrementalDrawsDisplayedCount;
+	private double totalEditToDisplayMillis;
+	private double maxEditToDisplayMillis;
 
 	/**
 	 * 
@@ -259,7 +283,8 @@ public abstract class MapUpdater
 	private Collection<Integer> getCentersIdsOfRoadsChanged(MapEdits edits, double resolutionScale)
 	{
 		Set<List<Point>> changePaths = edits.roads.stream().map(road -> PathOperations.toLocationList(road.nodes)).collect(Collectors.toSet());
-		Set<List<Point>> currentPaths = getEdits().roads.stream().map(road -> PathOperations.toLocationList(road.nodes)).collect(Collectors.toSet());
+		// The current roads' locations are usually already cached from drawing them, so reuse them rather than rebuilding a list per road.
+		Set<List<Point>> currentPaths = getEdits().roads.stream().map(road -> road.getGeometry().locations).collect(Collectors.toSet());
 		Set<List<Point>> diff = Helper.getElementsNotInIntersection(changePaths, currentPaths);
 		Set<Integer> diffCenterIds = getIdsOfCentersPointsAreOn(pointListsToPointSet(diff), resolutionScale);
 		return diffCenterIds;
@@ -367,6 +392,9 @@ public abstract class MapUpdater
 		}
 		else if (updateType == UpdateType.Incremental)
 		{
+			// Edits change the maps cached below the overlay image. Changes to settings, including text and fonts, are part of the key for
+			// those maps, so they don't need to clear them.
+			mapParts.mapsBelowOverlayImage.clear();
 		}
 		else if (updateType == UpdateType.Text)
 		{
@@ -376,6 +404,7 @@ public abstract class MapUpdater
 		}
 		else if (updateType == UpdateType.Terrain)
 		{
+			mapParts.mapsBelowOverlayImage.clear();
 			if (mapParts.mapBeforeAddingText != null)
 			{
 				mapParts.mapBeforeAddingText.close();
@@ -384,6 +413,7 @@ public abstract class MapUpdater
 		}
 		else if (updateType == UpdateType.GrungeAndFray)
 		{
+			mapParts.mapsBelowOverlayImage.clear();
 			if (mapParts.frayedBorderBlur != null)
 			{
 				mapParts.frayedBorderBlur.close();
@@ -410,6 +440,7 @@ public abstract class MapUpdater
 		}
 		else if (updateType == UpdateType.GridOverlay)
 		{
+			mapParts.mapsBelowOverlayImage.clear();
 			if (mapParts.mapBeforeAddingText != null)
 			{
 				mapParts.mapBeforeAddingText.close();
@@ -471,6 +502,24 @@ public abstract class MapUpdater
 	private void innerCreateAndShowMap(UpdateType updateType, Set<Integer> centersChangedIds, Set<Integer> edgesChangedIds, List<MapText> textChanged, List<FreeIcon> iconsChanged,
 			List<Runnable> preRuns, List<Runnable> postRuns, boolean isLowPriorityChange, boolean isUndoRedo)
 	{
+		innerCreateAndShowMap(new MapUpdate(updateType, centersChangedIds, edgesChangedIds, textChanged, iconsChanged, preRuns, postRuns, isLowPriorityChange, isUndoRedo));
+	}
+
+	/**
+	 * Redraws the map for the given update, or queues the update if a draw is already in progress.
+	 */
+	private void innerCreateAndShowMap(MapUpdate update)
+	{
+		final UpdateType updateType = update.updateType;
+		final Set<Integer> centersChangedIds = update.centersChangedIds;
+		final Set<Integer> edgesChangedIds = update.edgesChangedIds;
+		final List<MapText> textChanged = update.textChanged;
+		final List<FreeIcon> iconsChanged = update.iconsChanged;
+		final List<Runnable> preRuns = update.preRuns;
+		final List<Runnable> postRuns = update.postRuns;
+		final boolean isLowPriorityChange = update.isLowPriority;
+		final boolean isUndoRedo = update.isUndoRedo;
+
 		if (!enabled)
 		{
 			return;
@@ -509,11 +558,11 @@ public abstract class MapUpdater
 				currentMapCreator.cancel();
 				if (updateType == UpdateType.Incremental)
 				{
-					incrementalUpdatesToDraw.add(new MapUpdate(updateType, centersChangedIds, edgesChangedIds, textChanged, iconsChanged, preRuns, postRuns, isLowPriorityChange, isUndoRedo));
+					incrementalUpdatesToDraw.add(update);
 				}
 				else
 				{
-					nonIncrementalUpdatesToDraw.add(new MapUpdate(updateType, centersChangedIds, edgesChangedIds, textChanged, iconsChanged, preRuns, postRuns, isLowPriorityChange, isUndoRedo));
+					nonIncrementalUpdatesToDraw.add(update);
 				}
 
 				lowPriorityUpdatesToDraw.add(currentUpdate);
@@ -523,17 +572,22 @@ public abstract class MapUpdater
 			{
 				if (isLowPriorityChange)
 				{
-					lowPriorityUpdatesToDraw.add(new MapUpdate(updateType, centersChangedIds, edgesChangedIds, textChanged, iconsChanged, preRuns, postRuns, isLowPriorityChange, isUndoRedo));
+					lowPriorityUpdatesToDraw.add(update);
 				}
 				else
 				{
 					if (updateType == UpdateType.Incremental)
 					{
-						incrementalUpdatesToDraw.add(new MapUpdate(updateType, centersChangedIds, edgesChangedIds, textChanged, iconsChanged, preRuns, postRuns, isLowPriorityChange, isUndoRedo));
+						incrementalUpdatesToDraw.add(update);
+						supersedeCurrentDrawIfCovered();
 					}
 					else
 					{
-						nonIncrementalUpdatesToDraw.add(new MapUpdate(updateType, centersChangedIds, edgesChangedIds, textChanged, iconsChanged, preRuns, postRuns, isLowPriorityChange, isUndoRedo));
+						nonIncrementalUpdatesToDraw.add(update);
+						if (updateType == UpdateType.Full)
+						{
+							supersedeCurrentFullDraw();
+						}
 					}
 				}
 				return;
@@ -568,6 +622,14 @@ public abstract class MapUpdater
 			}
 		}
 
+		if (updateType == UpdateType.Full)
+		{
+			update.editsInitializedBeforeDraw = settings.edits != null && settings.edits.isInitialized();
+		}
+		final boolean drawPreview = shouldDrawPreview(update);
+
+		currentUpdate = update;
+
 		PlatformFactory.getInstance().doInBackgroundThread(new BackgroundTask<UpdateResult>()
 		{
 			@Override
@@ -587,8 +649,6 @@ public abstract class MapUpdater
 				{
 					try
 					{
-						currentUpdate = new MapUpdate(updateType, centersChangedIds, edgesChangedIds, textChanged, iconsChanged, preRuns, postRuns, isLowPriorityChange, isUndoRedo);
-
 						clearMapPartsAsNeeded(updateType);
 
 						if (updateType == UpdateType.Incremental)
@@ -603,8 +663,7 @@ public abstract class MapUpdater
 							if (centersChangedIds != null && centersChangedIds.size() > 0 || edgesChangedIds != null && edgesChangedIds.size() > 0)
 							{
 								Stopwatch incrementalUpdateTimer = new Stopwatch("do incremental update for centers and edges");
-								currentMapCreator = new MapCreator();
-								currentMapCreator.setIncrementalMapWriteLock(mapBufferLock.writeLock());
+								setCurrentMapCreator(createMapCreatorForIncrementalUpdate());
 								IntRectangle replaceBounds = currentMapCreator.incrementalUpdateForCentersAndEdges(settings, mapParts, map, centersChangedIds, edgesChangedIds, isLowPriorityChange);
 								combinedReplaceBounds = combinedReplaceBounds == null ? replaceBounds : combinedReplaceBounds.add(replaceBounds);
 								if (DebugFlags.printIncrementalUpdateTimes())
@@ -616,8 +675,7 @@ public abstract class MapUpdater
 							if (textChanged != null && textChanged.size() > 0)
 							{
 								Stopwatch incrementalUpdateTimer = new Stopwatch("do incremental update for text");
-								currentMapCreator = new MapCreator();
-								currentMapCreator.setIncrementalMapWriteLock(mapBufferLock.writeLock());
+								setCurrentMapCreator(createMapCreatorForIncrementalUpdate());
 								IntRectangle replaceBounds = currentMapCreator.incrementalUpdateText(settings, mapParts, map, textChanged);
 								combinedReplaceBounds = combinedReplaceBounds == null ? replaceBounds : combinedReplaceBounds.add(replaceBounds);
 								if (DebugFlags.printIncrementalUpdateTimes())
@@ -629,8 +687,7 @@ public abstract class MapUpdater
 							if (iconsChanged != null && iconsChanged.size() > 0)
 							{
 								Stopwatch incrementalUpdateTimer = new Stopwatch("do incremental update for icons");
-								currentMapCreator = new MapCreator();
-								currentMapCreator.setIncrementalMapWriteLock(mapBufferLock.writeLock());
+								setCurrentMapCreator(createMapCreatorForIncrementalUpdate());
 								IntRectangle replaceBounds = currentMapCreator.incrementalUpdateIcons(settings, mapParts, map, iconsChanged);
 								combinedReplaceBounds = combinedReplaceBounds == null ? replaceBounds : combinedReplaceBounds.add(replaceBounds);
 								if (DebugFlags.printIncrementalUpdateTimes())
@@ -651,7 +708,15 @@ public abstract class MapUpdater
 						}
 						else
 						{
-							return fullDraw(settings);
+							Future<?> preview = drawPreview ? startPreview(settings) : null;
+							try
+							{
+								return fullDraw(settings);
+							}
+							finally
+							{
+								finishPreview(preview);
+							}
 						}
 					}
 					finally
@@ -709,6 +774,7 @@ public abstract class MapUpdater
 							if (replaceBounds != null)
 							{
 								onFinishedDrawingIncremental(anotherDrawIsQueued, scaledBorderWidth, replaceBounds, warningMessages);
+								recordEditToDisplayLatency(update);
 							}
 							else
 							{
@@ -725,7 +791,7 @@ public abstract class MapUpdater
 
 						if (next != null)
 						{
-							innerCreateAndShowMap(next.updateType, next.centersChangedIds, next.edgesChangedIds, next.textChanged, next.iconsChanged, next.preRuns, next.postRuns, next.isLowPriority, next.isUndoRedo);
+							innerCreateAndShowMap(next);
 						}
 						else
 						{
@@ -752,11 +818,15 @@ public abstract class MapUpdater
 
 						if (isCanceled)
 						{
+							if (update.isSuperseded)
+							{
+								requeueSupersededUpdate(update);
+							}
+
 							MapUpdate next = combineAndGetNextUpdateToDraw();
 							if (next != null)
 							{
-								innerCreateAndShowMap(next.updateType, next.centersChangedIds, next.edgesChangedIds, next.textChanged, next.iconsChanged, next.preRuns, next.postRuns,
-										next.isLowPriority, next.isUndoRedo);
+								innerCreateAndShowMap(next);
 							}
 							else
 							{
@@ -794,10 +864,12 @@ public abstract class MapUpdater
 		Image map;
 		try
 		{
-			currentMapCreator = new MapCreator();
+			MapCreator mapCreator = new MapCreator();
+			mapCreator.setPartsDiskCache(UserPreferences.getInstance().cacheMapPartsOnDisk ? MapPartsDiskCache.getInstance() : null);
+			setCurrentMapCreator(mapCreator);
 			drawProgress = 0;
-			currentMapCreator.setProgressListener(fraction -> drawProgress = fraction);
-			map = currentMapCreator.createMap(settings, maxMapSize, mapParts);
+			mapCreator.setProgressListener(fraction -> drawProgress = fraction);
+			map = mapCreator.createMap(settings, maxMapSize, mapParts);
 		}
 		catch (CancelledException e)
 		{
@@ -816,6 +888,132 @@ public abstract class MapUpdater
 		return result;
 	}
 
+	/**
+	 * Whether to show a quick low resolution preview before a full redraw, so that changes like theme tweaks on a large map show up right
+	 * away instead of after the whole map is drawn. Only done when a map is already displayed and its edits exist, since the first draw of
+	 * a map creates the edits, and only when the displayed map is large enough that the full draw is slow. The displayed map's size stands
+	 * in for the full draw's, since both are drawn at the same display quality unless it just changed.
+	 */
+	private boolean shouldDrawPreview(MapUpdate update)
+	{
+		if (update.updateType != UpdateType.Full || !update.editsInitializedBeforeDraw || maxMapSize != null)
+		{
+			return false;
+		}
+		Image displayedMap = getCurrentMapForIncrementalUpdate();
+		return displayedMap != null && displayedMap.getPixelCount() >= minPixelsForPreview;
+	}
+
+	/**
+	 * Sets how many pixels the displayed map must have for full redraws to draw a preview. Used by tests.
+	 */
+	protected void setMinPixelsForPreview(long minPixelsForPreview)
+	{
+		this.minPixelsForPreview = minPixelsForPreview;
+	}
+
+	/**
+	 * Copies the settings for the preview, at a fraction of the resolution and without grunge or frayed edges since those are slow and are
+	 * subtle at preview resolution. The edits are copied with {@link MapEdits#copyForConcurrentDraw}, which shares the parts drawing only
+	 * reads.
+	 */
+	private static MapSettings createPreviewSettings(MapSettings settings)
+	{
+		MapSettings previewSettings = settings.deepCopyExceptEdits();
+		previewSettings.edits = settings.edits.copyForConcurrentDraw();
+		previewSettings.resolution = settings.resolution * previewResolutionFraction;
+		previewSettings.drawGrunge = false;
+		previewSettings.frayedBorder = false;
+		return previewSettings;
+	}
+
+	/**
+	 * Starts drawing the preview on another thread, so that it draws alongside the full draw instead of delaying it. The settings are copied
+	 * on the draw thread before the full draw starts, since the full draw may change the edits while the preview is drawing.
+	 */
+	private Future<?> startPreview(MapSettings settings)
+	{
+		MapSettings previewSettings = createPreviewSettings(settings);
+		MapCreator previewCreator = new MapCreator();
+		previewMapCreator = previewCreator;
+		MapUpdate update = currentUpdate;
+		if (update != null && update.isSuperseded)
+		{
+			previewCreator.cancel();
+		}
+		return ThreadHelper.getInstance().submit(() -> drawPreview(previewCreator, previewSettings));
+	}
+
+	/**
+	 * Called once the full draw is done. The preview is canceled if it isn't done yet, since the full quality map is about to replace it,
+	 * and this waits for it to stop so that it doesn't overlap the next draw.
+	 */
+	private void finishPreview(Future<?> preview)
+	{
+		if (preview == null)
+		{
+			return;
+		}
+		MapCreator previewCreator = previewMapCreator;
+		if (previewCreator != null)
+		{
+			previewCreator.cancel();
+		}
+		ThreadHelper.getInstance().getResult(preview);
+		previewMapCreator = null;
+	}
+
+	/**
+	 * Draws the preview without map parts, so that the full draw's map parts aren't filled in at the wrong resolution, then hands it to
+	 * {@link #onPreviewDrawn}. A preview that fails is logged and skipped, since the full draw will report the problem.
+	 */
+	private void drawPreview(MapCreator previewCreator, MapSettings previewSettings)
+	{
+		Image preview;
+		try
+		{
+			Stopwatch previewTimer = new Stopwatch("draw low resolution preview");
+			preview = previewCreator.createMap(previewSettings, null, null);
+			if (DebugFlags.printIncrementalUpdateTimes())
+			{
+				previewTimer.printElapsedTime();
+			}
+		}
+		catch (CancelledException e)
+		{
+			return;
+		}
+		catch (RuntimeException e)
+		{
+			Logger.printError("Unable to draw map preview.", e);
+			return;
+		}
+
+		// The full draw cancels the preview when it finishes, so checking on the main UI thread keeps a preview that finished late from
+		// covering the full quality map.
+		PlatformFactory.getInstance().doInMainUIThreadAsynchronous(() ->
+		{
+			if (!previewCreator.isCanceled())
+			{
+				onPreviewDrawn(preview, previewResolutionFraction);
+			}
+			preview.close();
+		});
+	}
+
+	/**
+	 * Called on the main UI thread when a low resolution preview of a full redraw is ready, before the full draw finishes. The preview is
+	 * replaced by {@link #onFinishedDrawingFull} when it does.
+	 *
+	 * @param preview
+	 *            The preview map, which has no grunge or frayed edges. Closed after this returns.
+	 * @param fractionOfFullResolution
+	 *            The preview's resolution divided by the resolution the full draw is at.
+	 */
+	protected void onPreviewDrawn(Image preview, double fractionOfFullResolution)
+	{
+	}
+
 	private void addLowPriorityCentersToRedraw(Map<Integer, Center> toAdd)
 	{
 		for (Center c : toAdd.values())
@@ -985,12 +1183,68 @@ public abstract class MapUpdater
 			{
 				update.add(lowPriorityUpdatesToDraw.poll());
 			}
-			return update;
+			return takeLowPriorityChunk(update);
 		}
 
 		return null;
 	}
 
+	/**
+	 * Splits a large low priority update so that only a spatially compact chunk of its centers is drawn now, and puts the rest back at the
+	 * front of the low priority queue. Since low priority updates are drawn only when nothing else is queued, an edit made while the backlog
+	 * drains waits for at most the current chunk, and is drawn before the next one.
+	 */
+	private MapUpdate takeLowPriorityChunk(MapUpdate update)
+	{
+		if (update.updateType != UpdateType.Incremental || update.centersChangedIds == null || update.centersChangedIds.size() <= maxCentersPerLowPriorityChunk
+				|| (update.edgesChangedIds != null && !update.edgesChangedIds.isEmpty()) || update.changesTextOrIcons() || mapParts == null || mapParts.graph == null)
+		{
+			return update;
+		}
+
+		List<Center> centers = new ArrayList<>(update.centersChangedIds.size());
+		for (Integer id : update.centersChangedIds)
+		{
+			centers.add(mapParts.graph.centers.get(id));
+		}
+		Set<Integer> chunk = CenterChunker.firstChunk(centers, maxCentersPerLowPriorityChunk);
+
+		Set<Integer> rest = new HashSet<>(update.centersChangedIds);
+		rest.removeAll(chunk);
+		// Pre-runs go with the first chunk and post-runs with the last.
+		MapUpdate remainder = new MapUpdate(UpdateType.Incremental, rest, null, null, null, null, update.postRuns, true, update.isUndoRedo);
+		remainder.submittedNanos = update.submittedNanos;
+		lowPriorityUpdatesToDraw.addFirst(remainder);
+
+		update.centersChangedIds = chunk;
+		update.postRuns = new ArrayList<>();
+		return update;
+	}
+
+	/**
+	 * Should only be called from the event dispatch thread.
+	 *
+	 * @return Roughly how many centers are waiting to be redrawn at low priority, including the chunk being drawn, if any. A center can be
+	 *         counted more than once if it was deferred again before its earlier redraw ran.
+	 */
+	public int getLowPriorityBacklogSize()
+	{
+		int size = centersToRedrawLowPriority.size();
+		for (MapUpdate update : lowPriorityUpdatesToDraw)
+		{
+			if (update.centersChangedIds != null)
+			{
+				size += update.centersChangedIds.size();
+			}
+		}
+		MapUpdate inFlight = currentUpdate;
+		if (inFlight != null && inFlight.isLowPriority && inFlight.centersChangedIds != null)
+		{
+			size += inFlight.centersChangedIds.size();
+		}
+		return size;
+	}
+
 	private void initializeCenterEditsIfEmpty(MapEdits edits)
 	{
 		if (edits.centerEdits.isEmpty())
@@ -1012,6 +1266,33 @@ public abstract class MapUpdater
 		maxMapSize = dimension;
 	}
 
+	/**
+	 * Creates a MapCreator for an incremental update of the shared live map buffer. Large changes, such as a long brush stroke or undoing a
+	 * big edit, are drawn in tiles in parallel.
+	 */
+	private MapCreator createMapCreatorForIncrementalUpdate()
+	{
+		MapCreator mapCreator = new MapCreator();
+		mapCreator.setIncrementalMapWriteLock(mapBufferLock.writeLock());
+		mapCreator.setUseTiledIncrementalUpdates(true);
+		return mapCreator;
+	}
+
+	/**
+	 * Makes the given creator the one the current draw is using. If newer updates superseded the draw before it got this far, the creator
+	 * is canceled right away, since {@link #supersedeCurrentDrawIfCovered()} and {@link #supersedeCurrentFullDraw()} had no creator to
+	 * cancel yet.
+	 */
+	private void setCurrentMapCreator(MapCreator mapCreator)
+	{
+		currentMapCreator = mapCreator;
+		MapUpdate update = currentUpdate;
+		if (update != null && update.isSuperseded)
+		{
+			mapCreator.cancel();
+		}
+	}
+
 	/**
 	 * Lock to hold while reading pixels from the buffer returned by {@link #getCurrentMapForIncrementalUpdate()} from a thread other than
 	 * the one running incremental updates (e.g. a background display rescale), so that read doesn't race with an in-place incremental
@@ -1034,6 +1315,12 @@ public abstract class MapUpdater
 		boolean isLowPriority;
 		/** True if this draw was triggered by an undo or redo. Travels with the draw so its completion can be identified in done(). */
 		boolean isUndoRedo;
+		/** When the earliest edit combined into this update was submitted, from System.nanoTime(). */
+		long submittedNanos;
+		/** True if this update's draw was canceled because queued updates will redraw everything it was drawing. */
+		volatile boolean isSuperseded;
+		/** For full draws, whether the map's edits had already been created when the draw started. */
+		boolean editsInitializedBeforeDraw;
 
 		public MapUpdate(UpdateType updateType, Set<Integer> centersChangedIds, Set<Integer> edgesChangedIds, List<MapText> textChanged, List<FreeIcon> iconsChanged, List<Runnable> preRuns,
 				List<Runnable> postRuns, boolean isLowPriority, boolean isUndoRedo)
@@ -1076,6 +1363,32 @@ public abstract class MapUpdater
 			}
 
 			this.isLowPriority = isLowPriority;
+			this.submittedNanos = System.nanoTime();
+		}
+
+		/**
+		 * @return The bounds, in map coordinates, of the centers and edges this update changes, or null if it doesn't change any.
+		 */
+		Rectangle getCentersAndEdgesBounds(WorldGraph graph)
+		{
+			Set<Center> centers = new HashSet<>();
+			if (centersChangedIds != null)
+			{
+				for (Integer id : centersChangedIds)
+				{
+					centers.add(graph.centers.get(id));
+				}
+			}
+			if (edgesChangedIds != null)
+			{
+				centers.addAll(graph.getCentersFromEdgeIds(edgesChangedIds));
+			}
+			return WorldGraph.getBoundingBox(centers);
+		}
+
+		boolean changesTextOrIcons()
+		{
+			return textChanged != null && !textChanged.isEmpty() || iconsChanged != null && !iconsChanged.isEmpty();
 		}
 
 		public void add(MapUpdate other)
@@ -1136,7 +1449,150 @@ public abstract class MapUpdater
 			}
 
 			isLowPriority = isLowPriority && other.isLowPriority;
+			submittedNanos = Math.min(submittedNanos, other.submittedNanos);
+		}
+	}
+
+	/**
+	 * Cancels the incremental draw in progress if the incremental updates waiting to be drawn will redraw everything it is drawing, so that
+	 * fast edits such as brush drags don't wait on a draw that would be painted over right after it finished. The canceled draw stops at
+	 * its next cancellation check, and its changes are merged into the next draw.
+	 *
+	 * Only draws of centers and edges are superseded, since the area a text or icon change redraws isn't known until it's drawn.
+	 */
+	private void supersedeCurrentDrawIfCovered()
+	{
+		MapUpdate inFlight = currentUpdate;
+		if (inFlight == null || inFlight.updateType != UpdateType.Incremental || inFlight.isLowPriority || inFlight.isSuperseded
+				|| inFlight.changesTextOrIcons() || mapParts == null || mapParts.graph == null)
+		{
+			return;
+		}
+
+		Rectangle inFlightBounds = inFlight.getCentersAndEdgesBounds(mapParts.graph);
+		if (inFlightBounds == null)
+		{
+			return;
 		}
+
+		// Queued incremental updates are combined into one draw, which redraws the bounding box of all of their changed centers.
+		Rectangle queuedBounds = null;
+		for (MapUpdate queued : incrementalUpdatesToDraw)
+		{
+			Rectangle bounds = queued.getCentersAndEdgesBounds(mapParts.graph);
+			if (bounds != null)
+			{
+				queuedBounds = queuedBounds == null ? bounds : queuedBounds.add(bounds);
+			}
+		}
+
+		if (queuedBounds != null && queuedBounds.contains(inFlightBounds))
+		{
+			cancelSupersededDraw(inFlight);
+		}
+	}
+
+	/**
+	 * Cancels the full draw in progress because a newer full draw was queued, which will redraw everything with the latest settings anyway.
+	 * Full draws that create the map's edits aren't canceled, since stopping part way through could leave the edits half created.
+	 */
+	private void supersedeCurrentFullDraw()
+	{
+		MapUpdate inFlight = currentUpdate;
+		if (inFlight == null || inFlight.updateType != UpdateType.Full || !inFlight.editsInitializedBeforeDraw || inFlight.isSuperseded)
+		{
+			return;
+		}
+
+		cancelSupersededDraw(inFlight);
+	}
+
+	/**
+	 * Marks the draw in progress as superseded and cancels its creator. The flag is set before the creator is read, and
+	 * {@link #setCurrentMapCreator} sets the creator before reading the flag, so a draw that is just starting is canceled by one side or the
+	 * other.
+	 */
+	private void cancelSupersededDraw(MapUpdate inFlight)
+	{
+		inFlight.isSuperseded = true;
+		MapCreator inFlightCreator = currentMapCreator;
+		if (inFlightCreator != null)
+		{
+			inFlightCreator.cancel();
+		}
+		MapCreator previewCreator = previewMapCreator;
+		if (previewCreator != null)
+		{
+			previewCreator.cancel();
+		}
+	}
+
+	/**
+	 * Puts an update whose draw was canceled because newer updates covered it back on the queue, so that it's drawn along with them.
+	 */
+	private void requeueSupersededUpdate(MapUpdate update)
+	{
+		// Its pre-runs already ran.
+		update.preRuns.clear();
+		update.isSuperseded = false;
+		if (update.updateType == UpdateType.Incremental)
+		{
+			incrementalUpdatesToDraw.addFirst(update);
+		}
+		else
+		{
+			// Only a newer full draw supersedes a full draw, and that one redraws everything, so only the post-runs need to carry over.
+			Optional<MapUpdate> full = nonIncrementalUpdatesToDraw.stream().filter(queued -> queued.updateType == UpdateType.Full).findFirst();
+			if (full.isPresent())
+			{
+				full.get().add(update);
+			}
+			else
+			{
+				nonIncrementalUpdatesToDraw.addFirst(update);
+			}
+		}
+		recordSupersededDraw();
+	}
+
+	/**
+	 * Counts of how draws went, for tuning how responsive the editor is.
+	 *
+	 * @param incrementalDrawsDisplayed
+	 *            Incremental draws that finished and were displayed.
+	 * @param drawsSuperseded
+	 *            Draws canceled part way through because newer edits covered them.
+	 * @param averageEditToDisplayMillis
+	 *            Average time from an edit being submitted to the draw that includes it being displayed. Edits combined into one draw are
+	 *            measured from the earliest of them.
+	 * @param maxEditToDisplayMillis
+	 *            The longest such time.
+	 */
+	public record DrawMetrics(long incrementalDrawsDisplayed, long drawsSuperseded, double averageEditToDisplayMillis, double maxEditToDisplayMillis)
+	{
+	}
+
+	private synchronized void recordSupersededDraw()
+	{
+		supersededDrawCount++;
+	}
+
+	private synchronized void recordEditToDisplayLatency(MapUpdate update)
+	{
+		double millis = (System.nanoTime() - update.submittedNanos) / 1_000_000.0;
+		incrementalDrawsDisplayedCount++;
+		totalEditToDisplayMillis += millis;
+		maxEditToDisplayMillis = Math.max(maxEditToDisplayMillis, millis);
+		if (DebugFlags.printIncrementalUpdateTimes())
+		{
+			Logger.println("Edit to display latency: " + String.format("%.1f", millis) + " ms. Draws superseded so far: " + supersededDrawCount);
+		}
+	}
+
+	public synchronized DrawMetrics getDrawMetrics()
+	{
+		double average = incrementalDrawsDisplayedCount == 0 ? 0 : totalEditToDisplayMillis / incrementalDrawsDisplayedCount;
+		return new DrawMetrics(incrementalDrawsDisplayedCount, supersededDrawCount, average, maxEditToDisplayMillis);
 	}
 
 	public void setEnabled(boolean enabled)
@@ -0,0 +1,165 @@
+package nortantis.editor;
+
+import nortantis.geom.IntRectangle;
+import nortantis.platform.Image;
+import nortantis.platform.PixelReader;
+import nortantis.platform.PixelReaderWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Successively half-sized copies of a map image, each box filtered from the one before it, so that displaying the map zoomed out can scale
+ * down from a level close to the target size rather than from the full map. Levels are built lazily, only as far down as a requested width
+ * needs, and once built are kept up to date by {@link #update(Image, IntRectangle)} for just the area an incremental draw changed. Code on
+ * the event dispatch thread should use {@link #getBuiltLevelForWidth(Image, int)}, which only returns levels that are already built.
+ *
+ * The pyramid doesn't own the source image, but it does own its levels, which are only valid while the caller holds this object's monitor.
+ * Callers must also make sure nothing writes to the source while the pyramid reads it.
+ */
+public class MipmapPyramid
+{
+	private Image source;
+	/**
+	 * levels.get(0) is half the size of the source, levels.get(1) is a quarter, and so on.
+	 */
+	private final List<Image> levels = new ArrayList<>();
+
+	/**
+	 * Returns the smallest level that is at least the given width, building levels as needed. Building a level reads every pixel of the
+	 * level above it, so call this off the event dispatch thread.
+	 *
+	 * @return A level, or source itself if no level is small enough to be closer to width than source is. Only valid while the caller holds
+	 *         this object's monitor.
+	 */
+	public synchronized Image getLevelForWidth(Image source, int width)
+	{
+		return findLevelForWidth(source, width, true);
+	}
+
+	/**
+	 * Like {@link #getLevelForWidth(Image, int)}, but never builds a level, so it's cheap enough to call from the event dispatch thread.
+	 *
+	 * @return The level getLevelForWidth would return, or null if that level hasn't been built from source yet. Only valid while the caller
+	 *         holds this object's monitor.
+	 */
+	public synchronized Image getBuiltLevelForWidth(Image source, int width)
+	{
+		return findLevelForWidth(source, width, false);
+	}
+
+	private Image findLevelForWidth(Image source, int width, boolean build)
+	{
+		if (this.source != source && build)
+		{
+			clear();
+			this.source = source;
+		}
+		int levelsBuilt = this.source == source ? levels.size() : 0;
+
+		Image result = source;
+		for (int i = 0;; i++)
+		{
+			int nextWidth = (result.getWidth() + 1) / 2;
+			if (nextWidth < width || nextWidth == result.getWidth())
+			{
+				return result;
+			}
+
+			if (i == levelsBuilt)
+			{
+				if (!build)
+				{
+					return null;
+				}
+				Image level = Image.create(nextWidth, (result.getHeight() + 1) / 2, source.getType());
+				downsample(result, level, new IntRectangle(0, 0, level.getWidth(), level.getHeight()));
+				levels.add(level);
+				levelsBuilt++;
+			}
+			result = levels.get(i);
+		}
+	}
+
+	/**
+	 * Updates the levels that have been built for the given area of source. Does nothing if no levels have been built from source.
+	 *
+	 * @param changedArea
+	 *            The area of source that changed, in source's pixel coordinates.
+	 */
+	public synchronized void update(Image source, IntRectangle changedArea)
+	{
+		if (this.source != source || levels.isEmpty() || changedArea == null)
+		{
+			return;
+		}
+
+		Image previous = source;
+		int x = Math.max(0, changedArea.x);
+		int y = Math.max(0, changedArea.y);
+		int right = Math.min(source.getWidth(), changedArea.x + changedArea.width);
+		int bottom = Math.min(source.getHeight(), changedArea.y + changedArea.height);
+		for (Image level : levels)
+		{
+			x = x / 2;
+			y = y / 2;
+			right = Math.min(level.getWidth(), (right + 1) / 2);
+			bottom = Math.min(level.getHeight(), (bottom + 1) / 2);
+			if (right <= x || bottom <= y)
+			{
+				return;
+			}
+			downsample(previous, level, new IntRectangle(x, y, right - x, bottom - y));
+			previous = level;
+		}
+	}
+
+	/**
+	 * Closes all levels. They are rebuilt on the next call to {@link #getLevelForWidth(Image, int)}.
+	 */
+	public synchronized void clear()
+	{
+		for (Image level : levels)
+		{
+			level.close();
+		}
+		levels.clear();
+		source = null;
+	}
+
+	/**
+	 * Sets each pixel of target in the given area to the average of the 2x2 block of source pixels it covers.
+	 */
+	public static void downsample(Image source, Image target, IntRectangle areaInTarget)
+	{
+		int sourceMaxX = source.getWidth() - 1;
+		int sourceMaxY = source.getHeight() - 1;
+		IntRectangle areaInSource = new IntRectangle(areaInTarget.x * 2, areaInTarget.y * 2, Math.min(areaInTarget.width * 2, source.getWidth() - areaInTarget.x * 2),
+				Math.min(areaInTarget.height * 2, source.getHeight() - areaInTarget.y * 2));
+		try (PixelReader sourcePixels = source.createPixelReader(areaInSource); PixelReaderWriter targetPixels = target.createPixelReaderWriter(areaInTarget))
+		{
+			for (int y = areaInTarget.y; y < areaInTarget.y + areaInTarget.height; y++)
+			{
+				int y1 = Math.min(y * 2, sourceMaxY);
+				int y2 = Math.min(y1 + 1, sourceMaxY);
+				for (int x = areaInTarget.x; x < areaInTarget.x + areaInTarget.width; x++)
+				{
+					int x1 = Math.min(x * 2, sourceMaxX);
+					int x2 = Math.min(x1 + 1, sourceMaxX);
+					targetPixels.setRGB(x, y, average(sourcePixels.getRGB(x1, y1), sourcePixels.getRGB(x2, y1), sourcePixels.getRGB(x1, y2), sourcePixels.getRGB(x2, y2)));
+				}
+			}
+		}
+	}
+
+	private static int average(int argb1, int argb2, int argb3, int argb4)
+	{
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 8)
+		{
+			int sum = ((argb1 >>> shift) & 0xff) + ((argb2 >>> shift) & 0xff) + ((argb3 >>> shift) & 0xff) + ((argb4 >>> shift) & 0xff);
+			result |= ((sum + 2) / 4) << shift;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,88 @@
+package nortantis.editor;
+
+import nortantis.platform.Image;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Holds whole copies of a partly drawn map for the few most recent settings it was drawn with, so that toggling a setting back and forth
+ * reuses a copy drawn earlier rather than drawing the map again. Each copy is a single flattened image, so a setting that differs from
+ * every cached copy still needs a redraw.
+ *
+ * Entries are keyed only by settings, so whoever changes the edits or anything else drawn into the cached maps must call {@link #clear()}.
+ */
+public class RecentMapsCache
+{
+	private final int maxEntries;
+	private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+	private record Entry(String key, Image image)
+	{
+	}
+
+	public RecentMapsCache(int maxEntries)
+	{
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return The cached image for the key, or null if there isn't one. Callers must not modify it.
+	 */
+	public synchronized Image get(String key)
+	{
+		for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();)
+		{
+			Entry entry = iterator.next();
+			if (entry.key.equals(key))
+			{
+				// Move it to the front so it's evicted last.
+				iterator.remove();
+				entries.addFirst(entry);
+				return entry.image;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Caches the image, which the cache then owns, closing the least recently used entry if the cache is full.
+	 */
+	public synchronized void put(String key, Image image)
+	{
+		for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();)
+		{
+			Entry entry = iterator.next();
+			if (entry.key.equals(key))
+			{
+				iterator.remove();
+				entry.image.close();
+			}
+		}
+
+		entries.addFirst(new Entry(key, image));
+		while (entries.size() > maxEntries)
+		{
+			entries.removeLast().image.close();
+		}
+	}
+
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+
+	public synchronized boolean isEmpty()
+	{
+		return entries.isEmpty();
+	}
+
+	public synchronized void clear()
+	{
+		for (Entry entry : entries)
+		{
+			entry.image.close();
+		}
+		entries.clear();
+	}
+}
@@ -17,6 +17,12 @@ public class Road
 	 */
 	public volatile CopyOnWriteArrayList<RoadPathNode> nodes;
 
+	/**
+	 * Not stored. Curve geometry for the current {@link #nodes}. It is validated against the identity of {@link #nodes}, so reassigning
+	 * that field is all it takes to invalidate it.
+	 */
+	private transient volatile RoadGeometry geometry;
+
 	public Road(List<RoadPathNode> nodes)
 	{
 		this.nodes = new CopyOnWriteArrayList<>(PathOperations.deduplicateConsecutive(nodes));
@@ -38,6 +44,22 @@ public class Road
 		return new Road(built);
 	}
 
+	/**
+	 * Returns the cached curve geometry for this road's current nodes, rebuilding it if the nodes have been reassigned since it was last
+	 * built. Safe to call from the draw thread while the editor swaps {@link #nodes}: the result always describes one consistent snapshot.
+	 */
+	public RoadGeometry getGeometry()
+	{
+		CopyOnWriteArrayList<RoadPathNode> current = nodes;
+		RoadGeometry cached = geometry;
+		if (cached == null || cached.nodes != current)
+		{
+			cached = new RoadGeometry(current);
+			geometry = cached;
+		}
+		return cached;
+	}
+
 	@Override
 	public int hashCode()
 	{
@@ -0,0 +1,98 @@
+package nortantis.editor;
+
+import nortantis.CurveCreator;
+import nortantis.PathOperations;
+import nortantis.geom.Point;
+import nortantis.geom.Rectangle;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable curve geometry derived from one snapshot of a {@link Road}'s nodes, in resolution-invariant coordinates. Cached on the road
+ * (see {@link Road#getGeometry()}) so that drawing and bounds checks don't re-run Catmull-Rom sampling for every road on every incremental
+ * update.
+ */
+public final class RoadGeometry
+{
+	/**
+	 * Distance between sampled points of {@link #coarseCurve}. Coarser than the drawing resolution but fine enough to detect curves that
+	 * bulge into a rectangle when no control point lies inside it.
+	 */
+	public static final double boundsCheckDistanceBetweenPoints = 20.0;
+
+	/**
+	 * The node list this geometry was built from. Compared by identity to detect that the road has since been edited, since edits always
+	 * swap {@link Road#nodes} rather than mutating it in place.
+	 */
+	final List<RoadPathNode> nodes;
+	public final List<Point> locations;
+	/** The curve that is actually drawn. */
+	public final List<Point> curve;
+	/** A coarsely sampled version of {@link #curve} used for overlap checks and spatial indexing. */
+	public final List<Point> coarseCurve;
+	/** Bounding box of {@link #coarseCurve}, or null if the road has fewer than 2 nodes. */
+	public final Rectangle bounds;
+
+	RoadGeometry(List<RoadPathNode> nodes)
+	{
+		this.nodes = nodes;
+		this.locations = Collections.unmodifiableList(PathOperations.toLocationList(nodes));
+		if (locations.size() < 2)
+		{
+			curve = Collections.emptyList();
+			coarseCurve = Collections.emptyList();
+			bounds = null;
+			return;
+		}
+
+		curve = Collections.unmodifiableList(CurveCreator.createCurve(locations));
+		coarseCurve = Collections.unmodifiableList(CurveCreator.createCurve(locations, boundsCheckDistanceBetweenPoints));
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (Point p : coarseCurve)
+		{
+			minX = Math.min(minX, p.x);
+			minY = Math.min(minY, p.y);
+			maxX = Math.max(maxX, p.x);
+			maxY = Math.max(maxY, p.y);
+		}
+		bounds = Rectangle.fromCorners(minX, minY, maxX, maxY);
+	}
+
+	public boolean isDrawable()
+	{
+		return curve.size() >= 2;
+	}
+
+	/**
+	 * Whether any segment of {@link #coarseCurve} has a bounding box that overlaps the given axis-aligned rectangle. Edges touching counts
+	 * as overlapping.
+	 */
+	public boolean overlaps(Rectangle rect)
+	{
+		if (bounds == null || !boxesOverlap(bounds.x, bounds.y, bounds.getRight(), bounds.getBottom(), rect))
+		{
+			return false;
+		}
+
+		for (int i = 0; i < coarseCurve.size() - 1; i++)
+		{
+			Point p1 = coarseCurve.get(i);
+			Point p2 = coarseCurve.get(i + 1);
+			if (boxesOverlap(Math.min(p1.x, p2.x), Math.min(p1.y, p2.y), Math.max(p1.x, p2.x), Math.max(p1.y, p2.y), rect))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static boolean boxesOverlap(double minX, double minY, double maxX, double maxY, Rectangle rect)
+	{
+		return minX <= rect.getRight() && maxX >= rect.x && minY <= rect.getBottom() && maxY >= rect.y;
+	}
+}
@@ -1,5 +1,6 @@
 package nortantis.editor;
 
+import nortantis.PngCompression;
 import nortantis.geom.IntRectangle;
 import nortantis.swing.LookAndFeel;
 import nortantis.util.FileHelper;
@@ -48,6 +49,19 @@ public class UserPreferences
 	 */
 	public IntRectangle windowBounds;
 	public boolean isWindowMaximized;
+	/**
+	 * Whether to save the large sections of a map's edits in a compact binary form. See MapSettings.writeToFile.
+	 */
+	public boolean packEditsInMapFiles;
+	/**
+	 * Whether to keep the background textures, grunge, and frayed border of drawn maps on disk, so that reopening a map is faster. See
+	 * MapPartsDiskCache.
+	 */
+	public boolean cacheMapPartsOnDisk = true;
+	/**
+	 * How hard to compress exported PNG files. Set in the image export dialog.
+	 */
+	public PngCompression pngCompression = PngCompression.Normal;
 
 	/**
 	 * Messages describing preferences that failed to load. Used to warn the user that some of their preferences may have been reset.
@@ -198,6 +212,21 @@ public class UserPreferences
 			tryLoad(props, "isWindowMaximized", () -> isWindowMaximized = Boolean.parseBoolean(props.getProperty("isWindowMaximized")));
 		}
 
+		if (props.containsKey("packEditsInMapFiles"))
+		{
+			tryLoad(props, "packEditsInMapFiles", () -> packEditsInMapFiles = Boolean.parseBoolean(props.getProperty("packEditsInMapFiles")));
+		}
+
+		if (props.containsKey("cacheMapPartsOnDisk"))
+		{
+			tryLoad(props, "cacheMapPartsOnDisk", () -> cacheMapPartsOnDisk = Boolean.parseBoolean(props.getProperty("cacheMapPartsOnDisk")));
+		}
+
+		if (props.containsKey("pngCompression") && !StringUtils.isEmpty(props.getProperty("pngCompression")))
+		{
+			tryLoad(props, "pngCompression", () -> pngCompression = PngCompression.valueOf(props.getProperty("pngCompression")));
+		}
+
 		// If anything failed to load, preserve a copy of the original file so the user can recover values that we are about to overwrite
 		// the
 		// next time preferences are saved.
@@ -321,6 +350,9 @@ public class UserPreferences
 		props.setProperty("hideStartupSupportPanel", hideStartupSupportPanel + "");
 		props.setProperty("windowBounds", windowBounds == null ? "" : formatWindowBounds(windowBounds));
 		props.setProperty("isWindowMaximized", isWindowMaximized + "");
+		props.setProperty("packEditsInMapFiles", packEditsInMapFiles + "");
+		props.setProperty("cacheMapPartsOnDisk", cacheMapPartsOnDisk + "");
+		props.setProperty("pngCompression", pngCompression.name());
 
 		try
 		{
@@ -92,9 +92,12 @@ public class Point implements Comparable<Point>, Serializable
 
 	public static Point fromJSonValue(String value)
 	{
-		String[] pieces = value.replace("(", "").replace(")", "").split(",");
-		double x = Double.parseDouble(pieces[0]);
-		double y = Double.parseDouble(pieces[1]);
+		// Called for every road and river node in a map, so this avoids the copies that replacing the parentheses and splitting would make.
+		int start = value.indexOf('(') + 1;
+		int comma = value.indexOf(',', start);
+		int end = value.indexOf(')', comma);
+		double x = Double.parseDouble(value.substring(start, comma));
+		double y = Double.parseDouble(value.substring(comma + 1, end < 0 ? value.length() : end));
 		return new Point(x, y);
 	}
 
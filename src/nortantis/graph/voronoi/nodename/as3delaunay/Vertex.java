@@ -2,6 +2,8 @@ package nortantis.graph.voronoi.nodename.as3delaunay;
 
 import nortantis.geom.Point;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 final class Vertex implements ICoord
 {
 
@@ -20,7 +22,7 @@ final class Vertex implements ICoord
 		}
 	}
 
-	private static int _nvertices = 0;
+	private static final AtomicInteger _nvertices = new AtomicInteger();
 	private Point _coord;
 
 	@Override
@@ -54,7 +56,7 @@ final class Vertex implements ICoord
 
 	public void setIndex()
 	{
-		_vertexIndex = _nvertices++;
+		_vertexIndex = _nvertices.getAndIncrement();
 	}
 
 	@Override
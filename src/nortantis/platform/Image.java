@@ -42,6 +42,27 @@ public abstract class Image implements AutoCloseable
 		return getWidth() * getHeight();
 	}
 
+	/**
+	 * Approximately how many bytes this image's pixels take up in memory. Used by caches to bound their memory use.
+	 */
+	public long getEstimatedByteSize()
+	{
+		int bytesPerPixel;
+		if (type == ImageType.Grayscale8Bit || type == ImageType.Binary)
+		{
+			bytesPerPixel = 1;
+		}
+		else if (type == ImageType.Grayscale16Bit)
+		{
+			bytesPerPixel = 2;
+		}
+		else
+		{
+			bytesPerPixel = 4;
+		}
+		return (long) getWidth() * getHeight() * bytesPerPixel;
+	}
+
 	public ImageType getType()
 	{
 		return type;
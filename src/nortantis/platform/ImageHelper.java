@@ -21,13 +21,21 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class ImageHelper
 {
 	public static final int minParallelRowCount = 128;
 	public static final int minParallelSize = minParallelRowCount * minParallelRowCount;
 
-	private static ImageHelper instance;
+	private static volatile ImageHelper instance;
+
+	/**
+	 * Kernels are the same every time they're created with the same arguments, and text backgrounds alone create one per piece of text, so
+	 * they're shared across all maps being drawn. The number of distinct sizes used is small, so these aren't bounded.
+	 */
+	private final ConcurrentHashMap<Integer, float[][]> gaussianKernels = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Tuple2<Integer, Double>, float[][]> positiveSincKernels = new ConcurrentHashMap<>();
 
 	public static void setInstance(ImageHelper inst)
 	{
@@ -665,7 +673,15 @@ public abstract class ImageHelper
 		return (int) ((v0 * (1 - dy) + v1 * dy) + 0.5);
 	}
 
+	/**
+	 * @return A normalized Gaussian kernel. It's shared with other callers, so it must not be modified.
+	 */
 	public float[][] createGaussianKernel(int size)
+	{
+		return gaussianKernels.computeIfAbsent(size, this::createGaussianKernelUncached);
+	}
+
+	private float[][] createGaussianKernelUncached(int size)
 	{
 		if (size == 0)
 		{
@@ -716,7 +732,15 @@ public abstract class ImageHelper
 		return kernelSize / (2.0 * 3.0);
 	}
 
+	/**
+	 * @return A normalized kernel of the positive parts of a sinc function. It's shared with other callers, so it must not be modified.
+	 */
 	public float[][] createPositiveSincKernel(int size, double scale)
+	{
+		return positiveSincKernels.computeIfAbsent(new Tuple2<>(size, scale), key -> createPositiveSincKernelUncached(key.getFirst(), key.getSecond()));
+	}
+
+	private float[][] createPositiveSincKernelUncached(int size, double scale)
 	{
 		if (size == 0)
 		{
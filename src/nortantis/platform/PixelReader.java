@@ -23,6 +23,35 @@ public interface PixelReader extends AutoCloseable
 
 	public int getAlpha(int x, int y);
 
+	/**
+	 * Reads a row of pixels as {@link #getRGB} would. Implementations backed by an array copy the row at once.
+	 *
+	 * @param rgbRow
+	 *            Receives the row. Must be as long as the image is wide.
+	 */
+	default void getRGBRow(int y, int[] rgbRow)
+	{
+		for (int x = 0; x < rgbRow.length; x++)
+		{
+			rgbRow[x] = getRGB(x, y);
+		}
+	}
+
+	/**
+	 * Reads a row of pixels as {@link #getGrayLevel} would, for images with at most 8 bits per pixel. Implementations backed by an array
+	 * copy the row at once.
+	 *
+	 * @param grayRow
+	 *            Receives the row. Must be as long as the image is wide.
+	 */
+	default void getGrayLevelRow(int y, byte[] grayRow)
+	{
+		for (int x = 0; x < grayRow.length; x++)
+		{
+			grayRow[x] = (byte) getGrayLevel(x, y);
+		}
+	}
+
 	@Override
 	void close();
 }
@@ -21,6 +21,29 @@ public interface PixelWriter extends AutoCloseable
 
 	void setRGB(int x, int y, int red, int green, int blue, int alpha);
 
+	/**
+	 * Writes a row of pixels as {@link #setRGB(int, int, int)} would. Implementations backed by an array copy the row at once.
+	 */
+	default void setRGBRow(int y, int[] rgbRow)
+	{
+		for (int x = 0; x < rgbRow.length; x++)
+		{
+			setRGB(x, y, rgbRow[x]);
+		}
+	}
+
+	/**
+	 * Writes a row of pixels as {@link #setGrayLevel} would, for images with at most 8 bits per pixel. Implementations backed by an array
+	 * copy the row at once.
+	 */
+	default void setGrayLevelRow(int y, byte[] grayRow)
+	{
+		for (int x = 0; x < grayRow.length; x++)
+		{
+			setGrayLevel(x, y, grayRow[x] & 0xff);
+		}
+	}
+
 	@Override
 	void close();
 }
@@ -4,6 +4,7 @@ import java.io.InputStream;
 import java.util.List;
 
 import nortantis.IconDrawTask;
+import nortantis.PngCompression;
 import nortantis.geom.Rectangle;
 
 /**
@@ -11,7 +12,7 @@ import nortantis.geom.Rectangle;
  */
 public abstract class PlatformFactory
 {
-	private static PlatformFactory instance;
+	private static volatile PlatformFactory instance;
 
 	public static PlatformFactory getInstance()
 	{
@@ -64,6 +65,22 @@ public abstract class PlatformFactory
 	 */
 	public abstract void writeImage(Image image, String filePath);
 
+	/**
+	 * @return Whether {@link #createStripImageWriter(String, int, int, ImageType)} can write an image of the given type to the file's
+	 *         format.
+	 */
+	public abstract boolean canWriteImageInStrips(String filePath, ImageType type);
+
+	/**
+	 * Opens a file to write an image to a strip at a time. Only call this when {@link #canWriteImageInStrips(String, ImageType)} is true.
+	 */
+	public abstract StripImageWriter createStripImageWriter(String filePath, int width, int height, ImageType type);
+
+	/**
+	 * Sets how hard {@link #writeImage(Image, String)} and {@link #createStripImageWriter(String, int, int, ImageType)} compress PNG files.
+	 */
+	public abstract void setPngCompression(PngCompression compression);
+
 	/**
 	 * Checks whether a font exists on the system. Note - callers outside the nortantis.platform packages should call Font.isInstalled(...)
 	 */
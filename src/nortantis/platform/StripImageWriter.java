@@ -0,0 +1,22 @@
+package nortantis.platform;
+
+/**
+ * Writes an image to a file a horizontal strip at a time, top to bottom, so that the whole image never needs to be in memory at once.
+ * Create one with {@link PlatformFactory#createStripImageWriter(String, int, int, ImageType)}.
+ */
+public interface StripImageWriter extends AutoCloseable
+{
+	/**
+	 * Writes the next strip of rows. The strip must be as wide as the image and of the type the writer was created with.
+	 */
+	void writeStrip(Image strip);
+
+	/**
+	 * Finishes the file.
+	 *
+	 * @throws RuntimeException
+	 *             If fewer rows were written than the image's height, in which case the file is incomplete.
+	 */
+	@Override
+	void close();
+}
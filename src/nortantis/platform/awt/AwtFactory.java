@@ -1,5 +1,6 @@
 package nortantis.platform.awt;
 
+import nortantis.PngCompression;
 import nortantis.geom.IntRectangle;
 import nortantis.geom.Rectangle;
 import nortantis.geom.RotatedRectangle;
@@ -22,9 +23,42 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.Iterator;
+import java.util.zip.Deflater;
 
 public class AwtFactory extends PlatformFactory
 {
+	private volatile PngCompression pngCompression = PngCompression.Normal;
+
+	@Override
+	public void setPngCompression(PngCompression compression)
+	{
+		if (compression == null)
+		{
+			throw new IllegalArgumentException("PNG compression can't be null.");
+		}
+		pngCompression = compression;
+	}
+
+	private ParallelPngWriter createPngWriter()
+	{
+		PngCompression compression = pngCompression;
+		if (compression == PngCompression.Store_only)
+		{
+			return new ParallelPngWriter(ParallelPngWriter.storeOnly);
+		}
+		else if (compression == PngCompression.Filter_only)
+		{
+			return new ParallelPngWriter(ParallelPngWriter.defaultCompressionLevel, true);
+		}
+		else if (compression == PngCompression.Smallest)
+		{
+			return new ParallelPngWriter(Deflater.BEST_COMPRESSION);
+		}
+		else
+		{
+			return new ParallelPngWriter(ParallelPngWriter.defaultCompressionLevel);
+		}
+	}
 
 	@Override
 	protected nortantis.platform.ImageHelper createImageHelper()
@@ -119,7 +153,7 @@ public class AwtFactory extends PlatformFactory
 					final float quality = 0.95f;
 					param.setCompressionQuality(quality);
 
-					writer.write(null, new IIOImage(((AwtImage) convertARGBToRGB(image)).image, null, null), param);
+					writer.write(null, new IIOImage(((AwtImage) image).image, null, null), param);
 
 				}
 				finally
@@ -135,6 +169,10 @@ public class AwtFactory extends PlatformFactory
 				}
 
 			}
+			else if (extension.equals("png") && ParallelPngWriter.canWrite(((AwtImage) image).image))
+			{
+				createPngWriter().write(((AwtImage) image).image, new File(filePath));
+			}
 			else
 			{
 				ImageIO.write(((AwtImage) image).image, FilenameUtils.getExtension(filePath), new File(filePath));
@@ -146,6 +184,60 @@ public class AwtFactory extends PlatformFactory
 		}
 	}
 
+	@Override
+	public boolean canWriteImageInStrips(String filePath, ImageType type)
+	{
+		return FilenameUtils.getExtension(filePath).equalsIgnoreCase("png") && ParallelPngWriter.canWrite(AwtImage.toBufferedImageType(type));
+	}
+
+	@Override
+	public StripImageWriter createStripImageWriter(String filePath, int width, int height, ImageType type)
+	{
+		if (!canWriteImageInStrips(filePath, type))
+		{
+			throw new IllegalArgumentException("Can't write an image of type " + type + " in strips to " + filePath + ".");
+		}
+
+		ParallelPngWriter.StripWriter writer;
+		try
+		{
+			writer = createPngWriter().open(new File(filePath), width, height, AwtImage.toBufferedImageType(type));
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		return new StripImageWriter()
+		{
+			@Override
+			public void writeStrip(Image strip)
+			{
+				try
+				{
+					writer.writeRows(((AwtImage) strip).image);
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public void close()
+			{
+				try
+				{
+					writer.close();
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
 	public static Image convertARGBToRGB(Image image)
 	{
 		Image newImage = Image.create(image.getWidth(), image.getHeight(), ImageType.RGB);
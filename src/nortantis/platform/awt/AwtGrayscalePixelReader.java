@@ -35,6 +35,18 @@ public class AwtGrayscalePixelReader extends AwtPixelReader
 		return raster.getSample(x, y, 0);
 	}
 
+	@Override
+	public void getGrayLevelRow(int y, byte[] grayRow)
+	{
+		if (cachedByteArray != null)
+		{
+			int width = image.getWidth();
+			System.arraycopy(cachedByteArray, y * width, grayRow, 0, width);
+			return;
+		}
+		super.getGrayLevelRow(y, grayRow);
+	}
+
 	@Override
 	public int getBandLevel(int x, int y, int band)
 	{
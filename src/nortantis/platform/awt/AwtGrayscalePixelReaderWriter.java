@@ -29,6 +29,18 @@ public class AwtGrayscalePixelReaderWriter extends AwtGrayscalePixelReader imple
 		raster.setSample(x, y, 0, level);
 	}
 
+	@Override
+	public void setGrayLevelRow(int y, byte[] grayRow)
+	{
+		if (cachedByteArray != null)
+		{
+			int width = image.getWidth();
+			System.arraycopy(grayRow, 0, cachedByteArray, y * width, width);
+			return;
+		}
+		PixelReaderWriter.super.setGrayLevelRow(y, grayRow);
+	}
+
 	@Override
 	public void setBandLevel(int x, int y, int band, int level)
 	{
@@ -117,7 +117,7 @@ class AwtImage extends Image
 		return new AwtPixelReaderWriter(this);
 	}
 
-	private int toBufferedImageType(ImageType type)
+	static int toBufferedImageType(ImageType type)
 	{
 		if (type == ImageType.ARGB)
 		{
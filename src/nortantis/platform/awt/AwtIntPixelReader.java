@@ -26,4 +26,18 @@ public class AwtIntPixelReader extends AwtPixelReader
 		}
 		return rgb;
 	}
+
+	@Override
+	public void getRGBRow(int y, int[] rgbRow)
+	{
+		int width = image.getWidth();
+		System.arraycopy(cachedPixelArray, y * width, rgbRow, 0, width);
+		if (!image.hasAlpha())
+		{
+			for (int x = 0; x < width; x++)
+			{
+				rgbRow[x] |= 0xFF000000;
+			}
+		}
+	}
 }
@@ -29,6 +29,13 @@ public class AwtIntPixelReaderWriter extends AwtIntPixelReader implements PixelR
 		cachedPixelArray[(y * image.getWidth()) + x] = rgb;
 	}
 
+	@Override
+	public void setRGBRow(int y, int[] rgbRow)
+	{
+		int width = image.getWidth();
+		System.arraycopy(rgbRow, 0, cachedPixelArray, y * width, width);
+	}
+
 	@Override
 	public void setRGB(int x, int y, int red, int green, int blue)
 	{
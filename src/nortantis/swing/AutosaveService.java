@@ -0,0 +1,230 @@
+package nortantis.swing;
+
+import nortantis.EditsJsonCache;
+import nortantis.MapSettings;
+import nortantis.util.Logger;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the open map to an autosave file next to it, without stalling the editor on large maps.
+ *
+ * The only work done on the event dispatch thread is comparing the editor's edits against a snapshot of them from the last autosave, which
+ * copies just the entries that changed (see {@link EditsDelta}). Applying those changes to the snapshot and writing it happen on a
+ * background thread, and the snapshot is only touched by that thread while a write is in progress. Sections of the edits that didn't change
+ * are copied into the file from an {@link EditsJsonCache} rather than serialized again, and files are written to a temporary file first and
+ * moved into place, so a crash while writing never leaves a partial autosave.
+ *
+ * Autosaves, like deletes of them, run one at a time in the order they were requested. If the previous autosave is still being written when
+ * another is requested, the new one is skipped, and the next one picks up its changes.
+ */
+class AutosaveService
+{
+	private static final String autosaveSuffix = ".autosave";
+
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "autosave");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final EditsJsonCache cache = new EditsJsonCache();
+
+	private Path autosavePath;
+	/**
+	 * The edits as of the last autosave, or null if there hasn't been one since the map was loaded or saved.
+	 */
+	private MapEdits snapshot;
+	/**
+	 * The settings as of the last autosave, used to check for changes to the theme. Their edits are not kept up to date.
+	 */
+	private MapSettings lastAutosavedSettings;
+	private Future<MapEdits> inProgress;
+	/**
+	 * Incremented each time the service is reset, so that an autosave still being written when that happens doesn't put its snapshot back.
+	 */
+	private int generation;
+	private int inProgressGeneration;
+
+	/**
+	 * @return The path the autosave for the map at mapPath is written to, or null if maps in that format aren't autosaved.
+	 */
+	static Path getAutosavePath(Path mapPath)
+	{
+		if (mapPath == null || MapSettings.isOldPropertiesFile(mapPath.toString()))
+		{
+			return null;
+		}
+		// Autosaves are ordinary map files, so that they can also be opened by hand.
+		String baseName = FilenameUtils.getBaseName(mapPath.getFileName().toString());
+		return mapPath.resolveSibling(baseName + autosaveSuffix + MapSettings.fileExtensionWithDot);
+	}
+
+	/**
+	 * @return The autosave for the map at mapPath if it was written after the map was, or null if there isn't one.
+	 */
+	static Path findNewerAutosave(Path mapPath)
+	{
+		Path autosave = getAutosavePath(mapPath);
+		if (autosave == null)
+		{
+			return null;
+		}
+		File autosaveFile = autosave.toFile();
+		if (!autosaveFile.exists() || autosaveFile.lastModified() <= mapPath.toFile().lastModified())
+		{
+			return null;
+		}
+		return autosave;
+	}
+
+	/**
+	 * Starts autosaving a map that was just loaded or saved. Changes are found by comparing against the settings it was loaded or saved with,
+	 * until the first autosave.
+	 *
+	 * @param mapPath
+	 *            Where the map is saved, or null if it hasn't been saved, in which case it isn't autosaved.
+	 */
+	void reset(Path mapPath)
+	{
+		autosavePath = getAutosavePath(mapPath);
+		snapshot = null;
+		lastAutosavedSettings = null;
+		generation++;
+	}
+
+	/**
+	 * Writes an autosave if the settings have changed since the last one. Call it from the event dispatch thread.
+	 *
+	 * @param currentSettings
+	 *            The settings from the editor, which may share the editor's edits. They are not modified, except that their edits field is
+	 *            replaced.
+	 * @param settingsLoadedOrSaved
+	 *            The settings the map was last loaded or saved with. They and their edits must not be modified.
+	 * @param packEdits
+	 *            Whether to store the large sections of the edits in compact binary form. See {@link MapSettings#writeToFile(String, boolean)}.
+	 * @return True if an autosave was started.
+	 */
+	boolean autosaveIfChanged(MapSettings currentSettings, MapSettings settingsLoadedOrSaved, boolean packEdits)
+	{
+		if (autosavePath == null || currentSettings == null || currentSettings.edits == null || settingsLoadedOrSaved.edits == null)
+		{
+			return false;
+		}
+
+		if (inProgress != null)
+		{
+			if (!inProgress.isDone())
+			{
+				return false;
+			}
+			MapEdits result = getResult(inProgress);
+			if (inProgressGeneration == generation)
+			{
+				snapshot = result;
+				if (snapshot == null)
+				{
+					// The autosave failed, so start over from the settings that were loaded or saved, which writes all the changes again.
+					lastAutosavedSettings = null;
+				}
+			}
+			inProgress = null;
+		}
+
+		final boolean startFromLoadedOrSaved = snapshot == null;
+		final MapEdits previous = startFromLoadedOrSaved ? settingsLoadedOrSaved.edits : snapshot;
+		MapSettings previousSettings = lastAutosavedSettings != null ? lastAutosavedSettings : settingsLoadedOrSaved;
+		final EditsDelta delta = EditsDelta.create(previous, currentSettings.edits);
+		if (delta.isEmpty() && currentSettings.fieldsOtherThanEditsEqual(previousSettings))
+		{
+			return false;
+		}
+
+		// Don't let the background thread see the editor's edits, which keep changing.
+		currentSettings.edits = null;
+		lastAutosavedSettings = currentSettings;
+		final Path path = autosavePath;
+		inProgressGeneration = generation;
+		inProgress = writer.submit(() ->
+		{
+			MapEdits edits;
+			if (startFromLoadedOrSaved)
+			{
+				edits = previous.deepCopy();
+				cache.clear();
+			}
+			else
+			{
+				edits = previous;
+				cache.invalidate(delta.getChangedSections());
+			}
+			delta.applyTo(edits, true);
+
+			MapSettings toWrite = currentSettings.deepCopyExceptEdits();
+			toWrite.edits = edits;
+			toWrite.writeToFileAtomically(path.toString(), packEdits, cache);
+			Logger.println("Autosaved to " + path);
+			return edits;
+		});
+		return true;
+	}
+
+	/**
+	 * Deletes the autosave of the open map, after any autosave already started has finished, and waits for that to happen so that the
+	 * autosave is gone even if the application is about to exit.
+	 */
+	void deleteAutosave()
+	{
+		if (autosavePath == null)
+		{
+			return;
+		}
+		final Path path = autosavePath;
+		getResult(writer.submit(() ->
+		{
+			try
+			{
+				Files.deleteIfExists(path);
+			}
+			catch (IOException e)
+			{
+				Logger.printError("Unable to delete autosave '" + path + "':", e);
+			}
+			return null;
+		}));
+	}
+
+	/**
+	 * Waits for any autosave already started to finish. Used by tests.
+	 */
+	void waitForAutosave()
+	{
+		getResult(writer.submit(() -> null));
+	}
+
+	private static <T> T getResult(Future<T> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException e)
+		{
+			Logger.printError("Error while autosaving:", e.getCause());
+			return null;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package nortantis.swing;
+
+import nortantis.WorldGraph;
+import nortantis.geom.Point;
+import nortantis.graph.voronoi.Center;
+import nortantis.graph.voronoi.Edge;
+import nortantis.graph.voronoi.NoisyEdges;
+
+import java.awt.geom.Path2D;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the noisy edges of a graph as prebuilt paths in graph coordinates, so that outlining a large set of centers, such as under a big
+ * brush, doesn't re-trace every edge's points on each repaint.
+ *
+ * A cached path remembers the point list it was built from, and is rebuilt if the graph's noisy edge for that index is no longer the same
+ * list. {@link WorldGraph#rebuildNoisyEdgesForCenter(Center)} always puts new lists for the edges it rebuilds, as does stamping river edge
+ * overrides, so paths are invalidated by those without either needing to know about this cache. Safe to read from any thread.
+ */
+class CenterOutlineCache
+{
+	private static class CachedEdge
+	{
+		final List<Point> source;
+		final Path2D.Float path;
+
+		CachedEdge(List<Point> source, Path2D.Float path)
+		{
+			this.source = source;
+			this.path = path;
+		}
+	}
+
+	private volatile WorldGraph graph;
+	private final Map<Integer, CachedEdge> edgePaths = new ConcurrentHashMap<>();
+
+	public void setGraph(WorldGraph graph)
+	{
+		if (graph != this.graph)
+		{
+			edgePaths.clear();
+			this.graph = graph;
+		}
+	}
+
+	/**
+	 * @return The path of the edge's noisy edge, or null if it doesn't have one, such as at the edge of the map. The result must not be
+	 *         modified.
+	 */
+	public Path2D.Float getEdgePath(Edge edge)
+	{
+		WorldGraph graph = this.graph;
+		NoisyEdges noisyEdges = graph == null ? null : graph.noisyEdges;
+		if (noisyEdges == null)
+		{
+			return null;
+		}
+
+		List<Point> source = noisyEdges.getNoisyEdge(edge.index);
+		if (source == null || source.isEmpty())
+		{
+			return null;
+		}
+
+		CachedEdge cached = edgePaths.get(edge.index);
+		if (cached != null && cached.source == source)
+		{
+			return cached.path;
+		}
+
+		// Truncated to ints to match how VoronoiGraph.drawEdge draws the same edge.
+		Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, source.size());
+		path.moveTo((int) source.get(0).x, (int) source.get(0).y);
+		for (int i = 1; i < source.size(); i++)
+		{
+			path.lineTo((int) source.get(i).x, (int) source.get(i).y);
+		}
+		edgePaths.put(edge.index, new CachedEdge(source, path));
+		return path;
+	}
+
+	/**
+	 * Builds one path containing the edges of the given centers.
+	 *
+	 * @param outerEdgesOnly
+	 *            If true, edges between two centers that are both in the set are left out, so that the set is outlined as a group.
+	 */
+	public Path2D.Float buildOutline(Set<Center> centers, boolean outerEdgesOnly)
+	{
+		Path2D.Float outline = new Path2D.Float();
+		for (Center c : centers)
+		{
+			for (Edge e : c.borders)
+			{
+				if (outerEdgesOnly && e.d0 != null && e.d1 != null && centers.contains(e.d0) && centers.contains(e.d1))
+				{
+					continue;
+				}
+
+				Path2D.Float edgePath = getEdgePath(e);
+				if (edgePath != null)
+				{
+					outline.append(edgePath, false);
+				}
+			}
+		}
+		return outline;
+	}
+}
@@ -0,0 +1,191 @@
+package nortantis.swing;
+
+import nortantis.FreeIconCollection;
+import nortantis.MapText;
+import nortantis.SettingsFingerprint.Section;
+import nortantis.editor.CenterEdit;
+import nortantis.editor.EdgeEdit;
+import nortantis.editor.RegionEdit;
+import nortantis.editor.River;
+import nortantis.editor.Road;
+import nortantis.util.KeyedDelta;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+/**
+ * The parts of a map's edits that changed between two undo points. Keyed edits (centers, regions, edges, and anchored icons) store only the
+ * entries that changed. Text, roads, and rivers are lists without stable keys, so if one of them changed, both versions of that list are
+ * stored, but entries that didn't change are shared with the previous version rather than copied.
+ *
+ * A delta is applied to a private copy of the edits that {@link Undoer} keeps at its latest undo point. That copy and the deltas share
+ * objects, so neither may be modified except by applying deltas.
+ */
+public class EditsDelta
+{
+	private final KeyedDelta<Integer, CenterEdit> centerEdits;
+	private final KeyedDelta<Integer, RegionEdit> regionEdits;
+	private final KeyedDelta<Integer, EdgeEdit> edgeEdits;
+	private final FreeIconCollection.Delta freeIcons;
+	/**
+	 * For each list, the before and after versions, or null for both if the list didn't change.
+	 */
+	private final CopyOnWriteArrayList<MapText> textBefore;
+	private final CopyOnWriteArrayList<MapText> textAfter;
+	private final CopyOnWriteArrayList<Road> roadsBefore;
+	private final CopyOnWriteArrayList<Road> roadsAfter;
+	private final CopyOnWriteArrayList<River> riversBefore;
+	private final CopyOnWriteArrayList<River> riversAfter;
+	private final boolean hasIconEditsBefore;
+	private final boolean hasIconEditsAfter;
+	private final boolean hasInitializedRiversBefore;
+	private final boolean hasInitializedRiversAfter;
+	private final boolean bakeGeneratedTextAsEditsBefore;
+	private final boolean bakeGeneratedTextAsEditsAfter;
+
+	/**
+	 * Creates a delta that turns snapshot into current when applied forward.
+	 *
+	 * @param snapshot
+	 *            Edits that are only ever changed by applying deltas to them. Entries that changed are kept by reference.
+	 * @param current
+	 *            The edits to compare against, such as the ones the editor is changing. Entries that changed are copied.
+	 */
+	public static EditsDelta create(MapEdits snapshot, MapEdits current)
+	{
+		return new EditsDelta(snapshot, current);
+	}
+
+	private EditsDelta(MapEdits snapshot, MapEdits current)
+	{
+		// CenterEdits are immutable, so they don't need copying.
+		centerEdits = KeyedDelta.create(snapshot.centerEdits, current.centerEdits, edit -> edit);
+		regionEdits = KeyedDelta.create(snapshot.regionEdits, current.regionEdits, edit -> edit.deepCopy());
+		edgeEdits = KeyedDelta.create(snapshot.edgeEdits, current.edgeEdits, edit -> edit.deepCopy());
+		freeIcons = snapshot.freeIcons.createDeltaTo(current.freeIcons);
+
+		CopyOnWriteArrayList<MapText> newText = copyListIfChanged(snapshot.text, current.text, MapText::deepCopy);
+		textBefore = newText == null ? null : snapshot.text;
+		textAfter = newText;
+
+		CopyOnWriteArrayList<Road> newRoads = copyListIfChanged(snapshot.roads, current.roads, road -> new Road(road));
+		roadsBefore = newRoads == null ? null : snapshot.roads;
+		roadsAfter = newRoads;
+
+		CopyOnWriteArrayList<River> newRivers = copyListIfChanged(snapshot.rivers, current.rivers, river -> new River(river));
+		riversBefore = newRivers == null ? null : snapshot.rivers;
+		riversAfter = newRivers;
+
+		hasIconEditsBefore = snapshot.hasIconEdits;
+		hasIconEditsAfter = current.hasIconEdits;
+		hasInitializedRiversBefore = snapshot.hasInitializedRivers;
+		hasInitializedRiversAfter = current.hasInitializedRivers;
+		bakeGeneratedTextAsEditsBefore = snapshot.bakeGeneratedTextAsEdits;
+		bakeGeneratedTextAsEditsAfter = current.bakeGeneratedTextAsEdits;
+	}
+
+	/**
+	 * @return A copy of current that reuses entries from snapshot which are equal to the ones in current, or null if the lists are equal.
+	 */
+	private static <T> CopyOnWriteArrayList<T> copyListIfChanged(List<T> snapshot, List<T> current, UnaryOperator<T> copyItem)
+	{
+		if (Objects.equals(snapshot, current))
+		{
+			return null;
+		}
+
+		Map<T, T> unchanged = new HashMap<>();
+		for (T item : snapshot)
+		{
+			unchanged.putIfAbsent(item, item);
+		}
+
+		List<T> result = new ArrayList<>(current.size());
+		for (T item : current)
+		{
+			T existing = unchanged.get(item);
+			result.add(existing != null ? existing : copyItem.apply(item));
+		}
+		return new CopyOnWriteArrayList<>(result);
+	}
+
+	public boolean isEmpty()
+	{
+		return centerEdits.isEmpty() && regionEdits.isEmpty() && edgeEdits.isEmpty() && freeIcons.isEmpty() && textAfter == null && roadsAfter == null
+				&& riversAfter == null && hasIconEditsBefore == hasIconEditsAfter && hasInitializedRiversBefore == hasInitializedRiversAfter
+				&& bakeGeneratedTextAsEditsBefore == bakeGeneratedTextAsEditsAfter;
+	}
+
+	/**
+	 * @return The sections of the edits this delta changes.
+	 */
+	public EnumSet<Section> getChangedSections()
+	{
+		EnumSet<Section> result = EnumSet.noneOf(Section.class);
+		if (!centerEdits.isEmpty())
+		{
+			result.add(Section.CenterEdits);
+		}
+		if (!regionEdits.isEmpty())
+		{
+			result.add(Section.RegionEdits);
+		}
+		if (!freeIcons.isEmpty())
+		{
+			result.add(Section.Icons);
+		}
+		if (textAfter != null)
+		{
+			result.add(Section.Text);
+		}
+		if (roadsAfter != null)
+		{
+			result.add(Section.Roads);
+		}
+		if (riversAfter != null)
+		{
+			result.add(Section.Rivers);
+		}
+		if (hasIconEditsBefore != hasIconEditsAfter || hasInitializedRiversBefore != hasInitializedRiversAfter
+				|| bakeGeneratedTextAsEditsBefore != bakeGeneratedTextAsEditsAfter)
+		{
+			result.add(Section.EditFlags);
+		}
+		// Edge edits are only kept in old maps until their rivers are converted, and aren't one of the fingerprinted sections.
+		return result;
+	}
+
+	/**
+	 * Applies this delta to the snapshot it was created from (forward) or to the result of applying it forward (backward).
+	 */
+	public void applyTo(MapEdits snapshot, boolean forward)
+	{
+		centerEdits.applyTo(snapshot.centerEdits, forward);
+		regionEdits.applyTo(snapshot.regionEdits, forward);
+		edgeEdits.applyTo(snapshot.edgeEdits, forward);
+		snapshot.freeIcons.apply(freeIcons, forward);
+
+		if (textAfter != null)
+		{
+			snapshot.text = forward ? textAfter : textBefore;
+		}
+		if (roadsAfter != null)
+		{
+			snapshot.roads = forward ? roadsAfter : roadsBefore;
+		}
+		if (riversAfter != null)
+		{
+			snapshot.rivers = forward ? riversAfter : riversBefore;
+		}
+
+		snapshot.hasIconEdits = forward ? hasIconEditsAfter : hasIconEditsBefore;
+		snapshot.hasInitializedRivers = forward ? hasInitializedRiversAfter : hasInitializedRiversBefore;
+		snapshot.bakeGeneratedTextAsEdits = forward ? bakeGeneratedTextAsEditsAfter : bakeGeneratedTextAsEditsBefore;
+	}
+}
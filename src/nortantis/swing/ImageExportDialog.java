@@ -5,8 +5,13 @@ import nortantis.CancelledException;
 import nortantis.ImageCache;
 import nortantis.MapCreator;
 import nortantis.MapSettings;
+import nortantis.PngCompression;
+import nortantis.TileLayout;
+import nortantis.TilePyramidWriter;
 import nortantis.editor.ExportAction;
+import nortantis.editor.UserPreferences;
 import nortantis.platform.Image;
+import nortantis.platform.PlatformFactory;
 import nortantis.util.FileHelper;
 import nortantis.platform.ImageHelper;
 import nortantis.swing.translation.Translation;
@@ -19,6 +24,7 @@ import javax.swing.filechooser.FileSystemView;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -36,8 +42,11 @@ public class ImageExportDialog extends JDialog
 	private JSlider resolutionSlider;
 	private MapCreator mapCreator;
 	private RowHider pathChooserHider;
+	private RowHider tileFolderHider;
+	private RowHider tileLayoutHider;
 	private JRadioButton fileRadioButton;
 	private JRadioButton openInViewerRadioButton;
+	private JRadioButton tilesRadioButton;
 	List<String> allowedExtension = Arrays.asList("png", "jpg", "jpeg");
 	private ImageExportType type;
 
@@ -113,6 +122,11 @@ public class ImageExportDialog extends JDialog
 			public void actionPerformed(ActionEvent e)
 			{
 				pathChooserHider.setVisible(fileRadioButton.isSelected());
+				if (tileFolderHider != null)
+				{
+					tileFolderHider.setVisible(tilesRadioButton.isSelected());
+					tileLayoutHider.setVisible(tilesRadioButton.isSelected());
+				}
 			}
 		};
 
@@ -122,12 +136,17 @@ public class ImageExportDialog extends JDialog
 		openInViewerRadioButton = new JRadioButton(Translation.get("imageExport.openInViewer"));
 		openInViewerRadioButton.addActionListener(radioButtonListener);
 
+		// Heightmaps are for other applications rather than for viewing, so they can't be exported as tiles.
+		tilesRadioButton = new JRadioButton(Translation.get("imageExport.saveAsTiles"));
+		tilesRadioButton.addActionListener(radioButtonListener);
+
 		ButtonGroup buttonGroup = new ButtonGroup();
 		buttonGroup.add(fileRadioButton);
 		buttonGroup.add(openInViewerRadioButton);
+		buttonGroup.add(tilesRadioButton);
 
 		organizer.addLabelAndComponentsVertical(Translation.get("imageExport.exportAction.label"), Translation.get("imageExport.exportAction.help"),
-				Arrays.asList(fileRadioButton, openInViewerRadioButton));
+				type == ImageExportType.Map ? Arrays.asList(fileRadioButton, openInViewerRadioButton, tilesRadioButton) : Arrays.asList(fileRadioButton, openInViewerRadioButton));
 
 		JTextField pathField = new JTextField();
 		// A JTextField with no column count prefers to be as wide as its text, and its text here is an absolute file path, so pack() would
@@ -182,6 +201,49 @@ public class ImageExportDialog extends JDialog
 
 		pathChooserHider = organizer.addLabelAndComponentsVertical(Translation.get("imageExport.exportFilePath.label"), "", Arrays.asList(pathField, Box.createVerticalStrut(5), pathPanel));
 
+		JTextField tileFolderField = new JTextField();
+		tileFolderField.setColumns(20);
+		JComboBox<TileLayout> tileLayoutComboBox = new JComboBox<>(TileLayout.values());
+		JButton browseTileFolderButton = new JButton(Translation.get("theme.browse"));
+		if (type == ImageExportType.Map)
+		{
+			// Default to a folder next to where the map image would be saved.
+			String imagePath = pathField.getText();
+			if (imagePath != null && !imagePath.isEmpty())
+			{
+				tileFolderField.setText(Paths.get(FilenameUtils.removeExtension(imagePath) + " tiles").toString());
+			}
+
+			browseTileFolderButton.addActionListener(new ActionListener()
+			{
+				public void actionPerformed(ActionEvent e)
+				{
+					File folder = new File(tileFolderField.getText());
+					JFileChooser folderChooser = new JFileChooser(folder.getParentFile());
+					folderChooser.setDialogTitle(Translation.get("imageExport.selectTileFolder"));
+					folderChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+					folderChooser.setSelectedFile(folder);
+					if (folderChooser.showDialog(getContentPane(), Translation.get("imageExport.select")) == JFileChooser.APPROVE_OPTION)
+					{
+						tileFolderField.setText(folderChooser.getSelectedFile().toString());
+					}
+				}
+			});
+
+			JPanel tileFolderPanel = new JPanel();
+			tileFolderPanel.setLayout(new BoxLayout(tileFolderPanel, BoxLayout.X_AXIS));
+			tileFolderPanel.add(browseTileFolderButton);
+			tileFolderPanel.add(Box.createHorizontalGlue());
+
+			tileFolderHider = organizer.addLabelAndComponentsVertical(Translation.get("imageExport.tileFolder.label"), Translation.get("imageExport.tileFolder.help"),
+					Arrays.asList(tileFolderField, Box.createVerticalStrut(5), tileFolderPanel));
+			tileLayoutHider = organizer.addLabelAndComponent(Translation.get("imageExport.tileLayout.label"), Translation.get("imageExport.tileLayout.help"), tileLayoutComboBox);
+		}
+
+		JComboBox<PngCompression> pngCompressionComboBox = new JComboBox<>(PngCompression.values());
+		pngCompressionComboBox.setSelectedItem(UserPreferences.getInstance().pngCompression);
+		organizer.addLabelAndComponent(Translation.get("imageExport.pngCompression.label"), Translation.get("imageExport.pngCompression.help"), pngCompressionComboBox);
+
 		progressBar = new JProgressBar();
 		progressBar.setStringPainted(true);
 		progressBar.setString(Translation.get("imageExport.exporting"));
@@ -196,6 +258,10 @@ public class ImageExportDialog extends JDialog
 			{
 				openInViewerRadioButton.setSelected(true);
 			}
+			else if (mainWindow.defaultMapExportAction == ExportAction.SaveAsTiles)
+			{
+				tilesRadioButton.setSelected(true);
+			}
 			else
 			{
 				fileRadioButton.setSelected(true);
@@ -224,8 +290,9 @@ public class ImageExportDialog extends JDialog
 			@Override
 			public void actionPerformed(ActionEvent e)
 			{
-				ExportAction exportAction = fileRadioButton.isSelected() ? ExportAction.SaveToFile : ExportAction.OpenInDefaultImageViewer;
+				ExportAction exportAction = getSelectedExportAction();
 				String exportPath = null;
+				String tileFolder = null;
 
 				if (exportAction == ExportAction.SaveToFile)
 				{
@@ -271,10 +338,44 @@ public class ImageExportDialog extends JDialog
 						return;
 					}
 				}
+				else if (exportAction == ExportAction.SaveAsTiles)
+				{
+					try
+					{
+						if (tileFolderField.getText() == null || tileFolderField.getText().isEmpty())
+						{
+							SwingHelper.showMessageDialog(getContentPane(), Translation.get("imageExport.pathRequired"), Translation.get("common.error"), JOptionPane.ERROR_MESSAGE);
+							return;
+						}
+
+						tileFolder = Paths.get(tileFolderField.getText()).toString();
+						if (new File(tileFolder).isFile())
+						{
+							SwingHelper.showMessageDialog(getContentPane(), Translation.get("imageExport.tileFolderIsFile"), Translation.get("common.error"), JOptionPane.ERROR_MESSAGE);
+							return;
+						}
+
+						String parent = new File(tileFolder).getParent();
+						if (parent == null || !new File(parent).exists())
+						{
+							SwingHelper.showMessageDialog(getContentPane(), Translation.get("imageExport.folderDoesNotExist"), Translation.get("common.error"), JOptionPane.ERROR_MESSAGE);
+							return;
+						}
+					}
+					catch (InvalidPathException ex)
+					{
+						SwingHelper.showMessageDialog(getContentPane(), Translation.get("imageExport.pathInvalid"), Translation.get("common.error"), JOptionPane.ERROR_MESSAGE);
+						return;
+					}
+				}
 
-				final String exportPathFinal = exportPath;
+				final String exportPathFinal = exportAction == ExportAction.SaveAsTiles ? tileFolder : exportPath;
+				final TileLayout tileLayout = (TileLayout) tileLayoutComboBox.getSelectedItem();
 
 				rememberResolutionAndPath(mainWindow, resolutionSlider.getValue() / 100.0, exportPath);
+				PngCompression pngCompression = (PngCompression) pngCompressionComboBox.getSelectedItem();
+				UserPreferences.getInstance().pngCompression = pngCompression;
+				PlatformFactory.getInstance().setPngCompression(pngCompression);
 
 				exportButton.setEnabled(false);
 				resolutionSlider.setEnabled(false);
@@ -282,13 +383,18 @@ public class ImageExportDialog extends JDialog
 				browseSavePathButton.setEnabled(false);
 				fileRadioButton.setEnabled(false);
 				openInViewerRadioButton.setEnabled(false);
+				tilesRadioButton.setEnabled(false);
+				tileFolderField.setEnabled(false);
+				browseTileFolderButton.setEnabled(false);
+				tileLayoutComboBox.setEnabled(false);
+				pngCompressionComboBox.setEnabled(false);
 				mapCreator = new MapCreator();
 
 				// Run the export through doWhenMapIsReadyForInteractions so
 				// that we don't risk running out of memory
 				// or end up clearing the image cache while a draw is still
 				// going.
-				mainWindow.updater.doWhenMapIsNotDrawing(() -> exportMapAndCloseDialog(mainWindow, exportAction, exportPathFinal));
+				mainWindow.updater.doWhenMapIsNotDrawing(() -> exportMapAndCloseDialog(mainWindow, exportAction, exportPathFinal, tileLayout));
 			}
 		});
 		bottomButtonsPanel.add(exportButton);
@@ -357,19 +463,47 @@ public class ImageExportDialog extends JDialog
 			}
 		});
 
-		// Size to the content rather than to a fixed width, so translated labels are not clipped. Pack with the export path row showing
-		// because that is the taller of the two states this dialog toggles between, and the row can be switched back on without resizing.
+		// Size to the content rather than to a fixed width, so translated labels are not clipped. Pack with the tile rows showing, or the
+		// export path row for heightmaps, because those are the tallest states this dialog toggles between, and the other rows can be
+		// switched on without resizing.
 		boolean pathChooserWasVisible = pathChooserHider.isVisible();
-		pathChooserHider.setVisible(true);
+		if (tileFolderHider != null)
+		{
+			pathChooserHider.setVisible(false);
+			tileFolderHider.setVisible(true);
+			tileLayoutHider.setVisible(true);
+		}
+		else
+		{
+			pathChooserHider.setVisible(true);
+		}
 		pack();
 		setSize(Math.max(getWidth(), minimumWidth), Math.max(getHeight(), type == ImageExportType.Map ? 293 : 380));
 		pathChooserHider.setVisible(pathChooserWasVisible);
+		if (tileFolderHider != null)
+		{
+			tileFolderHider.setVisible(tilesRadioButton.isSelected());
+			tileLayoutHider.setVisible(tilesRadioButton.isSelected());
+		}
+	}
+
+	private ExportAction getSelectedExportAction()
+	{
+		if (fileRadioButton.isSelected())
+		{
+			return ExportAction.SaveToFile;
+		}
+		if (tilesRadioButton.isSelected())
+		{
+			return ExportAction.SaveAsTiles;
+		}
+		return ExportAction.OpenInDefaultImageViewer;
 	}
 
 	private void rememberResolutionAndPath(MainWindow mainWindow, double resolution, String path)
 	{
 		boolean hasPath = path != null && !path.isEmpty();
-		ExportAction exportAction = fileRadioButton.isSelected() ? ExportAction.SaveToFile : ExportAction.OpenInDefaultImageViewer;
+		ExportAction exportAction = getSelectedExportAction();
 		if (type == ImageExportType.Map)
 		{
 			mainWindow.exportResolution = resolution;
@@ -390,7 +524,11 @@ public class ImageExportDialog extends JDialog
 		}
 	}
 
-	private void exportMapAndCloseDialog(MainWindow mainWindow, ExportAction exportAction, String pathToSaveTo)
+	/**
+	 * @param pathToSaveTo
+	 *            The image file to write, or the folder to write tiles to when exportAction is SaveAsTiles.
+	 */
+	private void exportMapAndCloseDialog(MainWindow mainWindow, ExportAction exportAction, String pathToSaveTo, TileLayout tileLayout)
 	{
 		progressBar.setVisible(true);
 		if (type == ImageExportType.Map)
@@ -414,7 +552,29 @@ public class ImageExportDialog extends JDialog
 				Image result;
 				try
 				{
-					if (type == ImageExportType.Map)
+					if (type == ImageExportType.Map && exportAction == ExportAction.SaveToFile)
+					{
+						// Lets the map creator write the top layers of the map straight to the file in strips rather than creating the
+						// full-size finished map and then writing it.
+						try
+						{
+							mapCreator.createMapAndWrite(settings, pathToSaveTo);
+						}
+						catch (CancelledException e)
+						{
+							throw e;
+						}
+						catch (Exception writeException)
+						{
+							if (writeException.getCause() instanceof IOException || writeException instanceof IOException)
+							{
+								throw new UnableToSaveException(Translation.get("imageExport.unableToSave", pathToSaveTo), writeException);
+							}
+							throw writeException;
+						}
+						result = null;
+					}
+					else if (type == ImageExportType.Map)
 					{
 						result = mapCreator.createMap(settings, null, null);
 					}
@@ -439,7 +599,20 @@ public class ImageExportDialog extends JDialog
 				}
 
 				String fileName;
-				if (exportAction == ExportAction.OpenInDefaultImageViewer)
+				if (exportAction == ExportAction.SaveAsTiles)
+				{
+					fileName = pathToSaveTo;
+					Logger.println("Writing map tiles.");
+					try
+					{
+						new TilePyramidWriter(tileLayout).write(result, pathToSaveTo);
+					}
+					catch (IOException writeException)
+					{
+						throw new UnableToSaveException(Translation.get("imageExport.unableToSave", fileName), writeException);
+					}
+				}
+				else if (exportAction == ExportAction.OpenInDefaultImageViewer)
 				{
 					Logger.println("Opening the " + (type == ImageExportType.Map ? "map" : "heightmap") + " in your system's default image editor.");
 					fileName = ImageHelper.getInstance().openImageInSystemDefaultEditor(result, "map_" + settings.randomSeed);
@@ -447,15 +620,19 @@ public class ImageExportDialog extends JDialog
 				else
 				{
 					fileName = pathToSaveTo;
-					try
-					{
-						ImageHelper.getInstance().write(result, fileName);
-					}
-					catch (Exception writeException)
+					// Maps saved to a file were written by createMapAndWrite.
+					if (type == ImageExportType.Heightmap)
 					{
-						// ImageIO surfaces write failures (e.g. an unwritable location like a drive root) as an obscure
-						// "Can't create an ImageOutputStream!" message. Replace it with something the user can act on.
-						throw new UnableToSaveException(Translation.get("imageExport.unableToSave", fileName), writeException);
+						try
+						{
+							ImageHelper.getInstance().write(result, fileName);
+						}
+						catch (Exception writeException)
+						{
+							// ImageIO surfaces write failures (e.g. an unwritable location like a drive root) as an obscure
+							// "Can't create an ImageOutputStream!" message. Replace it with something the user can act on.
+							throw new UnableToSaveException(Translation.get("imageExport.unableToSave", fileName), writeException);
+						}
 					}
 				}
 				Logger.println("Map written to " + fileName);
@@ -493,6 +670,11 @@ public class ImageExportDialog extends JDialog
 					SwingHelper.showMessageDialog(getContentPane(), type == ImageExportType.Map ? Translation.get("imageExport.mapExported") : Translation.get("imageExport.heightmapExported"),
 							"Success", JOptionPane.INFORMATION_MESSAGE);
 				}
+				else if (exportAction == ExportAction.SaveAsTiles && !isError && !isCanceled)
+				{
+					progressBar.setVisible(false);
+					SwingHelper.showMessageDialog(getContentPane(), Translation.get("imageExport.tilesExported"), "Success", JOptionPane.INFORMATION_MESSAGE);
+				}
 
 				dispose();
 			}
@@ -2,11 +2,13 @@ package nortantis.swing;
 
 import com.formdev.flatlaf.FlatDarkLaf;
 import com.formdev.flatlaf.FlatLightLaf;
+import nortantis.ArtPackWarmup;
 import nortantis.CancelledException;
 import nortantis.DebugFlags;
 import nortantis.GeneratedDimension;
 import nortantis.ImageCache;
 import nortantis.MapSettings;
+import nortantis.SettingsFingerprint;
 import nortantis.editor.*;
 import nortantis.geom.IntDimension;
 import nortantis.geom.IntRectangle;
@@ -57,6 +59,19 @@ public class MainWindow extends JFrame implements ILoggerTarget
 	private Path openSettingsFilePath;
 	private boolean forceSaveAs;
 	MapSettings lastSettingsLoadedOrSaved;
+	/**
+	 * Fingerprint of lastSettingsLoadedOrSaved for checking for unsaved changes. Created lazily, and cleared whenever
+	 * lastSettingsLoadedOrSaved changes.
+	 */
+	private SettingsFingerprint lastSettingsFingerprint;
+	/**
+	 * True when the open map was restored from an autosave and hasn't been saved since, so that it shows as having unsaved changes even
+	 * though nothing has changed since it was loaded.
+	 */
+	private boolean isRestoredFromAutosave;
+	private final AutosaveService autosaveService = new AutosaveService();
+	private static final int autosaveIntervalMillis = 60 * 1000;
+	private javax.swing.Timer autosaveTimer;
 	boolean hasDrawnCurrentMapAtLeastOnce;
 	/**
 	 * False until the first full draw after a map is loaded has completed. While false, a full draw that removes cities for landing on water
@@ -166,6 +181,9 @@ public class MainWindow extends JFrame implements ILoggerTarget
 		return thread;
 	});
 	private final java.util.concurrent.atomic.AtomicLong displayScaleGeneration = new java.util.concurrent.atomic.AtomicLong();
+	// Half-sized, quarter-sized, etc. copies of mapFromMapCreator, built by the first background rescale that zooms out past 50% and patched
+	// after each incremental draw, so zoomed-out rescales start from a level near the target size instead of the full map.
+	private final MipmapPyramid displayPyramid = new MipmapPyramid();
 	/**
 	 * How long zooming must go without committing a new image before the garbage it left behind is collected. Short enough that a long
 	 * burst of zooming still gets collected partway through, which is what keeps peak heap usage down, rather than only once the burst
@@ -248,6 +266,10 @@ public class MainWindow extends JFrame implements ILoggerTarget
 			throw ex;
 		}
 
+		// Start loading the installed art pack while the user picks a map, so its icons' decoded images and masks are in the disk cache
+		// by the time they're needed.
+		ArtPackWarmup.getInstance().warmUp(null);
+
 		// Start in the no-map state (fields locked). If a map was passed on the command line, open it after the window is shown, via
 		// invokeLater, so a missing-art-pack prompt appears over the window instead of before it. The startup screen is shown while there is
 		// no map, and is restored if opening the command-line map is cancelled or fails.
@@ -524,6 +546,9 @@ public class MainWindow extends JFrame implements ILoggerTarget
 
 		addWindowStateListener(event -> restoreBoundsWhenUnMaximized(event));
 
+		autosaveTimer = new javax.swing.Timer(autosaveIntervalMillis, e -> autosave());
+		autosaveTimer.start();
+
 		addComponentListener(new ComponentAdapter()
 		{
 			@Override
@@ -1180,6 +1205,8 @@ public class MainWindow extends JFrame implements ILoggerTarget
 				{
 					mapEditingPanel.mapFromMapCreator.close();
 				}
+				// A full draw can redraw into the same image, so the levels built from it are stale either way.
+				displayPyramid.clear();
 				mapEditingPanel.mapFromMapCreator = map;
 				// Record the resolution THIS map was actually drawn at, not the live target display quality: when quality changes are queued or
 				// coalesced, a finishing draw can be at an earlier resolution than the current target, and using the target here would tell the
@@ -1190,6 +1217,25 @@ public class MainWindow extends JFrame implements ILoggerTarget
 				warnIfCitiesWereRemovedForWater(citiesRemovedForWater, wasTriggeredByUndoRedo);
 			}
 
+			@Override
+			protected void onPreviewDrawn(Image preview, double fractionOfFullResolution)
+			{
+				if (mapEditingPanel.mapFromMapCreator == null || mapEditingPanel.getImage() == null)
+				{
+					return;
+				}
+
+				// Show the preview at the size the full quality map will be displayed at. Only the displayed image changes; the map and
+				// resolution the overlays are drawn from stay as they are until the full draw finishes, which replaces this image. Bumping the
+				// generation keeps a rescale of the old map that's still in flight from covering the preview.
+				displayScaleGeneration.incrementAndGet();
+				int zoomedWidth = Math.max(1, (int) (preview.getWidth() / fractionOfFullResolution * zoom));
+				try (Image scaled = ImageHelper.getInstance().scaleByWidth(preview, zoomedWidth, Method.BALANCED))
+				{
+					mapEditingPanel.setImage(AwtBridge.toBufferedImage(scaled));
+				}
+			}
+
 			@Override
 			protected void onFinishedDrawingIncremental(boolean anotherDrawIsQueued, int borderPaddingAsDrawn, IntRectangle incrementalChangeArea, List<String> warningMessages)
 			{
@@ -1243,6 +1289,7 @@ public class MainWindow extends JFrame implements ILoggerTarget
 					// Drawing for the first time can create or modify the
 					// edits, so update them in lastSettingsLoadedOrSaved.
 					lastSettingsLoadedOrSaved.edits = edits.deepCopy();
+					lastSettingsFingerprint = null;
 				}
 
 				updateDisplayedMapFromGeneratedMap(false, incrementalChangeArea, false, borderPaddingAsDrawn);
@@ -1277,7 +1324,7 @@ public class MainWindow extends JFrame implements ILoggerTarget
 
 				}
 
-				boolean isChange = settingsHaveUnsavedChanges();
+				boolean isChange = settingsHaveUnsavedChanges(false);
 				updateFrameTitle(isChange, !isChange);
 			}
 
@@ -1320,7 +1367,7 @@ public class MainWindow extends JFrame implements ILoggerTarget
 				// couldn't draw in the space provided.
 				if (updateType != UpdateType.Incremental)
 				{
-					boolean isChange = settingsHaveUnsavedChanges();
+					boolean isChange = settingsHaveUnsavedChanges(false);
 					updateFrameTitle(isChange, !isChange);
 				}
 			}
@@ -1469,6 +1516,32 @@ public class MainWindow extends JFrame implements ILoggerTarget
 			}
 		});
 
+		JCheckBoxMenuItem packEditsMenuItem = new JCheckBoxMenuItem(Translation.get("menu.file.packEdits"));
+		packEditsMenuItem.setToolTipText(Translation.get("menu.file.packEdits.tooltip"));
+		packEditsMenuItem.setSelected(UserPreferences.getInstance().packEditsInMapFiles);
+		fileMenu.add(packEditsMenuItem);
+		packEditsMenuItem.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				UserPreferences.getInstance().packEditsInMapFiles = packEditsMenuItem.isSelected();
+			}
+		});
+
+		JCheckBoxMenuItem cacheMapPartsMenuItem = new JCheckBoxMenuItem(Translation.get("menu.file.cacheMapParts"));
+		cacheMapPartsMenuItem.setToolTipText(Translation.get("menu.file.cacheMapParts.tooltip"));
+		cacheMapPartsMenuItem.setSelected(UserPreferences.getInstance().cacheMapPartsOnDisk);
+		fileMenu.add(cacheMapPartsMenuItem);
+		cacheMapPartsMenuItem.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				UserPreferences.getInstance().cacheMapPartsOnDisk = cacheMapPartsMenuItem.isSelected();
+			}
+		});
+
 		fileMenu.addSeparator();
 
 		exportMapAsImageMenuItem = new JMenuItem(Translation.get("menu.file.exportAsImage"));
@@ -2133,6 +2206,8 @@ public class MainWindow extends JFrame implements ILoggerTarget
 			ImageCache.clear();
 			ThemePanel.clearBackgroundImageCache();
 			MapSettings settings = getSettingsFromGUI(false);
+			// Reload the open map's art pack assets in the background so the draw that usually follows doesn't load them one at a time.
+			ArtPackWarmup.getInstance().warmUp(settings);
 			themePanel.handleImagesRefresh(settings);
 			// Tell Icons tool to refresh image previews
 			toolsPanel.handleImagesRefresh(settings);
@@ -2286,7 +2361,11 @@ public class MainWindow extends JFrame implements ILoggerTarget
 
 		try
 		{
-			MapSettings settings = new MapSettings(absolutePath);
+			Path autosavePath = AutosaveService.findNewerAutosave(Paths.get(absolutePath));
+			final boolean restoreAutosave = autosavePath != null && SwingHelper.showConfirmDialog(this,
+					Translation.get("mainWindow.restoreAutosave", FilenameUtils.getName(absolutePath)), Translation.get("mainWindow.restoreAutosave.title"),
+					JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION;
+			MapSettings settings = new MapSettings(restoreAutosave ? autosavePath.toString() : absolutePath);
 
 			// Refresh the art pack list from disk so a pack the user just added (e.g. the one this map needs) is seen and not reported as
 			// missing.
@@ -2319,9 +2398,14 @@ public class MainWindow extends JFrame implements ILoggerTarget
 			updater.doWhenMapIsNotDrawing(() ->
 			{
 				loadSettingsIntoGUI(settings);
+				if (restoreAutosave)
+				{
+					isRestoredFromAutosave = true;
+					updateFrameTitle(true, false);
+				}
 			});
 
-			updateFrameTitle(false, true);
+			updateFrameTitle(restoreAutosave, !restoreAutosave);
 			return true;
 		}
 		catch (Exception e)
@@ -2483,8 +2567,27 @@ public class MainWindow extends JFrame implements ILoggerTarget
 		}
 
 		// A draw just finished.
+		if (incrementalChangeArea != null)
+		{
+			Lock mapReadLock = updater.getMapReadLock();
+			mapReadLock.lock();
+			try
+			{
+				displayPyramid.update(mapEditingPanel.mapFromMapCreator, incrementalChangeArea);
+			}
+			finally
+			{
+				mapReadLock.unlock();
+			}
+		}
+
 		Method method = targetZoom < 0.34 ? Method.QUALITY : Method.BALANCED;
-		if (method == Method.BALANCED && incrementalChangeArea != null && targetZoom == zoom && mapEditingPanel.getImage() != null)
+		if (method == Method.QUALITY && incrementalChangeArea != null && targetZoom == zoom && mapEditingPanel.getImage() != null
+				&& patchDisplayedMapFromPyramid(incrementalChangeArea, borderPadding))
+		{
+			finishDisplayUpdate();
+		}
+		else if (method == Method.BALANCED && incrementalChangeArea != null && targetZoom == zoom && mapEditingPanel.getImage() != null)
 		{
 			// Fast path: the displayed image is already at this zoom, so patch just the changed region directly into it, synchronously
 			// on the EDT (a small-region scale is only a couple ms).
@@ -2510,13 +2613,52 @@ public class MainWindow extends JFrame implements ILoggerTarget
 		}
 		else
 		{
-			// A QUALITY downscale of an incremental update, or the displayed zoom doesn't match the target yet (e.g. the first draw at
-			// fit-to-window). Do the (possibly slow) rescale on a background thread so it never blocks the EDT.
+			// An incremental update where the displayed zoom doesn't match the target yet (e.g. the first draw at fit-to-window), or a QUALITY
+			// downscale whose pyramid level hasn't been built yet. Do the (possibly slow) rescale on a background thread so it never blocks the
+			// EDT. That also builds the level for the next update.
 			lastDisplayUpdateWasAsync = true;
 			fullRescale(targetZoom, false, borderPadding, false, false);
 		}
 	}
 
+	/**
+	 * Zoomed far out, patches the area an incremental draw changed into the displayed image from the pyramid level nearest the displayed
+	 * size. That level was just patched and is within a factor of two of the displayed size, so a bilinear patch from it is close to what a
+	 * QUALITY rescale of the full map would give, at the cost of a small-region scale instead of a full rescale.
+	 *
+	 * @return False, without changing anything, if that level hasn't been built yet. Levels are only built off the EDT.
+	 */
+	private boolean patchDisplayedMapFromPyramid(IntRectangle incrementalChangeArea, int borderPadding)
+	{
+		Image displayed = AwtBridge.wrapBufferedImage(mapEditingPanel.getImage());
+		Lock mapReadLock = updater.getMapReadLock();
+		mapReadLock.lock();
+		try
+		{
+			synchronized (displayPyramid)
+			{
+				Image level = displayPyramid.getBuiltLevelForWidth(mapEditingPanel.mapFromMapCreator, displayed.getWidth());
+				if (level == null)
+				{
+					return false;
+				}
+				mapEditingPanel.setResolution(displayedMapResolution);
+				mapEditingPanel.setBorderPadding(borderPadding);
+				double levelScale = (double) level.getWidth() / mapEditingPanel.mapFromMapCreator.getWidth();
+				int levelX = (int) (incrementalChangeArea.x * levelScale);
+				int levelY = (int) (incrementalChangeArea.y * levelScale);
+				IntRectangle changeAreaInLevel = new IntRectangle(levelX, levelY, (int) Math.ceil((incrementalChangeArea.x + incrementalChangeArea.width) * levelScale) - levelX,
+						(int) Math.ceil((incrementalChangeArea.y + incrementalChangeArea.height) * levelScale) - levelY);
+				ImageHelper.getInstance().scaleInto(level, displayed, changeAreaInLevel);
+				return true;
+			}
+		}
+		finally
+		{
+			mapReadLock.unlock();
+		}
+	}
+
 	/**
 	 * Produces a fresh full rescale of mapEditingPanel.mapFromMapCreator at targetZoom and commits it to the display. When {@code synchronous}
 	 * is false the scale runs on a background thread so a slow QUALITY downscale never blocks the EDT; requests are then coalesced via
@@ -2572,7 +2714,19 @@ public class MainWindow extends JFrame implements ILoggerTarget
 				// Superseded while waiting for an in-flight incremental update to finish mutating the map buffer.
 				return;
 			}
-			scaledImage = scaleFullMap(sourceMap, zoomedWidth, method);
+			if (zoomedWidth < sourceMap.getWidth())
+			{
+				synchronized (displayPyramid)
+				{
+					// On the EDT, only use a level that's already built, and otherwise scale from the full map as if there were no pyramid.
+					Image level = synchronous ? displayPyramid.getBuiltLevelForWidth(sourceMap, zoomedWidth) : displayPyramid.getLevelForWidth(sourceMap, zoomedWidth);
+					scaledImage = scaleFullMap(level != null ? level : sourceMap, zoomedWidth, method);
+				}
+			}
+			else
+			{
+				scaledImage = scaleFullMap(sourceMap, zoomedWidth, method);
+			}
 		}
 		finally
 		{
@@ -2978,7 +3132,7 @@ public class MainWindow extends JFrame implements ILoggerTarget
 			return false;
 		}
 
-		if (settingsHaveUnsavedChanges())
+		if (settingsHaveUnsavedChanges(true))
 		{
 			int n = SwingHelper.showConfirmDialog(this, Translation.get("mainWindow.settingsModified"), "", JOptionPane.YES_NO_CANCEL_OPTION);
 			if (n == JOptionPane.YES_OPTION)
@@ -2988,19 +3142,31 @@ public class MainWindow extends JFrame implements ILoggerTarget
 			}
 			else if (n == JOptionPane.NO_OPTION)
 			{
+				autosaveService.deleteAutosave();
 			}
 			else if (n == JOptionPane.CANCEL_OPTION || n == JOptionPane.CLOSED_OPTION)
 			{
 				return true;
 			}
 		}
+		else
+		{
+			// An autosave can be left behind with nothing in it that isn't saved, such as when a change is autosaved and then undone.
+			autosaveService.deleteAutosave();
+		}
 
 		return false;
 	}
 
-	private boolean settingsHaveUnsavedChanges()
+	/**
+	 * @param exact
+	 *            If false, compares the fingerprint the undoer keeps of the latest undo point with that of the last saved settings, which
+	 *            only compares a few hashes, so it's fast enough to keep the title up to date after every draw. Changes without an undo
+	 *            point yet aren't seen. If true, compares the current settings in full, for before changes are discarded.
+	 */
+	private boolean settingsHaveUnsavedChanges(boolean exact)
 	{
-		if (lastSettingsLoadedOrSaved == null)
+		if (lastSettingsLoadedOrSaved == null || isRestoredFromAutosave)
 		{
 			return true;
 		}
@@ -3022,6 +3188,15 @@ public class MainWindow extends JFrame implements ILoggerTarget
 
 		if (hasDrawnCurrentMapAtLeastOnce)
 		{
+			SettingsFingerprint fingerprintAtLatestUndoPoint = undoer.getFingerprintAtLatestUndoPoint();
+			if (!exact && fingerprintAtLatestUndoPoint != null)
+			{
+				if (lastSettingsFingerprint == null)
+				{
+					lastSettingsFingerprint = new SettingsFingerprint(lastSettingsLoadedOrSaved);
+				}
+				return !lastSettingsFingerprint.matches(fingerprintAtLatestUndoPoint);
+			}
 			return !currentSettings.equals(lastSettingsLoadedOrSaved);
 		}
 		else
@@ -3150,8 +3325,11 @@ public class MainWindow extends JFrame implements ILoggerTarget
 
 	private void saveMap(MapSettings settings, String absolutePath) throws IOException
 	{
-		settings.writeToFile(absolutePath);
+		settings.writeToFile(absolutePath, UserPreferences.getInstance().packEditsInMapFiles);
 		Logger.println("Settings saved to " + absolutePath);
+		// The autosave is of the map as it was before this save, and possibly in a different file if this is a save as.
+		autosaveService.deleteAutosave();
+		autosaveService.reset(Paths.get(absolutePath));
 		updateLastSettingsLoadedOrSaved(settings);
 		UserPreferences.getInstance().addRecentMapFilePath(absolutePath);
 		createOrUpdateRecentMapMenuButtons();
@@ -3244,6 +3422,7 @@ public class MainWindow extends JFrame implements ILoggerTarget
 		mapEditingPanel.clearAllSelectionsAndHighlights();
 
 		updateLastSettingsLoadedOrSaved(settings);
+		autosaveService.reset(openSettingsFilePath);
 		toolsPanel.resetToolsForNewMap();
 		loadSettingsAndEditsIntoThemeAndToolsPanels(settings, false, false);
 
@@ -3305,6 +3484,22 @@ public class MainWindow extends JFrame implements ILoggerTarget
 	private void updateLastSettingsLoadedOrSaved(MapSettings settings)
 	{
 		lastSettingsLoadedOrSaved = settings.deepCopy();
+		lastSettingsFingerprint = null;
+		isRestoredFromAutosave = false;
+	}
+
+	/**
+	 * Called periodically by autosaveTimer. Only finding what changed since the last autosave happens here, so it's fast even for large maps.
+	 * The rest happens in the background.
+	 */
+	private void autosave()
+	{
+		if (lastSettingsLoadedOrSaved == null || !hasDrawnCurrentMapAtLeastOnce || updater.isMapBeingDrawn())
+		{
+			// Drawing can change the edits, and the edits aren't ready until the map has been drawn once.
+			return;
+		}
+		autosaveService.autosaveIfChanged(getSettingsFromGUI(false), lastSettingsLoadedOrSaved, UserPreferences.getInstance().packEditsInMapFiles);
 	}
 
 	MapSettings getSettingsFromGUI(boolean deepCopyEdits)
@@ -3376,6 +3571,7 @@ public class MainWindow extends JFrame implements ILoggerTarget
 		// a new map, then resize the window while the new map is drawing for
 		// the first time.
 		mapEditingPanel.mapFromMapCreator = null;
+		displayPyramid.clear();
 
 		mapCanvasOverlay.setSupportPanel(false, 0, false);
 		mapCanvasOverlay.setMessage(message);
@@ -3463,6 +3659,7 @@ public class MainWindow extends JFrame implements ILoggerTarget
 		Translation.initialize();
 
 		setLookAndFeel(UserPreferences.getInstance().lookAndFeel);
+		PlatformFactory.getInstance().setPngCompression(UserPreferences.getInstance().pngCompression);
 
 		// On macOS, a file opened via Finder is delivered as an Apple Event rather than a command-line argument, and can arrive before or
 		// after the window is created depending on timing. Registering this before creating the window ensures an event that arrives
@@ -25,10 +25,13 @@ import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @SuppressWarnings("serial")
 public class MapEditingPanel extends UnscaledImagePanel
@@ -39,8 +42,19 @@ public class MapEditingPanel extends UnscaledImagePanel
 	private final Color artPackHighlightColor = Color.CYAN;
 	private final Color processingColor = Color.orange;
 	private final Color selectColor = Color.orange;
-	private Set<Center> highlightedCenters;
-	private Set<Center> selectedCenters;
+	private final CenterOutlineCache outlineCache = new CenterOutlineCache();
+	private final CenterOutline highlightedCenters = new CenterOutline();
+	private final CenterOutline selectedCenters = new CenterOutline();
+	/**
+	 * Sets of centers at most this big are outlined on the EDT when painted. Bigger ones are outlined on outlineExecutor.
+	 */
+	private static final int maxCentersToOutlineOnEDT = 300;
+	private static final ExecutorService outlineExecutor = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "center-outline");
+		thread.setDaemon(true);
+		return thread;
+	});
 	private WorldGraph graph;
 	private List<nortantis.editor.River> rivers;
 	private MapSettings.LineStyle lineStyle;
@@ -129,8 +143,6 @@ public class MapEditingPanel extends UnscaledImagePanel
 	public MapEditingPanel(BufferedImage image)
 	{
 		super(image);
-		highlightedCenters = new HashSet<>();
-		selectedCenters = new HashSet<>();
 		highlightedEdges = new HashSet<>();
 		highlightedAreas = new HashSet<>();
 		redHighlightedAreas = new HashSet<>();
@@ -586,8 +598,7 @@ public class MapEditingPanel extends UnscaledImagePanel
 
 	public void clearHighlightedCenters()
 	{
-		if (highlightedCenters != null)
-			highlightedCenters.clear();
+		highlightedCenters.clear();
 	}
 
 	public void addSelectedCenters(Collection<Center> centers)
@@ -597,10 +608,7 @@ public class MapEditingPanel extends UnscaledImagePanel
 
 	public void clearSelectedCenters()
 	{
-		if (selectedCenters != null)
-		{
-			selectedCenters.clear();
-		}
+		selectedCenters.clear();
 	}
 
 	public void setHighlightLakes(boolean enabled)
@@ -615,7 +623,13 @@ public class MapEditingPanel extends UnscaledImagePanel
 
 	public void setGraph(WorldGraph graph)
 	{
+		// Called after every draw, which may have rebuilt the noisy edges of outlined centers. Outlines of a different graph are of no use
+		// even while a new outline is built.
+		boolean isNewGraph = graph != this.graph;
 		this.graph = graph;
+		outlineCache.setGraph(graph);
+		highlightedCenters.invalidate(isNewGraph);
+		selectedCenters.invalidate(isNewGraph);
 	}
 
 	public void setRivers(List<nortantis.editor.River> rivers, MapSettings.LineStyle lineStyle)
@@ -627,6 +641,8 @@ public class MapEditingPanel extends UnscaledImagePanel
 	public void setCenterHighlightMode(HighlightMode mode)
 	{
 		this.highlightMode = mode;
+		highlightedCenters.invalidate();
+		selectedCenters.invalidate();
 	}
 
 	public void setArtPacksToHighlight(Set<String> artPacksToHighlight)
@@ -1014,22 +1030,115 @@ public class MapEditingPanel extends UnscaledImagePanel
 		return Color.red;
 	}
 
-	private void drawCenterOutlines(Graphics g, Set<Center> centers)
+	private void drawCenterOutlines(Graphics g, CenterOutline centers)
 	{
-		for (Center c : centers)
+		Shape outline = centers.getOutlineToDraw();
+		if (outline != null)
+		{
+			((Graphics2D) g).draw(outline);
+		}
+	}
+
+	/**
+	 * A set of centers to outline, and the outline built for it.
+	 */
+	private class CenterOutline
+	{
+		private final Set<Center> centers = new HashSet<>();
+		/**
+		 * Built for the current centers, graph, and highlight mode, or null if any of them changed since.
+		 */
+		private Path2D.Float outline;
+		/**
+		 * The last outline built, which is drawn while a new one is built in the background so that a big brush lags the cursor for the
+		 * length of a build rather than stalling the EDT. Null if there is none, such as on the first hover with a big brush or after the
+		 * graph changes, in which case nothing is drawn until the new outline is ready.
+		 */
+		private Path2D.Float previousOutline;
+		private volatile long generation;
+		private long submittedGeneration = -1;
+
+		void addAll(Collection<Center> toAdd)
+		{
+			if (centers.addAll(toAdd))
+			{
+				invalidate();
+			}
+		}
+
+		void clear()
+		{
+			if (!centers.isEmpty())
+			{
+				centers.clear();
+				invalidate();
+			}
+		}
+
+		void invalidate()
+		{
+			invalidate(false);
+		}
+
+		void invalidate(boolean discardPreviousOutline)
 		{
-			for (Edge e : c.borders)
+			if (discardPreviousOutline)
+			{
+				previousOutline = null;
+			}
+			else if (outline != null)
+			{
+				previousOutline = outline;
+			}
+			outline = null;
+			generation++;
+		}
+
+		Shape getOutlineToDraw()
+		{
+			if (centers.isEmpty())
+			{
+				previousOutline = null;
+				return null;
+			}
+			if (outline != null)
 			{
-				if (highlightMode == HighlightMode.outlineGroup)
+				return outline;
+			}
+
+			boolean outerEdgesOnly = highlightMode == HighlightMode.outlineGroup;
+			if (centers.size() <= maxCentersToOutlineOnEDT)
+			{
+				outline = outlineCache.buildOutline(centers, outerEdgesOnly);
+				previousOutline = null;
+				return outline;
+			}
+
+			if (submittedGeneration != generation)
+			{
+				long buildGeneration = generation;
+				submittedGeneration = buildGeneration;
+				Set<Center> toOutline = new HashSet<>(centers);
+				outlineExecutor.submit(() ->
 				{
-					if (e.d0 != null && e.d1 != null && centers.contains(e.d0) && centers.contains(e.d1))
+					if (buildGeneration != generation)
 					{
-						// c is not on the edge of the group
-						continue;
+						// Superseded before it started.
+						return;
 					}
-				}
-				graph.drawEdge(AwtFactory.wrap((Graphics2D) g), e);
+					Path2D.Float built = outlineCache.buildOutline(toOutline, outerEdgesOnly);
+					SwingUtilities.invokeLater(() ->
+					{
+						if (buildGeneration == generation)
+						{
+							outline = built;
+							previousOutline = null;
+							repaint();
+						}
+					});
+				});
 			}
+			return previousOutline;
 		}
 	}
 
@@ -4,6 +4,7 @@ import nortantis.FreeIconCollection;
 import nortantis.GraphRiver;
 import nortantis.MapText;
 import nortantis.Region;
+import nortantis.RoadSpatialIndex;
 import nortantis.WorldGraph;
 import nortantis.editor.CenterEdit;
 import nortantis.editor.EdgeEdit;
@@ -72,6 +73,12 @@ public class MapEdits implements Serializable
 	 */
 	public boolean textBoundsNeedRefresh;
 
+	/**
+	 * Not stored. Spatial index over {@link #roads}, kept here rather than in RoadDrawer so it survives across incremental draws. Created
+	 * lazily because deserialization and {@link #deepCopy()} don't run field initializers for transient fields.
+	 */
+	private transient RoadSpatialIndex roadIndex;
+
 	public MapEdits()
 	{
 		text = new CopyOnWriteArrayList<>();
@@ -85,6 +92,15 @@ public class MapEdits implements Serializable
 		textBoundsNeedRefresh = true;
 	}
 
+	public synchronized RoadSpatialIndex getRoadIndex()
+	{
+		if (roadIndex == null)
+		{
+			roadIndex = new RoadSpatialIndex();
+		}
+		return roadIndex;
+	}
+
 	public boolean isInitialized()
 	{
 		return !centerEdits.isEmpty();
@@ -270,7 +286,42 @@ public class MapEdits implements Serializable
 	}
 
 	/**
-	 * Warning when re-creating this function: This must not include textBoundsNeedRefresh.
+	 * Copies these edits for a draw that runs alongside another draw of them, such as the preview of a full redraw. Drawing puts entries
+	 * into the center edits and free icons, rewrites the road and river lists, and sets the bounds of each text, so those are copied. The
+	 * region edits, edge edits, and the roads and rivers themselves are only read by drawing, so they're shared with these edits, and the
+	 * copy must not be edited.
+	 */
+	public MapEdits copyForConcurrentDraw()
+	{
+		MapEdits copy = new MapEdits();
+		for (MapText mText : text)
+		{
+			copy.text.add(mText.deepCopy());
+		}
+		copy.centerEdits = new ConcurrentHashMap<Integer, CenterEdit>(centerEdits);
+		copy.regionEdits = regionEdits;
+		copy.edgeEdits = edgeEdits;
+		copy.hasIconEdits = hasIconEdits;
+		copy.freeIcons = new FreeIconCollection(freeIcons);
+		copy.bakeGeneratedTextAsEdits = bakeGeneratedTextAsEdits;
+		copy.textBoundsNeedRefresh = true;
+		copy.roads = new CopyOnWriteArrayList<Road>(roads);
+		copy.rivers = new CopyOnWriteArrayList<River>(rivers);
+		copy.hasInitializedRivers = hasInitializedRivers;
+		return copy;
+	}
+
+	/**
+	 * Consistent with equals, so it also excludes edgeEdits, textBoundsNeedRefresh, and roadIndex.
+	 */
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(bakeGeneratedTextAsEdits, centerEdits, freeIcons, hasIconEdits, regionEdits, text, roads, rivers, hasInitializedRivers);
+	}
+
+	/**
+	 * Warning when re-creating this function: This must not include textBoundsNeedRefresh or roadIndex.
 	 */
 	@Override
 	public boolean equals(Object obj)
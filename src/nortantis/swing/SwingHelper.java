@@ -689,7 +689,8 @@ public class SwingHelper
 	/**
 	 * Updates a map-drawing progress bar from the given updater's current draw state, and shows or hides it based on whether a draw is
 	 * running. Full draws report determinate progress; incremental draws (and the idle state) leave the bar indeterminate. Determinate is
-	 * preferred because an indeterminate bar does not animate under the macOS System look and feel. Call from the EDT.
+	 * preferred because an indeterminate bar does not animate under the macOS System look and feel. While redraws deferred by large
+	 * edits are waiting, the bar's text shows how many are left. Call from the EDT.
 	 */
 	public static void updateMapDrawingProgressBar(JProgressBar progressBar, MapUpdater updater)
 	{
@@ -703,6 +704,8 @@ public class SwingHelper
 		{
 			progressBar.setIndeterminate(true);
 		}
+		int backlogSize = updater.getLowPriorityBacklogSize();
+		progressBar.setString(backlogSize > 0 ? Translation.get("mainWindow.drawingMapBacklog", backlogSize) : Translation.get("mainWindow.drawingMap"));
 		progressBar.setVisible(updater.isMapBeingDrawn());
 	}
 
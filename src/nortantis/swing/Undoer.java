@@ -1,9 +1,12 @@
 package nortantis.swing;
 
 import nortantis.MapSettings;
+import nortantis.SettingsFingerprint;
+import nortantis.SettingsFingerprint.Section;
 import nortantis.editor.MapChange;
 
 import java.util.ArrayDeque;
+import java.util.EnumSet;
 import java.util.Objects;
 import java.util.Stack;
 
@@ -11,7 +14,21 @@ public class Undoer
 {
 	private ArrayDeque<MapChange> undoStack;
 	private Stack<MapChange> redoStack;
-	private MapSettings copyOfSettingsWhenEditorWasOpened;
+	/**
+	 * The settings, without edits, from before the oldest change in undoStack.
+	 */
+	private MapSettings settingsBeforeOldestUndoPoint;
+	/**
+	 * A private copy of the edits at the undo point at the top of undoStack, or from before the oldest change if undoStack is empty. Undo
+	 * points only store how the edits changed, so this is what those changes are applied to. It is only ever modified by applying
+	 * {@link EditsDelta}s.
+	 */
+	private MapEdits editsAtLatestUndoPoint;
+	/**
+	 * Fingerprint of the settings and edits at the latest undo point. Each undo point rehashes only the sections its delta changed, so
+	 * checking whether the map has unsaved changes only compares hashes.
+	 */
+	private SettingsFingerprint fingerprintAtLatestUndoPoint;
 	private MainWindow mainWindow;
 	private final float maxUndoLevels = 200;
 	boolean enabled;
@@ -23,21 +40,42 @@ public class Undoer
 
 	public boolean isInitialized()
 	{
-		return copyOfSettingsWhenEditorWasOpened != null;
+		return settingsBeforeOldestUndoPoint != null;
 	}
 
 	public void initialize(MapSettings settings)
 	{
 		undoStack = new ArrayDeque<>();
 		redoStack = new Stack<>();
-		copyOfSettingsWhenEditorWasOpened = settings.deepCopy();
+		settingsBeforeOldestUndoPoint = settings.deepCopyExceptEdits();
+		editsAtLatestUndoPoint = settings.edits.deepCopy();
+		fingerprintAtLatestUndoPoint = new SettingsFingerprint(settingsBeforeOldestUndoPoint, editsAtLatestUndoPoint);
 	}
 
 	public void reset()
 	{
 		undoStack = null;
 		redoStack = null;
-		copyOfSettingsWhenEditorWasOpened = null;
+		settingsBeforeOldestUndoPoint = null;
+		editsAtLatestUndoPoint = null;
+		fingerprintAtLatestUndoPoint = null;
+	}
+
+	/**
+	 * @return A fingerprint of the settings and edits at the latest undo point, or null if the undoer isn't initialized. Edits made since
+	 *         then, or made by drawing the map, aren't included.
+	 */
+	public SettingsFingerprint getFingerprintAtLatestUndoPoint()
+	{
+		return fingerprintAtLatestUndoPoint;
+	}
+
+	private void updateFingerprint(EditsDelta editsDelta)
+	{
+		EnumSet<Section> changedSections = editsDelta.getChangedSections();
+		// The settings other than the edits aren't stored as deltas, so always rehash them.
+		changedSections.add(Section.Theme);
+		fingerprintAtLatestUndoPoint.update(getSettingsAtLatestUndoPointWithoutEdits(), editsAtLatestUndoPoint, changedSections);
 	}
 
 	public boolean setUndoPoint(UpdateType updateType, EditorTool tool)
@@ -71,21 +109,28 @@ public class Undoer
 			return false;
 		}
 
-		MapSettings prevSettings = undoStack.isEmpty() ? copyOfSettingsWhenEditorWasOpened : undoStack.peek().settings;
-		MapSettings currentSettings = mainWindow.getSettingsFromGUI(true);
-		if (currentSettings.equals(prevSettings))
+		MapSettings prevSettings = getSettingsAtLatestUndoPointWithoutEdits();
+		MapSettings currentSettings = mainWindow.getSettingsFromGUI(false);
+		EditsDelta editsDelta = EditsDelta.create(editsAtLatestUndoPoint, currentSettings.edits);
+		currentSettings.edits = null;
+		if (editsDelta.isEmpty() && currentSettings.fieldsOtherThanEditsEqual(prevSettings))
 		{
 			// Don't create an undo point if nothing changed.
 			return false;
 		}
 
 		redoStack.clear();
-		undoStack.push(new MapChange(currentSettings, updateType, tool, preRun));
-
-		// Limit the size of undoStack to prevent memory errors. Each undo point is about 2 MBs.
+		editsDelta.applyTo(editsAtLatestUndoPoint, true);
+		MapChange change = new MapChange(currentSettings, updateType, tool, preRun);
+		change.editsDelta = editsDelta;
+		undoStack.push(change);
+		updateFingerprint(editsDelta);
+
+		// Limit the size of undoStack to prevent memory errors. Undo points only store the edits that changed, but settings without edits
+		// are still stored in full for each one.
 		while (undoStack.size() > maxUndoLevels)
 		{
-			undoStack.removeLast();
+			settingsBeforeOldestUndoPoint = undoStack.removeLast().settings;
 		}
 
 		updateUndoRedoEnabled();
@@ -112,25 +157,20 @@ public class Undoer
 		mainWindow.toolsPanel.currentTool.onBeforeUndoRedo();
 
 		MapChange changeToUndo = undoStack.pop();
-
-		// The change to undo should use the latest settings rather than what came from undo stack so that we catch any
-		// changes made after the latest undo point.
-		changeToUndo.settings = mainWindow.getSettingsFromGUI(true);
-
+		changeToUndo.editsDelta.applyTo(editsAtLatestUndoPoint, false);
+		updateFingerprint(changeToUndo.editsDelta);
+
+		// The change to redo should use the latest settings rather than what came from undo stack so that we catch any
+		// changes made after the latest undo point. The editor's edits object is replaced rather than modified when the undo
+		// is loaded below, so it doesn't need copying to serve as the "before" side of the draw.
+		MapSettings currentSettings = mainWindow.getSettingsFromGUI(false);
+		changeToUndo.editsDelta = EditsDelta.create(editsAtLatestUndoPoint, currentSettings.edits);
+		changeToUndo.settings = currentSettings.deepCopyExceptEdits();
 		redoStack.push(changeToUndo);
-		MapSettings settings;
-		if (undoStack.isEmpty())
-		{
-			// This should not happen because the undoer should not be initialized until the edits are created.
-			assert copyOfSettingsWhenEditorWasOpened.edits.isInitialized();
 
-			settings = copyOfSettingsWhenEditorWasOpened.deepCopy();
-		}
-		else
-		{
-			settings = undoStack.peek().settings.deepCopy();
-		}
-		boolean refreshImagePreviews = doesChangeEffectsBackgroundImages(changeToUndo.settings, settings);
+		MapSettings settings = getSettingsAtLatestUndoPointWithoutEdits().deepCopyExceptEdits();
+		settings.edits = editsAtLatestUndoPoint.deepCopy();
+		boolean refreshImagePreviews = doesChangeEffectsBackgroundImages(currentSettings, settings);
 		mainWindow.loadSettingsAndEditsIntoThemeAndToolsPanels(settings, true, refreshImagePreviews);
 
 		// Let the active tool clean up transient state (selection, hover, in-progress edits) that references edit objects
@@ -145,7 +185,9 @@ public class Undoer
 		}
 		// Pass isUndoRedo=true so the "cities removed for water" warning is not shown for the draw this triggers: an undo is restoring cities,
 		// not making a forward change that removed them.
-		mainWindow.updater.createAndShowMapFromChange(changeToUndo, true);
+		MapChange changeWithCurrentSettings = new MapChange(currentSettings, changeToUndo.updateType, changeToUndo.toolThatMadeChange,
+				changeToUndo.preRun);
+		mainWindow.updater.createAndShowMapFromChange(changeWithCurrentSettings, true);
 		mainWindow.updater.doWhenMapIsNotDrawing(() -> mainWindow.updater.createAndShowLowPriorityChanges(true));
 		updateUndoRedoEnabled();
 	}
@@ -167,10 +209,15 @@ public class Undoer
 			return;
 		}
 
-		MapSettings currentSettings = undoStack.isEmpty() ? copyOfSettingsWhenEditorWasOpened.deepCopy() : undoStack.peek().settings;
+		// As in undo(), the editor's edits object is replaced rather than modified by loading the redo, so it can be the "before" side of
+		// the draw.
+		MapSettings currentSettings = mainWindow.getSettingsFromGUI(false);
 		MapChange changeToRedo = redoStack.pop();
 		undoStack.push(changeToRedo);
-		MapSettings newSettings = changeToRedo.settings.deepCopy();
+		changeToRedo.editsDelta.applyTo(editsAtLatestUndoPoint, true);
+		updateFingerprint(changeToRedo.editsDelta);
+		MapSettings newSettings = changeToRedo.settings.deepCopyExceptEdits();
+		newSettings.edits = editsAtLatestUndoPoint.deepCopy();
 		boolean refreshImagePreviews = doesChangeEffectsBackgroundImages(currentSettings, newSettings);
 		mainWindow.loadSettingsAndEditsIntoThemeAndToolsPanels(newSettings, true, refreshImagePreviews);
 
@@ -189,6 +236,11 @@ public class Undoer
 		updateUndoRedoEnabled();
 	}
 
+	private MapSettings getSettingsAtLatestUndoPointWithoutEdits()
+	{
+		return undoStack.isEmpty() ? settingsBeforeOldestUndoPoint : undoStack.peek().settings;
+	}
+
 	public void updateUndoRedoEnabled()
 	{
 		boolean undoEnabled = enabled && undoStack != null && undoStack.size() > 0;
@@ -527,6 +527,14 @@ public class Assets
 		}
 	}
 
+	/**
+	 * Opens a file, which can be a packaged asset, for reading as UTF-8 text a piece at a time rather than all at once.
+	 */
+	public static Reader createUtf8Reader(String filePath)
+	{
+		return new InputStreamReader(createInputStream(filePath), StandardCharsets.UTF_8);
+	}
+
 	private static BufferedReader createBufferedReader(String filePath) throws FileNotFoundException
 	{
 		if (isPackagedAsset(filePath))
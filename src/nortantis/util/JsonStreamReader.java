@@ -0,0 +1,636 @@
+package nortantis.util;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads JSON one token at a time from a Reader, so that large documents, such as the edits in a .nort file, can be turned straight into
+ * objects without first reading the whole file into a String or building a json-simple tree of it. Numbers are parsed into primitives.
+ *
+ * For the small parts of a document where a tree is more convenient, {@link #readValue()} reads the next value into the same types
+ * json-simple's parser produces.
+ */
+public class JsonStreamReader implements Closeable
+{
+	public enum Token
+	{
+		BeginObject, EndObject, BeginArray, EndArray, Name, String, Number, Boolean, Null, EndDocument
+	}
+
+	private static final int emptyDocument = 0;
+	private static final int nonEmptyDocument = 1;
+	private static final int emptyObject = 2;
+	private static final int nonEmptyObject = 3;
+	/**
+	 * An object whose last token was a name, so the next is its value.
+	 */
+	private static final int danglingName = 4;
+	private static final int emptyArray = 5;
+	private static final int nonEmptyArray = 6;
+
+	private final Reader in;
+	private final char[] buffer = new char[16384];
+	private int pos;
+	private int limit;
+	/**
+	 * How many characters were read before the start of the buffer, for error messages.
+	 */
+	private long bufferStartOffset;
+
+	private int[] scopes = new int[32];
+	private int scopeCount;
+
+	private Token peeked;
+	private final StringBuilder scratch = new StringBuilder();
+
+	public JsonStreamReader(Reader in)
+	{
+		this.in = in;
+		scopes[scopeCount++] = emptyDocument;
+	}
+
+	/**
+	 * @return The type of the next token, without consuming it.
+	 */
+	public Token peek() throws IOException
+	{
+		if (peeked == null)
+		{
+			peeked = doPeek();
+		}
+		return peeked;
+	}
+
+	/**
+	 * @return True if the current object or array has another element.
+	 */
+	public boolean hasNext() throws IOException
+	{
+		Token token = peek();
+		return token != Token.EndObject && token != Token.EndArray && token != Token.EndDocument;
+	}
+
+	public void beginObject() throws IOException
+	{
+		expect(Token.BeginObject);
+		pos++;
+		pushScope(emptyObject);
+	}
+
+	public void endObject() throws IOException
+	{
+		expect(Token.EndObject);
+		pos++;
+		scopeCount--;
+	}
+
+	public void beginArray() throws IOException
+	{
+		expect(Token.BeginArray);
+		pos++;
+		pushScope(emptyArray);
+	}
+
+	public void endArray() throws IOException
+	{
+		expect(Token.EndArray);
+		pos++;
+		scopeCount--;
+	}
+
+	public String nextName() throws IOException
+	{
+		expect(Token.Name);
+		String name = readQuotedString();
+		scopes[scopeCount - 1] = danglingName;
+		return name;
+	}
+
+	public String nextString() throws IOException
+	{
+		expect(Token.String);
+		return readQuotedString();
+	}
+
+	/**
+	 * @return The next string, or null if the next value is null.
+	 */
+	public String nextStringOrNull() throws IOException
+	{
+		if (peek() == Token.Null)
+		{
+			nextNull();
+			return null;
+		}
+		return nextString();
+	}
+
+	public boolean nextBoolean() throws IOException
+	{
+		expect(Token.Boolean);
+		if (buffer[pos] == 't')
+		{
+			consumeLiteral("true");
+			return true;
+		}
+		consumeLiteral("false");
+		return false;
+	}
+
+	public void nextNull() throws IOException
+	{
+		expect(Token.Null);
+		consumeLiteral("null");
+	}
+
+	public double nextDouble() throws IOException
+	{
+		expect(Token.Number);
+		readNumber();
+		return Double.parseDouble(scratch.toString());
+	}
+
+	/**
+	 * Reads an integer. A number written with a fraction or exponent is accepted if its value is a whole number.
+	 */
+	public long nextLong() throws IOException
+	{
+		expect(Token.Number);
+		boolean isIntegral = readNumber();
+		if (isIntegral && scratch.length() <= 18)
+		{
+			// Parse short integers in place rather than allocating a String for Long.parseLong.
+			boolean negative = scratch.charAt(0) == '-';
+			long result = 0;
+			for (int i = negative ? 1 : 0; i < scratch.length(); i++)
+			{
+				result = result * 10 + (scratch.charAt(i) - '0');
+			}
+			return negative ? -result : result;
+		}
+		if (isIntegral)
+		{
+			return Long.parseLong(scratch.toString());
+		}
+
+		double value = Double.parseDouble(scratch.toString());
+		if (value != Math.rint(value) || Math.abs(value) >= 0x1p63)
+		{
+			throw syntaxError("Expected an integer but was " + scratch);
+		}
+		return (long) value;
+	}
+
+	public int nextInt() throws IOException
+	{
+		long value = nextLong();
+		if (value != (int) value)
+		{
+			throw syntaxError("Expected an int but was " + value);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Skips the next value, including everything in it if it's an object or array.
+	 */
+	public void skipValue() throws IOException
+	{
+		int depth = 0;
+		do
+		{
+			Token token = peek();
+			if (token == Token.BeginObject)
+			{
+				beginObject();
+				depth++;
+			}
+			else if (token == Token.BeginArray)
+			{
+				beginArray();
+				depth++;
+			}
+			else if (token == Token.EndObject)
+			{
+				endObject();
+				depth--;
+			}
+			else if (token == Token.EndArray)
+			{
+				endArray();
+				depth--;
+			}
+			else if (token == Token.Name)
+			{
+				nextName();
+			}
+			else if (token == Token.String)
+			{
+				nextString();
+			}
+			else if (token == Token.Number)
+			{
+				peeked = null;
+				readNumber();
+			}
+			else if (token == Token.Boolean)
+			{
+				nextBoolean();
+			}
+			else if (token == Token.Null)
+			{
+				nextNull();
+			}
+			else
+			{
+				throw syntaxError("Expected a value");
+			}
+		}
+		while (depth > 0);
+	}
+
+	/**
+	 * Reads the next value as json-simple does: objects as JSONObject, arrays as JSONArray, integers as Long, other numbers as Double, and
+	 * strings, booleans, and null as themselves.
+	 */
+	@SuppressWarnings("unchecked")
+	public Object readValue() throws IOException
+	{
+		Token token = peek();
+		if (token == Token.BeginObject)
+		{
+			JSONObject obj = new JSONObject();
+			beginObject();
+			while (hasNext())
+			{
+				String name = nextName();
+				obj.put(name, readValue());
+			}
+			endObject();
+			return obj;
+		}
+		if (token == Token.BeginArray)
+		{
+			JSONArray array = new JSONArray();
+			beginArray();
+			while (hasNext())
+			{
+				array.add(readValue());
+			}
+			endArray();
+			return array;
+		}
+		if (token == Token.String)
+		{
+			return nextString();
+		}
+		if (token == Token.Number)
+		{
+			peeked = null;
+			boolean isIntegral = readNumber();
+			return isIntegral ? (Object) Long.parseLong(scratch.toString()) : (Object) Double.parseDouble(scratch.toString());
+		}
+		if (token == Token.Boolean)
+		{
+			return nextBoolean();
+		}
+		if (token == Token.Null)
+		{
+			nextNull();
+			return null;
+		}
+		throw syntaxError("Expected a value but was " + token);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	private void expect(Token expected) throws IOException
+	{
+		Token token = peek();
+		if (token != expected)
+		{
+			throw syntaxError("Expected " + expected + " but was " + token);
+		}
+		peeked = null;
+	}
+
+	private void pushScope(int scope)
+	{
+		if (scopeCount == scopes.length)
+		{
+			int[] newScopes = new int[scopeCount * 2];
+			System.arraycopy(scopes, 0, newScopes, 0, scopeCount);
+			scopes = newScopes;
+		}
+		scopes[scopeCount++] = scope;
+	}
+
+	/**
+	 * Consumes whitespace and separators up to the next token, and returns its type. The token's first character is left at pos.
+	 */
+	private Token doPeek() throws IOException
+	{
+		int scope = scopes[scopeCount - 1];
+		if (scope == emptyDocument)
+		{
+			scopes[scopeCount - 1] = nonEmptyDocument;
+			return peekValue();
+		}
+		if (scope == nonEmptyDocument)
+		{
+			if (skipWhitespace())
+			{
+				throw syntaxError("Expected the end of the document");
+			}
+			return Token.EndDocument;
+		}
+		if (scope == emptyArray || scope == nonEmptyArray)
+		{
+			requireMoreInput();
+			char c = buffer[pos];
+			if (c == ']')
+			{
+				return Token.EndArray;
+			}
+			if (scope == nonEmptyArray)
+			{
+				if (c != ',')
+				{
+					throw syntaxError("Expected ',' or ']'");
+				}
+				pos++;
+			}
+			scopes[scopeCount - 1] = nonEmptyArray;
+			return peekValue();
+		}
+		if (scope == emptyObject || scope == nonEmptyObject)
+		{
+			requireMoreInput();
+			char c = buffer[pos];
+			if (c == '}')
+			{
+				return Token.EndObject;
+			}
+			if (scope == nonEmptyObject)
+			{
+				if (c != ',')
+				{
+					throw syntaxError("Expected ',' or '}'");
+				}
+				pos++;
+				requireMoreInput();
+			}
+			if (buffer[pos] != '"')
+			{
+				throw syntaxError("Expected a name");
+			}
+			return Token.Name;
+		}
+
+		// danglingName
+		requireMoreInput();
+		if (buffer[pos] != ':')
+		{
+			throw syntaxError("Expected ':'");
+		}
+		pos++;
+		scopes[scopeCount - 1] = nonEmptyObject;
+		return peekValue();
+	}
+
+	private Token peekValue() throws IOException
+	{
+		requireMoreInput();
+		char c = buffer[pos];
+		if (c == '{')
+		{
+			return Token.BeginObject;
+		}
+		if (c == '[')
+		{
+			return Token.BeginArray;
+		}
+		if (c == '"')
+		{
+			return Token.String;
+		}
+		if (c == 't' || c == 'f')
+		{
+			return Token.Boolean;
+		}
+		if (c == 'n')
+		{
+			return Token.Null;
+		}
+		if (c == '-' || (c >= '0' && c <= '9'))
+		{
+			return Token.Number;
+		}
+		throw syntaxError("Unexpected character '" + c + "'");
+	}
+
+	/**
+	 * Skips whitespace, failing if the input ends first.
+	 */
+	private void requireMoreInput() throws IOException
+	{
+		if (!skipWhitespace())
+		{
+			throw syntaxError("Unexpected end of input");
+		}
+	}
+
+	/**
+	 * @return False if the input ended before a non-whitespace character.
+	 */
+	private boolean skipWhitespace() throws IOException
+	{
+		while (true)
+		{
+			if (pos == limit && !fill())
+			{
+				return false;
+			}
+			char c = buffer[pos];
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+			{
+				pos++;
+			}
+			else
+			{
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Refills the buffer once it's been consumed.
+	 *
+	 * @return False if the input has ended.
+	 */
+	private boolean fill() throws IOException
+	{
+		bufferStartOffset += limit;
+		pos = 0;
+		limit = 0;
+		int count;
+		while ((count = in.read(buffer, 0, buffer.length)) == 0)
+		{
+		}
+		if (count < 0)
+		{
+			return false;
+		}
+		limit = count;
+		return true;
+	}
+
+	private char nextChar() throws IOException
+	{
+		if (pos == limit && !fill())
+		{
+			throw syntaxError("Unexpected end of input");
+		}
+		return buffer[pos++];
+	}
+
+	private void consumeLiteral(String literal) throws IOException
+	{
+		for (int i = 0; i < literal.length(); i++)
+		{
+			if (nextChar() != literal.charAt(i))
+			{
+				throw syntaxError("Expected " + literal);
+			}
+		}
+	}
+
+	/**
+	 * Reads a string whose opening quote is at pos.
+	 */
+	private String readQuotedString() throws IOException
+	{
+		pos++;
+		scratch.setLength(0);
+		while (true)
+		{
+			// Copy runs of plain characters in one go.
+			int start = pos;
+			while (pos < limit)
+			{
+				char c = buffer[pos];
+				if (c == '"' || c == '\\')
+				{
+					break;
+				}
+				pos++;
+			}
+			scratch.append(buffer, start, pos - start);
+			if (pos == limit)
+			{
+				if (!fill())
+				{
+					throw syntaxError("Unterminated string");
+				}
+				continue;
+			}
+
+			char c = buffer[pos++];
+			if (c == '"')
+			{
+				return scratch.toString();
+			}
+
+			char escaped = nextChar();
+			if (escaped == 'u')
+			{
+				int value = 0;
+				for (int i = 0; i < 4; i++)
+				{
+					int digit = Character.digit(nextChar(), 16);
+					if (digit < 0)
+					{
+						throw syntaxError("Invalid unicode escape");
+					}
+					value = (value << 4) | digit;
+				}
+				scratch.append((char) value);
+			}
+			else if (escaped == 'n')
+			{
+				scratch.append('\n');
+			}
+			else if (escaped == 't')
+			{
+				scratch.append('\t');
+			}
+			else if (escaped == 'r')
+			{
+				scratch.append('\r');
+			}
+			else if (escaped == 'b')
+			{
+				scratch.append('\b');
+			}
+			else if (escaped == 'f')
+			{
+				scratch.append('\f');
+			}
+			else if (escaped == '"' || escaped == '\\' || escaped == '/')
+			{
+				scratch.append(escaped);
+			}
+			else
+			{
+				throw syntaxError("Invalid escape sequence '\\" + escaped + "'");
+			}
+		}
+	}
+
+	/**
+	 * Reads the characters of the number at pos into scratch.
+	 *
+	 * @return True if the number has no fraction or exponent.
+	 */
+	private boolean readNumber() throws IOException
+	{
+		scratch.setLength(0);
+		boolean isIntegral = true;
+		while (pos < limit || fill())
+		{
+			char c = buffer[pos];
+			if ((c >= '0' && c <= '9') || (c == '-' && (scratch.length() == 0 || !isIntegral)))
+			{
+				scratch.append(c);
+			}
+			else if (c == '.' || c == 'e' || c == 'E' || c == '+')
+			{
+				scratch.append(c);
+				isIntegral = false;
+			}
+			else
+			{
+				break;
+			}
+			pos++;
+		}
+		if (scratch.length() == 0 || scratch.charAt(scratch.length() - 1) == '-')
+		{
+			throw syntaxError("Invalid number");
+		}
+		return isIntegral;
+	}
+
+	private IOException syntaxError(String message)
+	{
+		return new IOException(message + " at character " + (bufferStartOffset + pos) + ".");
+	}
+}
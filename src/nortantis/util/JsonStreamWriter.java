@@ -0,0 +1,302 @@
+package nortantis.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes JSON to a Writer as it goes, so that large documents, such as the edits in a .nort file, don't need a json-simple tree or a String
+ * of the whole document. Output is compact and formatted the same way json-simple formats it, so files written either way read the same.
+ */
+public class JsonStreamWriter implements Closeable
+{
+	private final Writer out;
+	/**
+	 * For each open object or array, whether anything has been written in it yet.
+	 */
+	private boolean[] hasElements = new boolean[32];
+	private int depth;
+	private boolean afterName;
+
+	public JsonStreamWriter(Writer out)
+	{
+		this.out = out;
+	}
+
+	/**
+	 * @return The JSON for a value made of json-simple types, the same as json-simple's JSONValue.toJSONString.
+	 */
+	public static String toJsonString(Object value)
+	{
+		StringWriter result = new StringWriter();
+		try
+		{
+			new JsonStreamWriter(result).value(value);
+		}
+		catch (IOException e)
+		{
+			// StringWriter doesn't throw.
+			throw new RuntimeException(e);
+		}
+		return result.toString();
+	}
+
+	public JsonStreamWriter beginObject() throws IOException
+	{
+		beforeValue();
+		out.write('{');
+		push();
+		return this;
+	}
+
+	public JsonStreamWriter endObject() throws IOException
+	{
+		depth--;
+		out.write('}');
+		return this;
+	}
+
+	public JsonStreamWriter beginArray() throws IOException
+	{
+		beforeValue();
+		out.write('[');
+		push();
+		return this;
+	}
+
+	public JsonStreamWriter endArray() throws IOException
+	{
+		depth--;
+		out.write(']');
+		return this;
+	}
+
+	public JsonStreamWriter name(String name) throws IOException
+	{
+		beforeElement();
+		writeQuoted(name);
+		out.write(':');
+		afterName = true;
+		return this;
+	}
+
+	public JsonStreamWriter value(String value) throws IOException
+	{
+		if (value == null)
+		{
+			return nullValue();
+		}
+		beforeValue();
+		writeQuoted(value);
+		return this;
+	}
+
+	public JsonStreamWriter value(long value) throws IOException
+	{
+		beforeValue();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	public JsonStreamWriter value(double value) throws IOException
+	{
+		if (Double.isNaN(value) || Double.isInfinite(value))
+		{
+			// JSON has no way to write these, so json-simple writes them as null.
+			return nullValue();
+		}
+		beforeValue();
+		out.write(Double.toString(value));
+		return this;
+	}
+
+	public JsonStreamWriter value(boolean value) throws IOException
+	{
+		beforeValue();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	public JsonStreamWriter nullValue() throws IOException
+	{
+		beforeValue();
+		out.write("null");
+		return this;
+	}
+
+	/**
+	 * Writes a value that is already JSON, such as one written earlier by another JsonStreamWriter, without checking or re-escaping it.
+	 */
+	public JsonStreamWriter rawValue(String json) throws IOException
+	{
+		beforeValue();
+		out.write(json);
+		return this;
+	}
+
+	/**
+	 * Writes a value made of json-simple types: maps, lists, strings, numbers, booleans, and null. Map keys are written with
+	 * String.valueOf, so enum keys are written by name.
+	 */
+	public JsonStreamWriter value(Object value) throws IOException
+	{
+		if (value == null)
+		{
+			return nullValue();
+		}
+		if (value instanceof String)
+		{
+			return value((String) value);
+		}
+		if (value instanceof Boolean)
+		{
+			return value((boolean) (Boolean) value);
+		}
+		if (value instanceof Double)
+		{
+			return value((double) (Double) value);
+		}
+		if (value instanceof Float)
+		{
+			float f = (Float) value;
+			if (Float.isNaN(f) || Float.isInfinite(f))
+			{
+				return nullValue();
+			}
+			beforeValue();
+			out.write(Float.toString(f));
+			return this;
+		}
+		if (value instanceof Number)
+		{
+			return value(((Number) value).longValue());
+		}
+		if (value instanceof Map)
+		{
+			beginObject();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+			{
+				name(String.valueOf(entry.getKey()));
+				value(entry.getValue());
+			}
+			return endObject();
+		}
+		if (value instanceof List)
+		{
+			beginArray();
+			for (Object element : (List<?>) value)
+			{
+				value(element);
+			}
+			return endArray();
+		}
+		return value(value.toString());
+	}
+
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+
+	private void push()
+	{
+		if (depth == hasElements.length)
+		{
+			boolean[] newHasElements = new boolean[depth * 2];
+			System.arraycopy(hasElements, 0, newHasElements, 0, depth);
+			hasElements = newHasElements;
+		}
+		hasElements[depth++] = false;
+	}
+
+	private void beforeValue() throws IOException
+	{
+		if (afterName)
+		{
+			afterName = false;
+			return;
+		}
+		beforeElement();
+	}
+
+	private void beforeElement() throws IOException
+	{
+		if (depth > 0)
+		{
+			if (hasElements[depth - 1])
+			{
+				out.write(',');
+			}
+			hasElements[depth - 1] = true;
+		}
+	}
+
+	/**
+	 * Writes a string with the same escaping json-simple uses.
+	 */
+	private void writeQuoted(String value) throws IOException
+	{
+		out.write('"');
+		int runStart = 0;
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			String replacement;
+			if (c == '"')
+			{
+				replacement = "\\\"";
+			}
+			else if (c == '\\')
+			{
+				replacement = "\\\\";
+			}
+			else if (c == '/')
+			{
+				replacement = "\\/";
+			}
+			else if (c == '\b')
+			{
+				replacement = "\\b";
+			}
+			else if (c == '\f')
+			{
+				replacement = "\\f";
+			}
+			else if (c == '\n')
+			{
+				replacement = "\\n";
+			}
+			else if (c == '\r')
+			{
+				replacement = "\\r";
+			}
+			else if (c == '\t')
+			{
+				replacement = "\\t";
+			}
+			else if (c <= '\u001F' || (c >= '\u007F' && c <= '\u009F') || (c >= '\u2000' && c <= '\u20FF'))
+			{
+				replacement = String.format("\\u%04X", (int) c);
+			}
+			else
+			{
+				continue;
+			}
+
+			out.write(value, runStart, i - runStart);
+			out.write(replacement);
+			runStart = i + 1;
+		}
+		out.write(value, runStart, value.length() - runStart);
+		out.write('"');
+	}
+}
@@ -0,0 +1,74 @@
+package nortantis.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * The entries that differ between two versions of a map, with the value each had before and after. A null value means the key was absent
+ * in that version. Applying it forward turns the before version into the after version, and applying it backward does the reverse.
+ *
+ * Values are put into the map being applied to rather than copied, so neither the delta's values nor the values of the map it is applied
+ * to may be modified afterwards.
+ */
+public class KeyedDelta<K, V>
+{
+	private final Map<K, V> before = new HashMap<>();
+	private final Map<K, V> after = new HashMap<>();
+
+	/**
+	 * @param before
+	 *            The older version. Values that changed are kept by reference.
+	 * @param after
+	 *            The newer version. Values that changed are copied using copyValue, so the caller can keep modifying it.
+	 */
+	public static <K, V> KeyedDelta<K, V> create(Map<K, V> before, Map<K, V> after, UnaryOperator<V> copyValue)
+	{
+		KeyedDelta<K, V> delta = new KeyedDelta<>();
+		for (Map.Entry<K, V> entry : after.entrySet())
+		{
+			V beforeValue = before.get(entry.getKey());
+			if (!Objects.equals(beforeValue, entry.getValue()))
+			{
+				delta.before.put(entry.getKey(), beforeValue);
+				delta.after.put(entry.getKey(), copyValue.apply(entry.getValue()));
+			}
+		}
+
+		for (Map.Entry<K, V> entry : before.entrySet())
+		{
+			if (!after.containsKey(entry.getKey()))
+			{
+				delta.before.put(entry.getKey(), entry.getValue());
+				delta.after.put(entry.getKey(), null);
+			}
+		}
+		return delta;
+	}
+
+	public void applyTo(Map<K, V> map, boolean forward)
+	{
+		for (Map.Entry<K, V> entry : (forward ? after : before).entrySet())
+		{
+			if (entry.getValue() == null)
+			{
+				map.remove(entry.getKey());
+			}
+			else
+			{
+				map.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		return after.isEmpty();
+	}
+
+	public int size()
+	{
+		return after.size();
+	}
+}
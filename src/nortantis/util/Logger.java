@@ -5,7 +5,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 
 public class Logger
 {
-	private ILoggerTarget target;
+	private volatile ILoggerTarget target;
 
 	private Logger()
 	{
@@ -13,7 +13,7 @@ public class Logger
 
 	private static Logger instance;
 
-	private static Logger getInstance()
+	private static synchronized Logger getInstance()
 	{
 		if (instance == null)
 		{
@@ -19,7 +19,10 @@ public class ThreadHelper
 		cachedThreadPool = Executors.newCachedThreadPool();
 	}
 
-	public static ThreadHelper getInstance()
+	/**
+	 * Synchronized because maps drawn at the same time on different threads can each be the first to ask for it.
+	 */
+	public static synchronized ThreadHelper getInstance()
 	{
 		if (instance == null)
 		{
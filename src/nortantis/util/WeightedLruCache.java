@@ -0,0 +1,233 @@
+package nortantis.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread safe cache bounded by the total weight (usually an estimate of bytes) of its values, which evicts the least recently used
+ * entries when the total goes over the limit.
+ *
+ * The creation function runs at most once per key, even when many threads ask for the same key at the same time. The first thread to ask
+ * for a key computes the value, and other threads asking for that key wait for it instead of repeating the work. The value is not computed
+ * while holding the cache's lock, so a slow computation never blocks threads asking for other keys.
+ *
+ * If the creation function throws, the key is removed so a later call can retry, and the exception is rethrown to every waiting thread.
+ *
+ * The creation function may get other keys from the same cache, but not the key it is creating, since it would wait on itself forever. That
+ * throws an IllegalStateException instead.
+ *
+ * A value heavier than the maximum weight is kept as the only entry rather than being evicted as soon as it's added, which would make every
+ * access to it create it again. It's evicted like any other entry once something else is added.
+ *
+ * Evicted values are simply dropped, not closed, since callers may still be drawing with them.
+ */
+public class WeightedLruCache<K, V>
+{
+	private final String name;
+	private final ToLongFunction<V> weigher;
+	private long maxWeight;
+
+	/**
+	 * In access order, so iteration starts at the least recently used entry.
+	 */
+	private final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+	private long residentWeight;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	private static class Node<V>
+	{
+		final FutureTask<V> task;
+		/**
+		 * Set once the value has been created. Nodes still being created aren't counted in {@link #residentWeight} and are never evicted.
+		 */
+		boolean isDone;
+		long weight;
+		/**
+		 * The thread creating the value, used to detect a creation function asking for its own key.
+		 */
+		final Thread creatingThread;
+
+		Node(FutureTask<V> task, Thread creatingThread)
+		{
+			this.task = task;
+			this.creatingThread = creatingThread;
+		}
+	}
+
+	public record Stats(String name, long hitCount, long missCount, long evictionCount, long residentWeight, long maxWeight, int size)
+	{
+		@Override
+		public String toString()
+		{
+			return name + ": " + size + " entries, " + (residentWeight / (1024 * 1024)) + " of " + (maxWeight / (1024 * 1024)) + " MB, hits: " + hitCount + ", misses: " + missCount
+					+ ", evictions: " + evictionCount;
+		}
+	}
+
+	/**
+	 * @param name
+	 *            Used in {@link Stats} to tell caches apart.
+	 * @param maxWeight
+	 *            The maximum total weight of cached values.
+	 * @param weigher
+	 *            Calculates the weight of a value. Called once per value, when it's added.
+	 */
+	public WeightedLruCache(String name, long maxWeight, ToLongFunction<V> weigher)
+	{
+		this.name = name;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Returns the value for the given key, creating it with createFun if it isn't in the cache.
+	 */
+	public V get(K key, Supplier<V> createFun)
+	{
+		Node<V> node;
+		boolean isCreator = false;
+		synchronized (this)
+		{
+			node = map.get(key);
+			if (node != null)
+			{
+				if (!node.isDone && node.creatingThread == Thread.currentThread())
+				{
+					throw new IllegalStateException("The value for key '" + key + "' in cache '" + name + "' was requested while creating it.");
+				}
+				hitCount++;
+			}
+			else
+			{
+				missCount++;
+				node = new Node<>(new FutureTask<>(createFun::get), Thread.currentThread());
+				map.put(key, node);
+				isCreator = true;
+			}
+		}
+
+		if (isCreator)
+		{
+			node.task.run();
+		}
+
+		V value = waitForValue(key, node);
+
+		if (isCreator)
+		{
+			long weight = value == null ? 0 : weigher.applyAsLong(value);
+			synchronized (this)
+			{
+				// The entry may have been removed by clear() while it was being created.
+				if (map.get(key) == node)
+				{
+					node.weight = weight;
+					node.isDone = true;
+					residentWeight += weight;
+					if (weight > maxWeight)
+					{
+						evictUntilAtMost(0, node);
+					}
+					else
+					{
+						evictUntilAtMost(maxWeight, null);
+					}
+				}
+			}
+		}
+
+		return value;
+	}
+
+	private V waitForValue(K key, Node<V> node)
+	{
+		try
+		{
+			return node.task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			synchronized (this)
+			{
+				map.remove(key, node);
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Evicts least recently used entries until the cache's total weight is at most the given fraction of its maximum weight.
+	 */
+	public synchronized void trimToFraction(double fraction)
+	{
+		evictUntilAtMost((long) (maxWeight * fraction), null);
+	}
+
+	/**
+	 * @param keep
+	 *            An entry not to evict, or null.
+	 */
+	private void evictUntilAtMost(long targetWeight, Node<V> keep)
+	{
+		if (residentWeight <= targetWeight)
+		{
+			return;
+		}
+
+		Iterator<Map.Entry<K, Node<V>>> iterator = map.entrySet().iterator();
+		while (iterator.hasNext() && residentWeight > targetWeight)
+		{
+			Node<V> node = iterator.next().getValue();
+			if (!node.isDone || node == keep)
+			{
+				continue;
+			}
+			iterator.remove();
+			residentWeight -= node.weight;
+			evictionCount++;
+		}
+	}
+
+	public synchronized void setMaxWeight(long maxWeight)
+	{
+		this.maxWeight = maxWeight;
+		evictUntilAtMost(maxWeight, null);
+	}
+
+	public synchronized void clear()
+	{
+		map.clear();
+		residentWeight = 0;
+	}
+
+	public synchronized int size()
+	{
+		return map.size();
+	}
+
+	public synchronized Stats getStats()
+	{
+		return new Stats(name, hitCount, missCount, evictionCount, residentWeight, maxWeight, map.size());
+	}
+}
@@ -33,6 +33,7 @@ public class AwtMapCreatorBenchmark
 		PlatformFactory.setInstance(new AwtFactory());
 		nortantis.swing.translation.Translation.initialize();
 		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
 	}
 
 	@Test
@@ -0,0 +1,95 @@
+package nortantis;
+
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.util.Assets;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRendererTest
+{
+	@TempDir
+	Path tempDir;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+		nortantis.swing.translation.Translation.initialize();
+		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
+	}
+
+	@Test
+	public void argsAreParsed()
+	{
+		BatchRenderer renderer = BatchRenderer.parseArgs(new String[] { "--seeds", "-3-4", "--format", "JPG", "--parallel", "3", "--output", "out", "a.nort" });
+		assertEquals(-3L, renderer.firstSeed);
+		assertEquals(4L, renderer.lastSeed);
+		assertEquals("jpg", renderer.format);
+		assertEquals(3, renderer.maxMapsInFlight);
+		assertEquals(Path.of("out", "render report.json"), renderer.reportPath);
+
+		List<BatchRenderer.Job> jobs = renderer.createJobs();
+		assertEquals(8, jobs.size());
+		assertEquals(Path.of("out", "a seed -3.jpg"), jobs.get(0).outputPath);
+
+		assertThrows(IllegalArgumentException.class, () -> BatchRenderer.parseArgs(new String[] {}));
+		assertThrows(IllegalArgumentException.class, () -> BatchRenderer.parseArgs(new String[] { "--seeds", "1-2", "a.nort", "b.nort" }));
+		assertThrows(IllegalArgumentException.class, () -> BatchRenderer.parseArgs(new String[] { "--format", "gif", "a.nort" }));
+		assertThrows(IllegalArgumentException.class, () -> BatchRenderer.parseArgs(new String[] { "--resolution", "x", "a.nort" }));
+		assertThrows(IllegalArgumentException.class, () -> BatchRenderer.parseArgs(new String[] { "a.nort", "--parallel" }));
+	}
+
+	@Test
+	public void mapsWithTheSameNameDontOverwriteEachOther()
+	{
+		BatchRenderer renderer = BatchRenderer.parseArgs(new String[] { Path.of("a", "map.nort").toString(), Path.of("b", "map.nort").toString() });
+		List<BatchRenderer.Job> jobs = renderer.createJobs();
+		assertEquals(Path.of("map.png"), jobs.get(0).outputPath);
+		assertEquals(Path.of("map (2).png"), jobs.get(1).outputPath);
+		// Drawing maps concurrently is opt in.
+		assertEquals(1, renderer.maxMapsInFlight);
+	}
+
+	@Test
+	public void seedsAreRenderedAndReported() throws IOException
+	{
+		String settingsPath = Path.of("unit test files", "map settings", "simpleSmallWorld.nort").toString();
+		BatchRenderer renderer = BatchRenderer.parseArgs(
+				new String[] { "--seeds", "1-2", "--resolution", "0.25", "--parallel", "2", "--output", tempDir.toString(), settingsPath });
+		JSONArray report = renderer.run();
+
+		assertEquals(2, report.size());
+		for (Object value : report)
+		{
+			JSONObject entry = (JSONObject) value;
+			assertEquals(true, entry.get("succeeded"), String.valueOf(entry.get("error")));
+			assertTrue(Files.size(Path.of((String) entry.get("outputPath"))) > 0);
+			assertTrue(entry.containsKey("renderAndWriteMillis"));
+		}
+		assertTrue(Files.exists(tempDir.resolve("render report.json")));
+	}
+
+	@Test
+	public void failedMapsAreReported() throws IOException
+	{
+		BatchRenderer renderer = BatchRenderer.parseArgs(new String[] { "--output", tempDir.toString(), tempDir.resolve("missing.nort").toString() });
+		JSONArray report = renderer.run();
+
+		assertEquals(1, report.size());
+		JSONObject entry = (JSONObject) report.get(0);
+		assertEquals(false, entry.get("succeeded"));
+		assertNotNull(entry.get("error"));
+	}
+}
@@ -0,0 +1,114 @@
+package nortantis;
+
+import nortantis.editor.CenterChunker;
+import nortantis.geom.Point;
+import nortantis.graph.voronoi.Center;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CenterChunkerTest
+{
+	private static List<Center> createRandomCenters(int count, double width, double height)
+	{
+		Random rand = new Random(42);
+		List<Center> centers = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+		{
+			Center center = new Center(new Point(rand.nextDouble() * width, rand.nextDouble() * height));
+			center.index = i;
+			centers.add(center);
+		}
+		return centers;
+	}
+
+	@Test
+	public void chunksCoverEveryCenterOnceAndRespectMaxSize()
+	{
+		List<Center> centers = createRandomCenters(2000, 4000, 3000);
+		List<Set<Integer>> chunks = CenterChunker.split(centers, 50);
+
+		Set<Integer> seen = new HashSet<>();
+		for (Set<Integer> chunk : chunks)
+		{
+			assertFalse(chunk.isEmpty());
+			assertTrue(chunk.size() <= 50, "Chunk has " + chunk.size() + " centers.");
+			for (Integer index : chunk)
+			{
+				assertTrue(seen.add(index), "Center " + index + " is in more than one chunk.");
+			}
+		}
+		assertEquals(2000, seen.size());
+	}
+
+	@Test
+	public void chunksAreSpatiallyCompact()
+	{
+		List<Center> centers = createRandomCenters(2000, 4000, 3000);
+		List<Set<Integer>> chunks = CenterChunker.split(centers, 100);
+
+		double totalArea = 4000.0 * 3000.0;
+		double sumOfChunkAreas = 0;
+		for (Set<Integer> chunk : chunks)
+		{
+			double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			for (Integer index : chunk)
+			{
+				Point loc = centers.get(index).loc;
+				minX = Math.min(minX, loc.x);
+				minY = Math.min(minY, loc.y);
+				maxX = Math.max(maxX, loc.x);
+				maxY = Math.max(maxY, loc.y);
+			}
+			sumOfChunkAreas += (maxX - minX) * (maxY - minY);
+		}
+
+		// Chunks taken from a row-major sort would each span the full width of the map. Compact chunks barely overlap, so their bounding
+		// boxes add up to not much more than the map.
+		assertTrue(sumOfChunkAreas < totalArea * 3, "Chunk bounds add up to " + (sumOfChunkAreas / totalArea) + " times the map's area.");
+	}
+
+	@Test
+	public void smallSetIsOneChunk()
+	{
+		List<Center> centers = createRandomCenters(10, 100, 100);
+		List<Set<Integer>> chunks = CenterChunker.split(centers, 50);
+		assertEquals(1, chunks.size());
+		assertEquals(10, chunks.get(0).size());
+
+		assertTrue(CenterChunker.split(new ArrayList<>(), 50).isEmpty());
+	}
+
+	@Test
+	public void firstChunkMatchesFirstChunkOfSplit()
+	{
+		int[][] countsAndMaxSizes = { { 2000, 50 }, { 2000, 100 }, { 2000, 7 }, { 51, 50 }, { 10, 50 }, { 0, 50 } };
+		for (int[] countAndMaxSize : countsAndMaxSizes)
+		{
+			List<Center> centers = createRandomCenters(countAndMaxSize[0], 4000, 3000);
+			List<Set<Integer>> chunks = CenterChunker.split(centers, countAndMaxSize[1]);
+			Set<Integer> expected = chunks.isEmpty() ? new HashSet<>() : chunks.get(0);
+			assertEquals(expected, CenterChunker.firstChunk(centers, countAndMaxSize[1]), "For " + countAndMaxSize[0] + " centers.");
+		}
+	}
+
+	@Test
+	public void firstChunkOfCentersInOneSpotMatchesSplit()
+	{
+		// Centers that all land in one grid cell can't be split along cell boundaries.
+		List<Center> centers = createRandomCenters(300, 4000, 3000);
+		for (int i = 0; i < 120; i++)
+		{
+			Center center = new Center(new Point(1000 + i * 0.001, 1000));
+			center.index = centers.size();
+			centers.add(center);
+		}
+		assertEquals(CenterChunker.split(centers, 50).get(0), CenterChunker.firstChunk(centers, 50));
+	}
+}
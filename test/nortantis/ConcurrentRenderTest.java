@@ -0,0 +1,159 @@
+package nortantis;
+
+import nortantis.platform.Image;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.util.Assets;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Draws the unit test maps one at a time, then all at once on several threads, and checks that drawing them at the same time doesn't change
+ * them.
+ */
+public class ConcurrentRenderTest
+{
+	/**
+	 * Low enough to keep the test reasonably fast, while still drawing every part of each map.
+	 */
+	private static final double resolution = 0.25;
+	private static final int threadCount = 4;
+
+	@BeforeAll
+	public static void setUpBeforeClass()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+		nortantis.swing.translation.Translation.initialize();
+		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
+	}
+
+	private static class RenderResult
+	{
+		Image map;
+		List<String> warnings;
+		String error;
+	}
+
+	private static RenderResult render(String settingsFileName)
+	{
+		RenderResult result = new RenderResult();
+		MapCreator mapCreator = new MapCreator();
+		// Use the same memory mode whether or not other maps are being drawn, so that only drawing at the same time differs.
+		mapCreator.overrideMemoryMode(true);
+		try
+		{
+			MapSettings settings = new MapSettings(Paths.get("unit test files", "map settings", settingsFileName).toString());
+			settings.resolution = resolution;
+			result.map = mapCreator.createMap(settings, null, null);
+		}
+		catch (Exception e)
+		{
+			result.error = e.getClass().getName() + ": " + e.getMessage();
+		}
+		result.warnings = mapCreator.getWarningMessages();
+		return result;
+	}
+
+	@Test
+	public void mapsDrawnAtTheSameTimeMatchMapsDrawnOneAtATime() throws Exception
+	{
+		List<String> settingsFileNames = new ArrayList<>();
+		for (File file : new File(Paths.get("unit test files", "map settings").toString()).listFiles())
+		{
+			if (!file.isDirectory())
+			{
+				settingsFileNames.add(file.getName());
+			}
+		}
+		settingsFileNames.sort(String::compareTo);
+
+		Map<String, RenderResult> serialResults = new LinkedHashMap<>();
+		for (String settingsFileName : settingsFileNames)
+		{
+			serialResults.put(settingsFileName, render(settingsFileName));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		Map<String, Future<RenderResult>> parallelResults = new LinkedHashMap<>();
+		try
+		{
+			// Submit in reverse so that each map is drawn alongside different maps than it was drawn after in the serial pass.
+			List<String> reversed = new ArrayList<>(settingsFileNames);
+			Collections.reverse(reversed);
+			for (String settingsFileName : reversed)
+			{
+				parallelResults.put(settingsFileName, executor.submit(() -> render(settingsFileName)));
+			}
+
+			List<String> failures = new ArrayList<>();
+			for (String settingsFileName : settingsFileNames)
+			{
+				RenderResult serial = serialResults.get(settingsFileName);
+				RenderResult parallel = parallelResults.get(settingsFileName).get();
+				try
+				{
+					if (serial.error != null || parallel.error != null)
+					{
+						if (!String.valueOf(serial.error).equals(String.valueOf(parallel.error)))
+						{
+							failures.add(settingsFileName + ": drawn alone, the error was '" + serial.error + "', but drawn at the same time as other maps, it was '"
+									+ parallel.error + "'.");
+						}
+						continue;
+					}
+
+					String comparisonErrorMessage = MapTestUtil.checkIfImagesEqual(serial.map, parallel.map);
+					if (comparisonErrorMessage != null && !comparisonErrorMessage.isEmpty())
+					{
+						failures.add(settingsFileName + ": " + comparisonErrorMessage);
+					}
+					if (!serial.warnings.equals(parallel.warnings))
+					{
+						failures.add(settingsFileName + ": drawn alone, the warnings were " + serial.warnings + ", but drawn at the same time as other maps, they were "
+								+ parallel.warnings + ".");
+					}
+				}
+				finally
+				{
+					for (Image map : Arrays.asList(serial.map, parallel.map))
+					{
+						if (map != null)
+						{
+							map.close();
+						}
+					}
+				}
+			}
+
+			assertTrue(failures.isEmpty(), String.join(System.lineSeparator(), failures));
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void changingThePlatformWhileDrawingIsDetected()
+	{
+		MapCreator mapCreator = new MapCreator();
+		PlatformFactory.setInstance(new AwtFactory());
+		MapSettings settings = new MapSettings(Paths.get("unit test files", "map settings", "simpleSmallWorld.nort").toString());
+		assertThrows(IllegalStateException.class, () -> mapCreator.createMap(settings, null, null));
+	}
+}
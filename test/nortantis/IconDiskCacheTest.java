@@ -0,0 +1,145 @@
+package nortantis;
+
+import nortantis.platform.Color;
+import nortantis.platform.Image;
+import nortantis.platform.ImageType;
+import nortantis.platform.Painter;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IconDiskCacheTest
+{
+	@TempDir
+	Path tempDir;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	private static Image createTestIcon()
+	{
+		Image icon = Image.create(40, 30, ImageType.ARGB);
+		try (Painter p = icon.createPainter())
+		{
+			p.setColor(Color.create(120, 80, 40));
+			p.fillRect(10, 5, 20, 20);
+		}
+		return icon;
+	}
+
+	private Path writeSourceFile() throws Exception
+	{
+		Path source = tempDir.resolve("mountain w2.png");
+		Files.write(source, new byte[] { 1, 2, 3 });
+		return source;
+	}
+
+	@Test
+	public void storeThenLoad_roundTripsImageMasksAndBounds() throws Exception
+	{
+		Path source = writeSourceFile();
+		IconDiskCache cache = new IconDiskCache(tempDir.resolve("cache"));
+		IconDiskCache.SourceFileKey key = IconDiskCache.createKey(source, IconType.mountains, 255);
+		assertNotNull(key);
+		assertNull(cache.load(key));
+
+		ImageAndMasks original = new ImageAndMasks(createTestIcon(), IconType.mountains, 2, "test", "group", "mountain");
+		cache.store(key, original);
+
+		IconDiskCache.CachedIcon cached = cache.load(key);
+		assertNotNull(cached);
+		assertEquals(original.getOrCreateContentBounds(), cached.contentBounds());
+		assertNull(MapTestUtil.checkIfImagesEqual(original.image, cached.image()));
+		assertNull(MapTestUtil.checkIfImagesEqual(original.getOrCreateContentMask(), cached.contentMask()));
+		assertNull(MapTestUtil.checkIfImagesEqual(original.getOrCreateShadingMask(), cached.shadingMask()));
+		assertNull(MapTestUtil.checkIfImagesEqual(original.getOrCreateColorMask(), cached.colorMask()));
+		assertEquals(ImageType.Binary, cached.contentMask().getType());
+	}
+
+	@Test
+	public void load_ignoresEntryWhenSourceFileChanges() throws Exception
+	{
+		Path source = writeSourceFile();
+		IconDiskCache cache = new IconDiskCache(tempDir.resolve("cache"));
+		IconDiskCache.SourceFileKey key = IconDiskCache.createKey(source, IconType.mountains, 255);
+		cache.store(key, new ImageAndMasks(createTestIcon(), IconType.mountains, 2, "test", "group", "mountain"));
+
+		Files.setLastModifiedTime(source, FileTime.fromMillis(key.lastModifiedMillis() + 5000));
+		assertNull(cache.load(IconDiskCache.createKey(source, IconType.mountains, 255)));
+		assertNull(cache.load(IconDiskCache.createKey(source, IconType.mountains, 128)));
+	}
+
+	@Test
+	public void createKey_returnsNullForMissingFile()
+	{
+		assertNull(IconDiskCache.createKey(tempDir.resolve("missing.png"), IconType.trees, 255));
+	}
+
+	@Test
+	public void storeInBackground_writesTheIcon() throws Exception
+	{
+		Path source = writeSourceFile();
+		IconDiskCache cache = new IconDiskCache(tempDir.resolve("cache"));
+		IconDiskCache.SourceFileKey key = IconDiskCache.createKey(source, IconType.mountains, 255);
+		Image icon = createTestIcon();
+		cache.storeInBackground(key, new ImageAndMasks(icon, IconType.mountains, 2, "test", "group", "mountain"));
+		cache.waitForWrites();
+
+		IconDiskCache.CachedIcon cached = cache.load(key);
+		assertNotNull(cached);
+		assertNull(MapTestUtil.checkIfImagesEqual(icon, cached.image()));
+	}
+
+	@Test
+	public void store_deletesLeastRecentlyUsedIconsWhenOverLimit() throws Exception
+	{
+		List<IconDiskCache.SourceFileKey> keys = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+		{
+			Path source = tempDir.resolve("mountain " + i + ".png");
+			Files.write(source, new byte[] { (byte) i });
+			keys.add(IconDiskCache.createKey(source, IconType.mountains, 255));
+		}
+
+		// Find the size of one entry, then allow room for two and a half of them.
+		Path cacheFolder = tempDir.resolve("cache");
+		new IconDiskCache(cacheFolder).store(keys.get(0), new ImageAndMasks(createTestIcon(), IconType.mountains, 2, "test", "group", "mountain"));
+		long entrySize;
+		try (Stream<Path> files = Files.list(cacheFolder))
+		{
+			entrySize = Files.size(files.findFirst().get());
+		}
+		IconDiskCache cache = new IconDiskCache(cacheFolder, entrySize * 5 / 2);
+
+		cache.store(keys.get(1), new ImageAndMasks(createTestIcon(), IconType.mountains, 2, "test", "group", "mountain"));
+		try (Stream<Path> files = Files.list(cacheFolder))
+		{
+			for (Path file : (Iterable<Path>) files::iterator)
+			{
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+			}
+		}
+		// Using the first icon makes the second the least recently used.
+		assertNotNull(cache.load(keys.get(0)));
+
+		cache.store(keys.get(2), new ImageAndMasks(createTestIcon(), IconType.mountains, 2, "test", "group", "mountain"));
+
+		assertNotNull(cache.load(keys.get(0)));
+		assertNull(cache.load(keys.get(1)));
+		assertNotNull(cache.load(keys.get(2)));
+	}
+}
@@ -0,0 +1,35 @@
+package nortantis;
+
+import nortantis.geom.IntDimension;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IconDrawerTest
+{
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	@Test
+	public void quantizeDrawSize_leavesSmallIconsUnchanged()
+	{
+		IntDimension size = new IntDimension(127, 90);
+		assertSame(size, IconDrawer.quantizeDrawSize(size));
+	}
+
+	@Test
+	public void quantizeDrawSize_mergesNearIdenticalLargeSizes()
+	{
+		IntDimension a = IconDrawer.quantizeDrawSize(new IntDimension(640, 320));
+		IntDimension b = IconDrawer.quantizeDrawSize(new IntDimension(643, 321));
+		assertEquals(a, b);
+		assertEquals(640, a.width);
+		assertEquals(320, a.height);
+	}
+}
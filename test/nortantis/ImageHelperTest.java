@@ -44,6 +44,7 @@ public class ImageHelperTest
 	{
 		PlatformFactory.setInstance(new AwtFactory());
 		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
 
 		FileHelper.createFolder(Paths.get("unit test files", expectedFolderName).toString());
 		FileUtils.deleteDirectory(new File(Paths.get("unit test files", failedFolderName).toString()));
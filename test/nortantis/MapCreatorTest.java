@@ -43,6 +43,8 @@ public class MapCreatorTest
 		PlatformFactory.setInstance(new AwtFactory());
 		nortantis.swing.translation.Translation.initialize();
 		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
+		MapPartsDiskCache.disableForUnitTests();
 
 		FileHelper.createFolder(Paths.get("unit test files", "expected maps").toString());
 		FileUtils.deleteDirectory(new File(Paths.get("unit test files", failedMapsFolderName).toString()));
@@ -0,0 +1,157 @@
+package nortantis;
+
+import nortantis.editor.MapParts;
+import nortantis.geom.IntRectangle;
+import nortantis.geom.Rectangle;
+import nortantis.graph.voronoi.Center;
+import nortantis.platform.Image;
+import nortantis.platform.PixelReader;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.util.Assets;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapCreatorTilesTest
+{
+	@BeforeAll
+	public static void setUpBeforeClass()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+		nortantis.swing.translation.Translation.initialize();
+		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
+	}
+
+	@Test
+	public void splitIntoTiles_smallChangeIsOneTile()
+	{
+		Rectangle bounds = new Rectangle(10, 20, 300, 200);
+		List<Rectangle> tiles = MapCreator.splitIntoTiles(bounds, 20);
+		assertEquals(1, tiles.size());
+		assertEquals(bounds, tiles.get(0));
+	}
+
+	@Test
+	public void splitIntoTiles_tilesCoverBoundsWithoutOverlap()
+	{
+		Rectangle bounds = new Rectangle(7, 13, 1300, 1100);
+		List<Rectangle> tiles = MapCreator.splitIntoTiles(bounds, 20);
+		assertTrue(tiles.size() > 1);
+
+		double area = 0;
+		for (int i = 0; i < tiles.size(); i++)
+		{
+			Rectangle tile = tiles.get(i);
+			assertTrue(tile.x >= bounds.x && tile.y >= bounds.y);
+			assertTrue(tile.x + tile.width <= bounds.x + bounds.width && tile.y + tile.height <= bounds.y + bounds.height);
+			area += tile.width * tile.height;
+			for (int j = i + 1; j < tiles.size(); j++)
+			{
+				Rectangle other = tiles.get(j);
+				boolean overlaps = tile.x < other.x + other.width && other.x < tile.x + tile.width && tile.y < other.y + other.height
+						&& other.y < tile.y + tile.height;
+				assertFalse(overlaps, "Tiles " + i + " and " + j + " overlap");
+			}
+		}
+		assertEquals(bounds.width * bounds.height, area, 0.0);
+	}
+
+	@Test
+	public void splitIntoTiles_tilesAreAtLeastAFewEffectsPaddingsWide()
+	{
+		Rectangle bounds = new Rectangle(0, 0, 4000, 4000);
+		double effectsPadding = 300;
+		List<Rectangle> tiles = MapCreator.splitIntoTiles(bounds, effectsPadding);
+		assertTrue(tiles.get(0).width >= effectsPadding * 4);
+	}
+
+	@Test
+	public void tiledIncrementalUpdateMatchesUntiledUpdate()
+	{
+		MapSettings settings = new MapSettings(Paths.get("unit test files", "map settings", "simpleSmallWorld.nort").toString());
+		settings.resolution = 0.35;
+		// These can't be drawn in tiles, so they would make the update below skip tiling.
+		settings.brokenLinesForConcentricWaves = false;
+		settings.drawRegionBoundaries = false;
+
+		MapCreator mapCreator = new MapCreator();
+		// High memory mode, so that the update draws with the same cached layers both times.
+		mapCreator.overrideMemoryMode(false);
+		MapParts mapParts = new MapParts();
+		Image fullMap = mapCreator.createMap(settings, null, mapParts);
+
+		Set<Integer> allCenters = new HashSet<>();
+		for (Center center : mapParts.graph.centers)
+		{
+			allCenters.add(center.index);
+		}
+
+		Image untiled = fullMap.deepCopy();
+		mapCreator.setUseTiledIncrementalUpdates(false);
+		mapCreator.incrementalUpdateForCentersAndEdges(settings, mapParts, untiled, allCenters, null, false);
+
+		Image tiled = fullMap.deepCopy();
+		mapCreator.setUseTiledIncrementalUpdates(true);
+		IntRectangle changeBounds = mapCreator.incrementalUpdateForCentersAndEdges(settings, mapParts, tiled, allCenters, null, false);
+
+		// The same tiles the update drew. The change bounds are in the map with its border, which only shifts the tiles.
+		double effectsPadding = Math.ceil(mapCreator.calcEffectsPadding(settings));
+		List<Rectangle> tiles = MapCreator.splitIntoTiles(new Rectangle(changeBounds.x, changeBounds.y, changeBounds.width, changeBounds.height), effectsPadding);
+		assertTrue(tiles.size() > 1);
+
+		// Tiles rasterize coastlines at different offsets than the whole-map draw, which can move a few scattered anti-aliased edge pixels by
+		// one subpixel sample. A seam between tiles would instead show up as differences along the tile edges.
+		final int maxDifferingPixels = 50;
+		final double tileEdgeBand = 3;
+		int differingPixelCount = 0;
+		List<String> differencesNearTileEdges = new ArrayList<>();
+		try (PixelReader untiledPixels = untiled.createPixelReader(); PixelReader tiledPixels = tiled.createPixelReader())
+		{
+			for (int y = 0; y < untiled.getHeight(); y++)
+			{
+				for (int x = 0; x < untiled.getWidth(); x++)
+				{
+					if (untiledPixels.getRGB(x, y) != tiledPixels.getRGB(x, y))
+					{
+						differingPixelCount++;
+						if (distanceToTileEdge(tiles, changeBounds, x, y) < tileEdgeBand)
+						{
+							differencesNearTileEdges.add("(" + x + ", " + y + ")");
+						}
+					}
+				}
+			}
+		}
+		assertTrue(differingPixelCount <= maxDifferingPixels, differingPixelCount + " pixels differ.");
+		assertEquals(new ArrayList<>(), differencesNearTileEdges, "Pixels differ along tile edges.");
+	}
+
+	/**
+	 * @return How far the center of a pixel is from the nearest line between two tiles, ignoring the outside edges of the change.
+	 */
+	private static double distanceToTileEdge(List<Rectangle> tiles, IntRectangle changeBounds, int x, int y)
+	{
+		double distance = Double.POSITIVE_INFINITY;
+		for (Rectangle tile : tiles)
+		{
+			if (tile.x > changeBounds.x)
+			{
+				distance = Math.min(distance, Math.abs(x + 0.5 - tile.x));
+			}
+			if (tile.y > changeBounds.y)
+			{
+				distance = Math.min(distance, Math.abs(y + 0.5 - tile.y));
+			}
+		}
+		return distance;
+	}
+}
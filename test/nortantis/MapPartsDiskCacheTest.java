@@ -0,0 +1,204 @@
+package nortantis;
+
+import nortantis.platform.Image;
+import nortantis.platform.ImageType;
+import nortantis.platform.PixelWriter;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.util.Assets;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapPartsDiskCacheTest
+{
+	@TempDir
+	Path tempDir;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+		nortantis.swing.translation.Translation.initialize();
+		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
+	}
+
+	private static Image createTestImage(ImageType type, int seed)
+	{
+		Image image = Image.create(17, 11, type);
+		try (PixelWriter pixels = image.createPixelWriter())
+		{
+			for (int y = 0; y < image.getHeight(); y++)
+			{
+				for (int x = 0; x < image.getWidth(); x++)
+				{
+					int value = (x * 31 + y * 17 + seed) & 0xff;
+					if (type == ImageType.Binary)
+					{
+						pixels.setGrayLevel(x, y, value < 128 ? 0 : 255);
+					}
+					else if (type == ImageType.Grayscale8Bit)
+					{
+						pixels.setGrayLevel(x, y, value);
+					}
+					else if (type == ImageType.Grayscale16Bit)
+					{
+						pixels.setBandLevel(x, y, 0, value * 257);
+					}
+					else if (type == ImageType.RGB)
+					{
+						pixels.setRGB(x, y, value, 255 - value, (value * 3) & 0xff);
+					}
+					else
+					{
+						pixels.setRGB(x, y, value, 255 - value, (value * 3) & 0xff, (value * 5) & 0xff);
+					}
+				}
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void storeThenLoad_roundTripsEveryImageTypeAndNulls()
+	{
+		MapPartsDiskCache cache = new MapPartsDiskCache(tempDir.resolve("cache"), Long.MAX_VALUE);
+		String key = MapPartsDiskCache.createKey("test", 1, 2.5, true);
+		assertNull(cache.load(key));
+
+		List<Image> images = new ArrayList<>();
+		for (ImageType type : ImageType.values())
+		{
+			images.add(createTestImage(type, type.ordinal()));
+		}
+		images.add(null);
+		cache.store(key, images);
+
+		List<Image> loaded = cache.load(key);
+		assertNotNull(loaded);
+		assertEquals(images.size(), loaded.size());
+		for (int i = 0; i < images.size(); i++)
+		{
+			if (images.get(i) == null)
+			{
+				assertNull(loaded.get(i));
+			}
+			else
+			{
+				assertEquals(images.get(i).getType(), loaded.get(i).getType());
+				assertNull(MapTestUtil.checkIfImagesEqual(images.get(i), loaded.get(i)));
+			}
+		}
+	}
+
+	@Test
+	public void load_ignoresEntriesWithOtherKeys()
+	{
+		MapPartsDiskCache cache = new MapPartsDiskCache(tempDir.resolve("cache"), Long.MAX_VALUE);
+		cache.store(MapPartsDiskCache.createKey("grunge", 1L, 100), Arrays.asList(createTestImage(ImageType.Grayscale8Bit, 0)));
+
+		assertNull(cache.load(MapPartsDiskCache.createKey("grunge", 2L, 100)));
+		assertNull(cache.load(MapPartsDiskCache.createKey("fractalBackground", 1L, 100)));
+		assertNotNull(cache.load(MapPartsDiskCache.createKey("grunge", 1L, 100)));
+	}
+
+	@Test
+	public void getOrCreate_onlyCreatesOnce() throws Exception
+	{
+		MapPartsDiskCache cache = new MapPartsDiskCache(tempDir.resolve("cache"), Long.MAX_VALUE);
+		String key = MapPartsDiskCache.createKey("test", 3);
+		int[] createCount = new int[1];
+
+		Image first = MapPartsDiskCache.getOrCreate(cache, key, () ->
+		{
+			createCount[0]++;
+			return createTestImage(ImageType.RGB, 3);
+		});
+		cache.waitForWrites();
+		Image second = MapPartsDiskCache.getOrCreate(cache, key, () ->
+		{
+			createCount[0]++;
+			return createTestImage(ImageType.RGB, 3);
+		});
+
+		assertEquals(1, createCount[0]);
+		assertNull(MapTestUtil.checkIfImagesEqual(first, second));
+	}
+
+	@Test
+	public void store_deletesLeastRecentlyUsedEntriesWhenOverLimit() throws Exception
+	{
+		Path cacheFolder = tempDir.resolve("cache");
+		String keyA = MapPartsDiskCache.createKey("test", "a");
+		String keyB = MapPartsDiskCache.createKey("test", "b");
+		String keyC = MapPartsDiskCache.createKey("test", "c");
+
+		// Find the size of one entry, then allow room for two and a half of them.
+		new MapPartsDiskCache(cacheFolder, Long.MAX_VALUE).store(keyA, Arrays.asList(createTestImage(ImageType.ARGB, 0)));
+		long entrySize;
+		try (Stream<Path> files = Files.list(cacheFolder))
+		{
+			entrySize = Files.size(files.findFirst().get());
+		}
+		MapPartsDiskCache cache = new MapPartsDiskCache(cacheFolder, entrySize * 5 / 2);
+
+		cache.store(keyB, Arrays.asList(createTestImage(ImageType.ARGB, 1)));
+		try (Stream<Path> files = Files.list(cacheFolder))
+		{
+			for (Path file : (Iterable<Path>) files::iterator)
+			{
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+			}
+		}
+		// Using A makes B the least recently used.
+		assertNotNull(cache.load(keyA));
+
+		cache.store(keyC, Arrays.asList(createTestImage(ImageType.ARGB, 2)));
+
+		assertNotNull(cache.load(keyA));
+		assertNull(cache.load(keyB));
+		assertNotNull(cache.load(keyC));
+	}
+
+	@Test
+	public void mapDrawnWithCachedPartsMatchesMapDrawnWithout() throws Exception
+	{
+		MapSettings settings = new MapSettings(Paths.get("unit test files", "map settings", "simpleSmallWorld.nort").toString());
+		// Make sure all of the parts being cached are drawn.
+		assertTrue(settings.generateBackgroundFromTexture);
+		assertTrue(settings.drawGrunge);
+		settings.frayedBorder = true;
+
+		Image expected = new MapCreator().createMap(settings.deepCopy(), null, null);
+
+		MapPartsDiskCache cache = new MapPartsDiskCache(tempDir.resolve("cache"), Long.MAX_VALUE);
+		MapCreator storingCreator = new MapCreator();
+		storingCreator.setPartsDiskCache(cache);
+		Image drawnWhileStoring = storingCreator.createMap(settings.deepCopy(), null, null);
+		cache.waitForWrites();
+		try (Stream<Path> files = Files.list(tempDir.resolve("cache")))
+		{
+			// The texture background, the grunge, and the frayed border.
+			assertEquals(3, files.count());
+		}
+
+		MapCreator loadingCreator = new MapCreator();
+		loadingCreator.setPartsDiskCache(cache);
+		Image drawnFromCache = loadingCreator.createMap(settings.deepCopy(), null, null);
+
+		assertNull(MapTestUtil.checkIfImagesEqual(expected, drawnWhileStoring));
+		assertNull(MapTestUtil.checkIfImagesEqual(expected, drawnFromCache));
+	}
+}
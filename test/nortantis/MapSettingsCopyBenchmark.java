@@ -0,0 +1,70 @@
+package nortantis;
+
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.util.Helper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.file.Paths;
+
+/**
+ * Compares MapSettings.deepCopyExceptEdits with the Java serialization round trip it replaced.
+ *
+ * Benchmarks are skipped during normal test runs. Run with:
+ * ./gradlew test --tests "nortantis.MapSettingsCopyBenchmark" -DrunBenchmarks=true
+ */
+@EnabledIfSystemProperty(named = "runBenchmarks", matches = "true")
+public class MapSettingsCopyBenchmark
+{
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	@Test
+	public void benchmarkDeepCopyExceptEdits()
+	{
+		System.out.println("\n=== MapSettings copy Benchmark ===\n");
+
+		MapSettings settings = new MapSettings(Paths.get("unit test files", "map settings", "allTypesOfEdits.nort").toString());
+		settings.edits = null;
+
+		// Warmup
+		for (int i = 0; i < 200; i++)
+		{
+			settings.deepCopyExceptEdits();
+			Helper.deepCopy(settings);
+		}
+
+		int iterations = 2000;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+		{
+			settings.deepCopyExceptEdits();
+		}
+		long copyConstructorTime = (System.nanoTime() - start) / iterations;
+
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+		{
+			Helper.deepCopy(settings);
+		}
+		long serializationTime = (System.nanoTime() - start) / iterations;
+
+		System.out.println("  deepCopyExceptEdits:  " + formatTime(copyConstructorTime));
+		System.out.println("  Serialization copy:   " + formatTime(serializationTime));
+		System.out.println(String.format("  Speedup:              %.1fx", (double) serializationTime / copyConstructorTime));
+	}
+
+	private String formatTime(long nanos)
+	{
+		if (nanos < 1_000_000)
+		{
+			return String.format("%.2f µs", nanos / 1000.0);
+		}
+		return String.format("%.2f ms", nanos / 1_000_000.0);
+	}
+}
@@ -0,0 +1,208 @@
+package nortantis;
+
+import nortantis.geom.Point;
+import nortantis.platform.Color;
+import nortantis.platform.Font;
+import nortantis.platform.FontStyle;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.util.Helper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that MapSettings.deepCopyExceptEdits copies every field, so that a field added to MapSettings without being added to its copy
+ * constructor fails here rather than silently resetting on undo.
+ */
+public class MapSettingsCopyTest
+{
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	@Test
+	public void deepCopyExceptEditsCopiesEveryField() throws Exception
+	{
+		MapSettings settings = new MapSettings();
+		int counter = 1;
+		for (Field field : getCopiedFields(MapSettings.class))
+		{
+			field.set(settings, createDistinctValue(field, field.get(settings), counter++));
+		}
+
+		MapSettings copy = settings.deepCopyExceptEdits();
+
+		assertNull(copy.edits);
+		for (Field field : getCopiedFields(MapSettings.class))
+		{
+			Object original = field.get(settings);
+			Object copied = field.get(copy);
+			if (original instanceof MapSettings.SubMapInfo)
+			{
+				assertNotSame(original, copied, field.getName());
+				for (Field subField : getCopiedFields(MapSettings.SubMapInfo.class))
+				{
+					assertEquals(subField.get(original), subField.get(copied), field.getName() + "." + subField.getName());
+				}
+			}
+			else
+			{
+				assertEquals(original, copied, field.getName());
+			}
+
+			if (original instanceof Point || original instanceof Set || original instanceof Map)
+			{
+				assertNotSame(original, copied, field.getName() + " is mutable, so it must not be shared with the copy.");
+			}
+		}
+	}
+
+	@Test
+	public void deepCopyMatchesSerializationCopy()
+	{
+		MapSettings settings = new MapSettings();
+		settings.books = new TreeSet<>(Set.of("a", "b"));
+		settings.titleFont = Font.create("Serif", FontStyle.Bold, 20f);
+		settings.landColor = Color.create(1, 2, 3);
+		settings.overlayOffsetResolutionInvariant = new Point(5, 6);
+		settings.setIconFillColorForType(IconType.mountains, Color.create(4, 5, 6));
+		settings.edits = null;
+
+		assertEquals(Helper.deepCopy(settings), settings.deepCopyExceptEdits());
+	}
+
+	private static Iterable<Field> getCopiedFields(Class<?> type)
+	{
+		return Arrays.stream(type.getDeclaredFields())
+				.filter(field -> !Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers()) && !field.getName().equals("edits"))
+				.peek(field -> field.setAccessible(true)).toList();
+	}
+
+	/**
+	 * Creates a value for the field that differs from both its current value and the values of the other fields, so that a copy that skips
+	 * the field or copies one field into another is caught.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object createDistinctValue(Field field, Object current, int counter) throws Exception
+	{
+		Class<?> type = field.getType();
+		if (type == int.class)
+		{
+			return counter;
+		}
+		if (type == long.class)
+		{
+			return (long) counter;
+		}
+		if (type == double.class)
+		{
+			return counter + 0.5;
+		}
+		if (type == boolean.class)
+		{
+			return !(Boolean) current;
+		}
+		if (type == String.class)
+		{
+			return "value" + counter;
+		}
+		if (type.isEnum())
+		{
+			Object[] constants = type.getEnumConstants();
+			return constants[0] == current ? constants[constants.length - 1] : constants[0];
+		}
+		if (type == Color.class)
+		{
+			return Color.create(counter, counter, counter);
+		}
+		if (type == Font.class)
+		{
+			return Font.create("Serif", FontStyle.Plain, counter);
+		}
+		if (type == Stroke.class)
+		{
+			return new Stroke(StrokeType.Dots, counter);
+		}
+		if (type == NamedResource.class)
+		{
+			return new NamedResource("artPack" + counter, "name" + counter);
+		}
+		if (type == Point.class)
+		{
+			return new Point(counter, counter);
+		}
+		if (type == Set.class)
+		{
+			return new TreeSet<>(Set.of("book" + counter));
+		}
+		if (Map.class.isAssignableFrom(type))
+		{
+			Map map = (Map) type.getDeclaredConstructor().newInstance();
+			Class<?> valueType = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[1];
+			Object value;
+			if (valueType == Boolean.class)
+			{
+				value = true;
+			}
+			else if (valueType == Color.class)
+			{
+				value = Color.create(counter, counter, counter);
+			}
+			else if (valueType == HSBColor.class)
+			{
+				value = new HSBColor(counter, counter, counter, counter);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Add a value for map values of type " + valueType + " (field " + field.getName() + ") to this test.");
+			}
+			map.put(IconType.mountains, value);
+			return map;
+		}
+		if (type == MapSettings.SubMapInfo.class)
+		{
+			MapSettings.SubMapInfo info = new MapSettings.SubMapInfo();
+			int subCounter = counter * 100;
+			for (Field subField : getCopiedFields(MapSettings.SubMapInfo.class))
+			{
+				subField.set(info, createDistinctValue(subField, subField.get(info), subCounter++));
+			}
+			return info;
+		}
+
+		throw new IllegalArgumentException("Add a value for type " + type + " (field " + field.getName()
+				+ ") to this test, and make sure MapSettings' copy constructor copies it.");
+	}
+
+	@Test
+	public void copyIsIndependentOfOriginal()
+	{
+		MapSettings settings = new MapSettings();
+		settings.books = new TreeSet<>(Set.of("a"));
+		settings.subMapInfo = new MapSettings.SubMapInfo();
+		settings.subMapInfo.worldSize = 5;
+
+		MapSettings copy = settings.deepCopyExceptEdits();
+		settings.books.add("b");
+		settings.subMapInfo.worldSize = 6;
+		settings.overlayOffsetResolutionInvariant.x = 7;
+		settings.setIconFillColorForType(IconType.hills, Color.create(1, 1, 1));
+
+		assertEquals(Set.of("a"), copy.books);
+		assertEquals(5, copy.subMapInfo.worldSize);
+		assertEquals(0, copy.overlayOffsetResolutionInvariant.x);
+		assertNotEquals(settings.getIconFillColorForType(IconType.hills), copy.getIconFillColorForType(IconType.hills));
+	}
+}
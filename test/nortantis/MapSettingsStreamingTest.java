@@ -0,0 +1,208 @@
+package nortantis;
+
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.util.JsonStreamReader;
+import nortantis.util.JsonStreamWriter;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class MapSettingsStreamingTest
+{
+	@TempDir
+	Path tempDir;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void readerReadsWhatWriterWrites() throws IOException
+	{
+		JSONObject obj = new JSONObject();
+		obj.put("text", "quote \" slash / backslash \\ tab \t newline \n control \u0001 dash – é");
+		obj.put("long", Long.MIN_VALUE);
+		obj.put("double", -1.25e-7);
+		obj.put("true", true);
+		obj.put("null", null);
+		JSONArray array = new JSONArray();
+		array.add(3L);
+		array.add(new JSONObject());
+		array.add(new JSONArray());
+		obj.put("array", array);
+
+		String json = JsonStreamWriter.toJsonString(obj);
+		try (JsonStreamReader reader = new JsonStreamReader(new StringReader(json)))
+		{
+			assertEquals(obj, reader.readValue());
+			assertEquals(JsonStreamReader.Token.EndDocument, reader.peek());
+		}
+	}
+
+	@Test
+	public void readerParsesNumbersAsPrimitives() throws IOException
+	{
+		try (JsonStreamReader reader = new JsonStreamReader(new StringReader(" [ -12 , 4.0 , 2.5E3 , 9007199254740993 ] ")))
+		{
+			reader.beginArray();
+			assertEquals(-12, reader.nextInt());
+			assertEquals(4L, reader.nextLong());
+			assertEquals(2500.0, reader.nextDouble());
+			assertEquals(9007199254740993L, reader.nextLong());
+			assertFalse(reader.hasNext());
+			reader.endArray();
+		}
+	}
+
+	@Test
+	public void readerRejectsMalformedJson()
+	{
+		assertThrows(IOException.class, () ->
+		{
+			try (JsonStreamReader reader = new JsonStreamReader(new StringReader("{\"a\": 1,}")))
+			{
+				reader.readValue();
+			}
+		});
+		assertThrows(IOException.class, () ->
+		{
+			try (JsonStreamReader reader = new JsonStreamReader(new StringReader("[1 2]")))
+			{
+				reader.readValue();
+			}
+		});
+	}
+
+	/**
+	 * Existing files have their edits before their version, so they're read in two passes. Rewriting them puts the edits last, and reading
+	 * the result in one pass should give the same settings and edits back.
+	 */
+	@Test
+	public void settingsFilesSurviveRewriting() throws IOException
+	{
+		File[] files = new File(Path.of("unit test files", "map settings").toString()).listFiles((dir, name) -> name.endsWith(".nort"));
+		assertNotNull(files);
+		Arrays.sort(files);
+		assertTrue(files.length > 0);
+		for (File file : files)
+		{
+			MapSettings settings = new MapSettings(file.getPath());
+			Path rewritten = tempDir.resolve(file.getName());
+			settings.writeToFile(rewritten.toString());
+
+			String json = Files.readString(rewritten, StandardCharsets.UTF_8);
+			assertTrue(json.lastIndexOf("\"edits\":") > json.indexOf("\"version\":"), file.getName());
+
+			MapSettings reloaded = new MapSettings(rewritten.toString());
+			assertTrue(settings.fieldsOtherThanEditsEqual(reloaded), file.getName());
+			// Center icons from very old files aren't written back out, so center edits are only compared after the first rewrite.
+			assertEquals(settings.edits.text, reloaded.edits.text, file.getName());
+			assertEquals(settings.edits.freeIcons, reloaded.edits.freeIcons, file.getName());
+			assertEquals(settings.edits.regionEdits, reloaded.edits.regionEdits, file.getName());
+			assertEquals(settings.edits.roads, reloaded.edits.roads, file.getName());
+			assertEquals(settings.edits.rivers, reloaded.edits.rivers, file.getName());
+
+			Path rewrittenAgain = tempDir.resolve("again " + file.getName());
+			reloaded.writeToFile(rewrittenAgain.toString());
+			assertEquals(reloaded, new MapSettings(rewrittenAgain.toString()), file.getName());
+		}
+	}
+
+	@Test
+	public void cachedSectionsAreWrittenTheSameAsFreshOnes() throws IOException
+	{
+		MapSettings settings = new MapSettings(Path.of("unit test files", "map settings", "allTypesOfEdits.nort").toString());
+		EditsJsonCache cache = new EditsJsonCache();
+		Path cached = tempDir.resolve("cached.nort");
+		Path fresh = tempDir.resolve("fresh.nort");
+		for (boolean packEdits : new boolean[] { false, true })
+		{
+			settings.writeToFileAtomically(cached.toString(), packEdits, cache);
+			assertTrue(cache.size() > 0);
+
+			settings.edits.text.remove(0);
+			settings.edits.regionEdits.clear();
+			settings.writeToFileAtomically(cached.toString(), packEdits, cache);
+			settings.writeToFile(fresh.toString(), packEdits);
+			assertEquals(Files.readString(fresh, StandardCharsets.UTF_8), Files.readString(cached, StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void writingOverAFileReplacesItWithoutLeavingTemporaryFiles() throws IOException
+	{
+		MapSettings settings = new MapSettings(Path.of("unit test files", "map settings", "simpleSmallWorld.nort").toString());
+		Path target = tempDir.resolve("map.nort");
+		Files.writeString(target, "Not a map", StandardCharsets.UTF_8);
+
+		settings.writeToFile(target.toString(), false);
+
+		assertEquals(settings, new MapSettings(target.toString()));
+		try (Stream<Path> files = Files.list(tempDir))
+		{
+			assertEquals(Arrays.asList(target), files.toList());
+		}
+	}
+
+	@Test
+	public void writingOverAFileKeepsItsPermissions() throws IOException
+	{
+		assumeTrue(tempDir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		MapSettings settings = new MapSettings(Path.of("unit test files", "map settings", "simpleSmallWorld.nort").toString());
+		Path target = tempDir.resolve("map.nort");
+		Files.writeString(target, "Not a map", StandardCharsets.UTF_8);
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+		Files.setPosixFilePermissions(target, permissions);
+
+		settings.writeToFile(target.toString(), false);
+
+		assertEquals(permissions, Files.getPosixFilePermissions(target));
+	}
+
+	@Test
+	public void writingThroughASymbolicLinkReplacesTheFileItLinksTo() throws IOException
+	{
+		MapSettings settings = new MapSettings(Path.of("unit test files", "map settings", "simpleSmallWorld.nort").toString());
+		Path realFile = Files.createDirectory(tempDir.resolve("maps")).resolve("map.nort");
+		Files.writeString(realFile, "Not a map", StandardCharsets.UTF_8);
+		Path link = tempDir.resolve("link.nort");
+		try
+		{
+			Files.createSymbolicLink(link, realFile);
+		}
+		catch (UnsupportedOperationException | IOException e)
+		{
+			assumeTrue(false, "Symbolic links aren't supported here.");
+		}
+
+		settings.writeToFile(link.toString(), false);
+
+		assertTrue(Files.isSymbolicLink(link));
+		assertEquals(settings, new MapSettings(realFile.toString()));
+		try (Stream<Path> files = Files.list(realFile.getParent()))
+		{
+			assertEquals(Arrays.asList(realFile), files.toList());
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package nortantis;
+
+import nortantis.editor.MapUpdater;
+import nortantis.geom.IntRectangle;
+import nortantis.graph.voronoi.Center;
+import nortantis.platform.Image;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.swing.MapEdits;
+import nortantis.util.Assets;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapUpdaterTest
+{
+	@BeforeAll
+	public static void setUpBeforeClass()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+		nortantis.swing.translation.Translation.initialize();
+		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
+	}
+
+	/**
+	 * A MapUpdater that keeps the map it draws, the way the editor does, and records what it was asked to show.
+	 */
+	private static class TestMapUpdater extends MapUpdater
+	{
+		private final MapSettings settings;
+		volatile Image map;
+		final List<IntRectangle> incrementalChangeAreas = new ArrayList<>();
+		int fullDrawsFinished;
+		/** For each preview shown, its width and the number of full draws that had finished before it. */
+		final List<int[]> previewsShown = new ArrayList<>();
+
+		TestMapUpdater(MapSettings settings)
+		{
+			super(true);
+			this.settings = settings;
+			setEnabled(true);
+		}
+
+		/**
+		 * Draws a preview alongside full redraws even though the test map is small.
+		 */
+		void alwaysDrawPreviews()
+		{
+			setMinPixelsForPreview(0);
+		}
+
+		@Override
+		protected void onFinishedDrawingFull(Image map, double mapResolution, boolean anotherDrawIsQueued, int borderWidthAsDrawn, List<String> warningMessages,
+				List<IconDrawer.CityIconRemovedForWater> citiesRemovedForWater, boolean wasTriggeredByUndoRedo)
+		{
+			this.map = map;
+			fullDrawsFinished++;
+		}
+
+		@Override
+		protected void onFinishedDrawingIncremental(boolean anotherDrawIsQueued, int borderWidthAsDrawn, IntRectangle incrementalChangeArea, List<String> warningMessages)
+		{
+			incrementalChangeAreas.add(incrementalChangeArea);
+		}
+
+		@Override
+		protected void onPreviewDrawn(Image preview, double fractionOfFullResolution)
+		{
+			previewsShown.add(new int[] { preview.getWidth(), fullDrawsFinished });
+		}
+
+		@Override
+		protected void onFailedToDraw(Exception exception)
+		{
+			fail("Updater failed to draw.", exception);
+		}
+
+		@Override
+		protected void onBeginDraw()
+		{
+		}
+
+		@Override
+		public MapSettings getSettingsFromGUI()
+		{
+			return settings;
+		}
+
+		@Override
+		protected MapEdits getEdits()
+		{
+			return settings.edits;
+		}
+
+		@Override
+		protected Image getCurrentMapForIncrementalUpdate()
+		{
+			return map;
+		}
+
+		/**
+		 * Runs the given submissions together on the event thread, so that later ones are queued while the first is drawing, then waits for
+		 * all of the draws to finish.
+		 */
+		void submitAndWait(Runnable submissions) throws Exception
+		{
+			CountDownLatch done = new CountDownLatch(1);
+			SwingUtilities.invokeAndWait(() ->
+			{
+				submissions.run();
+				doWhenMapIsNotDrawing(done::countDown);
+			});
+			assertTrue(done.await(10, TimeUnit.MINUTES), "Timed out waiting for the map to draw.");
+			// The latch is counted down from the event thread, so wait for the rest of the event that finished the last draw.
+			SwingUtilities.invokeAndWait(() ->
+			{
+			});
+		}
+	}
+
+	private static MapSettings loadSettings()
+	{
+		MapSettings settings = new MapSettings(Paths.get("unit test files", "map settings", "simpleSmallWorld.nort").toString());
+		settings.resolution = 0.35;
+		return settings;
+	}
+
+	@Test
+	public void newerFullDrawSupersedesOneInProgress() throws Exception
+	{
+		MapSettings settings = loadSettings();
+		TestMapUpdater updater = new TestMapUpdater(settings);
+
+		updater.submitAndWait(() ->
+		{
+			updater.createAndShowMapFull();
+			updater.createAndShowMapFull();
+		});
+
+		assertEquals(1, updater.fullDrawsFinished);
+		assertEquals(1, updater.getDrawMetrics().drawsSuperseded());
+		Image expected = new MapCreator().createMap(settings.deepCopy(), null, null);
+		assertNull(MapTestUtil.checkIfImagesEqual(expected, updater.map));
+	}
+
+	@Test
+	public void incrementalDrawIsSupersededByQueuedDrawsCoveringIt() throws Exception
+	{
+		MapSettings settings = loadSettings();
+		TestMapUpdater updater = new TestMapUpdater(settings);
+		updater.submitAndWait(updater::createAndShowMapFull);
+		assertEquals(0, updater.getDrawMetrics().drawsSuperseded());
+
+		// Redrawing every center takes long enough that the first draw is still running when the second edit is submitted.
+		Set<Center> allCenters = new HashSet<>(updater.mapParts.graph.centers);
+		updater.submitAndWait(() ->
+		{
+			updater.createAndShowMapIncrementalUsingCenters(allCenters);
+			updater.createAndShowMapIncrementalUsingCenters(new HashSet<>(allCenters));
+		});
+
+		// Both edits are drawn by one draw.
+		assertEquals(1, updater.incrementalChangeAreas.size());
+		MapUpdater.DrawMetrics metrics = updater.getDrawMetrics();
+		assertEquals(1, metrics.drawsSuperseded());
+		assertEquals(1, metrics.incrementalDrawsDisplayed());
+		assertTrue(metrics.averageEditToDisplayMillis() > 0);
+		assertEquals(metrics.averageEditToDisplayMillis(), metrics.maxEditToDisplayMillis());
+	}
+
+	@Test
+	public void incrementalDrawIsNotSupersededByQueuedDrawsThatDontCoverIt() throws Exception
+	{
+		MapSettings settings = loadSettings();
+		TestMapUpdater updater = new TestMapUpdater(settings);
+		updater.submitAndWait(updater::createAndShowMapFull);
+
+		List<Center> centers = updater.mapParts.graph.centers;
+		Set<Center> allCenters = new HashSet<>(centers);
+		Set<Center> someCenters = new HashSet<>(centers.subList(0, 20));
+		updater.submitAndWait(() ->
+		{
+			updater.createAndShowMapIncrementalUsingCenters(allCenters);
+			updater.createAndShowMapIncrementalUsingCenters(someCenters);
+		});
+
+		assertEquals(2, updater.incrementalChangeAreas.size());
+		MapUpdater.DrawMetrics metrics = updater.getDrawMetrics();
+		assertEquals(0, metrics.drawsSuperseded());
+		assertEquals(2, metrics.incrementalDrawsDisplayed());
+		assertTrue(metrics.maxEditToDisplayMillis() >= metrics.averageEditToDisplayMillis());
+	}
+
+	@Test
+	public void fullRedrawOfDisplayedMapDrawsPreviewAlongsideIt() throws Exception
+	{
+		MapSettings settings = loadSettings();
+		TestMapUpdater updater = new TestMapUpdater(settings);
+		updater.alwaysDrawPreviews();
+		updater.submitAndWait(updater::createAndShowMapFull);
+		// The first draw of a map has nothing displayed to show a preview over.
+		assertEquals(0, updater.previewsShown.size());
+		Image firstDraw = updater.map;
+
+		updater.submitAndWait(updater::createAndShowMapFull);
+
+		assertEquals(2, updater.fullDrawsFinished);
+		// The preview draws alongside the full draw, so it's only shown if it finishes first.
+		assertTrue(updater.previewsShown.size() <= 1);
+		for (int[] preview : updater.previewsShown)
+		{
+			assertEquals(1, preview[1], "The preview was shown after the full quality map.");
+			assertEquals(firstDraw.getWidth() * 0.4, preview[0], firstDraw.getWidth() * 0.05);
+		}
+		// The preview draws from a copy of the settings.
+		assertEquals(0.35, settings.resolution);
+		assertTrue(settings.drawGrunge);
+		assertNull(MapTestUtil.checkIfImagesEqual(firstDraw, updater.map));
+	}
+
+	@Test
+	public void fullRedrawOfSmallMapDoesNotDrawPreview() throws Exception
+	{
+		TestMapUpdater updater = new TestMapUpdater(loadSettings());
+		updater.submitAndWait(updater::createAndShowMapFull);
+		updater.submitAndWait(updater::createAndShowMapFull);
+
+		assertEquals(2, updater.fullDrawsFinished);
+		assertEquals(0, updater.previewsShown.size());
+	}
+}
@@ -0,0 +1,129 @@
+package nortantis;
+
+import nortantis.editor.MipmapPyramid;
+import nortantis.geom.IntRectangle;
+import nortantis.platform.Color;
+import nortantis.platform.Image;
+import nortantis.platform.ImageType;
+import nortantis.platform.PixelReader;
+import nortantis.platform.PixelReaderWriter;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MipmapPyramidTest
+{
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	private static Image createRandomImage(int width, int height, long seed)
+	{
+		Random rand = new Random(seed);
+		Image image = Image.create(width, height, ImageType.RGB);
+		try (PixelReaderWriter pixels = image.createPixelReaderWriter(null))
+		{
+			for (int y = 0; y < height; y++)
+			{
+				for (int x = 0; x < width; x++)
+				{
+					pixels.setRGB(x, y, rand.nextInt(256), rand.nextInt(256), rand.nextInt(256));
+				}
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void picksTheSmallestLevelAtLeastTheRequestedWidth()
+	{
+		Image source = createRandomImage(101, 61, 1);
+		MipmapPyramid pyramid = new MipmapPyramid();
+
+		assertSame(source, pyramid.getLevelForWidth(source, 80));
+		assertEquals(51, pyramid.getLevelForWidth(source, 51).getWidth());
+		assertEquals(31, pyramid.getLevelForWidth(source, 51).getHeight());
+		assertEquals(26, pyramid.getLevelForWidth(source, 20).getWidth());
+		assertEquals(13, pyramid.getLevelForWidth(source, 13).getWidth());
+		assertEquals(1, pyramid.getLevelForWidth(source, 0).getWidth());
+	}
+
+	@Test
+	public void levelsAreBoxFiltered()
+	{
+		Image source = Image.create(2, 2, ImageType.RGB);
+		try (PixelReaderWriter pixels = source.createPixelReaderWriter(null))
+		{
+			pixels.setRGB(0, 0, 0, 0, 0);
+			pixels.setRGB(1, 0, 100, 0, 0);
+			pixels.setRGB(0, 1, 0, 200, 0);
+			pixels.setRGB(1, 1, 100, 200, 40);
+		}
+
+		Image level = new MipmapPyramid().getLevelForWidth(source, 1);
+		assertEquals(1, level.getWidth());
+		try (PixelReader pixels = level.createPixelReader(null))
+		{
+			Color color = pixels.getPixelColor(0, 0);
+			assertEquals(50, color.getRed());
+			assertEquals(100, color.getGreen());
+			assertEquals(10, color.getBlue());
+		}
+	}
+
+	@Test
+	public void incrementalUpdateMatchesRebuild()
+	{
+		Image source = createRandomImage(203, 117, 2);
+		MipmapPyramid pyramid = new MipmapPyramid();
+		pyramid.getLevelForWidth(source, 10);
+
+		IntRectangle changed = new IntRectangle(37, 21, 55, 40);
+		Image replacement = createRandomImage(changed.width, changed.height, 3);
+		try (PixelReader replacementPixels = replacement.createPixelReader(null); PixelReaderWriter pixels = source.createPixelReaderWriter(changed))
+		{
+			for (int y = 0; y < changed.height; y++)
+			{
+				for (int x = 0; x < changed.width; x++)
+				{
+					pixels.setRGB(changed.x + x, changed.y + y, replacementPixels.getRGB(x, y));
+				}
+			}
+		}
+		pyramid.update(source, changed);
+
+		MipmapPyramid rebuilt = new MipmapPyramid();
+		for (int width = 102; width >= 10; width = (width + 1) / 2)
+		{
+			assertNull(MapTestUtil.checkIfImagesEqual(rebuilt.getLevelForWidth(source, width), pyramid.getLevelForWidth(source, width)));
+		}
+	}
+
+	@Test
+	public void getBuiltLevelForWidthDoesNotBuildLevels()
+	{
+		Image source = createRandomImage(101, 61, 4);
+		MipmapPyramid pyramid = new MipmapPyramid();
+
+		// The source itself doesn't need building.
+		assertSame(source, pyramid.getBuiltLevelForWidth(source, 80));
+		assertNull(pyramid.getBuiltLevelForWidth(source, 51));
+		assertNull(pyramid.getBuiltLevelForWidth(source, 51));
+
+		Image level = pyramid.getLevelForWidth(source, 51);
+		assertSame(level, pyramid.getBuiltLevelForWidth(source, 51));
+		assertNull(pyramid.getBuiltLevelForWidth(source, 20));
+
+		// Levels built from a different source don't count.
+		Image otherSource = createRandomImage(101, 61, 5);
+		assertNull(pyramid.getBuiltLevelForWidth(otherSource, 51));
+		assertSame(level, pyramid.getBuiltLevelForWidth(source, 51));
+	}
+}
@@ -0,0 +1,82 @@
+package nortantis;
+
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedEditsTest
+{
+	@TempDir
+	Path tempDir;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	@Test
+	public void packedEditsReadBackTheSameAsJson() throws IOException
+	{
+		File[] files = new File(Path.of("unit test files", "map settings").toString()).listFiles((dir, name) -> name.endsWith(".nort"));
+		assertNotNull(files);
+		Arrays.sort(files);
+		for (File file : files)
+		{
+			MapSettings settings = new MapSettings(file.getPath());
+			Path jsonPath = tempDir.resolve("json " + file.getName());
+			Path packedPath = tempDir.resolve("packed " + file.getName());
+			settings.writeToFile(jsonPath.toString(), false);
+			settings.writeToFile(packedPath.toString(), true);
+
+			String packedJson = Files.readString(packedPath, StandardCharsets.UTF_8);
+			assertTrue(packedJson.contains("\"packedCenterEdits\":"), file.getName());
+			assertFalse(packedJson.contains("\"centerEdits\":"), file.getName());
+
+			MapSettings fromJson = new MapSettings(jsonPath.toString());
+			MapSettings fromPacked = new MapSettings(packedPath.toString());
+			assertEquals(fromJson, fromPacked, file.getName());
+			if (!settings.edits.centerEdits.isEmpty())
+			{
+				assertTrue(Files.size(packedPath) < Files.size(jsonPath), file.getName());
+			}
+		}
+	}
+
+	@Test
+	public void versionsThatCantReadPackedEditsRejectPackedMaps() throws IOException
+	{
+		assertFalse(MapSettings.isVersionGreaterThan(MapSettings.packedEditsVersion, MapSettings.currentVersion));
+
+		MapSettings settings = new MapSettings(Path.of("unit test files", "map settings", "simpleSmallWorld.nort").toString());
+		Path packedPath = tempDir.resolve("packed.nort");
+		settings.writeToFile(packedPath.toString(), true);
+		String version = new MapSettings(packedPath.toString()).version;
+		assertFalse(MapSettings.isVersionGreaterThan(MapSettings.packedEditsVersion, version));
+		assertTrue(MapSettings.isVersionGreaterThan(version, "3.21"));
+	}
+
+	@Test
+	public void legacyEdgeEditsArePacked() throws IOException
+	{
+		MapSettings settings = new MapSettings(Path.of("unit test files", "map settings", "riverConversionTest.nort").toString());
+		settings.edits.hasInitializedRivers = false;
+		assertFalse(settings.edits.edgeEdits.isEmpty());
+
+		Path packedPath = tempDir.resolve("packed.nort");
+		settings.writeToFile(packedPath.toString(), true);
+		MapSettings fromPacked = new MapSettings(packedPath.toString());
+		assertEquals(settings.edits.edgeEdits, fromPacked.edits.edgeEdits);
+	}
+}
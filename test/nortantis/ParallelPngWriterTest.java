@@ -0,0 +1,176 @@
+package nortantis;
+
+import nortantis.platform.awt.ParallelPngWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelPngWriterTest
+{
+	/**
+	 * Tall enough that the image is split into several bands, with smooth areas for the filters to find and noise to keep the deflater
+	 * honest.
+	 */
+	private static BufferedImage createImage(int type)
+	{
+		int width = 257;
+		int height = 3001;
+		BufferedImage image = new BufferedImage(width, height, type);
+		WritableRaster raster = image.getRaster();
+		Random rand = new Random(type);
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				int noise = x % 7 == 0 ? rand.nextInt(256) : 0;
+				if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+				{
+					int argb = ((y * 3 + noise) & 0xff) << 24 | ((x + y) & 0xff) << 16 | (noise & 0xff) << 8 | ((x * y) & 0xff);
+					image.setRGB(x, y, argb);
+				}
+				else if (type == BufferedImage.TYPE_BYTE_GRAY)
+				{
+					raster.setSample(x, y, 0, (x + noise) & 0xff);
+				}
+				else
+				{
+					raster.setSample(x, y, 0, (x * 251 + y * 17 + noise) & 0xffff);
+				}
+			}
+		}
+		return image;
+	}
+
+	private static void assertRoundTrips(int type, int compressionLevel) throws IOException
+	{
+		assertRoundTrips(type, new ParallelPngWriter(compressionLevel));
+	}
+
+	private static void assertRoundTrips(int type, ParallelPngWriter writer) throws IOException
+	{
+		BufferedImage image = createImage(type);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.write(image, out);
+		assertSameImage(image, ImageIO.read(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	private static void assertSameImage(BufferedImage image, BufferedImage read)
+	{
+		int type = image.getType();
+		assertNotNull(read);
+		assertEquals(image.getWidth(), read.getWidth());
+		assertEquals(image.getHeight(), read.getHeight());
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				if (type == BufferedImage.TYPE_USHORT_GRAY)
+				{
+					assertEquals(image.getRaster().getSample(x, y, 0), read.getRaster().getSample(x, y, 0), "Pixel " + x + ", " + y);
+				}
+				else
+				{
+					assertEquals(image.getRGB(x, y), read.getRGB(x, y), "Pixel " + x + ", " + y);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void roundTripsEverySupportedType() throws IOException
+	{
+		for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY })
+		{
+			assertRoundTrips(type, ParallelPngWriter.defaultCompressionLevel);
+		}
+	}
+
+	@Test
+	public void roundTripsAtEveryCompressionLevel() throws IOException
+	{
+		for (int level = ParallelPngWriter.storeOnly; level <= 9; level++)
+		{
+			assertRoundTrips(BufferedImage.TYPE_INT_ARGB, level);
+		}
+	}
+
+	@Test
+	public void roundTripsFilterOnly() throws IOException
+	{
+		for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY })
+		{
+			assertRoundTrips(type, new ParallelPngWriter(ParallelPngWriter.defaultCompressionLevel, true));
+		}
+	}
+
+	@Test
+	public void filterOnlyIsSmallerThanStoreOnly() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream filterOnly = new ByteArrayOutputStream();
+		new ParallelPngWriter(ParallelPngWriter.defaultCompressionLevel, true).write(image, filterOnly);
+		ByteArrayOutputStream storeOnly = new ByteArrayOutputStream();
+		new ParallelPngWriter(ParallelPngWriter.storeOnly).write(image, storeOnly);
+
+		assertTrue(filterOnly.size() < storeOnly.size(), "Filter only wrote " + filterOnly.size() + " bytes vs store only's " + storeOnly.size() + ".");
+	}
+
+	@Test
+	public void rejectsCompressionLevelsOutOfRange()
+	{
+		assertThrows(IllegalArgumentException.class, () -> new ParallelPngWriter(-1));
+		assertThrows(IllegalArgumentException.class, () -> new ParallelPngWriter(10));
+	}
+
+	@Test
+	public void writesInUnevenStrips() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ParallelPngWriter.StripWriter writer = new ParallelPngWriter(ParallelPngWriter.defaultCompressionLevel).open(out, image.getWidth(),
+				image.getHeight(), image.getType()))
+		{
+			// Includes strips shorter than the rows kept to prime the next strip's dictionary.
+			int[] stripHeights = { 1, 2, 700, 37, 1500 };
+			int y = 0;
+			for (int i = 0; y < image.getHeight(); i++)
+			{
+				int stripHeight = Math.min(image.getHeight() - y, i < stripHeights.length ? stripHeights[i] : 250);
+				writer.writeRows(image.getSubimage(0, y, image.getWidth(), stripHeight));
+				y += stripHeight;
+			}
+		}
+
+		assertSameImage(image, ImageIO.read(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	@Test
+	public void closingBeforeAllRowsAreWrittenFails() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+		ParallelPngWriter.StripWriter writer = new ParallelPngWriter(ParallelPngWriter.defaultCompressionLevel).open(new ByteArrayOutputStream(),
+				image.getWidth(), image.getHeight(), image.getType());
+		writer.writeRows(image.getSubimage(0, 0, image.getWidth(), 100));
+		assertThrows(IOException.class, writer::close);
+	}
+
+	@Test
+	public void compressesComparablyToImageIO() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream ours = new ByteArrayOutputStream();
+		new ParallelPngWriter(ParallelPngWriter.defaultCompressionLevel).write(image, ours);
+		ByteArrayOutputStream imageIO = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", imageIO);
+
+		assertTrue(ours.size() < imageIO.size() * 1.1, "Parallel writer produced " + ours.size() + " bytes vs ImageIO's " + imageIO.size() + ".");
+	}
+}
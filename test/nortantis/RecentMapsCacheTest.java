@@ -0,0 +1,60 @@
+package nortantis;
+
+import nortantis.editor.RecentMapsCache;
+import nortantis.platform.Image;
+import nortantis.platform.ImageType;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecentMapsCacheTest
+{
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	@Test
+	public void get_returnsImageForMatchingKeyOnly()
+	{
+		RecentMapsCache cache = new RecentMapsCache(2);
+		Image withText = Image.create(4, 4, ImageType.ARGB);
+		cache.put("drawText=true", withText);
+
+		assertSame(withText, cache.get("drawText=true"));
+		assertNull(cache.get("drawText=false"));
+	}
+
+	@Test
+	public void put_evictsLeastRecentlyUsedEntry()
+	{
+		RecentMapsCache cache = new RecentMapsCache(2);
+		Image a = Image.create(4, 4, ImageType.ARGB);
+		Image b = Image.create(4, 4, ImageType.ARGB);
+		Image c = Image.create(4, 4, ImageType.ARGB);
+		cache.put("a", a);
+		cache.put("b", b);
+		// Using "a" makes "b" the least recently used.
+		cache.get("a");
+		cache.put("c", c);
+
+		assertSame(a, cache.get("a"));
+		assertNull(cache.get("b"));
+		assertSame(c, cache.get("c"));
+	}
+
+	@Test
+	public void clear_removesAllEntries()
+	{
+		RecentMapsCache cache = new RecentMapsCache(2);
+		cache.put("a", Image.create(4, 4, ImageType.ARGB));
+		cache.clear();
+
+		assertTrue(cache.isEmpty());
+		assertNull(cache.get("a"));
+	}
+}
@@ -0,0 +1,171 @@
+package nortantis;
+
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import nortantis.util.Assets;
+import nortantis.util.JsonStreamReader;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenderServiceTest
+{
+	private static final Path settingsPath = Path.of("unit test files", "map settings", "simpleSmallWorld.nort");
+	private final HttpClient client = HttpClient.newHttpClient();
+	private RenderService service;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+		nortantis.swing.translation.Translation.initialize();
+		Assets.disableAddedArtPacksForUnitTests();
+		IconDiskCache.disableForUnitTests();
+	}
+
+	@AfterEach
+	public void tearDown()
+	{
+		if (service != null)
+		{
+			service.stop();
+		}
+	}
+
+	private void startService(long memoryBudgetBytes, int maxConcurrentRenders, int maxQueuedJobs) throws IOException
+	{
+		service = new RenderService(0, memoryBudgetBytes, maxConcurrentRenders, maxQueuedJobs);
+		service.start();
+	}
+
+	private HttpResponse<byte[]> send(String method, String path, String body) throws IOException, InterruptedException
+	{
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + service.getPort() + path))
+				.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body)).build();
+		return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+	}
+
+	private static JSONObject parse(HttpResponse<byte[]> response) throws IOException
+	{
+		try (JsonStreamReader reader = new JsonStreamReader(new StringReader(new String(response.body(), StandardCharsets.UTF_8))))
+		{
+			return (JSONObject) reader.readValue();
+		}
+	}
+
+	private JSONObject waitForJobToFinish(long id) throws Exception
+	{
+		for (int i = 0; i < 1200; i++)
+		{
+			JSONObject status = parse(send("GET", "/jobs/" + id, null));
+			if (!status.get("state").equals("Queued") && !status.get("state").equals("Running"))
+			{
+				return status;
+			}
+			Thread.sleep(100);
+		}
+		fail("Job " + id + " didn't finish.");
+		return null;
+	}
+
+	@Test
+	public void mapIsDrawnAndFetched() throws Exception
+	{
+		startService(Long.MAX_VALUE, 1, 10);
+		String settings = Files.readString(settingsPath);
+
+		HttpResponse<byte[]> submitted = send("POST", "/render?resolution=0.25", settings);
+		assertEquals(202, submitted.statusCode());
+		long id = (Long) parse(submitted).get("id");
+
+		JSONObject status = waitForJobToFinish(id);
+		assertEquals("Succeeded", status.get("state"), String.valueOf(status.get("error")));
+		assertEquals(1.0, (Double) status.get("progress"));
+
+		HttpResponse<byte[]> image = send("GET", "/jobs/" + id + "/image", null);
+		assertEquals(200, image.statusCode());
+		assertEquals("image/png", image.headers().firstValue("Content-Type").orElse(null));
+		// PNG signature
+		assertEquals((byte) 0x89, image.body()[0]);
+		assertEquals('P', image.body()[1]);
+
+		HttpResponse<byte[]> waited = send("POST", "/render?resolution=0.25&format=jpg&wait=true", settings);
+		assertEquals(200, waited.statusCode());
+		assertEquals("image/jpeg", waited.headers().firstValue("Content-Type").orElse(null));
+
+		JSONObject metrics = parse(send("GET", "/metrics", null));
+		assertEquals(2L, metrics.get("succeeded"));
+		assertEquals(0L, metrics.get("reservedBytes"));
+	}
+
+	@Test
+	public void mapsThatDontFitAreRejected() throws Exception
+	{
+		startService(1024, 1, 10);
+		HttpResponse<byte[]> response = send("POST", "/render?resolution=0.25", Files.readString(settingsPath));
+		assertEquals(413, response.statusCode());
+		assertEquals(1L, parse(send("GET", "/metrics", null)).get("rejected"));
+
+		assertEquals(400, send("POST", "/render", "not a map").statusCode());
+		assertEquals(404, send("GET", "/jobs/12345", null).statusCode());
+		assertEquals(404, send("GET", "/nothing", null).statusCode());
+	}
+
+	@Test
+	public void queuedAndRunningJobsAreCancelled() throws Exception
+	{
+		startService(Long.MAX_VALUE, 1, 1);
+		String settings = Files.readString(settingsPath);
+
+		long running = (Long) parse(send("POST", "/render?resolution=0.25", settings)).get("id");
+		long queued = (Long) parse(send("POST", "/render?resolution=0.25", settings)).get("id");
+		assertEquals("Queued", parse(send("GET", "/jobs/" + queued, null)).get("state"));
+		assertEquals(503, send("POST", "/render?resolution=0.25", settings).statusCode(), "The queue should be full.");
+
+		assertEquals("Cancelled", parse(send("DELETE", "/jobs/" + queued, null)).get("state"));
+		send("DELETE", "/jobs/" + running, null);
+		assertEquals("Cancelled", waitForJobToFinish(running).get("state"));
+		assertEquals(409, send("GET", "/jobs/" + running + "/image", null).statusCode());
+
+		JSONObject metrics = parse(send("GET", "/metrics", null));
+		assertEquals(2L, metrics.get("cancelled"));
+		assertEquals(0L, metrics.get("running"));
+	}
+
+	@Test
+	public void requestsBiggerThanTheLimitAreRejected() throws Exception
+	{
+		startService(Long.MAX_VALUE, 1, 10);
+		String settings = Files.readString(settingsPath);
+		service.maxRequestBytes = settings.length() - 1;
+
+		HttpResponse<byte[]> response = send("POST", "/render?resolution=0.25", settings);
+		assertEquals(413, response.statusCode());
+		assertEquals(0L, parse(send("GET", "/metrics", null)).get("queued"));
+	}
+
+	@Test
+	public void waitingTooLongCancelsTheJob() throws Exception
+	{
+		startService(Long.MAX_VALUE, 1, 10);
+		service.waitTimeoutMillis = 1;
+
+		HttpResponse<byte[]> response = send("POST", "/render?resolution=0.25&wait=true", Files.readString(settingsPath));
+		assertEquals(504, response.statusCode());
+		long id = (Long) parse(response).get("id");
+		assertEquals("Cancelled", waitForJobToFinish(id).get("state"));
+	}
+}
@@ -0,0 +1,107 @@
+package nortantis;
+
+import nortantis.editor.Road;
+import nortantis.editor.RoadPathNode;
+import nortantis.geom.Point;
+import nortantis.geom.Rectangle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RoadSpatialIndexTest
+{
+	private static Road road(Point... locations)
+	{
+		List<RoadPathNode> nodes = new ArrayList<>(locations.length);
+		for (Point loc : locations)
+		{
+			nodes.add(new RoadPathNode(loc));
+		}
+		return new Road(new CopyOnWriteArrayList<>(nodes));
+	}
+
+	@Test
+	public void findRoadsOverlapping_returnsOnlyNearbyRoadsInListOrder()
+	{
+		Road far = road(new Point(1000, 1000), new Point(1100, 1000));
+		Road second = road(new Point(0, 10), new Point(50, 10));
+		Road first = road(new Point(0, 0), new Point(50, 0), new Point(90, 5));
+		List<Road> roads = new ArrayList<>(Arrays.asList(first, far, second));
+
+		RoadSpatialIndex index = new RoadSpatialIndex();
+		List<Road> found = index.findRoadsOverlapping(roads, new Rectangle(-5, -5, 40, 40));
+		assertEquals(2, found.size());
+		assertSame(first, found.get(0));
+		assertSame(second, found.get(1));
+
+		assertTrue(index.findRoadsOverlapping(roads, new Rectangle(500, 500, 10, 10)).isEmpty());
+	}
+
+	@Test
+	public void findRoadsOverlapping_detectsSegmentCrossingBoundsWithNoNodeInside()
+	{
+		Road road = road(new Point(0, 50), new Point(400, 50));
+		RoadSpatialIndex index = new RoadSpatialIndex();
+		List<Road> found = index.findRoadsOverlapping(Collections.singletonList(road), new Rectangle(190, 40, 20, 20));
+		assertEquals(1, found.size());
+	}
+
+	@Test
+	public void sync_tracksRemoveSegmentsAndSplitRoads()
+	{
+		Point a = new Point(0, 0);
+		Point b = new Point(200, 0);
+		Point c = new Point(400, 0);
+		Point d = new Point(600, 0);
+		List<Road> roads = new ArrayList<>(Arrays.asList(road(a, b, c, d)));
+		RoadSpatialIndex index = new RoadSpatialIndex();
+		assertEquals(1, index.findRoadsOverlapping(roads, new Rectangle(290, -5, 20, 10)).size());
+
+		RoadDrawer.removeSegmentsAndSplitRoads(roads, Collections.singletonList(Arrays.asList(b, c)));
+		assertTrue(index.findRoadsOverlapping(roads, new Rectangle(290, -5, 20, 10)).isEmpty());
+		assertEquals(1, index.findRoadsOverlapping(roads, new Rectangle(490, -5, 20, 10)).size());
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	public void sync_tracksMergeAdjacentRoads()
+	{
+		Point a = new Point(0, 0);
+		Point b = new Point(200, 0);
+		Point c = new Point(400, 0);
+		Road existing = road(a, b);
+		Road toMerge = road(b, c);
+		List<Road> roads = new ArrayList<>(Arrays.asList(existing, toMerge));
+		RoadSpatialIndex index = new RoadSpatialIndex();
+		index.sync(roads);
+		assertEquals(2, index.size());
+
+		RoadDrawer.mergeAdjacentRoads(Collections.singletonList(toMerge), roads);
+		List<Road> found = index.findRoadsOverlapping(roads, new Rectangle(390, -5, 20, 10));
+		assertEquals(1, found.size());
+		assertSame(existing, found.get(0));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	public void getGeometry_isCachedUntilNodesAreReassigned()
+	{
+		Road road = road(new Point(0, 0), new Point(10, 0), new Point(20, 5));
+		assertSame(road.getGeometry(), road.getGeometry());
+
+		List<RoadPathNode> nodes = new ArrayList<>(road.nodes);
+		nodes.add(new RoadPathNode(new Point(30, 5)));
+		Object before = road.getGeometry();
+		road.nodes = new CopyOnWriteArrayList<>(nodes);
+		assertTrue(before != road.getGeometry());
+		assertEquals(4, road.getGeometry().locations.size());
+	}
+}
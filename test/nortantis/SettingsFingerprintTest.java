@@ -0,0 +1,129 @@
+package nortantis;
+
+import nortantis.SettingsFingerprint.Section;
+import nortantis.editor.CenterEdit;
+import nortantis.editor.FreeIcon;
+import nortantis.editor.RegionEdit;
+import nortantis.geom.Point;
+import nortantis.platform.Color;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SettingsFingerprintTest
+{
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	private static MapSettings createSettings()
+	{
+		MapSettings settings = new MapSettings();
+		for (int i = 0; i < 20; i++)
+		{
+			settings.edits.centerEdits.put(i, new CenterEdit(i, i % 2 == 0, false, i % 4, null, null));
+		}
+		settings.edits.regionEdits.put(0, new RegionEdit(0, Color.create(10, 20, 30)));
+		settings.edits.freeIcons.addOrReplace(createIcon(IconType.trees, 3, 0));
+		settings.edits.freeIcons.addOrReplace(createIcon(IconType.trees, 3, 1));
+		settings.edits.freeIcons.addOrReplace(createIcon(IconType.cities, null, 2));
+		settings.edits.text.add(new MapText("Test", new Point(5, 5), 0, TextType.City, LineBreak.Auto, null, null, 0, 0, null, 0));
+		return settings;
+	}
+
+	private static FreeIcon createIcon(IconType type, Integer centerIndex, int iconIndex)
+	{
+		return new FreeIcon(new Point(iconIndex * 10, iconIndex * 20), 1.0, type, "nortantis", "group", iconIndex, null, centerIndex, 1.0, null, null, false,
+				false, 1.0);
+	}
+
+	private static void assertChangeFoundIn(Section expected, Consumer<MapSettings> change)
+	{
+		MapSettings saved = createSettings();
+		SettingsFingerprint fingerprint = new SettingsFingerprint(saved);
+		MapSettings current = saved.deepCopy();
+		SettingsFingerprint currentFingerprint = new SettingsFingerprint(current);
+		assertTrue(fingerprint.matches(currentFingerprint));
+
+		change.accept(current);
+		currentFingerprint.update(current, current.edits, EnumSet.of(expected));
+
+		assertEquals(EnumSet.of(expected), fingerprint.findChangedSections(currentFingerprint));
+		assertFalse(fingerprint.matches(currentFingerprint));
+		assertTrue(currentFingerprint.matches(new SettingsFingerprint(current)));
+		assertNotEquals(saved, current);
+	}
+
+	@Test
+	public void findsTheSectionThatChanged()
+	{
+		assertChangeFoundIn(Section.Theme, settings -> settings.landColor = Color.create(1, 2, 3));
+		assertChangeFoundIn(Section.EditFlags, settings -> settings.edits.hasIconEdits = !settings.edits.hasIconEdits);
+		assertChangeFoundIn(Section.RegionEdits, settings -> settings.edits.regionEdits.get(0).color = Color.create(1, 1, 1));
+		assertChangeFoundIn(Section.CenterEdits, settings -> settings.edits.centerEdits.put(5, settings.edits.centerEdits.get(5).copyWithRegionId(9)));
+		assertChangeFoundIn(Section.Icons, settings -> settings.edits.freeIcons.addOrReplace(createIcon(IconType.mountains, 7, 4)));
+		assertChangeFoundIn(Section.Text, settings -> settings.edits.text.get(0).value = "Changed");
+	}
+
+	@Test
+	public void findsEditsThatSwapValues()
+	{
+		assertChangeFoundIn(Section.CenterEdits, settings ->
+		{
+			CenterEdit edit1 = settings.edits.centerEdits.get(1);
+			CenterEdit edit2 = settings.edits.centerEdits.get(2);
+			settings.edits.centerEdits.put(1, edit1.copyWithRegionId(edit2.regionId));
+			settings.edits.centerEdits.put(2, edit2.copyWithRegionId(edit1.regionId));
+		});
+	}
+
+	@Test
+	public void updateOnlyRehashesTheGivenSections()
+	{
+		MapSettings settings = createSettings();
+		SettingsFingerprint fingerprint = new SettingsFingerprint(settings);
+		SettingsFingerprint original = new SettingsFingerprint(settings);
+
+		settings.edits.text.get(0).value = "Changed";
+		fingerprint.update(settings, settings.edits, EnumSet.of(Section.Icons));
+		assertTrue(fingerprint.matches(original));
+
+		fingerprint.update(settings, settings.edits, EnumSet.of(Section.Text));
+		assertEquals(EnumSet.of(Section.Text), fingerprint.findChangedSections(original));
+	}
+
+	@Test
+	public void ignoresOrderOfIconsAndTextBounds()
+	{
+		MapSettings saved = createSettings();
+		SettingsFingerprint fingerprint = new SettingsFingerprint(saved);
+
+		MapSettings current = saved.deepCopy();
+		FreeIcon tree = current.edits.freeIcons.getTrees(3).get(0);
+		current.edits.freeIcons.remove(tree);
+		current.edits.freeIcons.addOrReplace(tree);
+		current.edits.textBoundsNeedRefresh = !saved.edits.textBoundsNeedRefresh;
+
+		assertEquals(saved, current);
+		assertEquals(saved.hashCode(), current.hashCode());
+		assertTrue(fingerprint.matches(new SettingsFingerprint(current)));
+	}
+
+	@Test
+	public void settingsWithoutEditsDontMatchSettingsWithEdits()
+	{
+		MapSettings saved = createSettings();
+		MapSettings current = saved.deepCopyExceptEdits();
+
+		assertTrue(new SettingsFingerprint(saved).findChangedSections(new SettingsFingerprint(current)).contains(Section.EditFlags));
+		assertTrue(new SettingsFingerprint(current).matches(new SettingsFingerprint(saved.deepCopyExceptEdits())));
+	}
+}
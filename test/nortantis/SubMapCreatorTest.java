@@ -35,6 +35,7 @@ public class SubMapCreatorTest
 	{
 		PlatformFactory.setInstance(new AwtFactory());
 		nortantis.swing.translation.Translation.initialize();
+		IconDiskCache.disableForUnitTests();
 		FileUtils.deleteDirectory(new File(Paths.get("unit test files", failedMapsFolderName).toString()));
 	}
 
@@ -96,8 +97,7 @@ public class SubMapCreatorTest
 
 		assertSubMapInfoMatches(subMapSettings.subMapInfo, originalFileName, selectionBoundsRI, worldSize, seed, false, "in-memory");
 
-		// deepCopy goes through Java serialization (Helper.deepCopy), so SubMapInfo must be Serializable. This mirrors what
-		// MainWindow.updateLastSettingsLoadedOrSaved does on every load and would crash if SubMapInfo were not serializable.
+		// deepCopy must carry SubMapInfo over. This mirrors what MainWindow.updateLastSettingsLoadedOrSaved does on every load.
 		MapSettings copied = subMapSettings.deepCopy();
 		assertSubMapInfoMatches(copied.subMapInfo, originalFileName, selectionBoundsRI, worldSize, seed, false, "after deepCopy");
 
@@ -0,0 +1,126 @@
+package nortantis;
+
+import nortantis.platform.Image;
+import nortantis.platform.ImageType;
+import nortantis.platform.PixelReader;
+import nortantis.platform.PixelReaderWriter;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TilePyramidWriterTest
+{
+	@TempDir
+	Path tempDir;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	private static Image createRandomImage(int width, int height)
+	{
+		Random rand = new Random(width * 31 + height);
+		Image image = Image.create(width, height, ImageType.RGB);
+		try (PixelReaderWriter pixels = image.createPixelReaderWriter(null))
+		{
+			for (int y = 0; y < height; y++)
+			{
+				for (int x = 0; x < width; x++)
+				{
+					pixels.setRGB(x, y, rand.nextInt(256), rand.nextInt(256), rand.nextInt(256));
+				}
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void xyzTilesArePaddedToFullSize() throws IOException
+	{
+		Image map = createRandomImage(600, 300);
+		TilePyramidWriter writer = new TilePyramidWriter(TileLayout.XYZ);
+		assertEquals(3, writer.countLevels(map.getWidth(), map.getHeight()));
+		writer.write(map, tempDir.toString());
+
+		// 600x300 at zoom 2, 300x150 at zoom 1, and 150x75 at zoom 0.
+		assertTrue(Files.exists(tempDir.resolve("2/2/1.png")));
+		assertFalse(Files.exists(tempDir.resolve("2/3/0.png")));
+		assertFalse(Files.exists(tempDir.resolve("2/0/2.png")));
+		assertTrue(Files.exists(tempDir.resolve("1/1/0.png")));
+		assertTrue(Files.exists(tempDir.resolve("0/0/0.png")));
+
+		Image edgeTile = Image.read(tempDir.resolve("2/2/1.png").toString());
+		assertEquals(TilePyramidWriter.tileSize, edgeTile.getWidth());
+		assertEquals(TilePyramidWriter.tileSize, edgeTile.getHeight());
+		try (PixelReader mapPixels = map.createPixelReader(); PixelReader tilePixels = edgeTile.createPixelReader())
+		{
+			assertEquals(mapPixels.getRGB(512, 256), tilePixels.getRGB(0, 0));
+			assertEquals(mapPixels.getRGB(599, 299), tilePixels.getRGB(87, 43));
+			assertEquals(0, tilePixels.getAlpha(88, 0));
+			assertEquals(0, tilePixels.getAlpha(0, 44));
+		}
+	}
+
+	@Test
+	public void deepZoomGoesDownToOnePixelWithCroppedEdgeTiles() throws IOException
+	{
+		Image map = createRandomImage(600, 300);
+		TilePyramidWriter writer = new TilePyramidWriter(TileLayout.Deep_zoom);
+		assertEquals(11, writer.countLevels(map.getWidth(), map.getHeight()));
+		writer.write(map, tempDir.toString());
+
+		String descriptor = Files.readString(tempDir.resolve(TilePyramidWriter.deepZoomName + ".dzi"));
+		assertTrue(descriptor.contains("Width=\"600\" Height=\"300\""), descriptor);
+
+		Image edgeTile = Image.read(tempDir.resolve(TilePyramidWriter.deepZoomName + "_files/10/2_1.png").toString());
+		assertEquals(88, edgeTile.getWidth());
+		assertEquals(44, edgeTile.getHeight());
+
+		Image smallest = Image.read(tempDir.resolve(TilePyramidWriter.deepZoomName + "_files/0/0_0.png").toString());
+		assertEquals(1, smallest.getWidth());
+		assertEquals(1, smallest.getHeight());
+	}
+
+	@Test
+	public void rewritingOnlyEncodesChangedTiles() throws IOException
+	{
+		Image map = createRandomImage(600, 300);
+		TilePyramidWriter writer = new TilePyramidWriter(TileLayout.XYZ);
+		assertEquals(6 + 2 + 1, writer.write(map, tempDir.toString()));
+		assertEquals(0, writer.write(map, tempDir.toString()));
+
+		try (PixelReaderWriter pixels = map.createPixelReaderWriter(null))
+		{
+			pixels.setRGB(10, 10, pixels.getRGB(10, 10) ^ 0xffffff);
+		}
+		// One tile per zoom level covers the changed pixel.
+		assertEquals(3, writer.write(map, tempDir.toString()));
+
+		// A deleted tile is written again even though its hash didn't change.
+		Files.delete(tempDir.resolve("2/1/0.png"));
+		assertEquals(1, writer.write(map, tempDir.toString()));
+	}
+
+	@Test
+	public void tilesTheMapNoLongerCoversAreDeleted() throws IOException
+	{
+		TilePyramidWriter writer = new TilePyramidWriter(TileLayout.XYZ);
+		writer.write(createRandomImage(600, 300), tempDir.toString());
+		assertTrue(Files.exists(tempDir.resolve("2/2/1.png")));
+
+		writer.write(createRandomImage(300, 200), tempDir.toString());
+		assertFalse(Files.exists(tempDir.resolve("2/2/1.png")));
+		assertTrue(Files.exists(tempDir.resolve("1/1/0.png")));
+	}
+}
@@ -0,0 +1,139 @@
+package nortantis;
+
+import nortantis.util.WeightedLruCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeightedLruCacheTest
+{
+	@Test
+	public void get_computesOncePerKeyUnderContention() throws Exception
+	{
+		WeightedLruCache<String, Object> cache = new WeightedLruCache<>("test", Long.MAX_VALUE, value -> 1);
+		AtomicInteger computeCount = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try
+		{
+			List<Future<Object>> results = new ArrayList<>();
+			for (int i = 0; i < 32; i++)
+			{
+				results.add(executor.submit(() ->
+				{
+					start.await();
+					return cache.get("tree", () ->
+					{
+						computeCount.incrementAndGet();
+						try
+						{
+							Thread.sleep(20);
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+						}
+						return new Object();
+					});
+				}));
+			}
+			start.countDown();
+
+			Object first = results.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<Object> result : results)
+			{
+				assertSame(first, result.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, computeCount.get());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void get_failedComputationCanBeRetried()
+	{
+		WeightedLruCache<String, String> cache = new WeightedLruCache<>("test", Long.MAX_VALUE, String::length);
+		assertThrows(IllegalStateException.class, () -> cache.get("key", () ->
+		{
+			throw new IllegalStateException();
+		}));
+		assertEquals(0, cache.size());
+		assertEquals("value", cache.get("key", () -> "value"));
+	}
+
+	@Test
+	public void get_evictsLeastRecentlyUsedWhenOverMaxWeight()
+	{
+		WeightedLruCache<String, String> cache = new WeightedLruCache<>("test", 10, String::length);
+		cache.get("a", () -> "aaaa");
+		cache.get("b", () -> "bbbb");
+		// Touch "a" so that "b" is the least recently used.
+		cache.get("a", () -> "unused");
+		cache.get("c", () -> "cccc");
+
+		WeightedLruCache.Stats stats = cache.getStats();
+		assertEquals(2, stats.size());
+		assertEquals(8, stats.residentWeight());
+		assertEquals(1, stats.evictionCount());
+		assertEquals(1, stats.hitCount());
+		assertEquals(3, stats.missCount());
+
+		assertEquals("aaaa", cache.get("a", () -> "recreated"));
+		assertEquals("recreated", cache.get("b", () -> "recreated"));
+	}
+
+	@Test
+	public void trimToFraction_reducesResidentWeight()
+	{
+		WeightedLruCache<Integer, String> cache = new WeightedLruCache<>("test", 100, String::length);
+		for (int i = 0; i < 10; i++)
+		{
+			cache.get(i, () -> "0123456789");
+		}
+		assertEquals(100, cache.getStats().residentWeight());
+
+		cache.trimToFraction(0.5);
+		assertEquals(50, cache.getStats().residentWeight());
+		assertEquals(5, cache.size());
+		// The most recently added entries are kept.
+		assertEquals("0123456789", cache.get(9, () -> "recreated"));
+	}
+
+	@Test
+	public void get_keepsAnEntryHeavierThanMaxWeightUntilAnotherIsAdded()
+	{
+		WeightedLruCache<String, String> cache = new WeightedLruCache<>("test", 10, String::length);
+		cache.get("a", () -> "aaaa");
+		assertEquals("0123456789abc", cache.get("big", () -> "0123456789abc"));
+
+		// The heavy entry replaces everything else rather than being dropped right away.
+		assertEquals(1, cache.size());
+		assertEquals("0123456789abc", cache.get("big", () -> "recreated"));
+
+		cache.get("b", () -> "bbbb");
+		assertEquals(1, cache.size());
+		assertEquals("recreated", cache.get("big", () -> "recreated"));
+	}
+
+	@Test
+	public void get_throwsWhenCreatingAValueRequestsItsOwnKey()
+	{
+		WeightedLruCache<String, String> cache = new WeightedLruCache<>("test", Long.MAX_VALUE, String::length);
+		assertThrows(IllegalStateException.class, () -> cache.get("a", () -> cache.get("a", () -> "inner")));
+		assertEquals(0, cache.size());
+		// Creation functions may still use other keys.
+		assertEquals("bb", cache.get("a", () -> cache.get("b", () -> "b") + "b"));
+	}
+}
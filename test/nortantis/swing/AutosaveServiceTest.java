@@ -0,0 +1,95 @@
+package nortantis.swing;
+
+import nortantis.MapSettings;
+import nortantis.MapText;
+import nortantis.editor.CenterEdit;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutosaveServiceTest
+{
+	@TempDir
+	Path tempDir;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	/**
+	 * Mimics MainWindow, which passes settings that share the editor's edits.
+	 */
+	private static MapSettings getSettingsFromEditor(MapSettings saved, MapEdits editorEdits)
+	{
+		MapSettings settings = saved.deepCopyExceptEdits();
+		settings.edits = editorEdits;
+		return settings;
+	}
+
+	@Test
+	public void autosavesHaveTheLatestChanges() throws IOException
+	{
+		Path mapPath = tempDir.resolve("map.nort");
+		Files.copy(Path.of("unit test files", "map settings", "allTypesOfEdits.nort"), mapPath);
+		MapSettings saved = new MapSettings(mapPath.toString());
+		MapEdits editorEdits = saved.edits.deepCopy();
+		Path autosavePath = AutosaveService.getAutosavePath(mapPath);
+
+		AutosaveService service = new AutosaveService();
+		service.reset(mapPath);
+		assertFalse(service.autosaveIfChanged(getSettingsFromEditor(saved, editorEdits), saved, false));
+		assertFalse(Files.exists(autosavePath));
+
+		CenterEdit centerEdit = editorEdits.centerEdits.get(0);
+		editorEdits.centerEdits.put(0, centerEdit.copyWithRegionId(centerEdit.regionId == null ? 1 : centerEdit.regionId + 1));
+		assertTrue(service.autosaveIfChanged(getSettingsFromEditor(saved, editorEdits), saved, false));
+		service.waitForAutosave();
+		MapSettings expected = getSettingsFromEditor(saved, editorEdits.deepCopy());
+		expected.version = MapSettings.currentVersion;
+		assertEquals(expected, new MapSettings(autosavePath.toString()));
+		Files.setLastModifiedTime(mapPath, FileTime.fromMillis(0));
+		assertEquals(autosavePath, AutosaveService.findNewerAutosave(mapPath));
+
+		// The second autosave starts from the first one's snapshot and reuses its unchanged sections.
+		MapText removed = editorEdits.text.remove(0);
+		assertNotNull(removed);
+		MapSettings themeChange = getSettingsFromEditor(saved, editorEdits);
+		themeChange.oceanColor = themeChange.oceanColor.equals(saved.landColor) ? saved.riverColor : saved.landColor;
+		assertTrue(service.autosaveIfChanged(themeChange, saved, true));
+		service.waitForAutosave();
+		expected = getSettingsFromEditor(saved, editorEdits.deepCopy());
+		expected.oceanColor = themeChange.oceanColor;
+		expected.version = MapSettings.currentVersion;
+		assertEquals(expected, new MapSettings(autosavePath.toString()));
+
+		MapSettings unchanged = getSettingsFromEditor(saved, editorEdits);
+		unchanged.oceanColor = themeChange.oceanColor;
+		assertFalse(service.autosaveIfChanged(unchanged, saved, true));
+
+		service.deleteAutosave();
+		assertFalse(Files.exists(autosavePath));
+		try (var files = Files.list(tempDir))
+		{
+			assertEquals(1, files.count(), "Temporary files should be moved into place or deleted.");
+		}
+	}
+
+	@Test
+	public void mapsThatHaventBeenSavedArentAutosaved()
+	{
+		assertNull(AutosaveService.getAutosavePath(null));
+		assertNull(AutosaveService.getAutosavePath(Path.of("old.properties")));
+		assertEquals(Path.of("folder", "map.autosave.nort"), AutosaveService.getAutosavePath(Path.of("folder", "map.nort")));
+	}
+}
@@ -0,0 +1,115 @@
+package nortantis.swing;
+
+import nortantis.GraphCreator;
+import nortantis.WorldGraph;
+import nortantis.graph.voronoi.Center;
+import nortantis.graph.voronoi.Edge;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CenterOutlineCacheTest
+{
+	private static WorldGraph graph;
+
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+		graph = GraphCreator.createSimpleGraph(1024, 768, 2000, new Random(1), 0.5, false, 0, false, false);
+	}
+
+	private static Center findInteriorCenter()
+	{
+		for (Center center : graph.centers)
+		{
+			if (center.isBorder || center.borders.isEmpty())
+			{
+				continue;
+			}
+			boolean allEdgesHavePaths = true;
+			for (Edge edge : center.borders)
+			{
+				allEdgesHavePaths &= graph.noisyEdges.getNoisyEdge(edge.index) != null;
+			}
+			if (allEdgesHavePaths)
+			{
+				return center;
+			}
+		}
+		throw new AssertionError("No interior center found.");
+	}
+
+	private static int countSubpaths(Path2D path)
+	{
+		int count = 0;
+		float[] coords = new float[6];
+		for (PathIterator iterator = path.getPathIterator(null); !iterator.isDone(); iterator.next())
+		{
+			if (iterator.currentSegment(coords) == PathIterator.SEG_MOVETO)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void edgePathsAreReusedUntilTheirNoisyEdgeIsRebuilt()
+	{
+		CenterOutlineCache cache = new CenterOutlineCache();
+		cache.setGraph(graph);
+		Center center = findInteriorCenter();
+		Edge edge = center.borders.get(0);
+
+		Path2D.Float path = cache.getEdgePath(edge);
+		assertNotNull(path);
+		assertSame(path, cache.getEdgePath(edge));
+
+		graph.rebuildNoisyEdgesForCenter(center);
+		Path2D.Float rebuilt = cache.getEdgePath(edge);
+		assertNotSame(path, rebuilt);
+		assertSame(rebuilt, cache.getEdgePath(edge));
+	}
+
+	@Test
+	public void groupOutlineLeavesOutSharedEdges()
+	{
+		CenterOutlineCache cache = new CenterOutlineCache();
+		cache.setGraph(graph);
+		Center center = findInteriorCenter();
+		Set<Center> group = new HashSet<>();
+		group.add(center);
+		group.addAll(center.neighbors);
+
+		int sharedEdges = 0;
+		int allEdges = 0;
+		for (Center c : group)
+		{
+			for (Edge e : c.borders)
+			{
+				if (graph.noisyEdges.getNoisyEdge(e.index) != null)
+				{
+					allEdges++;
+					if (e.d0 != null && e.d1 != null && group.contains(e.d0) && group.contains(e.d1))
+					{
+						sharedEdges++;
+					}
+				}
+			}
+		}
+
+		assertEquals(allEdges, countSubpaths(cache.buildOutline(group, false)));
+		assertEquals(allEdges - sharedEdges, countSubpaths(cache.buildOutline(group, true)));
+		assertTrue(sharedEdges > 0);
+	}
+}
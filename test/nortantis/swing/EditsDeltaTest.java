@@ -0,0 +1,125 @@
+package nortantis.swing;
+
+import nortantis.IconType;
+import nortantis.SettingsFingerprint.Section;
+import nortantis.editor.CenterEdit;
+import nortantis.editor.EdgeEdit;
+import nortantis.editor.FreeIcon;
+import nortantis.editor.RegionEdit;
+import nortantis.editor.Road;
+import nortantis.editor.RoadPathNode;
+import nortantis.geom.Point;
+import nortantis.platform.Color;
+import nortantis.platform.PlatformFactory;
+import nortantis.platform.awt.AwtFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EditsDeltaTest
+{
+	@BeforeAll
+	public static void setup()
+	{
+		PlatformFactory.setInstance(new AwtFactory());
+	}
+
+	private static MapEdits createEdits()
+	{
+		MapEdits edits = new MapEdits();
+		for (int i = 0; i < 10; i++)
+		{
+			edits.centerEdits.put(i, new CenterEdit(i, i % 2 == 0, false, i % 3, null, null));
+			edits.edgeEdits.put(i, new EdgeEdit(i, 0));
+		}
+		edits.regionEdits.put(0, new RegionEdit(0, Color.create(10, 20, 30)));
+		edits.regionEdits.put(1, new RegionEdit(1, Color.create(40, 50, 60)));
+		edits.freeIcons.addOrReplace(createIcon(IconType.mountains, 3, 0));
+		edits.freeIcons.addOrReplace(createIcon(IconType.trees, 4, 1));
+		edits.freeIcons.addOrReplace(createIcon(IconType.cities, null, 2));
+		edits.roads.add(new Road(List.of(new RoadPathNode(new Point(0, 0)), new RoadPathNode(new Point(10, 10)))));
+		return edits;
+	}
+
+	private static FreeIcon createIcon(IconType type, Integer centerIndex, int iconIndex)
+	{
+		return new FreeIcon(new Point(iconIndex * 10, iconIndex * 20), 1.0, type, "nortantis", "group", iconIndex, null, centerIndex, 1.0, null, null, false,
+				false, 1.0);
+	}
+
+	private static void changeEdits(MapEdits edits)
+	{
+		edits.centerEdits.put(2, edits.centerEdits.get(2).copyWithRegionId(7));
+		edits.centerEdits.remove(9);
+		edits.edgeEdits.get(5).riverLevel = 3;
+		edits.regionEdits.remove(1);
+		edits.regionEdits.put(2, new RegionEdit(2, Color.create(70, 80, 90)));
+		edits.freeIcons.remove(edits.freeIcons.getNonTree(3));
+		edits.freeIcons.addOrReplace(createIcon(IconType.trees, 4, 5));
+		edits.freeIcons.addOrReplace(createIcon(IconType.cities, null, 6));
+		edits.roads.add(new Road(List.of(new RoadPathNode(new Point(5, 5)), new RoadPathNode(new Point(20, 5)))));
+		edits.hasIconEdits = true;
+	}
+
+	@Test
+	public void applyForwardAndBackwardRestoresBothVersions()
+	{
+		MapEdits snapshot = createEdits();
+		MapEdits original = snapshot.deepCopy();
+		MapEdits current = snapshot.deepCopy();
+		changeEdits(current);
+		assertNotEquals(original, current);
+
+		EditsDelta delta = EditsDelta.create(snapshot, current);
+		assertFalse(delta.isEmpty());
+
+		delta.applyTo(snapshot, true);
+		assertEquals(current, snapshot);
+		assertEquals(current.edgeEdits, snapshot.edgeEdits);
+
+		delta.applyTo(snapshot, false);
+		assertEquals(original, snapshot);
+		assertEquals(original.edgeEdits, snapshot.edgeEdits);
+	}
+
+	@Test
+	public void deltaOfUnchangedEditsIsEmpty()
+	{
+		MapEdits snapshot = createEdits();
+		assertTrue(EditsDelta.create(snapshot, snapshot.deepCopy()).isEmpty());
+	}
+
+	@Test
+	public void laterChangesToCurrentEditsDontAffectDelta()
+	{
+		MapEdits snapshot = createEdits();
+		MapEdits current = snapshot.deepCopy();
+		changeEdits(current);
+		MapEdits expected = current.deepCopy();
+
+		EditsDelta delta = EditsDelta.create(snapshot, current);
+		current.edgeEdits.get(5).riverLevel = 7;
+		current.regionEdits.get(2).color = Color.create(0, 0, 0);
+		current.roads.get(1).nodes.clear();
+
+		delta.applyTo(snapshot, true);
+		assertEquals(expected, snapshot);
+		assertEquals(expected.edgeEdits, snapshot.edgeEdits);
+	}
+
+	@Test
+	public void changedSectionsAreTheOnesThatChanged()
+	{
+		MapEdits snapshot = createEdits();
+		MapEdits current = snapshot.deepCopy();
+		assertEquals(EnumSet.noneOf(Section.class), EditsDelta.create(snapshot, current).getChangedSections());
+
+		changeEdits(current);
+		assertEquals(EnumSet.of(Section.CenterEdits, Section.RegionEdits, Section.Icons, Section.Roads, Section.EditFlags),
+				EditsDelta.create(snapshot, current).getChangedSections());
+	}
+}